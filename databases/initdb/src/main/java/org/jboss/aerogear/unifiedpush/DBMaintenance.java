@@ -1,9 +1,14 @@
 package org.jboss.aerogear.unifiedpush;
 
+import org.jboss.aerogear.unifiedpush.dao.InstallationDao;
 import org.jboss.aerogear.unifiedpush.jpa.JPAConfig;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 public class DBMaintenance {
+	private static final int INDEX_BATCH_SIZE = 1000;
+
 	public static void main(final String[] args) {
 		// Initialize spring context to create DB schema
 		AnnotationConfigApplicationContext applicationContext = null;
@@ -11,6 +16,7 @@ public class DBMaintenance {
 		applicationContext = createApplicationContext();
 
 		if (null != applicationContext) {
+			indexInstallationSearchTerms(applicationContext);
 			applicationContext.close();
 		}
 
@@ -33,4 +39,18 @@ public class DBMaintenance {
 		return ctx;
 	}
 
+	/*
+	 * Installations stored before the search index existed are indexed in
+	 * batches, one transaction per batch.
+	 */
+	static void indexInstallationSearchTerms(AnnotationConfigApplicationContext ctx) {
+		final InstallationDao installationDao = ctx.getBean(InstallationDao.class);
+		final TransactionTemplate transaction = new TransactionTemplate(ctx.getBean(PlatformTransactionManager.class));
+
+		String last = null;
+		do {
+			final String after = last;
+			last = transaction.execute(status -> installationDao.indexSearchTerms(after, INDEX_BATCH_SIZE));
+		} while (last != null);
+	}
 }
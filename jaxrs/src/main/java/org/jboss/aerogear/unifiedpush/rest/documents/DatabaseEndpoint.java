@@ -1,8 +1,9 @@
 package org.jboss.aerogear.unifiedpush.rest.documents;
 
-import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
@@ -18,11 +19,13 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.commons.lang3.StringUtils;
 import org.jboss.aerogear.unifiedpush.api.Alias;
@@ -42,6 +45,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.qmino.miredot.annotations.ReturnType;
 
 @Controller
@@ -54,6 +61,10 @@ public class DatabaseEndpoint extends AbstractEndpoint {
 	// Date header is added by nginx/wildfly and accessed by clients.
 	private static final String HEADER_DATE = "Date";
 
+	private static final ObjectMapper mapper = new ObjectMapper();
+	private static final ObjectWriter writer = mapper.writer()
+			.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
 	@Inject
 	private DocumentService documentService;
 	@Inject
@@ -569,7 +580,7 @@ public class DatabaseEndpoint extends AbstractEndpoint {
 			@QueryParam("limit") Integer limit, //
 			@HeaderParam("Accept") String accept, //
 			@Context HttpServletRequest request) { //
-		return get(request, new QueryOptions(fromDate, toDate, id, limit), accept, false, database, null);
+		return get(request, new QueryOptions(fromDate, toDate, id, limit), accept, true, null, database, null);
 	}
 
 	/**
@@ -620,8 +631,10 @@ public class DatabaseEndpoint extends AbstractEndpoint {
 			@QueryParam("toDate") Long toDate, //
 			@QueryParam("limit") Integer limit, //
 			@HeaderParam("Accept") String accept, //
+			@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch, //
 			@Context HttpServletRequest request) { //
-		return get(request, new QueryOptions(fromDate, toDate, id, limit), accept, false, database, null);
+		return get(request, new QueryOptions(fromDate, toDate, id, limit), accept, false, ifNoneMatch, database,
+				null);
 	}
 
 	/**
@@ -675,7 +688,7 @@ public class DatabaseEndpoint extends AbstractEndpoint {
 			@QueryParam("limit") Integer limit, //
 			@HeaderParam("Accept") String accept, //
 			@Context HttpServletRequest request) { //
-		return get(request, new QueryOptions(fromDate, toDate, id, limit), accept, true, database, alias);
+		return get(request, new QueryOptions(fromDate, toDate, id, limit), accept, true, null, database, alias);
 	}
 
 	/**
@@ -728,14 +741,17 @@ public class DatabaseEndpoint extends AbstractEndpoint {
 			@QueryParam("toDate") Long toDate, //
 			@QueryParam("limit") Integer limit, //
 			@HeaderParam("Accept") String accept, //
+			@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch, //
 			@Context HttpServletRequest request) { //
-		return get(request, new QueryOptions(fromDate, toDate, id, limit), accept, false, database, alias);
+		return get(request, new QueryOptions(fromDate, toDate, id, limit), accept, false, ifNoneMatch, database,
+				alias);
 	}
 
 	private Response get(HttpServletRequest request, //
 			QueryOptions options, //
 			String accept, //
 			boolean headOnly, //
+			String ifNoneMatch, //
 			String database, //
 			String alias) {
 
@@ -747,16 +763,32 @@ public class DatabaseEndpoint extends AbstractEndpoint {
 		}
 
 		UUID pushApplicationId = UUID.fromString(pushApplication.getPushApplicationID());
-		ResponseData data = getDocuments(request, options, accept, headOnly, pushApplicationId, database, alias);
 
 		try {
-			// In case no available parts | HEAD request, return 204
-			if (headOnly || data.getSize() == 0)
-				return appendAllowOriginHeader(appendCountHeader(Response.noContent(), data.getSize()), request);
-			else
+			DocumentMetadata metadata = new DocumentMetadata(pushApplicationId, database,
+					getAlias(request, pushApplicationId, alias));
+
+			// HEAD request, documents are counted by Cassandra.
+			if (headOnly)
 				return appendAllowOriginHeader(
-						appendCountHeader(Response.ok(data.getResponse()).type(data.getContentType()), data.getSize()),
-						request);
+						appendCountHeader(Response.noContent(), documentService.count(metadata, options)), request);
+
+			// Count and latest snapshot are resolved by a single query, from
+			// clustering keys only, before content is read.
+			List<UUID> snapshots = documentService.findSnapshots(metadata, options);
+
+			// No available documents, return 204
+			if (snapshots.isEmpty())
+				return appendAllowOriginHeader(appendCountHeader(Response.noContent(), 0), request);
+
+			// Latest snapshot didn't change since client last query.
+			EntityTag etag = new EntityTag(snapshots.get(0).toString());
+			if (matches(ifNoneMatch, etag))
+				return appendAllowOriginHeader(appendAllowExposeHeader(Response.notModified(etag)), request);
+
+			ResponseData data = getAsApplicationJson(metadata, options, snapshots);
+			return appendAllowOriginHeader(appendCountHeader(
+					Response.ok(data.getResponse()).type(data.getContentType()).tag(etag), data.getSize()), request);
 		} catch (Exception e) {
 			logger.error(String.format("Cannot query documents for database %s, application %s", database,
 					pushApplication.getPushApplicationID()), e);
@@ -764,12 +796,8 @@ public class DatabaseEndpoint extends AbstractEndpoint {
 		}
 	}
 
-	private ResponseData getDocuments(HttpServletRequest request, //
-			QueryOptions options, //
-			String accept, //
-			boolean headOnly, //
+	private Alias getAlias(HttpServletRequest request, //
 			UUID pushApplicationId, //
-			String database, //
 			String alias) {
 
 		// Find related alias by name
@@ -790,24 +818,49 @@ public class DatabaseEndpoint extends AbstractEndpoint {
 			aliasObj = NullAlias.getAlias(pushApplicationId);
 		}
 
-		return getAsApplicationJson(request, options, headOnly, pushApplicationId, database, aliasObj);
+		return aliasObj;
 	}
 
-	private ResponseData getAsApplicationJson(HttpServletRequest request, //
-			QueryOptions options, //
-			boolean headOnly, //
-			UUID pushApplicationId, //
-			String database, //
-			Alias alias) { //
+	/*
+	 * Documents are written one by one while pages arrive from Cassandra, raw
+	 * content is passed through as is (see JsonDocumentContent). Documents are
+	 * read from the snapshots already resolved for the query, so content, count
+	 * and ETag agree even if documents are written meanwhile.
+	 */
+	private ResponseData getAsApplicationJson(DocumentMetadata metadata, QueryOptions options, List<UUID> snapshots) {
+		StreamingOutput stream = output -> {
+			try (Stream<DocumentContent> documents = documentService.find(metadata, options, snapshots);
+					JsonGenerator generator = mapper.getFactory().createGenerator(output)) {
+				generator.writeStartArray();
+
+				for (Iterator<DocumentContent> it = documents.iterator(); it.hasNext();) {
+					DocumentContent doc = it.next();
+					writer.writeValue(generator,
+							new JsonDocumentContent(doc.getKey(), doc.getContent(), doc.getDocumentId()));
+				}
+
+				generator.writeEndArray();
+			}
+		};
 
-		final List<JsonDocumentContent> docs = new ArrayList<>();
+		return new ResponseData(snapshots.size(), stream, MediaType.APPLICATION_JSON);
+	}
 
-		DocumentMetadata metadata = new DocumentMetadata(pushApplicationId, database, alias);
-		documentService.find(metadata, options).forEach(doc -> {
-			docs.add(new JsonDocumentContent(doc.getKey(), doc.getContent(), doc.getDocumentId()));
-		});
+	/*
+	 * If-None-Match may hold a list of (weak) entity tags or '*'.
+	 */
+	private static boolean matches(String ifNoneMatch, EntityTag etag) {
+		if (StringUtils.isEmpty(ifNoneMatch))
+			return false;
+
+		for (String value : StringUtils.split(ifNoneMatch, ',')) {
+			String tag = StringUtils.removeStart(value.trim(), "W/");
+			if ("*".equals(tag) || etag.getValue().equals(StringUtils.strip(tag, "\""))) {
+				return true;
+			}
+		}
 
-		return new ResponseData(docs.size(), docs, MediaType.APPLICATION_JSON);
+		return false;
 	}
 
 	private Alias getAliasByToken(UUID pushApplicationId, String deviceToken) {
@@ -826,7 +879,7 @@ public class DatabaseEndpoint extends AbstractEndpoint {
 		return aliasObj;
 	}
 
-	public static ResponseBuilder appendCountHeader(ResponseBuilder rb, int count) {
+	public static ResponseBuilder appendCountHeader(ResponseBuilder rb, long count) {
 		rb.header(X_HEADER_COUNT, count);
 
 		return appendAllowExposeHeader(rb);
@@ -840,7 +893,8 @@ public class DatabaseEndpoint extends AbstractEndpoint {
 
 	public static ResponseBuilder appendAllowExposeHeader(ResponseBuilder rb) {
 		rb.header("Access-Control-Expose-Headers",
-				StringUtils.join(new String[] { X_HEADER_SNAPSHOT_ID, X_HEADER_COUNT, HEADER_DATE }, ","));
+				StringUtils.join(new String[] { X_HEADER_SNAPSHOT_ID, X_HEADER_COUNT, HEADER_DATE, HttpHeaders.ETAG },
+						","));
 		return rb;
 	}
 
@@ -0,0 +1,58 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.rest.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.jboss.aerogear.unifiedpush.message.metrics.DispatchQueueMetrics;
+import org.jboss.aerogear.unifiedpush.message.metrics.SenderPoolMetrics;
+import org.springframework.stereotype.Component;
+
+import com.qmino.miredot.annotations.ReturnType;
+
+@Component
+@Path("/metrics/sender")
+public class SenderMetricsEndpoint {
+
+    @Inject
+    private DispatchQueueMetrics dispatchQueueMetrics;
+
+    /**
+     * GET runtime metrics of the push sending pipeline
+     *
+     * @return  map of metric groups, e.g. the depth of the token dispatch queue, token loader stalls or the threads,
+     *          queue and wait time of the push network clients
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @ReturnType("java.util.Map<java.lang.String, java.util.Map<java.lang.String, java.lang.Object>>")
+    public Response senderMetrics() {
+        final Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("dispatchQueue", dispatchQueueMetrics.snapshot());
+        metrics.put("servicePools", SenderPoolMetrics.snapshot());
+
+        return Response.ok(metrics).build();
+    }
+}
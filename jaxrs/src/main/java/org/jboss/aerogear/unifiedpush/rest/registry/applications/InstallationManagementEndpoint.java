@@ -16,6 +16,8 @@
  */
 package org.jboss.aerogear.unifiedpush.rest.registry.applications;
 
+import java.util.List;
+
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
@@ -28,6 +30,7 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 
 import org.jboss.aerogear.unifiedpush.api.Installation;
@@ -56,12 +59,13 @@ public class InstallationManagementEndpoint extends AbstractManagementEndpoint {
      * @param variantId id of {@link org.jboss.aerogear.unifiedpush.api.Variant}
      * @param page      page number
      * @param pageSize  number of items per page
-     * @param search    search query
+     * @param search    search query, matching any part of the device token or the beginning of any word of the other installation metadata
+     * @param after     id of the last installation of the previous page, used instead of the page number when present
      * @param uri       uri
      * @return          list of {@link Installation}s
      *
      * @responseheader Link     Links to "prev", "first", "next" and "last" pages
-     * @responseheader total    Total count of items
+     * @responseheader total    Total count of items, when searching it is not counted beyond 1000
      *
      * @statuscode 404 The requested Variant resource does not exist
      */
@@ -72,6 +76,7 @@ public class InstallationManagementEndpoint extends AbstractManagementEndpoint {
                                       @QueryParam("page") Integer page,
                                       @QueryParam("per_page") Integer pageSize,
                                       @QueryParam("search") String search,
+                                      @QueryParam("after") String after,
                                       @Context UriInfo uri) {
         if (pageSize != null) {
             pageSize = Math.min(MAX_PAGE_SIZE, pageSize);
@@ -93,18 +98,25 @@ public class InstallationManagementEndpoint extends AbstractManagementEndpoint {
         }
 
         //Find the installations using the variantID
-        PageResult<Installation, Count> pageResult = getSearch().findAllInstallationsByVariantForDeveloper(variantId, page, pageSize, search);
+        PageResult<Installation, Count> pageResult = getSearch().findAllInstallationsByVariantForDeveloper(variantId, page, pageSize, search, after);
 
         final long totalPages = pageResult.getAggregate().getCount() / pageSize;
-        LinkHeader header = getLinkHeader(page, totalPages, uri);
+        final List<Installation> installations = pageResult.getResultList();
+        // the next page continues after the last installation of this one (keyset pagination)
+        final String next = installations.isEmpty() ? null : installations.get(installations.size() - 1).getId();
+        LinkHeader header = getLinkHeader(page, totalPages, next, uri);
 
-        return Response.ok(pageResult.getResultList())
+        return Response.ok(installations)
                 .header("Link", header.toString())
                 .header("total", pageResult.getAggregate().getCount())
                 .build();
     }
 
     LinkHeader getLinkHeader(Integer page, long totalPages, UriInfo uri) {
+        return getLinkHeader(page, totalPages, null, uri);
+    }
+
+    LinkHeader getLinkHeader(Integer page, long totalPages, String next, UriInfo uri) {
         LinkHeader header = new LinkHeader();
 
         if (page != 0) {
@@ -113,15 +125,24 @@ public class InstallationManagementEndpoint extends AbstractManagementEndpoint {
         }
 
         if (page < totalPages) {
-            header.addLink(buildLink("next", page + 1, uri));
+            header.addLink(buildLink("next", page + 1, next, uri));
             header.addLink(buildLink("last", totalPages, uri));
         }
         return header;
     }
 
     private Link buildLink(String rel, long pageNo, UriInfo uri) {
+        return buildLink(rel, pageNo, null, uri);
+    }
+
+    private Link buildLink(String rel, long pageNo, String after, UriInfo uri) {
+        final UriBuilder builder = uri.getAbsolutePathBuilder().queryParam("page", pageNo);
+        if (after != null) {
+            builder.queryParam("after", after);
+        }
+
         Link link = new Link();
-        link.setHref(uri.getAbsolutePathBuilder().queryParam("page", pageNo).build().toASCIIString());
+        link.setHref(builder.build().toASCIIString());
         link.setRelationship(rel);
         return link;
     }
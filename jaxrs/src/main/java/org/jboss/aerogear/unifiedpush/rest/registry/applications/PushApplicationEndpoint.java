@@ -42,7 +42,9 @@ import org.jboss.aerogear.unifiedpush.api.PushApplication;
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.dao.PageResult;
 import org.jboss.aerogear.unifiedpush.dto.Count;
+import org.jboss.aerogear.unifiedpush.cassandra.dao.model.TeardownJob;
 import org.jboss.aerogear.unifiedpush.rest.AbstractManagementEndpoint;
+import org.jboss.aerogear.unifiedpush.service.ApplicationTeardownService;
 import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
 import org.jboss.aerogear.unifiedpush.service.PushApplicationService;
 import org.jboss.aerogear.unifiedpush.service.metrics.IPushMessageMetricsService;
@@ -65,6 +67,9 @@ public class PushApplicationEndpoint extends AbstractManagementEndpoint {
 
     @Inject
     private ClientInstallationService installationService;
+
+    @Inject
+    private ApplicationTeardownService teardownService;
     /**
      * Create Push Application
      *
@@ -300,6 +305,34 @@ public class PushApplicationEndpoint extends AbstractManagementEndpoint {
         return Response.status(Status.NOT_FOUND).entity("Could not find requested PushApplicationEntity").build();
     }
 
+    /**
+     * Push Application teardown progress
+     *
+     * @param pushApplicationID id of deleted {@link PushApplication}
+     * @return          teardown status, number of removed users and completed partitions
+     *
+     * @statuscode 200 The teardown job found
+     * @statuscode 404 No teardown job for the requested PushApplication
+     */
+    @GET
+    @Path("/{pushAppID}/teardown")
+    @Produces(MediaType.APPLICATION_JSON)
+    @ReturnType("org.jboss.aerogear.unifiedpush.cassandra.dao.model.TeardownJob")
+    public Response teardownProgress(@PathParam("pushAppID") String pushApplicationID) {
+
+        TeardownJob job = null;
+        try {
+            job = teardownService.getProgress(pushApplicationID);
+        } catch (IllegalArgumentException e) {
+            // Invalid UUID, no such job
+        }
+
+        if (job != null) {
+            return Response.ok(job).build();
+        }
+        return Response.status(Status.NOT_FOUND).entity("Could not find requested teardown job").build();
+    }
+
     /**
      * Count Push Applications
      *
@@ -16,35 +16,109 @@
  */
 package org.jboss.aerogear.unifiedpush.rest.registry.installations;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
+import org.jboss.aerogear.unifiedpush.dao.ResultStreamException;
 import org.jboss.aerogear.unifiedpush.rest.AbstractManagementEndpoint;
+import org.jboss.aerogear.unifiedpush.service.PushSearchService;
 import org.springframework.stereotype.Controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.qmino.miredot.annotations.ReturnType;
 
 @Controller
 @Path("/export")
 public class ExportEndpoint extends AbstractManagementEndpoint {
 
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private static final String NDJSON_FORMAT = "ndjson";
+    private static final String GZIP_ENCODING = "gzip";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
     /**
      * Endpoint for exporting as JSON file device installations for a given variant.
      * Only Keycloak authenticated can access it
      *
-     * @param variantId the variant ID
-     * @return          list of {@link org.jboss.aerogear.unifiedpush.api.Installation}s
+     * The installations are written while they are read from the database, so the export works for variants of any size.
+     * Use <code>?format=ndjson</code> for one installation per line, and send <code>Accept-Encoding: gzip</code> for a compressed export.
+     *
+     * @param variantId         the variant ID
+     * @param format            <code>json</code> (default) for a JSON array, <code>ndjson</code> for newline delimited JSON
+     * @param acceptEncoding    the <code>Accept-Encoding</code> header
+     * @return                  list of {@link org.jboss.aerogear.unifiedpush.api.Installation}s
      */
     @GET
     @Path("/{variantId}/installations/")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({ MediaType.APPLICATION_JSON, APPLICATION_NDJSON })
     @ReturnType("java.util.List<org.jboss.aerogear.unifiedpush.api.Installation>")
-    public Response exportInstallations(@PathParam("variantId") String variantId) {
-        return Response.ok(getSearch().findAllInstallationsByVariantForDeveloper(variantId, 0, Integer.MAX_VALUE, null).getResultList()).build();
+    public Response exportInstallations(@PathParam("variantId") String variantId,
+                                        @QueryParam("format") @DefaultValue("json") String format,
+                                        @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
+
+        final PushSearchService search = getSearch();
+        final boolean ndjson = NDJSON_FORMAT.equalsIgnoreCase(format);
+        final boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains(GZIP_ENCODING);
+
+        final StreamingOutput export = output -> {
+            final OutputStream out = gzip ? new GZIPOutputStream(output) : output;
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+                writeInstallations(search, variantId, ndjson, generator);
+            }
+        };
+
+        final Response.ResponseBuilder response = Response.ok(export, ndjson ? APPLICATION_NDJSON : MediaType.APPLICATION_JSON);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, GZIP_ENCODING);
+        }
+        return response.build();
     }
 
+    private static void writeInstallations(PushSearchService search, String variantId, boolean ndjson, JsonGenerator generator) throws IOException {
+        if (ndjson) {
+            generator.setRootValueSeparator(new SerializedString("\n"));
+        } else {
+            generator.writeStartArray();
+        }
+
+        try {
+            search.exportInstallationsByVariantForDeveloper(variantId, installation -> {
+                try {
+                    generator.writeObject(installation);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // the client went away, no need to read the remaining installations
+            throw e.getCause();
+        } catch (ResultStreamException e) {
+            throw new WebApplicationException(e);
+        }
+
+        if (ndjson) {
+            generator.writeRaw('\n');
+        } else {
+            generator.writeEndArray();
+        }
+    }
 }
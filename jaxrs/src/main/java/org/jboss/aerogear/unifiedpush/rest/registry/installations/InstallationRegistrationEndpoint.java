@@ -16,8 +16,11 @@
  */
 package org.jboss.aerogear.unifiedpush.rest.registry.installations;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.List;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Optional;
 
 import javax.inject.Inject;
@@ -49,13 +52,14 @@ import org.jboss.aerogear.unifiedpush.rest.util.HttpBasicHelper;
 import org.jboss.aerogear.unifiedpush.service.GenericVariantService;
 import org.jboss.aerogear.unifiedpush.service.VerificationService;
 import org.jboss.aerogear.unifiedpush.service.VerificationService.VerificationResult;
-import org.jboss.aerogear.unifiedpush.service.metrics.IPushMessageMetricsService;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageOpenAggregator;
 import org.jboss.resteasy.annotations.providers.multipart.MultipartForm;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Controller;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.qmino.miredot.annotations.BodyType;
 import com.qmino.miredot.annotations.ReturnType;
@@ -72,7 +76,7 @@ public class InstallationRegistrationEndpoint extends AbstractBaseRegistrationEn
 	@Inject
 	private GenericVariantService genericVariantService;
 	@Inject
-	private IPushMessageMetricsService metricsService;
+	private PushMessageOpenAggregator openAggregator;
 	@Inject
 	private VerificationService verificationService;
 
@@ -264,9 +268,9 @@ public class InstallationRegistrationEndpoint extends AbstractBaseRegistrationEn
 			return create401Response(request);
 		}
 
-		// let's do update the analytics
+		// let's do update the analytics, the app opens are written to the database in the background
 		if (pushMessageId != null) {
-			metricsService.updateAnalytics(pushMessageId);
+			openAggregator.appOpened(pushMessageId);
 		}
 
 		return Response.ok(EmptyJSON.STRING).build();
@@ -385,19 +389,34 @@ public class InstallationRegistrationEndpoint extends AbstractBaseRegistrationEn
 			return create401Response(request);
 		}
 
-		List<Installation> devices;
+		// keep the upload on disk, the devices are read from it while importing them
+		final File jsonFile;
 		try {
-			devices = mapper.readValue(form.getJsonFile(), new TypeReference<List<Installation>>() {
-			});
+			jsonFile = File.createTempFile("aerogear-import-", ".json");
+		} catch (IOException e) {
+			logger.error("Unable to store importer json file", e);
+			return Response.status(Status.INTERNAL_SERVER_ERROR).build();
+		}
+
+		try (InputStream upload = form.getJsonFile()) {
+			Files.copy(upload, jsonFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+			// fail fast, if the file does not contain an array of installations
+			try (JsonParser parser = mapper.getFactory().createParser(jsonFile)) {
+				if (parser.nextToken() != JsonToken.START_ARRAY) {
+					throw new IOException("Expected an array of installations");
+				}
+			}
 		} catch (IOException e) {
 			logger.error("Error when parsing importer json file", e);
+			jsonFile.delete();
 
 			return Response.status(Status.BAD_REQUEST).build();
 		}
 
-		logger.info("Devices to import: {}", devices.size());
+		logger.info("Importing devices from {} bytes", jsonFile.length());
 
-		clientInstallationAsyncService.addInstallations(variant, devices);
+		clientInstallationAsyncService.importInstallations(variant, jsonFile);
 
 		// return directly, the above is async and may take a bit :-)
 		return Response.ok(EmptyJSON.STRING).build();
@@ -9,6 +9,7 @@ import java.util.stream.Collectors;
 
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation.Builder;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -28,6 +29,9 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, classes = { WebConfigTest.class })
 public class DatabaseEndpointTest extends RestEndpointTest {
 
@@ -93,6 +97,22 @@ public class DatabaseEndpointTest extends RestEndpointTest {
 			String count = response.getHeaderString(DatabaseEndpoint.X_HEADER_COUNT);
 			Assert.assertTrue(Integer.valueOf(count) == 2);
 
+			// Streamed JSON array
+			JsonNode documents = new ObjectMapper().readTree(response.readEntity(String.class));
+			assertTrue(documents.isArray());
+			assertEquals(2, documents.size());
+
+			String etag = response.getHeaderString(HttpHeaders.ETAG);
+			assertTrue(StringUtils.isNoneEmpty(etag));
+
+			response.close();
+
+			// Conditional GET, documents didn't change since last query
+			response = ClientAuthHelper.setDeviceToken(target.request(), newInstallation.getDeviceToken())
+					.header(HttpHeaders.IF_NONE_MATCH, etag).get();
+
+			assertEquals(304, response.getStatus());
+
 			response.close();
 
 			// get documents @HEAD /{database}/alias/{alias}
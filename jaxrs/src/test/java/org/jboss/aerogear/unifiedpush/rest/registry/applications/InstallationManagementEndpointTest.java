@@ -74,6 +74,21 @@ public class InstallationManagementEndpointTest extends RestEndpointTest {
 		assertThat(findLinkByRel(linkHeader, "last")).isNull();
 	}
 
+	@Test
+	public void shouldGenerateNextLinkAfterLastInstallation() throws URISyntaxException {
+		// given
+		final ResteasyUriInfo uriInfo = getUriInfo();
+
+		// when
+		final LinkHeader linkHeader = endpoint.getLinkHeader(1, 3, "last-id", uriInfo);
+
+		// then
+		final Link next = findLinkByRel(linkHeader, "next");
+		assertThat(next).isNotNull();
+		assertThat(next.getHref()).isEqualTo("/?page=2&after=last-id");
+		assertThat(findLinkByRel(linkHeader, "prev").getHref()).isEqualTo("/?page=0");
+	}
+
     private Link findLinkByRel(LinkHeader linkHeader, String rel) {
         return linkHeader.getLinks().stream()
                 .filter(link -> link.getRelationship().equals(rel))
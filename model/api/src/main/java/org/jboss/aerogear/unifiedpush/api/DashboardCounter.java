@@ -0,0 +1,110 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.api;
+
+import java.io.Serializable;
+
+/**
+ * Materialized count of entities shown on the dashboard, maintained incrementally instead of counting the rows.
+ *
+ * A counter either belongs to one entity (e.g. the devices of a variant), or is the total of its kind, in which case
+ * the reference ID is {@code null}.
+ */
+public class DashboardCounter implements Serializable {
+
+    private static final long serialVersionUID = 3870316405741931625L;
+
+    /**
+     * Number of push applications, total only.
+     */
+    public static final String APPLICATIONS = "applications";
+
+    /**
+     * Number of installations, per variant ID.
+     */
+    public static final String DEVICES = "devices";
+
+    /**
+     * Number of push messages, per push application ID.
+     */
+    public static final String MESSAGES = "messages";
+
+    private String id; // = "kind" or "kind" + ":" + "ref-id"
+    private String kind;
+    private String refId;
+    private long value;
+
+    public DashboardCounter() {
+        // bogus ctor
+    }
+
+    public DashboardCounter(final String kind, final String refId, final long value) {
+        this.id = idOf(kind, refId);
+        this.kind = kind;
+        this.refId = refId;
+        this.value = value;
+    }
+
+    /**
+     * @param kind the kind of counter
+     * @param refId the entity the counter belongs to, {@code null} for the total
+     * @return the primary key of the counter
+     */
+    public static String idOf(final String kind, final String refId) {
+        return refId == null ? kind : kind + ':' + refId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public void setKind(String kind) {
+        this.kind = kind;
+    }
+
+    public String getRefId() {
+        return refId;
+    }
+
+    public void setRefId(String refId) {
+        this.refId = refId;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    public void setValue(long value) {
+        this.value = value;
+    }
+
+    @Override
+    public String toString() {
+        return "DashboardCounter{" +
+                "id='" + id + '\'' +
+                ", value=" + value +
+                '}';
+    }
+}
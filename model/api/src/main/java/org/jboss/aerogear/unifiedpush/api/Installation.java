@@ -45,6 +45,8 @@ public class Installation extends BaseModel {
     private String platform;
     @JsonIgnore
     private Variant variant;
+    @JsonIgnore
+    private Set<String> searchTerms = new HashSet<>();
 
     public boolean isEnabled() {
         return this.enabled;
@@ -175,4 +177,18 @@ public class Installation extends BaseModel {
     public void setVariant(Variant variant) {
         this.variant = variant;
     }
+
+    /**
+     * Lower case metadata (device token, type, platform, os, version and alias) starting at every word,
+     * matched by prefix when searching installations. Maintained by the persistence layer, NOT exposed to clients.
+     *
+     * @param searchTerms the indexed search terms of the installation
+     */
+    public void setSearchTerms(Set<String> searchTerms) {
+        this.searchTerms = searchTerms;
+    }
+
+    public Set<String> getSearchTerms() {
+        return searchTerms;
+    }
 }
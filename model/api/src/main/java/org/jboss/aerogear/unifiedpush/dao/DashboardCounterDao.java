@@ -0,0 +1,58 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.dao;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.jboss.aerogear.unifiedpush.api.DashboardCounter;
+
+public interface DashboardCounterDao extends GenericBaseDao<DashboardCounter, String> {
+
+    /**
+     * Adds the delta to the counter, creating it if needed. The total of the kind is not touched.
+     *
+     * @param kind the kind of counter
+     * @param refId the entity the counter belongs to, {@code null} for the total
+     * @param delta value to add, may be negative
+     */
+    void increment(String kind, String refId, long delta);
+
+    /**
+     * @param kinds the kinds of counters
+     * @return total of every given kind which has been counted, by kind
+     */
+    Map<String, Long> findTotals(Collection<String> kinds);
+
+    /**
+     * Removes the counter of an entity and subtracts its value from the total of the kind.
+     *
+     * @param kind the kind of counter
+     * @param refId the entity the counter belongs to
+     * @return the value of the removed counter, 0 if there was none
+     */
+    long remove(String kind, String refId);
+
+    /**
+     * Replaces all counters of a kind, including the total which becomes the sum of the given values.
+     *
+     * @param kind the kind of counter
+     * @param values value of the counters, by entity, or only the total (by {@code null}) for kinds which are not
+     *        counted per entity
+     */
+    void reset(String kind, Map<String, Long> values);
+}
@@ -21,6 +21,7 @@ import org.jboss.aerogear.unifiedpush.dto.MessageMetrics;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 public interface FlatPushMessageInformationDao extends GenericBaseDao<FlatPushMessageInformation, String>  {
 
@@ -117,8 +118,27 @@ public interface FlatPushMessageInformationDao extends GenericBaseDao<FlatPushMe
      */
     void deletePushInformationOlderThan(Date oldest);
 
+    /**
+     * Adds the given number of app opens to the counter of the push message, without loading it.
+     *
+     * @param id ID of the push message
+     * @param delta number of app opens to add
+     * @param firstOpenDate first of the app opens, only stored if the message was not opened before
+     * @param lastOpenDate last of the app opens
+     *
+     * @return number of updated push messages, 0 if the push message does not exist (anymore)
+     */
+    int incrementAppOpenCounter(String id, long delta, Date firstOpenDate, Date lastOpenDate);
+
     //Admin queries
     List<String> findVariantIDsWithWarnings();
     List<FlatPushMessageInformation> findLatestActivity(int maxResults);
     long getNumberOfPushMessagesForApplications();
+
+    /**
+     * Counts the push messages of every push application, in one query.
+     *
+     * @return number of push messages by push application ID, applications without messages are missing
+     */
+    Map<String, Long> countPushMessagesByApplication();
 }
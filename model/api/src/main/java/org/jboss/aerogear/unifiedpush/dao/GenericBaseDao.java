@@ -21,5 +21,10 @@ public interface GenericBaseDao<O, K> {
 
     void flushAndClear();
 
+    /**
+     * Removes the given entity from the persistence context, leaving all other managed entities untouched.
+     */
+    void detach(O entity);
+
     void lock(O entity);
 }
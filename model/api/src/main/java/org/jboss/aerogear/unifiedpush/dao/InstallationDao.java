@@ -17,6 +17,7 @@
 package org.jboss.aerogear.unifiedpush.dao;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.jboss.aerogear.unifiedpush.api.Installation;
@@ -25,6 +26,11 @@ import org.jboss.aerogear.unifiedpush.dto.Count;
 
 public interface InstallationDao extends GenericBaseDao<Installation, String> {
 
+    /**
+     * Number of matching installations a search counts at most.
+     */
+    int MAX_SEARCH_COUNT = 1000;
+
     /**
      * Loads a specific installation for the given Variant, specified by the device token.
      *
@@ -45,6 +51,35 @@ public interface InstallationDao extends GenericBaseDao<Installation, String> {
      */
     List<Installation> findInstallationsForVariantByDeviceTokens(String variantID, Set<String> deviceTokens);
 
+    /**
+     * Import API for installations: returns the device tokens of the given <code>Set</code>, which are
+     * already registered for the given Variant.
+     *
+     * @param variantID the variantID for the filter
+     * @param deviceTokens the deviceTokens for the filter
+     *
+     * @return the registered device tokens.
+     */
+    Set<String> findExistingDeviceTokensForVariantID(String variantID, Set<String> deviceTokens);
+
+    /**
+     * Import API for installations: stores the given installations using JDBC batch inserts and
+     * detaches them from the persistence context afterwards.
+     *
+     * @param installations new installations, with their variant and categories already set
+     * @param batchSize number of statements sent to the database at once
+     */
+    void createInstallations(List<Installation> installations, int batchSize);
+
+    /**
+     * Stores the changes of the given installations using JDBC batch updates, in a single flush, and
+     * detaches them from the persistence context afterwards.
+     *
+     * @param installations changed installations
+     * @param batchSize number of statements sent to the database at once
+     */
+    void updateInstallations(List<Installation> installations, int batchSize);
+
     /**
      * Sender API for installations:
      *
@@ -62,30 +97,93 @@ public interface InstallationDao extends GenericBaseDao<Installation, String> {
      */
     ResultsStream.QueryBuilder<String> findAllDeviceTokenForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes, int maxResults, String lastTokenFromPreviousBatch, boolean oldGCM);
 
+    /**
+     * Sender API for installations:
+     *
+     * Query tokens for the given variant within the given token range, by respecting a few criteria arguments (categories, aliases and deviceTypes)
+     *
+     * @param variantID the variantID for the filter
+     * @param categories applied categories for the filter
+     * @param aliases applied aliases for the filter
+     * @param deviceTypes applied deviceTypes for the filter
+     * @param maxResults number of maxResults for the filter
+     * @param lastTokenFromPreviousBatch identifier of the last fetched token, lower (exclusive) bound of the range
+     * @param upperTokenBoundary upper (inclusive) bound of the range, or null for an open range
+     * @param oldGCM if true only old GCM tokens (not containing a :) are load
+     *
+     * @return list of device tokens that matches this filter
+     */
+    ResultsStream.QueryBuilder<String> findAllDeviceTokenForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes, int maxResults, String lastTokenFromPreviousBatch, String upperTokenBoundary, boolean oldGCM);
+
+    /**
+     * Picks device tokens of the given variant that split its (ordered) token keyspace into ranges
+     * of approximately the same size, assuming the tokens are random strings. The tokens are neither
+     * counted nor skipped: every boundary is found by a single lookup of the next token, so the cost
+     * does not grow with the size of the variant. The ranges are loaded with the filter of
+     * {@link #findAllDeviceTokenForVariantIDByCriteria}, it is not needed for splitting them.
+     *
+     * @param variantID the variantID for the filter
+     * @param partitions number of ranges the keyspace should be split into
+     *
+     * @return ascending list of at most <code>partitions - 1</code> distinct boundary tokens; empty if the tokens cannot be split
+     */
+    List<String> findDeviceTokenBoundariesForVariantID(String variantID, int partitions);
+
     Set<String> findAllDeviceTokenForVariantID(String variantID);
 
     /**
-     * Find all installations for the variant specified and for the authneticated user.
+     * Find all installations for the variant specified and for the authneticated user, ordered by id.
+     *
+     * When searching, the total count is approximate: it is not computed beyond {@link #MAX_SEARCH_COUNT}.
+     *
      * @param variantID the id of the variant to find the installations for
      * @param developer the developer
-     * @param page the page number
+     * @param page the page number, only used when <code>after</code> is not given
      * @param pageSize the size of the pages
-     * @param search any value of the device metadata
+     * @param search any part of the device token, or beginning of any word of the other device metadata (case insensitive)
+     * @param after id of the last installation of the previous page (keyset pagination), or <code>null</code>
      *
      * @return all installations found or empty list + the total count of results
      */
-    PageResult<Installation, Count> findInstallationsByVariantForDeveloper(String variantID, String developer, Integer page, Integer pageSize, String search);
+    PageResult<Installation, Count> findInstallationsByVariantForDeveloper(String variantID, String developer, Integer page, Integer pageSize, String search, String after);
 
     /**
-     * Find all installations for the variant specified (used for admin role)
+     * Find all installations for the variant specified (used for admin role), ordered by id.
+     *
+     * When searching, the total count is approximate: it is not computed beyond {@link #MAX_SEARCH_COUNT}.
+     *
      * @param variantID the id of the variant to find the installations for
-     * @param page the page number
+     * @param page the page number, only used when <code>after</code> is not given
      * @param pageSize the size of the pages
-     * @param search any value of the device metadata
+     * @param search any part of the device token, or beginning of any word of the other device metadata (case insensitive)
+     * @param after id of the last installation of the previous page (keyset pagination), or <code>null</code>
      *
      * @return all installations found or empty list + the total count of results
      */
-    PageResult<Installation, Count> findInstallationsByVariant(String variantID, Integer page, Integer pageSize, String search);
+    PageResult<Installation, Count> findInstallationsByVariant(String variantID, Integer page, Integer pageSize, String search, String after);
+
+    /**
+     * Index the search terms of installations stored without them (e.g. before the search index existed).
+     *
+     * @param after id of the last installation indexed by the previous batch, or <code>null</code> to start
+     * @param batchSize maximum number of installations indexed
+     *
+     * @return id of the last installation indexed, <code>null</code> when there are no installations left
+     */
+    String indexSearchTerms(String after, int batchSize);
+
+    /**
+     * Export API for installations:
+     *
+     * Streams all installations (including their categories) of the variant specified, ordered by their id.
+     * The installations are read-only, callers should clear the persistence context every now and then.
+     *
+     * @param variantID the id of the variant to find the installations for
+     * @param developer the developer, or null for the admin role
+     *
+     * @return builder of the stream of installations
+     */
+    ResultsStream.QueryBuilder<Installation> findAllInstallationsByVariantForDeveloper(String variantID, String developer);
 
 
     /**
@@ -105,6 +203,13 @@ public interface InstallationDao extends GenericBaseDao<Installation, String> {
      */
     long getTotalNumberOfDevices();
 
+    /**
+     * Counts the registered devices/clients of every variant, in one query
+     *
+     * @return number of devices by variant ID, variants without devices are missing
+     */
+    Map<String, Long> countDevicesByVariantID();
+
     /**
      * Counts the number of registered devices/clients for the given variant ID
      *
@@ -16,6 +16,7 @@
  */
 package org.jboss.aerogear.unifiedpush.dao;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -92,6 +93,15 @@ public interface PushApplicationDao extends GenericBaseDao<PushApplication, Stri
      */
     List<PushApplication> findByVariantIds(List<String> variantIDs);
 
+    /**
+     * Finder that returns the names of the given push applications, in one query.
+     *
+     * @param pushApplicationIDs list of push application ids
+     *
+     * @return name by push application id, deleted push applications are missing
+     */
+    Map<String, String> findNamesByPushApplicationIDs(Collection<String> pushApplicationIDs);
+
     PushApplication findByVariantId(String variantId);
 
     //Admin queries
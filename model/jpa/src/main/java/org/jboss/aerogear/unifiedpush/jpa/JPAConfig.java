@@ -45,7 +45,8 @@ public class JPAConfig {
 			"org/jboss/aerogear/unifiedpush/api/Installation.hbm.xml",
 			"org/jboss/aerogear/unifiedpush/api/Category.hbm.xml",
 			"org/jboss/aerogear/unifiedpush/api/FlatPushMessageInformation.hbm.xml",
-			"org/jboss/aerogear/unifiedpush/api/VariantErrorStatus.hbm.xml" };
+			"org/jboss/aerogear/unifiedpush/api/VariantErrorStatus.hbm.xml",
+			"org/jboss/aerogear/unifiedpush/api/DashboardCounter.hbm.xml" };
 
 	@Autowired
 	private Environment env;
@@ -0,0 +1,105 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa.dao.impl;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import org.jboss.aerogear.unifiedpush.api.Installation;
+
+/**
+ * Search terms of an {@link Installation}, stored in the indexed <code>installation_search_term</code> table.
+ *
+ * Every metadata value is indexed from each word it contains (e.g. <code>foo@bar.org</code> as
+ * <code>foo@bar.org</code>, <code>bar.org</code> and <code>org</code>), so a search is a prefix match on the
+ * index instead of a <code>LIKE '%search%'</code> scan over all installations of a variant.
+ *
+ * Device tokens have no words (hex or base64 strings) and are searched by any part of the token, they are indexed
+ * from every character instead (suffix index): a prefix match on the suffixes is a substring match on the token.
+ */
+final class InstallationSearchTerms {
+
+    // length of the term column, longer values (and searches) are matched on their beginning
+    static final int MAX_TERM_LENGTH = 64;
+    // bounds the number of rows of long, tokenized values (e.g. URLs)
+    private static final int MAX_TERMS_PER_VALUE = 8;
+    // FCM tokens and WNS channel URIs are shorter, parts of longer tokens are found within their beginning
+    private static final int MAX_DEVICE_TOKEN_SUFFIXES = 256;
+
+    private static final char ESCAPE = '!';
+
+    private InstallationSearchTerms() {
+    }
+
+    static Set<String> of(Installation installation) {
+        final Set<String> terms = new HashSet<>();
+        addSuffixes(terms, installation.getDeviceToken());
+        for (String value : Arrays.asList(installation.getDeviceType(), installation.getPlatform(),
+                installation.getOperatingSystem(), installation.getOsVersion(), installation.getAlias())) {
+            addTerms(terms, value);
+        }
+        return terms;
+    }
+
+    /**
+     * Pattern matching all terms starting with the given search, to be used with <code>ESCAPE '!'</code>.
+     */
+    static String prefixPattern(String search) {
+        final String term = normalize(search);
+        final StringBuilder pattern = new StringBuilder(term.length() + 1);
+        for (char c : term.toCharArray()) {
+            if (c == ESCAPE || c == '%' || c == '_') {
+                pattern.append(ESCAPE);
+            }
+            pattern.append(c);
+        }
+        return pattern.append('%').toString();
+    }
+
+    private static void addTerms(Set<String> terms, String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return;
+        }
+
+        final String normalized = value.trim().toLowerCase(Locale.ROOT);
+        int added = 0;
+        for (int i = 0; i < normalized.length() && added < MAX_TERMS_PER_VALUE; i++) {
+            if (i == 0 || (Character.isLetterOrDigit(normalized.charAt(i)) && !Character.isLetterOrDigit(normalized.charAt(i - 1)))) {
+                terms.add(normalized.substring(i, Math.min(normalized.length(), i + MAX_TERM_LENGTH)));
+                added++;
+            }
+        }
+    }
+
+    private static void addSuffixes(Set<String> terms, String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return;
+        }
+
+        final String normalized = value.trim().toLowerCase(Locale.ROOT);
+        for (int i = 0; i < normalized.length() && i < MAX_DEVICE_TOKEN_SUFFIXES; i++) {
+            terms.add(normalized.substring(i, Math.min(normalized.length(), i + MAX_TERM_LENGTH)));
+        }
+    }
+
+    private static String normalize(String search) {
+        final String term = search.trim().toLowerCase(Locale.ROOT);
+        return term.length() > MAX_TERM_LENGTH ? term.substring(0, MAX_TERM_LENGTH) : term;
+    }
+}
@@ -115,6 +115,15 @@ public abstract class JPABaseDao<T, K> implements GenericBaseDao<T, K> {
         entityManager.clear();
     }
 
+    /**
+     * Evicts a single object from the session-scoped cache,
+     * without flushing or clearing anything else
+     */
+    @Override
+    public void detach(T entity) {
+        entityManager.detach(entity);
+    }
+
     protected T getSingleResultForQuery(TypedQuery<T> query) {
         List<T> result = query.getResultList();
 
@@ -0,0 +1,90 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa.dao.impl;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.jboss.aerogear.unifiedpush.api.DashboardCounter;
+import org.jboss.aerogear.unifiedpush.dao.DashboardCounterDao;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class JPADashboardCounterDao extends JPABaseDao<DashboardCounter, String> implements DashboardCounterDao {
+
+    @Override
+    public void increment(String kind, String refId, long delta) {
+        final int updated = entityManager.createQuery("update DashboardCounter c set c.value = c.value + :delta where c.id = :id")
+                .setParameter("delta", delta)
+                .setParameter("id", DashboardCounter.idOf(kind, refId))
+                .executeUpdate();
+
+        if (updated == 0) {
+            entityManager.persist(new DashboardCounter(kind, refId, delta));
+        }
+    }
+
+    @Override
+    public Map<String, Long> findTotals(Collection<String> kinds) {
+        final Map<String, Long> totals = new HashMap<>();
+        if (!kinds.isEmpty()) {
+            // primary key lookups, the totals are stored by kind
+            createQuery("select c from DashboardCounter c where c.id in :ids")
+                    .setParameter("ids", kinds.stream().map(kind -> DashboardCounter.idOf(kind, null)).collect(Collectors.toList()))
+                    .getResultList()
+                    .forEach(counter -> totals.put(counter.getKind(), counter.getValue()));
+        }
+        return totals;
+    }
+
+    @Override
+    public long remove(String kind, String refId) {
+        final DashboardCounter counter = find(DashboardCounter.idOf(kind, refId));
+        if (counter == null) {
+            return 0;
+        }
+
+        final long value = counter.getValue();
+        entityManager.remove(counter);
+        increment(kind, null, -value);
+        return value;
+    }
+
+    @Override
+    public void reset(String kind, Map<String, Long> values) {
+        entityManager.createQuery("delete from DashboardCounter c where c.kind = :kind")
+                .setParameter("kind", kind)
+                .executeUpdate();
+
+        long total = 0;
+        for (Map.Entry<String, Long> value : values.entrySet()) {
+            total += value.getValue();
+            if (value.getKey() != null) {
+                entityManager.persist(new DashboardCounter(kind, value.getKey(), value.getValue()));
+            }
+        }
+        entityManager.persist(new DashboardCounter(kind, null, total));
+        entityManager.flush();
+    }
+
+    @Override
+    public Class<DashboardCounter> getType() {
+        return DashboardCounter.class;
+    }
+}
@@ -27,7 +27,9 @@ import org.springframework.stereotype.Repository;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Repository
 public class JPAFlatPushMessageInformationDao extends JPABaseDao<FlatPushMessageInformation, String> implements FlatPushMessageInformationDao{
@@ -119,6 +121,20 @@ public class JPAFlatPushMessageInformationDao extends JPABaseDao<FlatPushMessage
                 .getResultList();
     }
 
+    @Override
+    public int incrementAppOpenCounter(String id, long delta, Date firstOpenDate, Date lastOpenDate) {
+        // flushes may be applied out of order (e.g. by several nodes), keep the earliest first and the latest last open
+        return entityManager.createQuery("update FlatPushMessageInformation pmi set pmi.appOpenCounter = pmi.appOpenCounter + :delta, " +
+                " pmi.firstOpenDate = case when pmi.firstOpenDate is null or pmi.firstOpenDate > :firstOpenDate then :firstOpenDate else pmi.firstOpenDate end," +
+                " pmi.lastOpenDate = case when pmi.lastOpenDate is null or pmi.lastOpenDate < :lastOpenDate then :lastOpenDate else pmi.lastOpenDate end" +
+                " where pmi.id = :id")
+                .setParameter("delta", delta)
+                .setParameter("firstOpenDate", firstOpenDate)
+                .setParameter("lastOpenDate", lastOpenDate)
+                .setParameter("id", id)
+                .executeUpdate();
+    }
+
     @Override
     public void deletePushInformationOlderThan(Date oldest) {
         // TODO: use criteria API...
@@ -153,6 +169,15 @@ public class JPAFlatPushMessageInformationDao extends JPABaseDao<FlatPushMessage
         return createQuery("select count(pmi) from FlatPushMessageInformation pmi", Long.class).getSingleResult();
     }
 
+    @Override
+    public Map<String, Long> countPushMessagesByApplication() {
+        final Map<String, Long> messages = new HashMap<>();
+        createQuery("select pmi.pushApplicationId, count(pmi) from FlatPushMessageInformation pmi group by pmi.pushApplicationId", Object[].class)
+                .getResultList()
+                .forEach(result -> messages.put((String) result[0], (Long) result[1]));
+        return messages;
+    }
+
     /**
      * Helper that returns 'ASC' when true and 'DESC' when false.
      */
@@ -30,6 +30,7 @@ import javax.persistence.TypedQuery;
 import org.hibernate.Query;
 import org.hibernate.ScrollMode;
 import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.jboss.aerogear.unifiedpush.api.Installation;
 import org.jboss.aerogear.unifiedpush.dao.InstallationDao;
 import org.jboss.aerogear.unifiedpush.dao.PageResult;
@@ -42,23 +43,36 @@ import org.springframework.stereotype.Repository;
 @Repository
 public class JPAInstallationDao extends JPABaseDao<Installation, String> implements InstallationDao {
 
-    private static final String FIND_ALL_DEVICES_FOR_VARIANT_QUERY = "select distinct installation.deviceToken"
-                    + " from Installation installation"
+    private static final String DEVICES_FOR_VARIANT_CONDITION = " from Installation installation"
                     + " left join installation.categories c "
                     + " join installation.variant abstractVariant where abstractVariant.variantID = :variantID AND installation.enabled = true";
 
+    private static final String DEVICES_FOR_VARIANT_CONDITION_LEGACY = DEVICES_FOR_VARIANT_CONDITION
+                    + " AND locate(':', installation.deviceToken) = 0";
+
+    private static final String TOKENS_OF_VARIANT_CONDITION = " from Installation installation"
+                    + " where installation.variant.variantID = :variantID";
+
+    // upper bound of the lookups made to find the characters the tokens of a variant are made of
+    private static final int MAX_TOKEN_ALPHABET_SIZE = 128;
+
+    private static final String FIND_ALL_DEVICES_FOR_VARIANT_QUERY = "select distinct installation.deviceToken"
+                    + DEVICES_FOR_VARIANT_CONDITION;
+
     private static final String FIND_ALL_DEVICES_FOR_VARIANT_QUERY_LEGACY = "select distinct installation.deviceToken"
-                    + " from Installation installation"
-                    + " left join installation.categories c "
-                    + " join installation.variant abstractVariant where abstractVariant.variantID = :variantID AND installation.enabled = true AND locate(':', installation.deviceToken) = 0";
+                    + DEVICES_FOR_VARIANT_CONDITION_LEGACY;
 
     private static final String FIND_INSTALLATIONS = "FROM Installation installation"
                     + " JOIN installation.variant v"
                     + " WHERE v.variantID = :variantID";
 
+    // prefix match on the indexed terms, instead of LIKE '%search%' over every metadata column
+    private static final String MATCHES_SEARCH = " AND installation.id IN (SELECT indexed.id FROM Installation indexed"
+                    + " JOIN indexed.searchTerms term WHERE term LIKE :search ESCAPE '!')";
+
     @Override
     public PageResult<Installation, Count> findInstallationsByVariantForDeveloper(
-            String variantID, String developer, Integer page, Integer pageSize, String search) {
+            String variantID, String developer, Integer page, Integer pageSize, String search, String after) {
 
 
         final StringBuilder jpqlBase = new StringBuilder(FIND_INSTALLATIONS);
@@ -69,23 +83,35 @@ public class JPAInstallationDao extends JPABaseDao<Installation, String> impleme
             parameters.put("developer", developer);
         }
         if (search != null) {
-            jpqlBase.append(" AND ( installation.deviceToken LIKE :search"
-                    + " OR installation.deviceType LIKE :search"
-                    + " OR installation.platform LIKE :search"
-                    + " OR installation.operatingSystem LIKE :search"
-                    + " OR installation.osVersion LIKE :search"
-                    + " OR installation.alias LIKE :search )");
-            parameters.put("search", "%" + search + "%");
+            jpqlBase.append(MATCHES_SEARCH);
+            parameters.put("search", InstallationSearchTerms.prefixPattern(search));
         }
 
         String jpqlStr = jpqlBase.toString();
-        TypedQuery<Long> countQuery = createQuery("SELECT COUNT(installation) " + jpqlStr, Long.class);
-        TypedQuery<Installation> query = createQuery("SELECT installation " + jpqlStr + " ORDER BY installation.id")
-                .setFirstResult(page * pageSize)
-                .setMaxResults(pageSize);
+        TypedQuery<Installation> query;
+        if (after != null) {
+            // keyset pagination, the rows of the previous pages are not read again
+            query = createQuery("SELECT installation " + jpqlStr + " AND installation.id > :after ORDER BY installation.id")
+                    .setParameter("after", after);
+        } else {
+            query = createQuery("SELECT installation " + jpqlStr + " ORDER BY installation.id")
+                    .setFirstResult(page * pageSize);
+        }
 
-        List<Installation> resultList = setParameters(query, parameters).getResultList();
-        Long count = setParameters(countQuery, parameters).getSingleResult();
+        List<Installation> resultList = setParameters(query.setMaxResults(pageSize), parameters).getResultList();
+
+        final long count;
+        if (search == null) {
+            count = setParameters(createQuery("SELECT COUNT(installation) " + jpqlStr, Long.class), parameters).getSingleResult();
+        } else if (after == null && page == 0 && resultList.size() < pageSize) {
+            // all matches fit on the first page
+            count = resultList.size();
+        } else {
+            // approximate count, matches are not counted beyond MAX_SEARCH_COUNT
+            count = setParameters(createQuery("SELECT installation.id " + jpqlStr, String.class), parameters)
+                    .setMaxResults(MAX_SEARCH_COUNT)
+                    .getResultList().size();
+        }
 
         return new PageResult<>(resultList, new Count(count));
     }
@@ -96,11 +122,106 @@ public class JPAInstallationDao extends JPABaseDao<Installation, String> impleme
     }
 
     @Override
-    public PageResult<Installation, Count> findInstallationsByVariant(String variantID, Integer page, Integer pageSize, String search) {
-        return findInstallationsByVariantForDeveloper(variantID, null, page, pageSize, search);
+    public PageResult<Installation, Count> findInstallationsByVariant(String variantID, Integer page, Integer pageSize, String search, String after) {
+        return findInstallationsByVariantForDeveloper(variantID, null, page, pageSize, search, after);
+    }
+
+    @Override
+    public String indexSearchTerms(String after, int batchSize) {
+        final StringBuilder jpql = new StringBuilder("SELECT installation FROM Installation installation"
+                + " WHERE NOT EXISTS (SELECT term FROM Installation indexed JOIN indexed.searchTerms term WHERE indexed = installation)");
+        if (after != null) {
+            jpql.append(" AND installation.id > :after");
+        }
+        jpql.append(" ORDER BY installation.id");
+
+        final TypedQuery<Installation> query = createQuery(jpql.toString()).setMaxResults(batchSize);
+        if (after != null) {
+            query.setParameter("after", after);
+        }
+
+        final List<Installation> installations = query.getResultList();
+        if (installations.isEmpty()) {
+            return null;
+        }
+
+        installations.forEach(this::updateSearchTerms);
+        entityManager.flush();
+        entityManager.clear();
+
+        return installations.get(installations.size() - 1).getId();
+    }
+
+    @Override
+    public void create(Installation installation) {
+        updateSearchTerms(installation);
+        super.create(installation);
+    }
+
+    @Override
+    public void update(Installation installation) {
+        updateSearchTerms(installation);
+        super.update(installation);
+    }
+
+    private void updateSearchTerms(Installation installation) {
+        final Set<String> terms = InstallationSearchTerms.of(installation);
+        if (entityManager.contains(installation)) {
+            // keep the managed collection, so only the changed terms are written
+            installation.getSearchTerms().retainAll(terms);
+            installation.getSearchTerms().addAll(terms);
+        } else {
+            installation.setSearchTerms(terms);
+        }
     }
 
 
+    @Override
+    public ResultsStream.QueryBuilder<Installation> findAllInstallationsByVariantForDeveloper(String variantID, String developer) {
+        // the categories are fetched with the same query; ordered by id, so Hibernate can scroll over whole installations
+        final StringBuilder hql = new StringBuilder("SELECT installation FROM Installation installation"
+                + " LEFT JOIN FETCH installation.categories"
+                + " JOIN installation.variant v"
+                + " WHERE v.variantID = :variantID");
+        if (developer != null) {
+            hql.append(" AND v.developer = :developer");
+        }
+        hql.append(" ORDER BY installation.id");
+
+        return new ResultsStream.QueryBuilder<Installation>() {
+            private Integer fetchSize;
+            @Override
+            public ResultsStream.QueryBuilder<Installation> fetchSize(int fetchSize) {
+                this.fetchSize = fetchSize;
+                return this;
+            }
+            @Override
+            public ResultsStream<Installation> executeQuery() {
+                Query hibernateQuery = JPAInstallationDao.this.createHibernateQuery(hql.toString());
+                hibernateQuery.setParameter("variantID", variantID);
+                if (developer != null) {
+                    hibernateQuery.setParameter("developer", developer);
+                }
+
+                hibernateQuery.setReadOnly(true);
+                if (fetchSize != null) {
+                    hibernateQuery.setFetchSize(fetchSize);
+                }
+                final ScrollableResults results = hibernateQuery.scroll(ScrollMode.FORWARD_ONLY);
+                return new ResultsStream<Installation>() {
+                    @Override
+                    public boolean next() throws ResultStreamException {
+                        return results.next();
+                    }
+                    @Override
+                    public Installation get() throws ResultStreamException {
+                        return (Installation) results.get()[0];
+                    }
+                };
+            }
+        };
+    }
+
     @Override
     public Installation findInstallationForVariantByDeviceToken(String variantID, String deviceToken) {
 
@@ -126,6 +247,54 @@ public class JPAInstallationDao extends JPABaseDao<Installation, String> impleme
                 .getResultList();
     }
 
+    @Override
+    public Set<String> findExistingDeviceTokensForVariantID(String variantID, Set<String> deviceTokens) {
+        // if there are no device-tokens, no need to bug the database
+        if (deviceTokens == null || deviceTokens.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        return new HashSet<>(createQuery("select installation.deviceToken from Installation installation " +
+                " join installation.variant abstractVariant " +
+                " where abstractVariant.variantID = :variantID" +
+                " and installation.deviceToken IN :deviceTokens", String.class)
+                .setParameter("variantID", variantID)
+                .setParameter("deviceTokens", deviceTokens)
+                .getResultList());
+    }
+
+    @Override
+    public void createInstallations(List<Installation> installations, int batchSize) {
+        final Session session = entityManager.unwrap(Session.class);
+        final Integer previousBatchSize = session.getJdbcBatchSize();
+
+        session.setJdbcBatchSize(batchSize);
+        try {
+            installations.forEach(this::updateSearchTerms);
+            installations.forEach(entityManager::persist);
+            entityManager.flush();
+            entityManager.clear();
+        } finally {
+            session.setJdbcBatchSize(previousBatchSize);
+        }
+    }
+
+    @Override
+    public void updateInstallations(List<Installation> installations, int batchSize) {
+        final Session session = entityManager.unwrap(Session.class);
+        final Integer previousBatchSize = session.getJdbcBatchSize();
+
+        session.setJdbcBatchSize(batchSize);
+        try {
+            installations.forEach(this::updateSearchTerms);
+            installations.forEach(entityManager::merge);
+            entityManager.flush();
+            entityManager.clear();
+        } finally {
+            session.setJdbcBatchSize(previousBatchSize);
+        }
+    }
+
     @Override
     public Set<String> findAllDeviceTokenForVariantID(String variantID) {
         TypedQuery<String> query = createQuery(FIND_ALL_DEVICES_FOR_VARIANT_QUERY, String.class);
@@ -135,6 +304,11 @@ public class JPAInstallationDao extends JPABaseDao<Installation, String> impleme
 
     @Override
     public ResultsStream.QueryBuilder<String> findAllDeviceTokenForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes, final int maxResults, String lastTokenFromPreviousBatch, boolean oldGCM) {
+        return findAllDeviceTokenForVariantIDByCriteria(variantID, categories, aliases, deviceTypes, maxResults, lastTokenFromPreviousBatch, null, oldGCM);
+    }
+
+    @Override
+    public ResultsStream.QueryBuilder<String> findAllDeviceTokenForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes, final int maxResults, String lastTokenFromPreviousBatch, String upperTokenBoundary, boolean oldGCM) {
         // the required part: Join + all tokens for variantID;
 
         final StringBuilder jpqlString = oldGCM ? new StringBuilder(FIND_ALL_DEVICES_FOR_VARIANT_QUERY_LEGACY) : new StringBuilder(FIND_ALL_DEVICES_FOR_VARIANT_QUERY);
@@ -150,6 +324,12 @@ public class JPAInstallationDao extends JPABaseDao<Installation, String> impleme
             parameters.put("lastTokenFromPreviousBatch", lastTokenFromPreviousBatch);
         }
 
+        // restrict the scan to one range of the keyspace
+        if (upperTokenBoundary != null) {
+            jpqlString.append(" AND installation.deviceToken <= :upperTokenBoundary");
+            parameters.put("upperTokenBoundary", upperTokenBoundary);
+        }
+
         jpqlString.append(" ORDER BY installation.deviceToken ASC");
 
         return new ResultsStream.QueryBuilder<String>() {
@@ -192,6 +372,70 @@ public class JPAInstallationDao extends JPABaseDao<Installation, String> impleme
         };
     }
 
+    @Override
+    public List<String> findDeviceTokenBoundariesForVariantID(String variantID, int partitions) {
+        final List<String> boundaries = new ArrayList<>();
+        if (partitions < 2) {
+            return boundaries;
+        }
+
+        // the keyspace is bounded by the lowest and the highest token, no rows are counted or skipped
+        final Object[] keyspace = createQuery("select min(installation.deviceToken), max(installation.deviceToken)"
+                + TOKENS_OF_VARIANT_CONDITION, Object[].class)
+                .setParameter("variantID", variantID).getSingleResult();
+        final String lowest = (String) keyspace[0];
+        final String highest = (String) keyspace[1];
+        if (lowest == null || lowest.equals(highest)) {
+            return boundaries;
+        }
+
+        final TypedQuery<String> nextToken = createQuery("select min(installation.deviceToken)" + TOKENS_OF_VARIANT_CONDITION
+                + " AND installation.deviceToken >= :from AND installation.deviceToken > :previousBoundary", String.class)
+                .setParameter("variantID", variantID);
+
+        // the tokens are random strings, so the characters found at the first differing position are
+        // expected at the following positions as well
+        final int position = commonPrefixLength(lowest, highest);
+        final String prefix = lowest.substring(0, position);
+        final StringBuilder alphabet = new StringBuilder();
+        String token = lowest;
+        while (token != null && token.length() > position && token.startsWith(prefix)
+                && alphabet.length() < MAX_TOKEN_ALPHABET_SIZE) {
+            final char c = token.charAt(position);
+            if (alphabet.length() > 0 && c <= alphabet.charAt(alphabet.length() - 1)) {
+                break;
+            }
+            alphabet.append(c);
+            token = nextToken.setParameter("from", prefix + (char) (c + 1)).setParameter("previousBoundary", token)
+                    .getSingleResult();
+        }
+        if (alphabet.length() < 2) {
+            return boundaries;
+        }
+
+        // every boundary is the first token at or above an evenly spaced position of the keyspace, strictly
+        // above the previous boundary, so every boundary is a single index lookup
+        String previousBoundary = lowest;
+        for (String from : TokenKeyspace.split(prefix, lowest, highest, alphabet.toString(), partitions)) {
+            final String boundary = nextToken.setParameter("from", from)
+                    .setParameter("previousBoundary", previousBoundary).getSingleResult();
+            if (boundary == null || boundary.equals(highest)) {
+                break;
+            }
+            boundaries.add(boundary);
+            previousBoundary = boundary;
+        }
+        return boundaries;
+    }
+
+    private static int commonPrefixLength(String first, String second) {
+        int length = 0;
+        while (length < first.length() && length < second.length() && first.charAt(length) == second.charAt(length)) {
+            length++;
+        }
+        return length;
+    }
+
     @Override
     public long getNumberOfDevicesForLoginName(String loginName) {
         return createQuery("select count(installation) from Installation installation, Variant t where installation.variant = t.variantID and t.developer = :developer ", Long.class)
@@ -210,6 +454,15 @@ public class JPAInstallationDao extends JPABaseDao<Installation, String> impleme
                 .getSingleResult();
     }
 
+    @Override
+    public Map<String, Long> countDevicesByVariantID() {
+        final Map<String, Long> devices = new LinkedHashMap<>();
+        createQuery("select abstractVariant.variantID, count(installation) from Installation installation join installation.variant abstractVariant group by abstractVariant.variantID", Object[].class)
+                .getResultList()
+                .forEach(result -> devices.put((String) result[0], (Long) result[1]));
+        return devices;
+    }
+
     @Override
     public long getNumberOfDevicesForVariantID(String variantId) {
         return createQuery("select count(installation) from Installation installation join installation.variant abstractVariant where abstractVariant.variantID = :variantId ", Long.class)
@@ -16,6 +16,7 @@
  */
 package org.jboss.aerogear.unifiedpush.jpa.dao.impl;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -117,6 +118,18 @@ public class JPAPushApplicationDao extends JPABaseDao<PushApplication, String> i
         return createQuery(jpql).setParameter("variantIDs", variantIds).getResultList();
     }
 
+    @Override
+    public Map<String, String> findNamesByPushApplicationIDs(Collection<String> pushApplicationIDs) {
+        final Map<String, String> names = new HashMap<>();
+        if (!pushApplicationIDs.isEmpty()) {
+            createQuery("select pa.pushApplicationID, pa.name from PushApplication pa where pa.pushApplicationID in (:pushApplicationIDs)", Object[].class)
+                    .setParameter("pushApplicationIDs", pushApplicationIDs)
+                    .getResultList()
+                    .forEach(result -> names.put((String) result[0], (String) result[1]));
+        }
+        return names;
+    }
+
     @Override
     public PushApplication findByVariantId(String variantId) {
         final String jpql = "select pa from PushApplication pa left join fetch pa.variants v where v.variantID =:variantId";
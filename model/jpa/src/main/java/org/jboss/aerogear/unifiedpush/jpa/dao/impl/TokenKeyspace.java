@@ -0,0 +1,84 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa.dao.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Evenly spaced positions between two device tokens. The tokens are read as numbers written with the characters of
+ * the given alphabet, from the first character following their common prefix on.
+ *
+ * Device tokens are random strings, so tokens are spread evenly between such positions, without counting them.
+ */
+final class TokenKeyspace {
+
+    // characters taken into account, enough to tell apart millions of positions
+    private static final int SIGNIFICANT_CHARACTERS = 6;
+
+    private TokenKeyspace() {
+    }
+
+    /**
+     * @param prefix the prefix all tokens share
+     * @param lowest the lowest token
+     * @param highest the highest token
+     * @param alphabet ascending characters the tokens are made of
+     * @param partitions number of ranges
+     * @return ascending list of at most <code>partitions - 1</code> positions, each starting with the prefix
+     */
+    static List<String> split(String prefix, String lowest, String highest, String alphabet, int partitions) {
+        final List<String> positions = new ArrayList<>();
+        final long low = valueOf(lowest, prefix.length(), alphabet);
+        final long step = (valueOf(highest, prefix.length(), alphabet) - low) / partitions;
+        if (step <= 0) {
+            return positions;
+        }
+        for (int i = 1; i < partitions; i++) {
+            positions.add(prefix + toString(low + step * i, alphabet));
+        }
+        return positions;
+    }
+
+    private static long valueOf(String token, int offset, String alphabet) {
+        long value = 0;
+        for (int i = offset; i < offset + SIGNIFICANT_CHARACTERS; i++) {
+            value = value * alphabet.length() + (i < token.length() ? digit(token.charAt(i), alphabet) : 0);
+        }
+        return value;
+    }
+
+    /**
+     * Index of the highest character of the alphabet that is not above the given one.
+     */
+    private static int digit(char c, String alphabet) {
+        int digit = 0;
+        while (digit + 1 < alphabet.length() && alphabet.charAt(digit + 1) <= c) {
+            digit++;
+        }
+        return digit;
+    }
+
+    private static String toString(long value, String alphabet) {
+        final char[] characters = new char[SIGNIFICANT_CHARACTERS];
+        for (int i = SIGNIFICANT_CHARACTERS - 1; i >= 0; i--) {
+            characters[i] = alphabet.charAt((int) (value % alphabet.length()));
+            value /= alphabet.length();
+        }
+        return new String(characters);
+    }
+}
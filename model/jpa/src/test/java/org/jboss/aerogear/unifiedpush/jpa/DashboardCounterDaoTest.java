@@ -0,0 +1,101 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+
+import org.jboss.aerogear.unifiedpush.api.DashboardCounter;
+import org.jboss.aerogear.unifiedpush.dao.DashboardCounterDao;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = { JPAConfig.class })
+@Transactional
+public class DashboardCounterDaoTest {
+
+    @Inject
+    private EntityManager entityManager;
+    @Inject
+    private DashboardCounterDao dashboardCounterDao;
+
+    @Test
+    public void shouldIncrementCreatingMissingCounters() {
+        dashboardCounterDao.increment(DashboardCounter.DEVICES, "variant-1", 3);
+        dashboardCounterDao.increment(DashboardCounter.DEVICES, null, 3);
+        flushAndClear();
+
+        dashboardCounterDao.increment(DashboardCounter.DEVICES, "variant-1", -1);
+        dashboardCounterDao.increment(DashboardCounter.DEVICES, null, -1);
+        flushAndClear();
+
+        assertThat(dashboardCounterDao.find(DashboardCounter.idOf(DashboardCounter.DEVICES, "variant-1")).getValue()).isEqualTo(2);
+        assertThat(dashboardCounterDao.findTotals(Arrays.asList(DashboardCounter.DEVICES, DashboardCounter.MESSAGES)))
+                .hasSize(1).containsEntry(DashboardCounter.DEVICES, 2L);
+    }
+
+    @Test
+    public void shouldRemoveCounterFromTotal() {
+        final Map<String, Long> devices = new HashMap<>();
+        devices.put("variant-1", 5L);
+        devices.put("variant-2", 7L);
+        dashboardCounterDao.reset(DashboardCounter.DEVICES, devices);
+        flushAndClear();
+
+        assertThat(dashboardCounterDao.remove(DashboardCounter.DEVICES, "variant-2")).isEqualTo(7);
+        assertThat(dashboardCounterDao.remove(DashboardCounter.DEVICES, "non-existing")).isEqualTo(0);
+        flushAndClear();
+
+        assertThat(dashboardCounterDao.find(DashboardCounter.idOf(DashboardCounter.DEVICES, "variant-2"))).isNull();
+        assertThat(dashboardCounterDao.findTotals(Collections.singletonList(DashboardCounter.DEVICES)))
+                .containsEntry(DashboardCounter.DEVICES, 5L);
+    }
+
+    @Test
+    public void shouldResetCountersOfKind() {
+        dashboardCounterDao.increment(DashboardCounter.MESSAGES, "app-1", 10);
+        dashboardCounterDao.increment(DashboardCounter.MESSAGES, null, 10);
+        dashboardCounterDao.increment(DashboardCounter.APPLICATIONS, null, 4);
+        flushAndClear();
+
+        dashboardCounterDao.reset(DashboardCounter.MESSAGES, Collections.singletonMap("app-2", 3L));
+        dashboardCounterDao.reset(DashboardCounter.APPLICATIONS, Collections.singletonMap(null, 2L));
+        flushAndClear();
+
+        assertThat(dashboardCounterDao.find(DashboardCounter.idOf(DashboardCounter.MESSAGES, "app-1"))).isNull();
+        assertThat(dashboardCounterDao.find(DashboardCounter.idOf(DashboardCounter.MESSAGES, "app-2")).getValue()).isEqualTo(3);
+        assertThat(dashboardCounterDao.findTotals(Arrays.asList(DashboardCounter.MESSAGES, DashboardCounter.APPLICATIONS)))
+                .containsEntry(DashboardCounter.MESSAGES, 3L)
+                .containsEntry(DashboardCounter.APPLICATIONS, 2L);
+    }
+
+    private void flushAndClear() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
@@ -18,6 +18,7 @@ package org.jboss.aerogear.unifiedpush.jpa;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.Date;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -78,6 +79,38 @@ public class FlatPushMessageInformationDaoTest {
         assertThat(pushMessageInformation.getSubmitDate()).isNotNull();
     }
 
+    @Test
+    public void incrementAppOpenCounterKeepsOpenDateRange() {
+        FlatPushMessageInformation pushMessageInformation = new FlatPushMessageInformation();
+        pushMessageInformation.setPushApplicationId("231231231");
+        pushMessageInformationDao.create(pushMessageInformation);
+        flushAndClear();
+
+        final String id = pushMessageInformation.getId();
+        final Date first = new Date(1000000000000L);
+        final Date last = new Date(1000000060000L);
+
+        assertThat(pushMessageInformationDao.incrementAppOpenCounter(id, 2, first, last)).isEqualTo(1);
+        // an older flush applied late must not move the range
+        assertThat(pushMessageInformationDao.incrementAppOpenCounter(id, 1,
+                new Date(first.getTime() + 1000), new Date(last.getTime() - 1000))).isEqualTo(1);
+        flushAndClear();
+
+        pushMessageInformation = pushMessageInformationDao.find(id);
+        assertThat(pushMessageInformation.getAppOpenCounter()).isEqualTo(3);
+        assertThat(pushMessageInformation.getFirstOpenDate().getTime()).isEqualTo(first.getTime());
+        assertThat(pushMessageInformation.getLastOpenDate().getTime()).isEqualTo(last.getTime());
+
+        final Date later = new Date(last.getTime() + 60000);
+        pushMessageInformationDao.incrementAppOpenCounter(id, 1, later, later);
+        flushAndClear();
+
+        pushMessageInformation = pushMessageInformationDao.find(id);
+        assertThat(pushMessageInformation.getAppOpenCounter()).isEqualTo(4);
+        assertThat(pushMessageInformation.getFirstOpenDate().getTime()).isEqualTo(first.getTime());
+        assertThat(pushMessageInformation.getLastOpenDate().getTime()).isEqualTo(later.getTime());
+    }
+
     @Test
     public void addJsonToPushMessageInformation() {
         FlatPushMessageInformation pushMessageInformation = pushMessageInformationDao.find(pushMessageInformationID);
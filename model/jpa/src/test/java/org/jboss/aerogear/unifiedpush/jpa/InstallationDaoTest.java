@@ -23,6 +23,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import javax.inject.Inject;
@@ -46,6 +48,7 @@ import org.jboss.aerogear.unifiedpush.dao.ResultStreamException;
 import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
 import org.jboss.aerogear.unifiedpush.dto.Count;
 import org.jboss.aerogear.unifiedpush.utils.TestUtils;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -76,6 +79,15 @@ public class InstallationDaoTest {
 	@Rule
 	public EmbeddedDbTesterRule testDb = new EmbeddedDbTesterRule("Installations.xml");
 
+	@Before
+	public void indexSearchTerms() {
+		// the fixture is inserted without search terms
+		String last = null;
+		do {
+			last = installationDao.indexSearchTerms(last, 4);
+		} while (last != null);
+	}
+
 	@Test
 	public void countDevicesForLoginName() {
 		assertThat(installationDao.getNumberOfDevicesForLoginName("me")).isEqualTo(9);
@@ -92,6 +104,14 @@ public class InstallationDaoTest {
 		assertThat(installationDao.getNumberOfDevicesForVariantID("2")).isEqualTo(3);
 	}
 
+	@Test
+	public void countDevicesByVariantID() {
+		final Map<String, Long> devices = installationDao.countDevicesByVariantID();
+
+		assertThat(devices).containsEntry("1", 6L).containsEntry("2", 3L);
+		assertThat(devices.values().stream().mapToLong(Long::longValue).sum()).isEqualTo(10);
+	}
+
 	@Test
 	public void findDeviceTokensForOneInstallationOfOneVariant() {
 		String[] alias = { "foo@bar.org" };
@@ -117,6 +137,100 @@ public class InstallationDaoTest {
 		assertThat(tokens).containsOnly(DEVICE_TOKEN_1, DEVICE_TOKEN_2, DEVICE_TOKEN_3, DEVICE_TOKEN_4);
 	}
 
+	@Test
+	public void findDeviceTokensOfVariantInRanges() {
+		List<String> boundaries = installationDao.findDeviceTokenBoundariesForVariantID(androidVariantID, 2);
+		assertThat(boundaries).hasSize(1);
+
+		List<String> lower = findDeviceTokenRangeForVariantID(androidVariantID, null, boundaries.get(0));
+		List<String> upper = findDeviceTokenRangeForVariantID(androidVariantID, boundaries.get(0), null);
+		assertThat(lower).isNotEmpty();
+		assertThat(upper).isNotEmpty();
+
+		List<String> all = new ArrayList<>(lower);
+		all.addAll(upper);
+		assertThat(all).hasSize(4);
+		assertThat(all).containsOnly(DEVICE_TOKEN_1, DEVICE_TOKEN_2, DEVICE_TOKEN_3, DEVICE_TOKEN_4);
+	}
+
+	@Test
+	public void findDeviceTokenBoundariesOfEqualRanges() {
+		final iOSVariant variant = new iOSVariant();
+		variant.setName("iOS Variant Name");
+		variant.setPassphrase("12");
+		variant.setCertificate("12".getBytes());
+		entityManager.persist(variant);
+
+		final Random random = new Random(42);
+		for (int i = 0; i < 400; i++) {
+			final Installation installation = new Installation();
+			installation.setDeviceToken(String.format("%016x%016x%016x%016x", random.nextLong(), random.nextLong(),
+					random.nextLong(), random.nextLong()));
+			installation.setVariant(variant);
+			installationDao.create(installation);
+		}
+		entityManager.flush();
+
+		final List<String> boundaries = installationDao.findDeviceTokenBoundariesForVariantID(variant.getVariantID(), 4);
+		assertThat(boundaries).hasSize(3).doesNotHaveDuplicates().isSorted();
+
+		// random tokens are spread evenly over the ranges, and every token is in exactly one of them
+		final List<String> all = new ArrayList<>();
+		String lowerBoundary = null;
+		for (int i = 0; i <= boundaries.size(); i++) {
+			final String upperBoundary = i < boundaries.size() ? boundaries.get(i) : null;
+			final List<String> range = findDeviceTokenRangeForVariantID(variant.getVariantID(), lowerBoundary,
+					upperBoundary);
+			assertThat(range.size()).isGreaterThan(50).isLessThan(150);
+			all.addAll(range);
+			lowerBoundary = upperBoundary;
+		}
+		assertThat(all).hasSize(400).doesNotHaveDuplicates();
+	}
+
+	@Test
+	public void findFilteredDeviceTokensOfVariantInRanges() {
+		List<String> boundaries = installationDao.findDeviceTokenBoundariesForVariantID(androidVariantID, 3);
+		assertThat(boundaries).isNotEmpty().doesNotHaveDuplicates().isSorted();
+
+		// the filter is applied to each range
+		final List<String> legacy = new ArrayList<>();
+		String lowerBoundary = null;
+		for (int i = 0; i <= boundaries.size(); i++) {
+			final String upperBoundary = i < boundaries.size() ? boundaries.get(i) : null;
+			legacy.addAll(findAllDeviceTokenForVariantIDByCriteria(androidVariantID, null, null, null, lowerBoundary,
+					upperBoundary, true));
+			lowerBoundary = upperBoundary;
+		}
+		assertThat(legacy).containsOnly(DEVICE_TOKEN_1, DEVICE_TOKEN_2).hasSize(2);
+	}
+
+	@Test
+	public void noDeviceTokenBoundariesForSinglePartition() {
+		assertThat(installationDao.findDeviceTokenBoundariesForVariantID(androidVariantID, 1)).isEmpty();
+	}
+
+	@Test
+	public void noDeviceTokenBoundariesForSingleToken() {
+		// variant 3 has a single token
+		assertThat(installationDao.findDeviceTokenBoundariesForVariantID("3", 2)).isEmpty();
+		assertThat(installationDao.findDeviceTokenBoundariesForVariantID("unknown", 2)).isEmpty();
+	}
+
+	@Test
+	public void streamAllInstallationsOfVariant() throws ResultStreamException {
+		final List<String> ids = new ArrayList<>();
+		final ResultsStream<Installation> stream = installationDao
+				.findAllInstallationsByVariantForDeveloper(androidVariantID, "me").fetchSize(2).executeQuery();
+		while (stream.next()) {
+			ids.add(stream.get().getId());
+		}
+
+		assertThat(ids).hasSize(6).doesNotHaveDuplicates().isSorted();
+		assertThat(installationDao.findAllInstallationsByVariantForDeveloper(androidVariantID, "notme").executeQuery()
+				.next()).isFalse();
+	}
+
 	@Test
 	public void findOldGCMDeviceTokensOfVariant() {
 		List<String> tokens = findAllOldGCMDeviceTokenForVariantIDByCriteria(androidVariantID, null, null, null);
@@ -572,7 +686,7 @@ public class InstallationDaoTest {
 
 		// when
 		final PageResult<Installation, Count> pageResult = installationDao
-				.findInstallationsByVariantForDeveloper(androidVariantID, developer, 0, 1, null);
+				.findInstallationsByVariantForDeveloper(androidVariantID, developer, 0, 1, null, null);
 
 		// then
 		assertThat(pageResult).isNotNull();
@@ -584,7 +698,7 @@ public class InstallationDaoTest {
 	public void shouldSelectInstallationsByVariant() {
 		// when
 		final PageResult<Installation, Count> pageResult = installationDao.findInstallationsByVariant(androidVariantID,
-				0, 1, null);
+				0, 1, null, null);
 
 		// then
 		assertThat(pageResult).isNotNull();
@@ -596,16 +710,25 @@ public class InstallationDaoTest {
 	public void shouldSelectInstallationsByDeviceTokenSearch() {
 		// when
 		final PageResult<Installation, Count> pageResult = installationDao.findInstallationsByVariant(androidVariantID,
-				0, Integer.MAX_VALUE, "67890167890");
+				0, Integer.MAX_VALUE, "67890167890", null);
 		// then
 		assertThat(pageResult.getResultList()).isNotEmpty().hasSize(1);
 	}
 
+	@Test
+	public void shouldSelectInstallationsByDeviceTokenSubstringSearch() {
+		// when
+		final PageResult<Installation, Count> pageResult = installationDao.findInstallationsByVariant(androidVariantID,
+				0, Integer.MAX_VALUE, "234234890", null);
+		// then
+		assertThat(pageResult.getResultList()).extracting("id").containsOnly("3", "7");
+	}
+
 	@Test
 	public void shouldSelectInstallationsByDeviceTypeSearch() {
 		// when
 		final PageResult<Installation, Count> pageResult = installationDao.findInstallationsByVariant(androidVariantID,
-				0, Integer.MAX_VALUE, "Tablet");
+				0, Integer.MAX_VALUE, "Tablet", null);
 		// then
 		assertThat(pageResult.getResultList()).isNotEmpty().hasSize(3);
 	}
@@ -614,11 +737,66 @@ public class InstallationDaoTest {
 	public void shouldSelectInstallationsByAliasSearch() {
 		// when
 		final PageResult<Installation, Count> pageResult = installationDao.findInstallationsByVariant(androidVariantID,
-				0, Integer.MAX_VALUE, "baz@");
+				0, Integer.MAX_VALUE, "baz@", null);
 		// then
 		assertThat(pageResult.getResultList()).isNotEmpty().hasSize(1);
 	}
 
+	@Test
+	public void shouldSelectInstallationsByWordPrefixSearch() {
+		// when
+		final PageResult<Installation, Count> pageResult = installationDao.findInstallationsByVariant(androidVariantID,
+				0, Integer.MAX_VALUE, "BAR.o", null);
+		// then
+		assertThat(pageResult.getResultList()).hasSize(6);
+		assertThat(installationDao.findInstallationsByVariant(androidVariantID, 0, Integer.MAX_VALUE, "ar.org", null)
+				.getResultList()).isEmpty();
+	}
+
+	@Test
+	public void shouldCountAllSearchMatches() {
+		// when
+		final PageResult<Installation, Count> pageResult = installationDao.findInstallationsByVariant(androidVariantID,
+				0, 1, "tablet", null);
+		// then
+		assertThat(pageResult.getResultList()).hasSize(1);
+		assertThat(pageResult.getAggregate().getCount()).isEqualTo(3);
+	}
+
+	@Test
+	public void shouldSelectNextPageAfterLastInstallation() {
+		// given
+		final List<Installation> firstPage = installationDao
+				.findInstallationsByVariant(androidVariantID, 0, 4, null, null).getResultList();
+		final String last = firstPage.get(firstPage.size() - 1).getId();
+
+		// when
+		final PageResult<Installation, Count> pageResult = installationDao.findInstallationsByVariant(androidVariantID,
+				1, 4, null, last);
+
+		// then
+		assertThat(firstPage).extracting("id").containsExactly("1", "2", "3", "7");
+		assertThat(pageResult.getResultList()).extracting("id").containsExactly("8", "9");
+		assertThat(pageResult.getAggregate().getCount()).isEqualTo(6);
+	}
+
+	@Test
+	public void shouldUpdateSearchTerms() {
+		// given
+		final Installation installation = installationDao.find("1");
+		installation.setAlias("someone@example.com");
+
+		// when
+		installationDao.update(installation);
+		entityManager.clear();
+
+		// then
+		assertThat(installationDao.findInstallationsByVariant(androidVariantID, 0, Integer.MAX_VALUE, "example", null)
+				.getResultList()).extracting("id").containsOnly("1");
+		assertThat(installationDao.findInstallationsByVariant(androidVariantID, 0, Integer.MAX_VALUE, "foo@", null)
+				.getResultList()).extracting("id").containsOnly("2", "3", "8", "9");
+	}
+
 	@Test(expected = PersistenceException.class)
 	public void testTooLongDeviceToken() {
 		AndroidVariant variant = new AndroidVariant();
@@ -669,9 +847,19 @@ public class InstallationDaoTest {
 
 	private List<String> findAllDeviceTokenForVariantIDByCriteria(String variantID, List<String> categories,
 			List<String> aliases, List<String> deviceTypes, boolean oldGCM) {
+		return findAllDeviceTokenForVariantIDByCriteria(variantID, categories, aliases, deviceTypes, null, null, oldGCM);
+	}
+
+	private List<String> findDeviceTokenRangeForVariantID(String variantID, String lowerBoundary,
+			String upperBoundary) {
+		return findAllDeviceTokenForVariantIDByCriteria(variantID, null, null, null, lowerBoundary, upperBoundary, false);
+	}
+
+	private List<String> findAllDeviceTokenForVariantIDByCriteria(String variantID, List<String> categories,
+			List<String> aliases, List<String> deviceTypes, String lowerBoundary, String upperBoundary, boolean oldGCM) {
 		try {
 			ResultsStream<String> tokenStream = installationDao.findAllDeviceTokenForVariantIDByCriteria(variantID,
-					categories, aliases, deviceTypes, Integer.MAX_VALUE, null, oldGCM).executeQuery();
+					categories, aliases, deviceTypes, Integer.MAX_VALUE, lowerBoundary, upperBoundary, oldGCM).executeQuery();
 			List<String> list = new ArrayList<>();
 			while (tokenStream.next()) {
 				list.add(tokenStream.get());
@@ -71,6 +71,14 @@ public class PushApplicationDaoTest {
         assertThat(pushApplicationDao.findAllByPushApplicationID("123").getName()).isEqualTo("Push App 2");
     }
 
+    @Test
+    public void findNamesByPushApplicationIDs() {
+        final Map<String, String> names = pushApplicationDao.findNamesByPushApplicationIDs(Arrays.asList("888", "123", "non-existing"));
+
+        assertThat(names).hasSize(2).containsEntry("888", "Push App 1").containsEntry("123", "Push App 2");
+        assertThat(pushApplicationDao.findNamesByPushApplicationIDs(Arrays.<String>asList())).isEmpty();
+    }
+
     @Test
     public void findAllIDsForDeveloper() {
         assertThat(pushApplicationDao.findAllPushApplicationIDsForDeveloper("Admin")).hasSize(2);
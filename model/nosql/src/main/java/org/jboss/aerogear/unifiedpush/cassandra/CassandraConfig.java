@@ -29,6 +29,12 @@ public class CassandraConfig extends AbstractCassandraConfiguration {
 	private static final String PROP_CONTACT_POINTS_KEY = "aerogear.config.cassandra.contactpoints";
 	private static final String PROP_PORT_KEY = "aerogear.config.cassandra.port";
 	public static final String PROP_CONSISTENCY_LEVEL = "aerogear.config.cassandra.consistencylevel";
+	public static final String PROP_DOCUMENTS_FETCH_SIZE = "aerogear.config.cassandra.documents.fetchsize";
+	private static final Integer PROP_DOCUMENTS_FETCH_SIZE_DEFV = 500;
+	public static final String PROP_DOCUMENTS_CONCURRENCY = "aerogear.config.cassandra.documents.concurrency";
+	private static final Integer PROP_DOCUMENTS_CONCURRENCY_DEFV = 32;
+	public static final String PROP_ALIASES_CONCURRENCY = "aerogear.config.cassandra.aliases.concurrency";
+	private static final Integer PROP_ALIASES_CONCURRENCY_DEFV = 32;
 
 	@Autowired
 	private ConfigurationEnvironment config;
@@ -90,4 +96,26 @@ public class CassandraConfig extends AbstractCassandraConfiguration {
 	public String getConsistencyLevel() {
 		return config.getProperty(PROP_CONSISTENCY_LEVEL, "ONE");
 	}
+
+	/*
+	 * Page size used when streaming documents from Cassandra.
+	 */
+	public Integer getDocumentsFetchSize() {
+		return config.getProperty(PROP_DOCUMENTS_FETCH_SIZE, PROP_DOCUMENTS_FETCH_SIZE_DEFV);
+	}
+
+	/*
+	 * Max number of in-flight asynchronous document queries per request.
+	 */
+	public Integer getDocumentsConcurrency() {
+		return config.getProperty(PROP_DOCUMENTS_CONCURRENCY, PROP_DOCUMENTS_CONCURRENCY_DEFV);
+	}
+
+	/*
+	 * Max number of in-flight asynchronous alias reads/writes per bulk
+	 * request.
+	 */
+	public Integer getAliasesConcurrency() {
+		return config.getProperty(PROP_ALIASES_CONCURRENCY, PROP_ALIASES_CONCURRENCY_DEFV);
+	}
 }
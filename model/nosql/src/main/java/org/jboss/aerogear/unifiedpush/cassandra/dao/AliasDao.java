@@ -1,5 +1,6 @@
 package org.jboss.aerogear.unifiedpush.cassandra.dao;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -18,6 +19,14 @@ public interface AliasDao {
 
 	List<User> create(Alias alias);
 
+	/**
+	 * Bulk create. All rows of an alias share the same partition and are
+	 * written as a single unlogged batch, batches are written asynchronously.
+	 *
+	 * @param aliases aliases with push application and user ids
+	 */
+	void create(Collection<Alias> aliases);
+
 	List<Alias> findAll(UUID pushApplicationId);
 
 	@CacheEvict(value = CACHE_NAME, allEntries = true)
@@ -25,6 +34,12 @@ public interface AliasDao {
 
 	Stream<UserKey> findUserTenantRelations(String alias);
 
+	/**
+	 * Bulk {@link #findUserTenantRelations(String)}, aliases are queried in
+	 * batches.
+	 */
+	Stream<UserKey> findUserTenantRelations(Collection<String> aliases);
+
 	@CacheEvict(value = CACHE_NAME)
 	List<UserKey> remove(UUID pushApplicationId, String alias);
 
@@ -40,8 +55,47 @@ public interface AliasDao {
 	 */
 	void remove(UUID pushApplicationId, UUID userId);
 
+	/**
+	 * Bulk {@link #remove(UUID, UUID)}, partitions are deleted asynchronously.
+	 *
+	 * @param pushApplicationId selected push application
+	 * @param userIds           users in UUID v1 format
+	 * @return the list of removed user keys
+	 */
+	List<UserKey> remove(UUID pushApplicationId, Collection<UUID> userIds);
+
+	/**
+	 * Resolve latest user id of each alias (case insensitive), aliases are
+	 * queried in batches.
+	 *
+	 * @param pushApplicationId selected push application
+	 * @param aliases           alias names
+	 * @return user id by alias name, unknown aliases are missing
+	 */
+	Map<String, UUID> findUserIds(UUID pushApplicationId, Collection<String> aliases);
+
+	/**
+	 * Stream distinct user ids (one row per user) of a push application.
+	 * Closing the stream cancels partition queries still in flight.
+	 *
+	 * @param pushApplicationId selected push application
+	 */
 	Stream<Row> findUserIds(UUID pushApplicationId);
 
+	/**
+	 * Partitions (months) of user ids by push application.
+	 */
+	List<Byte> findUserIdPartitions();
+
+	/**
+	 * Stream distinct user ids of a single partition, newest first.
+	 *
+	 * @param pushApplicationId selected push application
+	 * @param partition         partition from {@link #findUserIdPartitions()}
+	 * @param before            optional, only user ids older than this one
+	 */
+	Stream<Row> findUserIds(UUID pushApplicationId, byte partition, UUID before);
+
 	Alias findOne(UUID pushApplicationId, UUID userId);
 
 	Map<String, User.AliasType> findAll(UUID pushApplicationId, UUID userId);
@@ -1,7 +1,9 @@
 package org.jboss.aerogear.unifiedpush.cassandra.dao;
 
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -10,4 +12,16 @@ public class DistinctUitils {
 		Map<Object, Boolean> map = new ConcurrentHashMap<>();
 		return t -> map.putIfAbsent(keyExtractor.apply(t), Boolean.TRUE) == null;
 	}
+
+	/*
+	 * Streaming distinct for sequential streams where equal keys are adjacent
+	 * (e.g clustering columns within a partition), keeps only the last key.
+	 */
+	public static <T> Predicate<T> distinctAdjacentByKey(Function<? super T, Object> keyExtractor) {
+		AtomicReference<Object> last = new AtomicReference<>();
+		return t -> {
+			Object key = keyExtractor.apply(t);
+			return !Objects.equals(key, last.getAndSet(key));
+		};
+	}
 }
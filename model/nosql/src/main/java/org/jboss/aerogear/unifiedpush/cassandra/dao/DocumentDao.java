@@ -1,5 +1,6 @@
 package org.jboss.aerogear.unifiedpush.cassandra.dao;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -17,10 +18,35 @@ public interface DocumentDao<T, ID> {
 
 	void delete(UUID pushApplicaitonId, Alias alias);
 
+	/**
+	 * Delete user documents from the given databases, one partition delete per
+	 * database.
+	 */
+	void delete(UUID pushApplicationId, UUID userId, Collection<String> databases);
+
+	List<String> findDatabases(UUID pushApplicationId);
+
 	void delete(T doc);
 
 	Stream<DocumentContent> find(ID key, QueryOptions options);
 
+	/**
+	 * Snapshots of the documents matching the query, newest first.
+	 */
+	List<UUID> findSnapshots(ID key, QueryOptions options);
+
+	/**
+	 * Documents of snapshots resolved by {@link #findSnapshots}, newest first.
+	 * Documents written after the snapshots were resolved are not returned.
+	 */
+	Stream<DocumentContent> find(ID key, QueryOptions options, List<UUID> snapshots);
+
+	/**
+	 * Number of documents matching the query, counted by Cassandra, or bounded
+	 * by the query limit.
+	 */
+	long count(ID key, QueryOptions options);
+
 	Optional<DocumentContent> findOne(ID key);
 
 	DocumentContent findOne(ID key, String documentId);
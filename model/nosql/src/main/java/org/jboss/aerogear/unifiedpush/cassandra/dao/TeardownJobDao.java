@@ -0,0 +1,59 @@
+package org.jboss.aerogear.unifiedpush.cassandra.dao;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.jboss.aerogear.unifiedpush.cassandra.dao.model.TeardownJob;
+
+public interface TeardownJobDao {
+
+	/**
+	 * Create a job, unless one is already running for the application. A
+	 * completed job is replaced. Lightweight transactions make concurrent
+	 * requests (and nodes) agree on a single running job.
+	 *
+	 * @return false if a job is already running for the application
+	 */
+	boolean create(TeardownJob job);
+
+	Optional<TeardownJob> findOne(UUID pushApplicationId);
+
+	/**
+	 * Stream jobs which were not completed (e.g interrupted by shutdown).
+	 */
+	Stream<TeardownJob> findRunning();
+
+	/**
+	 * Store last removed user id and number of removed users of a partition.
+	 * Only the given partition entries are updated, so partitions can be
+	 * checkpointed concurrently.
+	 */
+	void checkpoint(UUID pushApplicationId, byte partition, UUID lastUserId, long processed);
+
+	/**
+	 * Take over a running job whose lease expired (lightweight transaction),
+	 * so a single node resumes it.
+	 *
+	 * @return false if the job is completed or its lease was renewed meanwhile
+	 */
+	boolean acquire(UUID pushApplicationId, String owner, Date leaseExpires, Date now);
+
+	/**
+	 * Extend the lease of a job (lightweight transaction).
+	 *
+	 * @return false if the job is owned by another node
+	 */
+	boolean renew(UUID pushApplicationId, String owner, Date leaseExpires);
+
+	/**
+	 * Give up the lease of a job (e.g on shutdown), so another node can resume
+	 * it right away.
+	 */
+	void release(UUID pushApplicationId, String owner);
+
+	void complete(UUID pushApplicationId, byte partition);
+
+	void complete(UUID pushApplicationId);
+}
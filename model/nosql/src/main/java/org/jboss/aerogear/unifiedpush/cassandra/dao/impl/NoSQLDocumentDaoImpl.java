@@ -1,13 +1,20 @@
 package org.jboss.aerogear.unifiedpush.cassandra.dao.impl;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import javax.annotation.PostConstruct;
+
 import org.apache.commons.lang3.StringUtils;
 import org.jboss.aerogear.unifiedpush.api.Alias;
 import org.jboss.aerogear.unifiedpush.api.document.QueryOptions;
@@ -26,6 +33,7 @@ import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
 
 import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.querybuilder.Delete;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.datastax.driver.core.querybuilder.Select;
@@ -38,10 +46,21 @@ public class NoSQLDocumentDaoImpl extends CassandraBaseDao<DocumentContent, Docu
 	private static final String MV_WITH_DOCUMENT_ID = "documents_with_document_id";
 	private static final int DEFAULT_LIMIT = 100;
 
+	// Bound CQL for fixed shape queries, see PreparedStatementRegistry
+	private static final String CQL_LATEST_BY_DOCUMENT_ID = "SELECT snapshot FROM " + MV_WITH_DOCUMENT_ID
+			+ " WHERE push_application_id = ? AND database = ? AND user_id = ? AND document_id = ? LIMIT 1";
+	private final String cqlLatest;
+	private final String cqlBySnapshot;
+
 	@Autowired
 	private DatabaseDao databaseDao;
 	@Autowired
 	private AliasDao aliasDao;
+	@Autowired
+	private PreparedStatementRegistry statements;
+
+	private final int fetchSize;
+	private final int concurrency;
 
 	public NoSQLDocumentDaoImpl(@Autowired CassandraOperations operations, @Autowired CassandraConfig configuraion) {
 		super(DocumentContent.class,
@@ -51,6 +70,23 @@ public class NoSQLDocumentDaoImpl extends CassandraBaseDao<DocumentContent, Docu
 		Assert.isTrue(
 				((CassandraAccessor) operations.getCqlOperations()).getConsistencyLevel() == getConsistencyLevel(),
 				"ConsistencyLevel Must be QUORUM");
+
+		this.fetchSize = configuraion.getDocumentsFetchSize();
+		this.concurrency = configuraion.getDocumentsConcurrency();
+
+		this.cqlLatest = "SELECT * FROM " + super.tableName
+				+ " WHERE push_application_id = ? AND database = ? AND user_id = ? LIMIT 1";
+		this.cqlBySnapshot = "SELECT * FROM " + super.tableName
+				+ " WHERE push_application_id = ? AND database = ? AND user_id = ? AND snapshot = ?";
+	}
+
+	/*
+	 * Fixed statements are prepared before any async lookup runs, a dependent
+	 * stage must never prepare on first use.
+	 */
+	@PostConstruct
+	void prepareStatements() {
+		statements.prepareAll(CQL_LATEST_BY_DOCUMENT_ID, cqlLatest, cqlBySnapshot);
 	}
 
 	@Override
@@ -97,29 +133,39 @@ public class NoSQLDocumentDaoImpl extends CassandraBaseDao<DocumentContent, Docu
 	 * Return newest document according to DocumentKey.
 	 */
 	private DocumentContent findLatest(DocumentKey queryKey, String documentId) {
-		Select select = QueryBuilder.select().from(super.tableName);
-		select.where(QueryBuilder.eq("push_application_id", queryKey.getPushApplicationId()));
-		select.where(QueryBuilder.eq("database", queryKey.getDatabase()));
-		select.where(QueryBuilder.eq("user_id", queryKey.getUserId()));
-
 		// Also search by document logical id.
-		if (documentId != null) {
-			UUID snapshot = findLatestById(queryKey, documentId);
+		UUID snapshot = documentId == null ? null : findLatestById(queryKey, documentId);
 
-			if (snapshot != null)
-				select.where(QueryBuilder.eq("snapshot", snapshot));
-		}
+		return operations.selectOne(selectLatest(queryKey, snapshot), this.domainClass);
+	}
+
+	private Statement selectLatest(DocumentKey queryKey, UUID snapshot) {
+		if (snapshot == null)
+			return statements.bind(cqlLatest, queryKey.getPushApplicationId(), queryKey.getDatabase(),
+					queryKey.getUserId());
 
-		return operations.selectOne(select, this.domainClass);
+		return statements.bind(cqlBySnapshot, queryKey.getPushApplicationId(), queryKey.getDatabase(),
+				queryKey.getUserId(), snapshot);
 	}
 
 	// Select latest snapshot for a document id
 	private UUID findLatestById(DocumentKey queryKey, String documentId) {
-		return findById(queryKey, new QueryOptions(documentId, 1)).findFirst().map(row -> row.getUUID(0)).orElse(null);
+		Row row = operations.getCqlOperations().queryForResultSet(selectLatestById(queryKey, documentId)).one();
+		return row == null ? null : row.getUUID(0);
+	}
+
+	private Statement selectLatestById(DocumentKey queryKey, String documentId) {
+		return statements.bind(CQL_LATEST_BY_DOCUMENT_ID, queryKey.getPushApplicationId(), queryKey.getDatabase(),
+				queryKey.getUserId(), documentId);
 	}
 
 	// Select limited (default 100) amount of snapshots by document id
 	private Stream<Row> findById(DocumentKey queryKey, QueryOptions options) {
+		return StreamSupport.stream(
+				operations.getCqlOperations().queryForResultSet(selectById(queryKey, options)).spliterator(), false);
+	}
+
+	private Select selectById(DocumentKey queryKey, QueryOptions options) {
 		Select select = QueryBuilder.select("snapshot", "push_application_id", "database", "user_id", "document_id")
 				.from(MV_WITH_DOCUMENT_ID);
 		select.where(QueryBuilder.eq("push_application_id", queryKey.getPushApplicationId()));
@@ -127,43 +173,80 @@ public class NoSQLDocumentDaoImpl extends CassandraBaseDao<DocumentContent, Docu
 		select.where(QueryBuilder.eq("user_id", queryKey.getUserId()));
 		select.where(QueryBuilder.eq("document_id", options.getId()));
 
-		if (options != null) {
-			// Query snapshot by equality
-			if (options.getFromDate() != null) {
-				final UUID min = UUIDs.startOf(options.getFromDate());
-				select.where(QueryBuilder.gte("snapshot", min));
-			}
-			if (options.getToDate() != null) {
-				final UUID max = UUIDs.endOf(options.getToDate());
-				select.where(QueryBuilder.lt("snapshot", max));
-			}
-
-			if (options.getLimit() != null && options.getLimit() > 0)
-				select.limit(options.getLimit());
-			else
-				select.limit(DEFAULT_LIMIT);
+		// Query snapshot by equality
+		if (options.getFromDate() != null) {
+			final UUID min = UUIDs.startOf(options.getFromDate());
+			select.where(QueryBuilder.gte("snapshot", min));
+		}
+		if (options.getToDate() != null) {
+			final UUID max = UUIDs.endOf(options.getToDate());
+			select.where(QueryBuilder.lt("snapshot", max));
 		}
 
-		return StreamSupport.stream(operations.getCqlOperations().queryForResultSet(select).spliterator(), false);
+		if (options.getLimit() != null && options.getLimit() > 0)
+			select.limit(options.getLimit());
+		else
+			select.limit(DEFAULT_LIMIT);
+
+		return select;
 	}
 
+	/**
+	 * Return newest document of each alias, in aliases order. Aliases are
+	 * queried asynchronously, at most {@link #concurrency} aliases are in
+	 * flight at any time.
+	 */
 	@Override
 	public List<DocumentContent> findLatestForAliases(DocumentKey key, List<Alias> aliases, String logicalId) {
-		List<DocumentContent> docs = new ArrayList<>();
-		if (aliases == null)
-			return docs;
+		if (aliases == null || aliases.isEmpty())
+			return new ArrayList<>();
 
-		aliases.forEach((alias) -> {
-			key.setUserId(alias.getId());
-			// Query global documents for each database
-			DocumentContent doc = findOne(key, logicalId);
+		final Semaphore window = new Semaphore(concurrency);
+		final List<CompletableFuture<DocumentContent>> futures = new ArrayList<>(aliases.size());
 
-			if (doc != null) {
-				docs.add(doc);
+		try {
+			for (Alias alias : aliases) {
+				window.acquire();
+
+				DocumentKey aliasKey = new DocumentKey(key.getPushApplicationId(), key.getDatabase(), alias.getId());
+				futures.add(findLatestAsync(aliasKey, logicalId).whenComplete((doc, e) -> window.release()));
 			}
-		});
 
-		return docs;
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while querying alias documents", e);
+		} catch (CompletionException e) {
+			throw new IllegalStateException("Unable to query alias documents", e.getCause());
+		}
+
+		return futures.stream().map(CompletableFuture::join).filter(Objects::nonNull).collect(Collectors.toList());
+	}
+
+	/*
+	 * Async equivalent of findOne(key, documentId): optional snapshot lookup
+	 * by document id followed by the document select.
+	 */
+	private CompletableFuture<DocumentContent> findLatestAsync(DocumentKey queryKey, String documentId) {
+		CompletableFuture<UUID> snapshot;
+
+		if (documentId == null) {
+			snapshot = CompletableFuture.completedFuture(null);
+		} else {
+			snapshot = statements.executeAsync(selectLatestById(queryKey, documentId), getConsistencyLevel())
+					.thenApply(rs -> {
+						Row row = rs.one();
+						return row == null ? null : row.getUUID(0);
+					});
+		}
+
+		return snapshot
+				.thenComposeAsync(uuid -> statements.executeAsync(selectLatest(queryKey, uuid), getConsistencyLevel()),
+						statements.callbacks())
+				.thenApply(rs -> {
+					Row row = rs.one();
+					return row == null ? null : operations.getConverter().read(domainClass, row);
+				});
 	}
 
 	private Stream<DocumentContent> find(DocumentKey queryKey) {
@@ -171,7 +254,78 @@ public class NoSQLDocumentDaoImpl extends CassandraBaseDao<DocumentContent, Docu
 	}
 
 	public Stream<DocumentContent> find(DocumentKey queryKey, QueryOptions options) {
-		Select select = QueryBuilder.select().from(super.tableName);
+		Select select = select(QueryBuilder.select(), queryKey, options);
+
+		if (options != null && options.getLimit() != null && options.getLimit() > 0)
+			select.limit(options.getLimit());
+
+		// Rows are fetched lazily page by page while the stream is consumed.
+		select.setFetchSize(fetchSize);
+
+		return operations.stream(select, domainClass);
+	}
+
+	/**
+	 * Snapshots of the documents matching the query, clustered in descending
+	 * order. Only clustering keys are selected so document content is never
+	 * read from disk; the newest snapshot and the number of documents are
+	 * resolved by a single query.
+	 */
+	@Override
+	public List<UUID> findSnapshots(DocumentKey queryKey, QueryOptions options) {
+		Select select = select(QueryBuilder.select("snapshot"), queryKey, options);
+
+		if (options != null && options.getLimit() != null && options.getLimit() > 0)
+			select.limit(options.getLimit());
+
+		select.setFetchSize(fetchSize);
+
+		return StreamSupport.stream(operations.getCqlOperations().queryForResultSet(select).spliterator(), false)
+				.map(row -> row.getUUID(0)).collect(Collectors.toList());
+	}
+
+	@Override
+	public Stream<DocumentContent> find(DocumentKey queryKey, QueryOptions options, List<UUID> snapshots) {
+		if (snapshots.isEmpty())
+			return Stream.empty();
+
+		Select select = select(QueryBuilder.select(), queryKey, null);
+
+		if (options != null && StringUtils.isNotEmpty(options.getId())) {
+			// Snapshots of a document id are not contiguous, their number is
+			// bounded by the query limit.
+			select.where(QueryBuilder.in("snapshot", snapshots));
+		} else {
+			// Contiguous snapshots, newest first. Documents written meanwhile
+			// are newer than the range.
+			select.where(QueryBuilder.lte("snapshot", snapshots.get(0)));
+			select.where(QueryBuilder.gte("snapshot", snapshots.get(snapshots.size() - 1)));
+			select.limit(snapshots.size());
+		}
+
+		select.setFetchSize(fetchSize);
+
+		return operations.stream(select, domainClass);
+	}
+
+	@Override
+	public long count(DocumentKey queryKey, QueryOptions options) {
+		// Snapshots of a document id are counted from the view, at most the
+		// query limit.
+		if (options != null && StringUtils.isNotEmpty(options.getId()))
+			return findById(queryKey, options).count();
+
+		// A limited query never reads more than limit clustering keys.
+		if (options != null && options.getLimit() != null && options.getLimit() > 0)
+			return findSnapshots(queryKey, options).size();
+
+		Row row = operations.getCqlOperations()
+				.queryForResultSet(select(QueryBuilder.select().countAll(), queryKey, options)).one();
+		return row == null ? 0 : row.getLong(0);
+	}
+
+	private Select select(Select.Builder builder, DocumentKey queryKey, QueryOptions options) {
+		Select select = builder.from(super.tableName);
 		select.where(QueryBuilder.eq("push_application_id", queryKey.getPushApplicationId()));
 		select.where(QueryBuilder.eq("database", queryKey.getDatabase()));
 		select.where(QueryBuilder.eq("user_id", queryKey.getUserId()));
@@ -199,12 +353,9 @@ public class NoSQLDocumentDaoImpl extends CassandraBaseDao<DocumentContent, Docu
 					select.where(QueryBuilder.lt("snapshot", max));
 				}
 			}
-
-			if (options.getLimit() != null && options.getLimit() > 0)
-				select.limit(options.getLimit());
 		}
 
-		return operations.stream(select, domainClass);
+		return select;
 	}
 
 	@Override
@@ -212,10 +363,8 @@ public class NoSQLDocumentDaoImpl extends CassandraBaseDao<DocumentContent, Docu
 		// First query an delete all DB related documents.
 		databaseDao.find(pushApplicaitonId).forEach((db) -> {
 
-			// Query global documents for each database
-			find(new DocumentKey(db)).forEach((doc) -> {
-				delete(doc);
-			});
+			// Global documents, single partition delete per database
+			deleteById(new DocumentKey(db));
 
 			delete(pushApplicaitonId, db.getDatabase());
 
@@ -232,6 +381,16 @@ public class NoSQLDocumentDaoImpl extends CassandraBaseDao<DocumentContent, Docu
 		});
 	}
 
+	@Override
+	public void delete(UUID pushApplicationId, UUID userId, Collection<String> databases) {
+		databases.forEach(database -> deleteById(new DocumentKey(pushApplicationId, database, userId)));
+	}
+
+	@Override
+	public List<String> findDatabases(UUID pushApplicationId) {
+		return databaseDao.find(pushApplicationId).map(Database::getDatabase).distinct().collect(Collectors.toList());
+	}
+
 	/*
 	 * Delete application/alias documents from all 12 partitions (by month).
 	 *
@@ -0,0 +1,119 @@
+package org.jboss.aerogear.unifiedpush.cassandra.dao.impl;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.jboss.aerogear.unifiedpush.cassandra.CassandraConfig;
+import org.jboss.aerogear.unifiedpush.cassandra.dao.TeardownJobDao;
+import org.jboss.aerogear.unifiedpush.cassandra.dao.model.TeardownJob;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.data.cassandra.core.InsertOptions;
+import org.springframework.data.cassandra.core.cql.CassandraAccessor;
+import org.springframework.data.cassandra.repository.support.CassandraRepositoryFactory;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.Assert;
+
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+
+@Repository
+class NoSQLTeardownJobDaoImpl extends CassandraBaseDao<TeardownJob, UUID> implements TeardownJobDao {
+
+	private final String cqlRestart;
+	private final String cqlCheckpoint;
+	private final String cqlCompletePartition;
+	private final String cqlComplete;
+	private final String cqlAcquire;
+	private final String cqlRenew;
+
+	@Autowired
+	private PreparedStatementRegistry statements;
+
+	public NoSQLTeardownJobDaoImpl(@Autowired CassandraOperations operations, @Autowired CassandraConfig configuraion) {
+		super(TeardownJob.class, new CassandraRepositoryFactory(operations).getEntityInformation(TeardownJob.class),
+				operations, configuraion);
+
+		Assert.isTrue(
+				((CassandraAccessor) operations.getCqlOperations()).getConsistencyLevel() == getConsistencyLevel(),
+				"ConsistencyLevel Must be QUORUM");
+
+		this.cqlRestart = "UPDATE " + super.tableName
+				+ " SET application_name = ?, destructive = ?, status = ?, checkpoints = null, processed = null,"
+				+ " completed = null, owner = ?, lease_expires = ?, started = ?, updated = ?"
+				+ " WHERE push_application_id = ? IF status = ?";
+		this.cqlCheckpoint = "UPDATE " + super.tableName
+				+ " SET checkpoints[?] = ?, processed[?] = ?, updated = ? WHERE push_application_id = ?";
+		this.cqlCompletePartition = "UPDATE " + super.tableName
+				+ " SET completed = completed + ?, updated = ? WHERE push_application_id = ?";
+		this.cqlComplete = "UPDATE " + super.tableName
+				+ " SET status = ?, updated = ? WHERE push_application_id = ?";
+		this.cqlAcquire = "UPDATE " + super.tableName
+				+ " SET owner = ?, lease_expires = ?, updated = ? WHERE push_application_id = ?"
+				+ " IF status = ? AND lease_expires < ?";
+		this.cqlRenew = "UPDATE " + super.tableName
+				+ " SET lease_expires = ? WHERE push_application_id = ? IF owner = ?";
+	}
+
+	@Override
+	public boolean create(TeardownJob job) {
+		if (operations.insert(job, InsertOptions.builder().withIfNotExists().build()).wasApplied()) {
+			return true;
+		}
+
+		// Restart a completed job only, stale collections are dropped. A
+		// running job keeps its checkpoints.
+		return operations.getCqlOperations().execute(statements.bind(cqlRestart, job.getApplicationName(),
+				job.isDestructive(), TeardownJob.Status.RUNNING.name(), job.getOwner(), job.getLeaseExpires(),
+				job.getStarted(), job.getUpdated(), job.getPushApplicationId(), TeardownJob.Status.COMPLETED.name()));
+	}
+
+	@Override
+	public Optional<TeardownJob> findOne(UUID pushApplicationId) {
+		return super.findById(pushApplicationId);
+	}
+
+	@Override
+	public Stream<TeardownJob> findRunning() {
+		// Few rows (one per deleted application), filter in memory.
+		return operations.stream(QueryBuilder.select().from(super.tableName), domainClass)
+				.filter(TeardownJob::isRunning);
+	}
+
+	@Override
+	public void checkpoint(UUID pushApplicationId, byte partition, UUID lastUserId, long processed) {
+		operations.getCqlOperations().execute(statements.bind(cqlCheckpoint, partition, lastUserId, partition,
+				processed, new Date(), pushApplicationId));
+	}
+
+	@Override
+	public boolean acquire(UUID pushApplicationId, String owner, Date leaseExpires, Date now) {
+		return operations.getCqlOperations().execute(statements.bind(cqlAcquire, owner, leaseExpires, now,
+				pushApplicationId, TeardownJob.Status.RUNNING.name(), now));
+	}
+
+	@Override
+	public boolean renew(UUID pushApplicationId, String owner, Date leaseExpires) {
+		return operations.getCqlOperations().execute(statements.bind(cqlRenew, leaseExpires, pushApplicationId, owner));
+	}
+
+	@Override
+	public void release(UUID pushApplicationId, String owner) {
+		// An expired lease, the job is resumed by the next node looking for it.
+		operations.getCqlOperations().execute(statements.bind(cqlRenew, new Date(0), pushApplicationId, owner));
+	}
+
+	@Override
+	public void complete(UUID pushApplicationId, byte partition) {
+		operations.getCqlOperations().execute(statements.bind(cqlCompletePartition,
+				Collections.singleton(partition), new Date(), pushApplicationId));
+	}
+
+	@Override
+	public void complete(UUID pushApplicationId) {
+		operations.getCqlOperations().execute(
+				statements.bind(cqlComplete, TeardownJob.Status.COMPLETED.name(), new Date(), pushApplicationId));
+	}
+}
@@ -11,6 +11,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -33,11 +34,13 @@ import org.springframework.data.cassandra.repository.support.CassandraRepository
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
 
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
-import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.querybuilder.Delete;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
-import com.datastax.driver.core.querybuilder.Select;
 
 @Repository
 class NoSQLUserDaoImpl extends CassandraBaseDao<User, UserKey> implements AliasDao {
@@ -46,13 +49,42 @@ class NoSQLUserDaoImpl extends CassandraBaseDao<User, UserKey> implements AliasD
 	private static final String MV_BY_PUSH_APPLICATION = "users_by_application";
 	private static final String MV_BY_ALIAS_AND_APPLICATION = "users_by_alias_application";
 	private static final String MV_BY_ALIAS = "users_by_alias";
-	private static final List<Integer> months;
+	private static final List<Byte> months;
+
+	// Bound CQL, see PreparedStatementRegistry
+	private static final String CQL_USER_IDS_BY_ALIAS = String.format("SELECT %s, %s, %s FROM %s WHERE %s IN ?",
+			UserKey.FIELD_PUSH_APPLICATION_ID, UserKey.FIELD_USER_ID, UserKey.FIELD_ALIAS, MV_BY_ALIAS,
+			UserKey.FIELD_ALIAS);
+	private static final String CQL_USER_IDS_BY_ALIAS_AND_APPLICATION = String.format(
+			"SELECT %s, %s, %s FROM %s WHERE %s IN ? AND %s = ?", UserKey.FIELD_PUSH_APPLICATION_ID,
+			UserKey.FIELD_USER_ID, UserKey.FIELD_ALIAS, MV_BY_ALIAS_AND_APPLICATION, UserKey.FIELD_ALIAS,
+			UserKey.FIELD_PUSH_APPLICATION_ID);
+	private static final String CQL_USER_IDS_BY_APPLICATION = String.format(
+			"SELECT %s FROM %s WHERE %s = ? AND month = ?", UserKey.FIELD_USER_ID, MV_BY_PUSH_APPLICATION,
+			UserKey.FIELD_PUSH_APPLICATION_ID);
+	private static final String CQL_USER_IDS_BY_APPLICATION_BEFORE = CQL_USER_IDS_BY_APPLICATION + " AND "
+			+ UserKey.FIELD_USER_ID + " < ?";
+	// Max number of month partitions queried concurrently.
+	private static final int PARTITIONS_CONCURRENCY = 12;
+	// Max number of aliases per IN query (bulk lookups).
+	private static final int ALIASES_PER_QUERY = 50;
+	private static final String CQL_USER_TENANT_RELATIONS = String.format("SELECT %s, %s, %s FROM %s",
+			UserKey.FIELD_PUSH_APPLICATION_ID, UserKey.FIELD_USER_ID, UserKey.FIELD_ALIAS, MV_BY_ALIAS);
+
+	private final String cqlUsers;
+	private final String cqlInsertUser;
+	private final String cqlDeleteUsers;
+	private final int concurrency;
 
 	@Autowired
 	private CacheManager cacheManager;
+	@Autowired
+	private PreparedStatementRegistry statements;
 
 	static {
-		months = Arrays.stream(Month.values()).map(month -> month.getValue()).collect(Collectors.toList());
+		// month column is a tinyint
+		months = Collections.unmodifiableList(
+				Arrays.stream(Month.values()).map(month -> (byte) month.getValue()).collect(Collectors.toList()));
 	}
 
 	public NoSQLUserDaoImpl(@Autowired CassandraOperations operations, @Autowired CassandraConfig configuraion) {
@@ -62,10 +94,54 @@ class NoSQLUserDaoImpl extends CassandraBaseDao<User, UserKey> implements AliasD
 		Assert.isTrue(
 				((CassandraAccessor) operations.getCqlOperations()).getConsistencyLevel() == getConsistencyLevel(),
 				"ConsistencyLevel Must be QUORUM");
+
+		this.cqlUsers = String.format("SELECT * FROM %s WHERE %s = ? AND %s = ?", super.tableName,
+				UserKey.FIELD_PUSH_APPLICATION_ID, UserKey.FIELD_USER_ID);
+		this.cqlInsertUser = String.format("INSERT INTO %s (%s, %s, %s, type, month, day) VALUES (?, ?, ?, ?, ?, ?)",
+				super.tableName, UserKey.FIELD_PUSH_APPLICATION_ID, UserKey.FIELD_USER_ID, UserKey.FIELD_ALIAS);
+		this.cqlDeleteUsers = String.format("DELETE FROM %s WHERE %s = ? AND %s = ?", super.tableName,
+				UserKey.FIELD_PUSH_APPLICATION_ID, UserKey.FIELD_USER_ID);
+		this.concurrency = configuraion.getAliasesConcurrency();
 	}
 
 	@Override
 	public List<User> create(Alias alias) {
+		List<User> users = toUsers(alias);
+
+		users.stream().forEach(user -> {
+			super.save(user);
+		});
+
+		if (users.size() == 0) {
+			logger.warn("Attempt to store an alias without a valid AliasType. alias:{}", alias.toString());
+		}
+
+		return users;
+	}
+
+	@Override
+	public void create(Collection<Alias> aliases) {
+		List<BatchStatement> batches = new ArrayList<>(aliases.size());
+
+		for (Alias alias : aliases) {
+			List<User> users = toUsers(alias);
+
+			if (users.size() == 0) {
+				logger.warn("Attempt to store an alias without a valid AliasType. alias:{}", alias.toString());
+				continue;
+			}
+
+			// Single partition (push_application_id, user_id) batch.
+			BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+			users.forEach(user -> batch.add(statements.bind(cqlInsertUser, user.getKey().getPushApplicationId(),
+					user.getId(), user.getAlias(), user.getType(), user.getMonth(), user.getDay())));
+			batches.add(batch);
+		}
+
+		statements.executeAll(batches, concurrency, getConsistencyLevel());
+	}
+
+	private static List<User> toUsers(Alias alias) {
 		List<User> users = new ArrayList<User>();
 
 		if (StringUtils.isNotEmpty(alias.getEmail())) {
@@ -82,14 +158,6 @@ class NoSQLUserDaoImpl extends CassandraBaseDao<User, UserKey> implements AliasD
 			users.add(User.copy(alias, alias.getOther(), User.AliasType.OTHER.ordinal()));
 		}
 
-		users.stream().forEach(user -> {
-			super.save(user);
-		});
-
-		if (users == null || users.size() == 0) {
-			logger.warn("Attempt to store an alias without a valid AliasType. alias:{}", alias.toString());
-		}
-
 		return users;
 	}
 
@@ -109,15 +177,9 @@ class NoSQLUserDaoImpl extends CassandraBaseDao<User, UserKey> implements AliasD
 	 */
 	@Override
 	public List<Alias> findAll(UUID pushApplicationId) {
-		List<Row> rows = findUserIds(pushApplicationId).filter(DistinctUitils.distinctByKey(row -> row.getUUID(0)))
-				.collect(Collectors.toList());
-
-		List<Alias> aliases = new ArrayList<>();
-		rows.forEach(row -> {
-			aliases.add(new Alias(pushApplicationId, row.getUUID(0)));
-		});
-
-		return aliases;
+		try (Stream<Row> rows = findUserIds(pushApplicationId)) {
+			return rows.map(row -> new Alias(pushApplicationId, row.getUUID(0))).collect(Collectors.toList());
+		}
 	}
 
 	@Override
@@ -184,12 +246,8 @@ class NoSQLUserDaoImpl extends CassandraBaseDao<User, UserKey> implements AliasD
 	}
 
 	private List<User> getUsers(UUID pushApplicationId, UUID userId) {
-		Select select = QueryBuilder.select().from(super.tableName);
-		select.where(QueryBuilder.eq(UserKey.FIELD_PUSH_APPLICATION_ID, pushApplicationId));
-		select.where(QueryBuilder.eq(UserKey.FIELD_USER_ID, userId));
-
 		// Get all possible aliases for a userId
-		return operations.select(select, super.domainClass);
+		return operations.select(statements.bind(cqlUsers, pushApplicationId, userId), super.domainClass);
 	}
 
 	/*
@@ -208,49 +266,52 @@ class NoSQLUserDaoImpl extends CassandraBaseDao<User, UserKey> implements AliasD
 	private Stream<Row> findUserIds(String alias, UUID pushApplicationId) {
 		List<String> aliases = optionalAliases(alias, null);
 
-		StringBuffer cql = new StringBuffer("SELECT ") //
-				.append(UserKey.FIELD_PUSH_APPLICATION_ID).append(",") //
-				.append(UserKey.FIELD_USER_ID).append(",") //
-				.append(UserKey.FIELD_ALIAS) //
-				.append(" FROM ").append(pushApplicationId == null ? MV_BY_ALIAS : MV_BY_ALIAS_AND_APPLICATION) //
-				.append(" WHERE alias IN ('").append(StringUtils.join(aliases, "','")).append("')");
-		if (pushApplicationId != null) {
-			cql.append(" AND ").append(UserKey.FIELD_PUSH_APPLICATION_ID).append("=").append(pushApplicationId);
-		}
+		BoundStatement statement = pushApplicationId == null //
+				? statements.bind(CQL_USER_IDS_BY_ALIAS, aliases) //
+				: statements.bind(CQL_USER_IDS_BY_ALIAS_AND_APPLICATION, aliases, pushApplicationId);
 
-		return StreamSupport.stream(
-				operations.getCqlOperations().queryForResultSet(new SimpleStatement(cql.toString())).spliterator(),
-				false);
+		return stream(statement);
 	}
 
 	/*
-	 * Select user_id from all 12 partitions (by month). For a planet scale
-	 * sizing, we can also create MV by day (365 partitions).
+	 * Select distinct user_id from all 12 partitions (by month). For a planet
+	 * scale sizing, we can also create MV by day (365 partitions).
+	 *
+	 * Partitions are queried concurrently and merged into a single stream.
+	 * Month is derived from user_id, therefore all aliases of a user are
+	 * adjacent rows of the same partition and distinct requires no state
+	 * other than the previous user_id.
 	 */
 	public Stream<Row> findUserIds(UUID pushApplicationId) {
-		StringBuffer cql = new StringBuffer("SELECT ") //
-				.append(UserKey.FIELD_USER_ID) //
-				.append(" FROM ").append(MV_BY_PUSH_APPLICATION) //
-				.append(" WHERE ").append(UserKey.FIELD_PUSH_APPLICATION_ID).append("=").append(pushApplicationId) //
-				.append(" AND month IN (").append(StringUtils.join(months, ",")).append(")");
+		List<BoundStatement> partitions = months.stream()
+				.map(month -> statements.bind(CQL_USER_IDS_BY_APPLICATION, pushApplicationId, month))
+				.collect(Collectors.toList());
+
+		return PartitionScanner.scan(statements.getSession(), partitions, PARTITIONS_CONCURRENCY,
+				getConsistencyLevel()).filter(DistinctUitils.distinctAdjacentByKey(row -> row.getUUID(0)));
+	}
+
+	@Override
+	public List<Byte> findUserIdPartitions() {
+		return months;
+	}
 
-		return StreamSupport.stream(
-				operations.getCqlOperations().queryForResultSet(new SimpleStatement(cql.toString())).spliterator(),
-				false);
+	@Override
+	public Stream<Row> findUserIds(UUID pushApplicationId, byte partition, UUID before) {
+		BoundStatement statement = before == null //
+				? statements.bind(CQL_USER_IDS_BY_APPLICATION, pushApplicationId, partition) //
+				: statements.bind(CQL_USER_IDS_BY_APPLICATION_BEFORE, pushApplicationId, partition, before);
+
+		return stream(statement).filter(DistinctUitils.distinctAdjacentByKey(row -> row.getUUID(0)));
 	}
 
 	@Override
 	public Stream<UserKey> findAllUserTenantRelations() {
-		StringBuilder cql = new StringBuilder("SELECT ")
-				.append(UserKey.FIELD_PUSH_APPLICATION_ID)
-				.append(", ").append(UserKey.FIELD_USER_ID)
-				.append(", ").append(UserKey.FIELD_ALIAS)
-				.append(" FROM ").append(MV_BY_ALIAS);
-
-		return StreamSupport.stream(
-				operations.getCqlOperations().queryForResultSet(new SimpleStatement(cql.toString())).spliterator(),
-				false)
-				.map(NoSQLUserDaoImpl::getKey);
+		return stream(statements.bind(CQL_USER_TENANT_RELATIONS)).map(NoSQLUserDaoImpl::getKey);
+	}
+
+	private Stream<Row> stream(Statement statement) {
+		return StreamSupport.stream(operations.getCqlOperations().queryForResultSet(statement).spliterator(), false);
 	}
 
 	@Override
@@ -259,6 +320,37 @@ class NoSQLUserDaoImpl extends CassandraBaseDao<User, UserKey> implements AliasD
 		return findUserIds.map(NoSQLUserDaoImpl::getKey);
 	}
 
+	@Override
+	public Stream<UserKey> findUserTenantRelations(Collection<String> aliases) {
+		List<BoundStatement> queries = chunks(optionalAliases(aliases))
+				.map(chunk -> statements.bind(CQL_USER_IDS_BY_ALIAS, chunk)).collect(Collectors.toList());
+
+		return rows(statements.executeAll(queries, concurrency, getConsistencyLevel()))
+				.map(NoSQLUserDaoImpl::getKey);
+	}
+
+	@Override
+	public Map<String, UUID> findUserIds(UUID pushApplicationId, Collection<String> aliases) {
+		List<BoundStatement> queries = chunks(optionalAliases(aliases))
+				.map(chunk -> statements.bind(CQL_USER_IDS_BY_ALIAS_AND_APPLICATION, chunk, pushApplicationId))
+				.collect(Collectors.toList());
+
+		// Rows of an alias are sorted by user_id DESC, keep the latest.
+		Map<String, UUID> userIds = new HashMap<>();
+		rows(statements.executeAll(queries, concurrency, getConsistencyLevel()))
+				.forEach(row -> userIds.putIfAbsent(row.getString(2), row.getUUID(1)));
+
+		Map<String, UUID> result = new HashMap<>();
+		aliases.stream().filter(StringUtils::isNotEmpty).forEach(alias -> {
+			UUID userId = userIds.getOrDefault(alias, userIds.get(alias.toLowerCase()));
+			if (userId != null) {
+				result.put(alias, userId);
+			}
+		});
+
+		return result;
+	}
+
 	@Override
 	public List<UserKey> remove(UUID pushApplicationId, String alias) {
 		Stream<Row> findUserIds = findUserIds(alias, pushApplicationId);
@@ -285,6 +377,24 @@ class NoSQLUserDaoImpl extends CassandraBaseDao<User, UserKey> implements AliasD
 		}
 	}
 
+	@Override
+	public List<UserKey> remove(UUID pushApplicationId, Collection<UUID> userIds) {
+		List<BoundStatement> selects = userIds.stream()
+				.map(userId -> statements.bind(cqlUsers, pushApplicationId, userId)).collect(Collectors.toList());
+		List<UserKey> keys = rows(statements.executeAll(selects, concurrency, getConsistencyLevel()))
+				.map(row -> operations.getConverter().read(domainClass, row).getKey()).collect(Collectors.toList());
+
+		List<BoundStatement> deletes = userIds.stream()
+				.map(userId -> statements.bind(cqlDeleteUsers, pushApplicationId, userId))
+				.collect(Collectors.toList());
+		statements.executeAll(deletes, concurrency, getConsistencyLevel());
+
+		// Evict removed aliases from cache.
+		keys.forEach(key -> evict(key.getPushApplicationId(), key.getAlias()));
+
+		return keys;
+	}
+
 	@Override
 	public void deleteById(UserKey key) {
 		// Delete all aliases by partition key
@@ -320,11 +430,27 @@ class NoSQLUserDaoImpl extends CassandraBaseDao<User, UserKey> implements AliasD
 		return aliases;
 	}
 
-	private boolean isLowerCaseRequired(String alias) {
+	private List<String> optionalAliases(Collection<String> aliases) {
+		List<String> names = new ArrayList<>();
+		aliases.forEach(alias -> optionalAliases(alias, names));
+		return names.stream().distinct().collect(Collectors.toList());
+	}
+
+	private static boolean isLowerCaseRequired(String alias) {
 		return !alias.equals(alias.toLowerCase());
 
 	}
 
+	private static Stream<List<String>> chunks(List<String> aliases) {
+		return IntStream.range(0, (aliases.size() + ALIASES_PER_QUERY - 1) / ALIASES_PER_QUERY)
+				.mapToObj(i -> aliases.subList(i * ALIASES_PER_QUERY,
+						Math.min(aliases.size(), (i + 1) * ALIASES_PER_QUERY)));
+	}
+
+	private static Stream<Row> rows(List<ResultSet> results) {
+		return results.stream().flatMap(rs -> StreamSupport.stream(rs.spliterator(), false));
+	}
+
 	private static UserKey getKey(Row row) {
 		return new UserKey(row.getUUID(0), row.getUUID(1), row.getString(2));
 	}
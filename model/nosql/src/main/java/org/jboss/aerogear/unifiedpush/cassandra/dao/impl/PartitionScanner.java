@@ -0,0 +1,96 @@
+package org.jboss.aerogear.unifiedpush.cassandra.dao.impl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+
+/**
+ * Scan a list of partitions (e.g month buckets) concurrently and expose all
+ * rows as a single sequential stream.
+ *
+ * Up to {@code concurrency} partition queries are in flight while the current
+ * partition is consumed, and the next page of the current partition is fetched
+ * asynchronously before the available rows run out. Rows are returned
+ * partition by partition, in statements order.
+ */
+class PartitionScanner implements Iterator<Row> {
+	private final Session session;
+	private final Iterator<? extends Statement> pending;
+	private final Deque<ResultSetFuture> inFlight = new ArrayDeque<>();
+	private final int concurrency;
+	private final ConsistencyLevel consistencyLevel;
+	private final int prefetchThreshold;
+
+	private ResultSet current;
+
+	private PartitionScanner(Session session, List<? extends Statement> statements, int concurrency,
+			ConsistencyLevel consistencyLevel) {
+		this.session = session;
+		this.pending = statements.iterator();
+		this.concurrency = Math.max(1, concurrency);
+		this.consistencyLevel = consistencyLevel;
+		this.prefetchThreshold = Math.max(1,
+				session.getCluster().getConfiguration().getQueryOptions().getFetchSize() / 4);
+	}
+
+	static Stream<Row> scan(Session session, List<? extends Statement> statements, int concurrency,
+			ConsistencyLevel consistencyLevel) {
+		PartitionScanner scanner = new PartitionScanner(session, statements, concurrency, consistencyLevel);
+		scanner.submit();
+
+		return StreamSupport
+				.stream(Spliterators.spliteratorUnknownSize(scanner, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(scanner::cancel);
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (current == null || current.isExhausted()) {
+			if (inFlight.isEmpty())
+				return false;
+
+			current = inFlight.poll().getUninterruptibly();
+			submit();
+		}
+
+		// Prefetch next page while remaining rows are consumed.
+		if (!current.isFullyFetched() && current.getAvailableWithoutFetching() == prefetchThreshold)
+			current.fetchMoreResults();
+
+		return true;
+	}
+
+	@Override
+	public Row next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+
+		return current.one();
+	}
+
+	private void submit() {
+		while (inFlight.size() < concurrency && pending.hasNext()) {
+			Statement statement = pending.next();
+			statement.setConsistencyLevel(consistencyLevel);
+			inFlight.add(session.executeAsync(statement));
+		}
+	}
+
+	private void cancel() {
+		inFlight.forEach(future -> future.cancel(true));
+		inFlight.clear();
+	}
+}
@@ -0,0 +1,158 @@
+package org.jboss.aerogear.unifiedpush.cassandra.dao.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.data.cassandra.core.cql.CassandraAccessor;
+import org.springframework.stereotype.Component;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+
+/**
+ * Prepared statements shared by the DAO layer, keyed by CQL string.
+ *
+ * Statements are prepared once (lazily) with bind markers instead of inline
+ * literals, Cassandra skips parsing and the driver can route bound statements
+ * to a replica owning the partition (token aware).
+ *
+ * Asynchronous results are completed on a small callback pool rather than on
+ * the driver I/O thread, dependent stages may block (e.g. prepare a statement
+ * on first use) without stalling the connection.
+ */
+@Component
+class PreparedStatementRegistry {
+	private final ConcurrentMap<String, PreparedStatement> statements = new ConcurrentHashMap<>();
+	private final ExecutorService callbacks = Executors.newFixedThreadPool(
+			Runtime.getRuntime().availableProcessors(), new CallbackThreadFactory());
+
+	@Autowired
+	private CassandraOperations operations;
+
+	public BoundStatement bind(String cql, Object... values) {
+		return prepare(cql).bind(values);
+	}
+
+	/*
+	 * The statement is prepared outside of the map, a round trip to the cluster
+	 * must not run while holding a map bin lock. Two callers racing on a new
+	 * statement may both prepare it, the first one registered wins.
+	 */
+	public PreparedStatement prepare(String cql) {
+		final PreparedStatement prepared = statements.get(cql);
+		if (prepared != null) {
+			return prepared;
+		}
+
+		final PreparedStatement created = getSession().prepare(cql);
+		final PreparedStatement existing = statements.putIfAbsent(cql, created);
+		return existing == null ? created : existing;
+	}
+
+	/*
+	 * Prepare fixed statements up front, usually from a DAO @PostConstruct, so
+	 * that asynchronous paths never prepare on first use.
+	 */
+	void prepareAll(String... cql) {
+		for (String query : cql) {
+			prepare(query);
+		}
+	}
+
+	/*
+	 * Execute asynchronously, the driver future is adapted to a
+	 * CompletableFuture (guava is not available).
+	 */
+	CompletableFuture<ResultSet> executeAsync(Statement statement, ConsistencyLevel consistencyLevel) {
+		final CompletableFuture<ResultSet> result = new CompletableFuture<>();
+
+		statement.setConsistencyLevel(consistencyLevel);
+		final ResultSetFuture future = getSession().executeAsync(statement);
+
+		// Listener is invoked once the future is done, no blocking involved.
+		// Completing on the callback pool keeps dependent stages off the I/O thread.
+		future.addListener(() -> {
+			try {
+				result.complete(future.getUninterruptibly());
+			} catch (Exception e) {
+				result.completeExceptionally(e);
+			}
+		}, callbacks);
+
+		return result;
+	}
+
+	/*
+	 * Execute statements asynchronously, at most concurrency statements are in
+	 * flight. Results are returned in statements order.
+	 */
+	List<ResultSet> executeAll(List<? extends Statement> statements, int concurrency,
+			ConsistencyLevel consistencyLevel) {
+		final Semaphore window = new Semaphore(Math.max(1, concurrency));
+		final List<CompletableFuture<ResultSet>> futures = new ArrayList<>(statements.size());
+
+		try {
+			for (Statement statement : statements) {
+				window.acquire();
+				futures.add(executeAsync(statement, consistencyLevel).whenComplete((rs, e) -> window.release()));
+			}
+
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while executing statements", e);
+		} catch (CompletionException e) {
+			throw new IllegalStateException("Unable to execute statements", e.getCause());
+		}
+
+		return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+	}
+
+	/*
+	 * Executor for dependent stages that must not run on the caller or I/O
+	 * thread, e.g. thenComposeAsync(..., statements.callbacks()).
+	 */
+	Executor callbacks() {
+		return callbacks;
+	}
+
+	Session getSession() {
+		return ((CassandraAccessor) operations.getCqlOperations()).getSession();
+	}
+
+	@PreDestroy
+	void shutdown() {
+		callbacks.shutdown();
+	}
+
+	private static final class CallbackThreadFactory implements ThreadFactory {
+		private final AtomicInteger sequence = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			final Thread thread = new Thread(runnable, "cassandra-callback-" + sequence.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package org.jboss.aerogear.unifiedpush.cassandra.dao.model;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKey;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Checkpointed state of an application teardown (aliases, documents and
+ * keycloak entities removal).
+ *
+ * Aliases are processed per users_by_application partition, for each
+ * partition the last removed user id (checkpoint) and the number of removed
+ * users are kept, so a job can resume where it stopped.
+ *
+ * A running job is owned by a single node, which renews its lease while the
+ * job runs; other nodes resume the job only once the lease expired.
+ */
+@Table(value = "teardown_jobs")
+public class TeardownJob {
+	public enum Status {
+		RUNNING, COMPLETED
+	}
+
+	@PrimaryKey(value = "push_application_id")
+	private UUID pushApplicationId;
+
+	@Column(value = "application_name")
+	private String applicationName;
+
+	@Column
+	private boolean destructive;
+
+	@Column
+	private String status;
+
+	@JsonIgnore
+	@Column
+	private Map<Byte, UUID> checkpoints;
+
+	@JsonIgnore
+	@Column(value = "processed")
+	private Map<Byte, Long> processedByPartition;
+
+	@JsonIgnore
+	@Column
+	private Set<Byte> completed;
+
+	@JsonIgnore
+	@Column
+	private String owner;
+
+	@JsonIgnore
+	@Column(value = "lease_expires")
+	private Date leaseExpires;
+
+	@Column
+	private Date started;
+
+	@Column
+	private Date updated;
+
+	public TeardownJob() {
+	}
+
+	public TeardownJob(UUID pushApplicationId, String applicationName, boolean destructive) {
+		this.pushApplicationId = pushApplicationId;
+		this.applicationName = applicationName;
+		this.destructive = destructive;
+		this.status = Status.RUNNING.name();
+		this.started = new Date();
+		this.updated = this.started;
+	}
+
+	public UUID getPushApplicationId() {
+		return pushApplicationId;
+	}
+
+	public void setPushApplicationId(UUID pushApplicationId) {
+		this.pushApplicationId = pushApplicationId;
+	}
+
+	public String getApplicationName() {
+		return applicationName;
+	}
+
+	public void setApplicationName(String applicationName) {
+		this.applicationName = applicationName;
+	}
+
+	public boolean isDestructive() {
+		return destructive;
+	}
+
+	public void setDestructive(boolean destructive) {
+		this.destructive = destructive;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public Map<Byte, UUID> getCheckpoints() {
+		return checkpoints == null ? Collections.emptyMap() : checkpoints;
+	}
+
+	public void setCheckpoints(Map<Byte, UUID> checkpoints) {
+		this.checkpoints = checkpoints;
+	}
+
+	public Map<Byte, Long> getProcessedByPartition() {
+		return processedByPartition == null ? Collections.emptyMap() : processedByPartition;
+	}
+
+	public void setProcessedByPartition(Map<Byte, Long> processedByPartition) {
+		this.processedByPartition = processedByPartition;
+	}
+
+	public Set<Byte> getCompleted() {
+		return completed == null ? Collections.emptySet() : completed;
+	}
+
+	public void setCompleted(Set<Byte> completed) {
+		this.completed = completed;
+	}
+
+	public String getOwner() {
+		return owner;
+	}
+
+	public void setOwner(String owner) {
+		this.owner = owner;
+	}
+
+	public Date getLeaseExpires() {
+		return leaseExpires;
+	}
+
+	public void setLeaseExpires(Date leaseExpires) {
+		this.leaseExpires = leaseExpires;
+	}
+
+	public Date getStarted() {
+		return started;
+	}
+
+	public void setStarted(Date started) {
+		this.started = started;
+	}
+
+	public Date getUpdated() {
+		return updated;
+	}
+
+	public void setUpdated(Date updated) {
+		this.updated = updated;
+	}
+
+	/**
+	 * Total number of removed users.
+	 */
+	@Transient
+	public long getProcessed() {
+		return getProcessedByPartition().values().stream().mapToLong(Long::longValue).sum();
+	}
+
+	/**
+	 * Number of fully processed partitions.
+	 */
+	@Transient
+	public int getCompletedPartitions() {
+		return getCompleted().size();
+	}
+
+	@Transient
+	@JsonIgnore
+	public boolean isRunning() {
+		return Status.RUNNING.name().equals(status);
+	}
+
+	/**
+	 * True if no node renewed the lease of the job in time (e.g the owner was
+	 * shut down or crashed).
+	 */
+	@Transient
+	@JsonIgnore
+	public boolean isLeaseExpired(Date now) {
+		return leaseExpires == null || !leaseExpires.after(now);
+	}
+}
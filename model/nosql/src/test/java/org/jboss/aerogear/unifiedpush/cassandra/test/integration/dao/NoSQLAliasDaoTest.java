@@ -1,9 +1,19 @@
 package org.jboss.aerogear.unifiedpush.cassandra.test.integration.dao;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import org.jboss.aerogear.unifiedpush.api.Alias;
 import org.jboss.aerogear.unifiedpush.cassandra.CassandraConfig;
@@ -140,4 +150,57 @@ public class NoSQLAliasDaoTest extends FixedKeyspaceCreatingIntegrationTest {
 		aliasDao.create(alias1);
 		aliasDao.create(alias2);
 	}
-}
+
+	@Test
+	// Users spread over all month partitions, one row per user.
+	public void testFindUserIdsAcrossMonths() {
+		UUID pushApplicationId = UUID.randomUUID();
+		Set<UUID> userIds = new HashSet<>();
+
+		LocalDateTime date = LocalDateTime.of(2017, 1, 15, 10, 0);
+		for (int i = 0; i < 24; i++) {
+			UUID userId = UUIDs.startOf(date.plusMonths(i / 2).plusMinutes(i).toInstant(ZoneOffset.UTC).toEpochMilli());
+			userIds.add(userId);
+
+			// Email, lower case email and other, 3 rows per user.
+			Alias alias = new Alias(pushApplicationId, userId, "User" + i + "@aerogear.org");
+			alias.setOther("phone" + i);
+			aliasDao.create(alias);
+		}
+
+		List<UUID> found = aliasDao.findUserIds(pushApplicationId).map(row -> row.getUUID(0))
+				.collect(Collectors.toList());
+
+		assertEquals(24, found.size());
+		assertEquals(userIds, new HashSet<>(found));
+		assertEquals(24, aliasDao.findAll(pushApplicationId).size());
+	}
+
+	@Test
+	public void testBulkCreateFindAndRemove() {
+		UUID pushApplicationId = UUID.randomUUID();
+		List<Alias> aliases = new ArrayList<>();
+
+		// More aliases than a single IN query.
+		for (int i = 0; i < 120; i++) {
+			Alias alias = new Alias(pushApplicationId, UUIDs.timeBased(), "Bulk" + i + "@aerogear.org");
+			alias.setOther("bulk-phone" + i);
+			aliases.add(alias);
+		}
+
+		aliasDao.create(aliases);
+		assertEquals(120, aliasDao.findAll(pushApplicationId).size());
+
+		// Case insensitive lookup, unknown aliases are missing
+		Map<String, UUID> userIds = aliasDao.findUserIds(pushApplicationId,
+				Arrays.asList("BULK0@AEROGEAR.ORG", "bulk-phone119", "missing@aerogear.org"));
+		assertEquals(2, userIds.size());
+		assertEquals(aliases.get(0).getId(), userIds.get("BULK0@AEROGEAR.ORG"));
+		assertEquals(aliases.get(119).getId(), userIds.get("bulk-phone119"));
+
+		// Email, lower case email and other
+		assertEquals(3, aliasDao.remove(pushApplicationId, Arrays.asList(aliases.get(0).getId())).size());
+		assertNull(aliasDao.findOne(pushApplicationId, aliases.get(0).getId()));
+		assertEquals(119, aliasDao.findAll(pushApplicationId).size());
+	}
+}
\ No newline at end of file
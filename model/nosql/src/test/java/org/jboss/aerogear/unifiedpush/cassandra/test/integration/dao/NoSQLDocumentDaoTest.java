@@ -2,6 +2,8 @@ package org.jboss.aerogear.unifiedpush.cassandra.test.integration.dao;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -308,4 +310,97 @@ public class NoSQLDocumentDaoTest extends FixedKeyspaceCreatingIntegrationTest {
 			Assert.fail(e.getMessage());
 		}
 	}
+
+	@Test
+	public void testSnapshotsNewestFirst() {
+		UUID pushApplicationId = UUID.randomUUID();
+
+		Alias alias1 = new Alias(pushApplicationId, UUIDs.timeBased(), "supprot@aerogear.org");
+		aliasDao.create(alias1);
+
+		DocumentKey key = new DocumentKey(new DocumentMetadata(pushApplicationId.toString(), "STATUS", alias1));
+		Assert.assertTrue(documentDao.findSnapshots(key, new QueryOptions()).isEmpty());
+
+		UUID latest = null;
+		for (int i = 0; i < 5; i++) {
+			DocumentKey docKey = new DocumentKey(new DocumentMetadata(pushApplicationId.toString(), "STATUS", alias1));
+			documentDao.create(new DocumentContent(docKey, "{TEST CONTENT " + i + "}", i % 2 == 0 ? "ID1" : "ID2"));
+			latest = docKey.getSnapshot();
+		}
+
+		assertEquals(5, documentDao.findSnapshots(key, new QueryOptions()).size());
+		assertEquals(2, documentDao.findSnapshots(key, new QueryOptions(null, null, null, 2)).size());
+		assertEquals(3, documentDao.findSnapshots(key, new QueryOptions("ID1")).size());
+
+		assertEquals(latest, documentDao.findSnapshots(key, new QueryOptions()).get(0));
+		assertEquals(latest, documentDao.findSnapshots(key, new QueryOptions("ID1")).get(0));
+	}
+
+	@Test
+	public void testCountAndFindResolvedSnapshots() {
+		UUID pushApplicationId = UUID.randomUUID();
+
+		Alias alias1 = new Alias(pushApplicationId, UUIDs.timeBased(), "supprot@aerogear.org");
+		aliasDao.create(alias1);
+
+		DocumentKey key = new DocumentKey(new DocumentMetadata(pushApplicationId.toString(), "STATUS", alias1));
+		assertEquals(0, documentDao.count(key, new QueryOptions()));
+
+		for (int i = 0; i < 5; i++) {
+			DocumentKey docKey = new DocumentKey(new DocumentMetadata(pushApplicationId.toString(), "STATUS", alias1));
+			documentDao.create(new DocumentContent(docKey, "{TEST CONTENT " + i + "}", i % 2 == 0 ? "ID1" : "ID2"));
+		}
+
+		assertEquals(5, documentDao.count(key, new QueryOptions()));
+		assertEquals(2, documentDao.count(key, new QueryOptions(null, null, null, 2)));
+		assertEquals(3, documentDao.count(key, new QueryOptions("ID1")));
+
+		List<UUID> snapshots = documentDao.findSnapshots(key, new QueryOptions());
+
+		// Documents written after snapshots were resolved are not returned.
+		DocumentKey newer = new DocumentKey(new DocumentMetadata(pushApplicationId.toString(), "STATUS", alias1));
+		documentDao.create(new DocumentContent(newer, "{TEST CONTENT 5}", "ID1"));
+
+		List<DocumentContent> documents = documentDao.find(key, new QueryOptions(), snapshots)
+				.collect(Collectors.toList());
+		assertEquals(5, documents.size());
+		assertEquals(snapshots.get(0), documents.get(0).getKey().getSnapshot());
+
+		List<UUID> byId = documentDao.findSnapshots(key, new QueryOptions("ID1"));
+		documents = documentDao.find(key, new QueryOptions("ID1"), byId).collect(Collectors.toList());
+		assertEquals(3, documents.size());
+	}
+
+	@Test
+	public void testLatestForAliasesKeepsOrder() {
+		UUID pushApplicationId = UUID.randomUUID();
+		List<Alias> aliases = new ArrayList<>();
+
+		// More aliases then the default in-flight window, every third
+		// alias has no document.
+		for (int i = 0; i < 40; i++) {
+			Alias alias = new Alias(pushApplicationId, UUIDs.timeBased(), "alias" + i + "@aerogear.org");
+			aliases.add(alias);
+
+			if (i % 3 == 0)
+				continue;
+
+			DocumentKey key = new DocumentKey(new DocumentMetadata(pushApplicationId.toString(), "STATUS", alias));
+			documentDao.create(new DocumentContent(key, "{OLD " + i + "}", "ID1"));
+
+			key = new DocumentKey(new DocumentMetadata(pushApplicationId.toString(), "STATUS", alias));
+			documentDao.create(new DocumentContent(key, "{NEW " + i + "}", "ID1"));
+		}
+
+		List<DocumentContent> docs = documentDao.findLatestForAliases(new DocumentKey(pushApplicationId, "STATUS"),
+				aliases, "ID1");
+
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			if (i % 3 != 0)
+				expected.add("{NEW " + i + "}");
+		}
+
+		assertEquals(expected, docs.stream().map(DocumentContent::getContent).collect(Collectors.toList()));
+	}
 }
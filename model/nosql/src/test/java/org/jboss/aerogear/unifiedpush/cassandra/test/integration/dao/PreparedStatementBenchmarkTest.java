@@ -0,0 +1,90 @@
+package org.jboss.aerogear.unifiedpush.cassandra.test.integration.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.jboss.aerogear.unifiedpush.api.Alias;
+import org.jboss.aerogear.unifiedpush.cassandra.CassandraConfig;
+import org.jboss.aerogear.unifiedpush.cassandra.dao.AliasDao;
+import org.jboss.aerogear.unifiedpush.cassandra.test.integration.FixedKeyspaceCreatingIntegrationTest;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.data.cassandra.core.cql.CassandraAccessor;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.utils.UUIDs;
+
+/**
+ * Compare inline literal CQL (parsed per request) against bound prepared
+ * statements for the alias lookup used by NoSQLUserDaoImpl. Timings are only
+ * logged, embedded Cassandra numbers are not stable enough to assert on, so
+ * the benchmark is not part of the regular build; remove the @Ignore to run it.
+ */
+@Ignore("benchmark, run manually")
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = CassandraConfig.class)
+public class PreparedStatementBenchmarkTest extends FixedKeyspaceCreatingIntegrationTest {
+	private final Logger logger = LoggerFactory.getLogger(PreparedStatementBenchmarkTest.class);
+
+	private static final int WARMUP = 200;
+	private static final int ITERATIONS = 2000;
+
+	@Autowired
+	private AliasDao aliasDao;
+	@Autowired
+	private CassandraOperations operations;
+
+	@Test
+	public void aliasLookup() {
+		UUID pushApplicationId = UUID.randomUUID();
+		Alias alias = new Alias(pushApplicationId, UUIDs.timeBased(), "Benchmark@aerogear.org");
+		aliasDao.create(alias);
+
+		// DAO path, bound statements
+		Alias found = aliasDao.findByAlias(pushApplicationId, alias.getEmail());
+		assertNotNull(found);
+		assertEquals(alias.getId(), found.getId());
+
+		Session session = ((CassandraAccessor) operations.getCqlOperations()).getSession();
+		String literal = "SELECT push_application_id, user_id, alias FROM users_by_alias_application WHERE alias IN ('"
+				+ alias.getEmail() + "','" + alias.getEmail().toLowerCase() + "') AND push_application_id="
+				+ pushApplicationId;
+		PreparedStatement prepared = session.prepare(
+				"SELECT push_application_id, user_id, alias FROM users_by_alias_application WHERE alias IN ? AND push_application_id = ?");
+
+		for (int i = 0; i < WARMUP; i++) {
+			session.execute(new SimpleStatement(literal));
+			session.execute(prepared.bind(Arrays.asList(alias.getEmail(), alias.getEmail().toLowerCase()),
+					pushApplicationId));
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			assertEquals(2, session.execute(new SimpleStatement(literal)).all().size());
+		}
+		long simple = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			assertEquals(2, session.execute(prepared.bind(
+					Arrays.asList(alias.getEmail(), alias.getEmail().toLowerCase()), pushApplicationId)).all()
+					.size());
+		}
+		long bound = System.nanoTime() - start;
+
+		logger.info("Alias lookup, {} iterations: simple statement {} us/op, prepared statement {} us/op",
+				ITERATIONS, simple / ITERATIONS / 1000, bound / ITERATIONS / 1000);
+	}
+}
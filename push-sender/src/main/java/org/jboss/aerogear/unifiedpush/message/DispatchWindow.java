@@ -0,0 +1,188 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message;
+
+import static org.jboss.aerogear.unifiedpush.system.ConfigurationUtils.tryGetIntegerProperty;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.aerogear.unifiedpush.message.token.TokenLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounds the number of token batches that were handed to the dispatcher and are not delivered yet.
+ *
+ * The {@link TokenLoader} leases a slot before it pulls the next batch from the database, hands the {@link Lease}
+ * over with the batch, and the {@link NotificationDispatcher} gives it back once the push network answered for the
+ * batch or the batch failed. A loader waiting for a slot is woken up as soon as a batch is delivered, so slow push
+ * networks slow down the database cursors instead of piling up notifications in the senders.
+ *
+ * A lease that is not given back within the lease timeout is reclaimed by the next loader waiting for a slot, so a
+ * batch whose delivery was never reported cannot stall the dispatching for good.
+ *
+ * Leases are counted per variant as well, so the senders can size their connections by the backlog of a variant
+ * rather than by the backlog of all variants.
+ */
+@Component
+public class DispatchWindow {
+
+	public static final String MAX_IN_FLIGHT_BATCHES = "aerogear.dispatch.maxInFlightBatches";
+	public static final String SLOT_LEASE_TIMEOUT = "aerogear.dispatch.slotLeaseTimeout";
+
+	private static final int DEFAULT_MAX_IN_FLIGHT_BATCHES = 256;
+	private static final int DEFAULT_SLOT_LEASE_TIMEOUT_IN_SECONDS = 600;
+
+	private final Logger logger = LoggerFactory.getLogger(DispatchWindow.class);
+
+	private final int capacity;
+	private final long leaseTimeoutNanos;
+	private final Semaphore slots;
+	private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+	private final ConcurrentMap<String, Integer> inFlightByVariant = new ConcurrentHashMap<>();
+	private final AtomicLong reclaimed = new AtomicLong();
+
+	public DispatchWindow() {
+		this(Math.max(1, tryGetIntegerProperty(MAX_IN_FLIGHT_BATCHES, DEFAULT_MAX_IN_FLIGHT_BATCHES)),
+				Math.max(1, tryGetIntegerProperty(SLOT_LEASE_TIMEOUT, DEFAULT_SLOT_LEASE_TIMEOUT_IN_SECONDS)),
+				TimeUnit.SECONDS);
+	}
+
+	public DispatchWindow(int capacity) {
+		this(capacity, DEFAULT_SLOT_LEASE_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+	}
+
+	public DispatchWindow(int capacity, long leaseTimeout, TimeUnit unit) {
+		this.capacity = capacity;
+		this.leaseTimeoutNanos = unit.toNanos(leaseTimeout);
+		this.slots = new Semaphore(capacity);
+	}
+
+	/**
+	 * Leases a slot for a batch if one is free right away.
+	 *
+	 * @param variantID the variant of the batch
+	 * @return the lease, or null if all slots are taken
+	 */
+	public Lease tryAcquire(String variantID) {
+		if (slots.tryAcquire() || (reclaimExpired() > 0 && slots.tryAcquire())) {
+			return lease(variantID);
+		}
+		return null;
+	}
+
+	/**
+	 * Waits for a slot until a batch is delivered or the timeout elapses.
+	 *
+	 * @param variantID the variant of the batch
+	 * @return the lease, or null if no slot was freed in time
+	 */
+	public Lease tryAcquire(String variantID, long timeout, TimeUnit unit) throws InterruptedException {
+		reclaimExpired();
+		return slots.tryAcquire(timeout, unit) ? lease(variantID) : null;
+	}
+
+	/**
+	 * @return number of batches that hold a slot
+	 */
+	public int getInFlight() {
+		return Math.max(0, capacity - slots.availablePermits());
+	}
+
+	/**
+	 * @param variantID the variant
+	 * @return number of batches of the variant that hold a slot
+	 */
+	public int getInFlight(String variantID) {
+		return inFlightByVariant.getOrDefault(variantID, 0);
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return number of slots that were taken back because their batch was not reported in time
+	 */
+	public long getReclaimed() {
+		return reclaimed.get();
+	}
+
+	private Lease lease(String variantID) {
+		final Lease lease = new Lease(variantID, System.nanoTime() + leaseTimeoutNanos);
+		inFlightByVariant.merge(variantID, 1, Integer::sum);
+		leases.add(lease);
+		return lease;
+	}
+
+	private int reclaimExpired() {
+		final long now = System.nanoTime();
+		int expired = 0;
+		for (Lease lease : leases) {
+			if (now - lease.expiresAt > 0 && lease.release()) {
+				expired++;
+			}
+		}
+		if (expired > 0) {
+			reclaimed.addAndGet(expired);
+			logger.warn("Reclaimed {} dispatch slots of batches whose delivery was not reported within {} seconds",
+					expired, TimeUnit.NANOSECONDS.toSeconds(leaseTimeoutNanos));
+		}
+		return expired;
+	}
+
+	/**
+	 * The slot of a single batch; giving it back more than once, or after it was reclaimed, has no effect.
+	 */
+	public final class Lease {
+
+		private final String variantID;
+		private final long expiresAt;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private Lease(String variantID, long expiresAt) {
+			this.variantID = variantID;
+			this.expiresAt = expiresAt;
+		}
+
+		public String getVariantID() {
+			return variantID;
+		}
+
+		/**
+		 * Gives back the slot of a batch that was delivered, failed or was not dispatched after all.
+		 *
+		 * @return true if the slot was still held by this lease
+		 */
+		public boolean release() {
+			if (!released.compareAndSet(false, true)) {
+				return false;
+			}
+			leases.remove(this);
+			inFlightByVariant.computeIfPresent(variantID, (variant, inFlight) -> inFlight == 1 ? null : inFlight - 1);
+			slots.release();
+			return true;
+		}
+	}
+}
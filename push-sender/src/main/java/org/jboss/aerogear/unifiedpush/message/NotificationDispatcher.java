@@ -16,14 +16,14 @@
  */
 package org.jboss.aerogear.unifiedpush.message;
 
-import java.util.Collection;
-
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 
 import org.jboss.aerogear.unifiedpush.api.FlatPushMessageInformation;
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithTokens;
+import org.jboss.aerogear.unifiedpush.message.holder.TokenBatch;
+import org.jboss.aerogear.unifiedpush.message.sender.BatchDeliveryResult;
 import org.jboss.aerogear.unifiedpush.message.sender.NotificationSenderCallback;
 import org.jboss.aerogear.unifiedpush.message.sender.PushNotificationSender;
 import org.jboss.aerogear.unifiedpush.message.token.TokenLoader;
@@ -66,23 +66,25 @@ public class NotificationDispatcher {
     public void sendMessagesToPushNetwork(MessageHolderWithTokens msg) {
         final Variant variant = msg.getVariant();
         final UnifiedPushMessage unifiedPushMessage = msg.getUnifiedPushMessage();
-        final Collection<String> deviceTokens = msg.getDeviceTokens();
+        final TokenBatch deviceTokens = msg.getTokenBatch();
 
         logger.info(String.format("Received UnifiedPushMessage from queue, will now trigger the Push Notification delivery for the %s variant (%s)", variant.getType().getTypeName(), variant.getVariantID()));
 
+        final SenderServiceCallback callback = new SenderServiceCallback(variant, deviceTokens.size(), msg.getPushMessageInformation(), msg.getDispatchLease());
+        if (deviceTokens.isEmpty()) {
+            // senders do not answer for empty batches
+            callback.delivered();
+            return;
+        }
+
         try {
         	// Any Unhandled exception will break this Flux stream
     		BeanFactoryAnnotationUtils.qualifiedBeanOfType(
     				context.getAutowireCapableBeanFactory(), PushNotificationSender.class, variant.getType().name())
-			    		.sendPushMessage(variant, deviceTokens, unifiedPushMessage, msg.getPushMessageInformation().getId(),
-			                    new SenderServiceCallback(
-			                            variant,
-			                            deviceTokens.size(),
-			                            msg.getPushMessageInformation()
-			                    )
-			    		);
+			    		.sendPushMessage(variant, deviceTokens, unifiedPushMessage, msg.getPushMessageInformation().getId(), callback);
         } catch (Throwable e) {
         	logger.error("Unable to send push notification for %s variant ", variant.getName());
+        	callback.delivered();
         	// TODO - implement retry policy
 		}
     }
@@ -91,22 +93,46 @@ public class NotificationDispatcher {
         private final Variant variant;
         private final int tokenSize;
         private final FlatPushMessageInformation pushMessageInformation;
+        private final DispatchWindow.Lease dispatchLease;
 
-        public SenderServiceCallback(Variant variant, int tokenSize, FlatPushMessageInformation pushMessageInformation) {
+        public SenderServiceCallback(Variant variant, int tokenSize, FlatPushMessageInformation pushMessageInformation, DispatchWindow.Lease dispatchLease) {
             this.variant = variant;
             this.tokenSize = tokenSize;
             this.pushMessageInformation = pushMessageInformation;
+            this.dispatchLease = dispatchLease;
         }
 
         @Override
         public void onSuccess() {
             logger.debug(String.format("Sent '%s' message to '%d' devices", variant.getType().getTypeName(), tokenSize));
+            delivered();
+        }
+
+        @Override
+        public void onComplete(final BatchDeliveryResult result) {
+            logger.info(String.format("Delivered '%s' batch: %d accepted, %d rejected %s, %d failed", variant.getType().getTypeName(),
+                    result.getAccepted(), result.getRejected(), result.getRejectionsByReason(), result.getFailed()));
+            NotificationSenderCallback.super.onComplete(result);
         }
 
         @Override
         public void onError(final String reason) {
             logger.warn(String.format("Error on '%s' delivery: %s", variant.getType().getTypeName(), reason));
-            pushMessageMetricsService.appendError(pushMessageInformation, variant, reason);
+            try {
+                pushMessageMetricsService.appendError(pushMessageInformation, variant, reason);
+            } finally {
+                delivered();
+            }
+        }
+
+        /**
+         * Frees the slot of the batch in the {@link DispatchWindow}, once, however the sender reported the batch.
+         * A batch reported after its lease expired no longer holds a slot.
+         */
+        void delivered() {
+            if (dispatchLease != null && !dispatchLease.release()) {
+                logger.debug(String.format("Slot of '%s' batch was already reclaimed", variant.getType().getTypeName()));
+            }
         }
     }
 }
@@ -31,6 +31,7 @@ import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithVariants;
 import org.jboss.aerogear.unifiedpush.message.token.TokenLoader;
 import org.jboss.aerogear.unifiedpush.service.GenericVariantService;
 import org.jboss.aerogear.unifiedpush.service.VerificationService;
+import org.jboss.aerogear.unifiedpush.service.dashboard.DashboardCounters;
 import org.jboss.aerogear.unifiedpush.service.metrics.IPushMessageMetricsService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,6 +60,8 @@ public class NotificationRouter {
     private GenericVariantService genericVariantService;
     @Inject
     private IPushMessageMetricsService metricsService;
+    @Inject
+    private DashboardCounters dashboardCounters;
 
     @Inject
     private TopicProcessor<MessageHolderWithVariants> dispatchVariantMessageEvent;
@@ -117,6 +120,7 @@ public class NotificationRouter {
                         message.getIpAddress(),
                         message.getClientIdentifier()
                 );
+        dashboardCounters.messageSubmitted(pushApplication.getPushApplicationID());
 
 		// we split the variants per type since each type may have its own
 		// configuration (e.g. batch size)
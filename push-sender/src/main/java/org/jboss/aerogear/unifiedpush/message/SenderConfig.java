@@ -20,14 +20,15 @@ import reactor.core.publisher.WorkQueueProcessor;
 public class SenderConfig {
 	public static final int BUFFER_SIZE = 256 * 256;
 
+	// token batches and token ranges are published by all token loader threads at the same time
 	@Bean
 	public WorkQueueProcessor<MessageHolderWithTokens> getTokensProcessor() {
-		return WorkQueueProcessor.<MessageHolderWithTokens>builder().bufferSize(BUFFER_SIZE).build();
+		return WorkQueueProcessor.<MessageHolderWithTokens>builder().bufferSize(BUFFER_SIZE).share(true).build();
 	}
 
 	@Bean
 	public TopicProcessor<MessageHolderWithVariants> getBatchProcessor() {
-		return TopicProcessor.<MessageHolderWithVariants>builder().bufferSize(BUFFER_SIZE).build();
+		return TopicProcessor.<MessageHolderWithVariants>builder().bufferSize(BUFFER_SIZE).share(true).build();
 	}
 
 	@Bean
@@ -0,0 +1,115 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.cache;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.turo.pushy.apns.ApnsClient;
+
+/**
+ * One connection of a variant's connection group (see {@link SimpleApnsClientCache}), together with its window of
+ * in-flight notifications.
+ *
+ * Notifications are handed to the connection with {@link #submit(Runnable)}, which never blocks: a notification is
+ * sent right away if a stream of the connection is free, otherwise it waits in the queue of the connection and is sent
+ * by the response that frees up a stream (see {@link #release()}).
+ */
+public class ApnsConnection {
+
+    private final ApnsClient client;
+    private final Semaphore window;
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger drains = new AtomicInteger();
+    private volatile long lastUsed = System.nanoTime();
+
+    ApnsConnection(ApnsClient client, int maxInFlight) {
+        this.client = client;
+        this.window = new Semaphore(maxInFlight);
+    }
+
+    public ApnsClient getClient() {
+        return client;
+    }
+
+    /**
+     * Sends a notification as soon as a stream of the connection is free.
+     *
+     * @param notification sends the notification, must not throw and must call {@link #release()} once APNs responded
+     */
+    public void submit(Runnable notification) {
+        inFlight.incrementAndGet();
+        lastUsed = System.nanoTime();
+        waiting.add(notification);
+        drain();
+    }
+
+    /**
+     * Frees up a stream once the notification was answered and sends the next waiting notification, if any.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+        window.release();
+        drain();
+    }
+
+    /**
+     * Sends the waiting notifications while there are free streams. Only one thread drains at a time, the others leave
+     * their work to it; so a notification answered while being sent does not recurse into sending the next one.
+     */
+    private void drain() {
+        if (drains.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            while (!waiting.isEmpty() && window.tryAcquire()) {
+                final Runnable notification = waiting.poll();
+                if (notification == null) {
+                    window.release();
+                    break;
+                }
+                notification.run();
+            }
+        } while (drains.decrementAndGet() != 0);
+    }
+
+    /**
+     * @return number of notifications handed to the connection and not answered by APNs yet, sent or waiting for a
+     * free stream
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    boolean isConnected() {
+        return client.isConnected();
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * Marks the connection as used by a batch that is about to submit its notifications.
+     */
+    void touch() {
+        lastUsed = System.nanoTime();
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.cache;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.jboss.aerogear.unifiedpush.api.iOSVariant;
+import org.jboss.aerogear.unifiedpush.message.sender.apns.ApnsUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import net.jodah.expiringmap.ExpirationPolicy;
+import net.jodah.expiringmap.ExpiringMap;
+
+/**
+ * Caches what APNs sender needs for every batch of a push message but what doesn't change between the batches:
+ * the default topic read from the variant's certificate and the serialized payload of the push message.
+ *
+ * Topics are invalidated when the variant is updated (see {@link SimpleApnsClientCache#disconnectOnChange}) and
+ * whenever the certificate of the variant differs from the one the topic was read from, so a variant updated on
+ * another node is never sent with a stale topic.
+ */
+@Service
+public class ApnsMessageCache {
+
+    // payloads are only needed while the batches of the push message are being sent
+    private static final long PAYLOAD_EXPIRATION_IN_MINUTES = 30;
+    private static final int MAX_CACHED_PAYLOADS = 10000;
+
+    private final Logger logger = LoggerFactory.getLogger(ApnsMessageCache.class);
+
+    private final ConcurrentMap<String, Topic> topics = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, String> payloads = ExpiringMap.builder()
+            .expiration(PAYLOAD_EXPIRATION_IN_MINUTES, TimeUnit.MINUTES)
+            .expirationPolicy(ExpirationPolicy.CREATED)
+            .maxSize(MAX_CACHED_PAYLOADS)
+            .build();
+
+    /**
+     * Returns the default APNs topic of the variant, the certificate is parsed only when it changed.
+     *
+     * @param variant the iOS variant
+     * @return the topic, or null if the certificate doesn't contain one
+     */
+    public String getDefaultTopic(final iOSVariant variant) {
+        final int fingerprint = fingerprint(variant);
+        Topic topic = topics.get(variant.getVariantID());
+        if (topic == null || topic.fingerprint != fingerprint) {
+            logger.debug("Reading default topic from certificate of variant {}", variant.getVariantID());
+            topic = new Topic(fingerprint, ApnsUtil.readDefaultTopic(variant.getCertificate(), variant.getPassphrase().toCharArray()));
+            topics.put(variant.getVariantID(), topic);
+        }
+        return topic.name;
+    }
+
+    /**
+     * Returns the payload of the push message for the variant, built by the given builder only for the first batch.
+     *
+     * @param pushMessageInformationId the push message
+     * @param variantID the variant
+     * @param builder builds the payload; exceptions it throws are propagated and nothing is cached
+     * @return the payload
+     */
+    public String getPayload(final String pushMessageInformationId, final String variantID, final Supplier<String> builder) {
+        return payloads.computeIfAbsent(pushMessageInformationId + ":" + variantID, key -> builder.get());
+    }
+
+    /**
+     * Removes everything cached for the variant.
+     *
+     * @param variant the updated variant
+     */
+    public void invalidate(final iOSVariant variant) {
+        topics.remove(variant.getVariantID());
+        payloads.keySet().removeIf(key -> key.endsWith(":" + variant.getVariantID()));
+    }
+
+    private static int fingerprint(final iOSVariant variant) {
+        return Objects.hash(Arrays.hashCode(variant.getCertificate()), variant.getPassphrase());
+    }
+
+    private static class Topic {
+        private final int fingerprint;
+        private final String name;
+
+        Topic(int fingerprint, String name) {
+            this.fingerprint = fingerprint;
+            this.name = name;
+        }
+    }
+}
@@ -6,7 +6,7 @@
  * you may not use this file except in compliance with the License.
  * You may obtain a copy of the License at
  *
- * 	http://www.apache.org/licenses/LICENSE-2.0
+ *     http://www.apache.org/licenses/LICENSE-2.0
  *
  * Unless required by applicable law or agreed to in writing, software
  * distributed under the License is distributed on an "AS IS" BASIS,
@@ -16,9 +16,20 @@
  */
 package org.jboss.aerogear.unifiedpush.message.cache;
 
+import static org.jboss.aerogear.unifiedpush.system.ConfigurationUtils.tryGetIntegerProperty;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -26,6 +37,7 @@ import javax.inject.Inject;
 
 import org.jboss.aerogear.unifiedpush.api.iOSVariant;
 import org.jboss.aerogear.unifiedpush.event.iOSVariantUpdateEvent;
+import org.jboss.aerogear.unifiedpush.message.metrics.DispatchQueueMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -39,14 +51,48 @@ import net.jodah.expiringmap.ExpirationPolicy;
 import net.jodah.expiringmap.ExpiringMap;
 import reactor.core.publisher.WorkQueueProcessor;
 
+/**
+ * Keeps a group of APNs connections for every iOS variant (and its production/development flag).
+ *
+ * A batch is sent through the connection of the group with the least notifications in flight. The group starts with one
+ * connection and grows up to {@link #MAX_CONNECTIONS_PER_VARIANT} connections while all its connections are busy and many
+ * dispatched batches of the variant are not delivered yet; connections above the needed size are closed once they are idle,
+ * connections that failed or lost their connection to APNs are removed and closed. Connections are created under a lock of
+ * the variant's group, so connecting to APNs for one variant doesn't block the others.
+ */
 @Service
 public class SimpleApnsClientCache {
 
+    public static final String MAX_CONNECTIONS_PER_VARIANT = "aerogear.ios.maxConnectionsPerVariant";
+    public static final String MAX_IN_FLIGHT_NOTIFICATIONS = "aerogear.ios.maxInFlightNotifications";
+
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_VARIANT = 4;
+    // APNs advertises 1000 concurrent streams per connection
+    private static final int DEFAULT_MAX_IN_FLIGHT_NOTIFICATIONS = 1000;
+    // queued batches that justify one more connection
+    private static final int QUEUED_BATCHES_PER_CONNECTION = 8;
+    private static final long IDLE_CONNECTION_TIMEOUT_IN_NANOS = TimeUnit.MINUTES.toNanos(5);
+
     private final Logger logger = LoggerFactory.getLogger(SimpleApnsClientCache.class);
 
+    private final int maxConnectionsPerVariant = Math.max(1, tryGetIntegerProperty(MAX_CONNECTIONS_PER_VARIANT, DEFAULT_MAX_CONNECTIONS_PER_VARIANT));
+    private final int maxInFlightNotifications = Math.max(1, tryGetIntegerProperty(MAX_IN_FLIGHT_NOTIFICATIONS, DEFAULT_MAX_IN_FLIGHT_NOTIFICATIONS));
+
+    private final ExecutorService connectionExecutor = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "apns-connector");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     @Inject
     private WorkQueueProcessor<iOSVariantUpdateEvent> variantUpdateEventEvent;
 
+    @Inject
+    private DispatchQueueMetrics dispatchQueueMetrics;
+
+    @Inject
+    private ApnsMessageCache apnsMessageCache;
+
     @PostConstruct
     public void subscribe(){
 		for (int i = 0; i < Runtime.getRuntime().availableProcessors(); i++) {
@@ -54,52 +100,57 @@ public class SimpleApnsClientCache {
 		}
     }
 
-    final ConcurrentMap<String, ApnsClient> apnsClientExpiringMap;
+    final ConcurrentMap<String, ConnectionGroup> apnsClientExpiringMap;
     {
         apnsClientExpiringMap = ExpiringMap.builder()
 
                 // TODO: would be nice if it could be configured via System property:
                 .expiration(12, TimeUnit.HOURS)
                 .expirationPolicy(ExpirationPolicy.ACCESSED)
-                .asyncExpirationListener((ExpirationListener<String, ApnsClient>) (variantID, apnsClient) -> {
-
-                    if (apnsClient.isConnected()) {
-                        logger.info("APNs connection for iOS Variant ({}) was inactive last 12 hours, disconnecting...", variantID);
-
-                        final Future<Void> disconnectFuture = apnsClient.disconnect();
-
-                        disconnectFuture.addListener(future -> {
-
-                            if (future.isSuccess()) {
-                                logger.debug("Disconnected from APNS due to inactive connection for iOS Variant ({})", variantID);
-                            } else {
-                                final Throwable t = future.cause();
-                                logger.warn(t.getMessage(), t);
-                            }
-                        });
-                    }
+                .asyncExpirationListener((ExpirationListener<String, ConnectionGroup>) (variantID, group) -> {
+                    logger.info("APNs connections for iOS Variant ({}) were inactive last 12 hours, disconnecting...", variantID);
+                    group.close();
                 }).build();
     }
 
-    public ApnsClient getApnsClientForVariant(final iOSVariant iOSVariant, final ServiceConstructor<ApnsClient> constructor) {
+    /**
+     * Returns the least loaded connection of the variant's group, connecting to APNs if the group has no connection yet.
+     *
+     * @param iOSVariant the variant
+     * @param constructor creates and connects a new client
+     * @return the connection to send the batch through
+     */
+    public ApnsConnection getApnsConnectionForVariant(final iOSVariant iOSVariant, final ServiceConstructor<ApnsClient> constructor) {
         final String connectionKey = extractConnectionKey(iOSVariant);
-        ApnsClient client = apnsClientExpiringMap.get(connectionKey);
+        ConnectionGroup group = apnsClientExpiringMap.get(connectionKey);
+        if (group == null) {
+            final ConnectionGroup newGroup = new ConnectionGroup(connectionKey, iOSVariant.getVariantID());
+            group = apnsClientExpiringMap.putIfAbsent(connectionKey, newGroup);
+            if (group == null) {
+                group = newGroup;
+            }
+        }
 
-        if (client == null) {
+        ApnsConnection connection = group.select();
+        if (connection == null) {
             logger.debug("no cached connection for {}, establishing it", connectionKey);
-            synchronized (apnsClientExpiringMap) {
-                client = constructor.construct();
-
-                if (client.isConnected()) {
-                    putApnsClientForVariantID(connectionKey, client);
-                }
-
-                return client; // return the newly connected client
-            }
+            connection = group.connect(constructor);
         } else {
             logger.debug("reusing cached connection for {}", connectionKey);
-            return client; // we had it already
+            group.adapt(constructor);
         }
+        return connection;
+    }
+
+    /**
+     * Returns the least loaded client of the variant's group, connecting to APNs if the group has no connection yet.
+     *
+     * @param iOSVariant the variant
+     * @param constructor creates and connects a new client
+     * @return the client
+     */
+    public ApnsClient getApnsClientForVariant(final iOSVariant iOSVariant, final ServiceConstructor<ApnsClient> constructor) {
+        return getApnsConnectionForVariant(iOSVariant, constructor).getClient();
     }
 
     /**
@@ -109,11 +160,12 @@ public class SimpleApnsClientCache {
     public void disconnectOnChange(final iOSVariantUpdateEvent iOSVariantUpdateEvent) {
         final iOSVariant variant = iOSVariantUpdateEvent.getiOSVariant();
         final String connectionKey = extractConnectionKey(variant);
-        final ApnsClient client = apnsClientExpiringMap.remove(connectionKey);
+        final ConnectionGroup group = apnsClientExpiringMap.remove(connectionKey);
+        apnsMessageCache.invalidate(variant);
         logger.debug("Removed client from cache for {}", variant.getVariantID());
         try{
-	        if (client != null) {
-	            tearDownApnsHttp2Connection(client);
+	        if (group != null) {
+	            group.close();
 	        }
         }catch (Throwable e) {
         	logger.error("Error while disconnecting ios variant", e);
@@ -128,30 +180,190 @@ public class SimpleApnsClientCache {
         return  sb.toString();
     }
 
-    private void putApnsClientForVariantID(final String variantID, final ApnsClient apnsClient) {
-        final ApnsClient client = apnsClientExpiringMap.putIfAbsent(variantID, apnsClient);
-        if (client != null) {
-            logger.warn("duplicate connection in pool, immediately shutting down the new connection");
-            tearDownApnsHttp2Connection(apnsClient);  // we do not want this new connection
-        }
-    }
-
     @PreDestroy
     public void cleanUpConnection() {
 
         logger.debug("remove all connections before server shutdown");
 
-        for (final Map.Entry<String, ApnsClient> cachedConnection : apnsClientExpiringMap.entrySet()) {
-
-            final ApnsClient connection = cachedConnection.getValue();
-            tearDownApnsHttp2Connection(connection);
+        for (final Map.Entry<String, ConnectionGroup> cachedConnection : apnsClientExpiringMap.entrySet()) {
+            cachedConnection.getValue().close();
         }
+        connectionExecutor.shutdownNow();
+    }
+
+    /**
+     * @param queueDepth number of batches of the variant dispatched and not delivered yet
+     * @param maxConnections upper bound of the group size
+     * @return number of connections a group should have for the given backlog
+     */
+    static int targetGroupSize(final long queueDepth, final int maxConnections) {
+        return (int) Math.min(maxConnections, 1 + Math.max(0, queueDepth) / QUEUED_BATCHES_PER_CONNECTION);
     }
 
+    /*
+     * Disconnects even a client that is not connected, so a client that failed or lost its connection stops reconnecting.
+     */
     private void tearDownApnsHttp2Connection(final ApnsClient client) {
-        if (client.isConnected()) {
-            logger.trace("Tearing down connection to APNs for the given client");
-            client.disconnect().addListener(new ApnsDisconnectFutureListener());
+        logger.trace("Tearing down connection to APNs for the given client");
+        client.disconnect().addListener(new ApnsDisconnectFutureListener());
+    }
+
+    /**
+     * Connections of one variant. The list is copied on write; connecting and closing connections is serialized by the
+     * group's monitor. Selecting a connection for a batch and removing connections exclude each other through the
+     * selection lock, which is never held while connecting, so a connection handed to a batch is not closed under it.
+     */
+    private class ConnectionGroup {
+        private final String connectionKey;
+        private final String variantID;
+        private final List<ApnsConnection> connections = new CopyOnWriteArrayList<>();
+        private final ReadWriteLock selection = new ReentrantReadWriteLock();
+        private final AtomicBoolean growing = new AtomicBoolean();
+        private volatile boolean closed;
+
+        ConnectionGroup(String connectionKey, String variantID) {
+            this.connectionKey = connectionKey;
+            this.variantID = variantID;
+        }
+
+        /**
+         * Hands the least loaded connection to a batch. The connection counts as used from now on, so it is not idle
+         * for {@link #shrink(int)} before the batch submitted its notifications.
+         */
+        ApnsConnection select() {
+            selection.readLock().lock();
+            try {
+                final ApnsConnection connection = leastLoaded();
+                if (connection != null) {
+                    connection.touch();
+                }
+                return connection;
+            } finally {
+                selection.readLock().unlock();
+            }
+        }
+
+        private ApnsConnection leastLoaded() {
+            return connections.stream()
+                    .filter(ApnsConnection::isConnected)
+                    .min(Comparator.comparingInt(ApnsConnection::getInFlight))
+                    .orElse(null);
+        }
+
+        /**
+         * Connects the first client of the group; callers racing for the same variant wait for the one connection.
+         */
+        synchronized ApnsConnection connect(final ServiceConstructor<ApnsClient> constructor) {
+            final ApnsConnection existing = select();
+            if (existing != null) {
+                return existing;
+            }
+            removeDisconnected();
+            final ApnsConnection connection = new ApnsConnection(constructor.construct(), maxInFlightNotifications);
+            if (connection.isConnected() && !closed) {
+                connections.add(connection);
+            } else {
+                // the caller reports the failed connection, it must not keep reconnecting on its own
+                tearDownApnsHttp2Connection(connection.getClient());
+            }
+            return connection; // return the newly connected client
+        }
+
+        /**
+         * Grows the group in background if all connections are busy and there is a backlog of batches, or closes
+         * connections that are no longer needed.
+         */
+        void adapt(final ServiceConstructor<ApnsClient> constructor) {
+            if (connections.stream().anyMatch(connection -> !connection.isConnected())) {
+                removeDisconnected();
+            }
+            final int size = connections.size();
+            final int target = targetSize();
+            final ApnsConnection leastLoaded = leastLoaded();
+            if (size < target && leastLoaded != null && leastLoaded.getInFlight() > 0 && growing.compareAndSet(false, true)) {
+                connectionExecutor.execute(() -> {
+                    try {
+                        grow(constructor);
+                    } finally {
+                        growing.set(false);
+                    }
+                });
+            } else if (size > target) {
+                shrink(target);
+            }
+        }
+
+        private int targetSize() {
+            return targetGroupSize(dispatchQueueMetrics.getQueueDepth(variantID), maxConnectionsPerVariant);
+        }
+
+        private synchronized void grow(final ServiceConstructor<ApnsClient> constructor) {
+            if (closed || connections.size() >= maxConnectionsPerVariant) {
+                return;
+            }
+            try {
+                final ApnsClient client = constructor.construct();
+                if (client.isConnected() && !closed) {
+                    connections.add(new ApnsConnection(client, maxInFlightNotifications));
+                    logger.debug("Added connection for {}, {} connections in the group", connectionKey, connections.size());
+                } else {
+                    tearDownApnsHttp2Connection(client);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Failed to add connection for {}: {}", connectionKey, e.getMessage());
+            }
+        }
+
+        private synchronized void shrink(final int target) {
+            final List<ApnsConnection> idle = new ArrayList<>();
+            selection.writeLock().lock();
+            try {
+                final long idleSince = System.nanoTime() - IDLE_CONNECTION_TIMEOUT_IN_NANOS;
+                for (ApnsConnection connection : connections) {
+                    if (connections.size() - idle.size() <= target) {
+                        break;
+                    }
+                    if (connection.getInFlight() == 0 && connection.getLastUsed() - idleSince < 0) {
+                        idle.add(connection);
+                    }
+                }
+                connections.removeAll(idle);
+            } finally {
+                selection.writeLock().unlock();
+            }
+            if (!idle.isEmpty()) {
+                logger.debug("Closing {} idle connections for {}", idle.size(), connectionKey);
+                idle.forEach(connection -> tearDownApnsHttp2Connection(connection.getClient()));
+            }
+        }
+
+        /**
+         * Removes and closes the connections that lost their connection to APNs; their notifications in flight fail
+         * with the connection, new batches go through the other connections or a new one.
+         */
+        private synchronized void removeDisconnected() {
+            final List<ApnsConnection> disconnected = new ArrayList<>();
+            selection.writeLock().lock();
+            try {
+                for (ApnsConnection connection : connections) {
+                    if (!connection.isConnected()) {
+                        disconnected.add(connection);
+                    }
+                }
+                connections.removeAll(disconnected);
+            } finally {
+                selection.writeLock().unlock();
+            }
+            if (!disconnected.isEmpty()) {
+                logger.debug("Closing {} disconnected connections for {}", disconnected.size(), connectionKey);
+                disconnected.forEach(connection -> tearDownApnsHttp2Connection(connection.getClient()));
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            connections.forEach(connection -> tearDownApnsHttp2Connection(connection.getClient()));
+            connections.clear();
         }
     }
 
@@ -167,4 +379,4 @@ public class SimpleApnsClientCache {
 
         }
     }
-}
\ No newline at end of file
+}
@@ -31,8 +31,13 @@ import org.jboss.aerogear.unifiedpush.message.sender.PushNotificationSender;
  */
 public class SenderConfiguration {
 
+    private static final int DEFAULT_VARIANT_PARALLELISM = 1;
+    private static final int DEFAULT_TOKEN_RANGE_PARTITIONS = 1;
+
     private int batchesToLoad;
     private int batchSize;
+    private int variantParallelism = DEFAULT_VARIANT_PARALLELISM;
+    private int tokenRangePartitions = DEFAULT_TOKEN_RANGE_PARTITIONS;
 
     public SenderConfiguration() {
     }
@@ -44,8 +49,33 @@ public class SenderConfiguration {
      * @param batchSize specifies how many devices will be loaded and delivered in one batch (see {@link #batchSize()}
      */
     public SenderConfiguration(int batchesToLoad, int batchSize) {
+        this(batchesToLoad, batchSize, DEFAULT_VARIANT_PARALLELISM);
+    }
+
+    /**
+     * Creates a new configuration with the configuration values provided
+     *
+     * @param batchesToLoad specifies how many batches should be loaded in one transaction (see {@link #batchesToLoad()}
+     * @param batchSize specifies how many devices will be loaded and delivered in one batch (see {@link #batchSize()}
+     * @param variantParallelism specifies how many variants can load tokens at the same time (see {@link #variantParallelism()}
+     */
+    public SenderConfiguration(int batchesToLoad, int batchSize, int variantParallelism) {
+        this(batchesToLoad, batchSize, variantParallelism, DEFAULT_TOKEN_RANGE_PARTITIONS);
+    }
+
+    /**
+     * Creates a new configuration with the configuration values provided
+     *
+     * @param batchesToLoad specifies how many batches should be loaded in one transaction (see {@link #batchesToLoad()}
+     * @param batchSize specifies how many devices will be loaded and delivered in one batch (see {@link #batchSize()}
+     * @param variantParallelism specifies how many variants can load tokens at the same time (see {@link #variantParallelism()}
+     * @param tokenRangePartitions specifies into how many ranges are tokens of a large variant split (see {@link #tokenRangePartitions()}
+     */
+    public SenderConfiguration(int batchesToLoad, int batchSize, int variantParallelism, int tokenRangePartitions) {
         this.batchesToLoad = batchesToLoad;
         this.batchSize = batchSize;
+        this.variantParallelism = variantParallelism;
+        this.tokenRangePartitions = tokenRangePartitions;
     }
 
     /**
@@ -97,4 +127,39 @@ public class SenderConfiguration {
     public int tokensToLoad() {
         return batchesToLoad * batchSize;
     }
+
+    /**
+     * Specifies how many variants of one push network can have their device tokens loaded at the same time.
+     *
+     * Each variant opens its own token stream (and database transaction) on a worker of a bounded pool,
+     * so this is also the upper bound of concurrently open token cursors for the push network.
+     *
+     * @return the number of variants loaded in parallel
+     */
+    public int variantParallelism() {
+        return variantParallelism;
+    }
+
+    void setVariantParallelism(int variantParallelism) {
+        this.variantParallelism = variantParallelism;
+    }
+
+    /**
+     * Specifies into how many token ranges is a single large variant split, so that the ranges can be scanned in parallel.
+     *
+     * Boundaries of the ranges are sampled from the variant's device tokens when the push message is processed for the first time.
+     * A variant is split only if every range would contain at least {@link #tokensToLoad()} tokens.
+     * Ranges are loaded by the same bounded pool as variants (see {@link #variantParallelism()}).
+     *
+     * The value of 1 (default) disables splitting.
+     *
+     * @return the number of token ranges
+     */
+    public int tokenRangePartitions() {
+        return tokenRangePartitions;
+    }
+
+    void setTokenRangePartitions(int tokenRangePartitions) {
+        this.tokenRangePartitions = tokenRangePartitions;
+    }
 }
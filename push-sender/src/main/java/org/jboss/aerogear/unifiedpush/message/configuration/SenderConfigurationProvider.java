@@ -52,37 +52,39 @@ public class SenderConfigurationProvider {
     @Qualifier(VariantType.ANDROIDQ)
     @Bean
     public SenderConfiguration produceAndroidConfiguration() {
-        return loadConfigurationFor(VariantType.ANDROID, new SenderConfiguration(10, 1000));
+        return loadConfigurationFor(VariantType.ANDROID, new SenderConfiguration(10, 1000, 4));
     }
 
     @Bean
     @Qualifier(VariantType.ADMQ)
     public SenderConfiguration produceAdmConfiguration() {
-        return loadConfigurationFor(VariantType.ADM, new SenderConfiguration(10, 1000));
+        return loadConfigurationFor(VariantType.ADM, new SenderConfiguration(10, 1000, 2));
     }
 
     @Bean
     @Qualifier(VariantType.IOSQ)
     public SenderConfiguration produceIosConfiguration() {
-        return loadConfigurationFor(VariantType.IOS, new SenderConfiguration(3, 2000));
+        return loadConfigurationFor(VariantType.IOS, new SenderConfiguration(3, 2000, 4));
     }
 
     @Bean
     @Qualifier(VariantType.SIMPLEPUSHQ)
     public SenderConfiguration produceSimplePushConfiguration() {
-        return loadConfigurationFor(VariantType.SIMPLE_PUSH, new SenderConfiguration(10, 1000));
+        return loadConfigurationFor(VariantType.SIMPLE_PUSH, new SenderConfiguration(10, 1000, 2));
     }
 
     @Bean
     @Qualifier(VariantType.WINDOWSWNSQ)
     public SenderConfiguration produceWindowsWnsConfiguration() {
-        return loadConfigurationFor(VariantType.WINDOWS_WNS, new SenderConfiguration(10, 1000));
+        return loadConfigurationFor(VariantType.WINDOWS_WNS, new SenderConfiguration(10, 1000, 2));
     }
 
     private SenderConfiguration loadConfigurationFor(VariantType type, SenderConfiguration defaultConfiguration) {
         return validateAndSanitizeConfiguration(type, new SenderConfiguration(
                 getProperty(type, ConfigurationProperty.batchesToLoad, defaultConfiguration.batchesToLoad(), Integer.class),
-                getProperty(type, ConfigurationProperty.batchSize, defaultConfiguration.batchSize(), Integer.class)
+                getProperty(type, ConfigurationProperty.batchSize, defaultConfiguration.batchSize(), Integer.class),
+                getProperty(type, ConfigurationProperty.variantParallelism, defaultConfiguration.variantParallelism(), Integer.class),
+                getProperty(type, ConfigurationProperty.tokenRangePartitions, defaultConfiguration.tokenRangePartitions(), Integer.class)
             ));
     }
 
@@ -90,6 +92,18 @@ public class SenderConfigurationProvider {
      * Validates that configuration is correct with regards to push networks limitations or implementation, etc.
      */
     private SenderConfiguration validateAndSanitizeConfiguration(VariantType type, SenderConfiguration configuration) {
+        if (configuration.variantParallelism() < 1) {
+            logger.warn(String
+                    .format("Sender configuration -D%s=%s is invalid: at least one variant has to be loaded at a time",
+                            getSystemPropertyName(type, ConfigurationProperty.variantParallelism), configuration.variantParallelism()));
+            configuration.setVariantParallelism(1);
+        }
+        if (configuration.tokenRangePartitions() < 1) {
+            logger.warn(String
+                    .format("Sender configuration -D%s=%s is invalid: tokens can't be split into less than one range",
+                            getSystemPropertyName(type, ConfigurationProperty.tokenRangePartitions), configuration.tokenRangePartitions()));
+            configuration.setTokenRangePartitions(1);
+        }
         switch (type) {
             case ANDROID:
                 if (configuration.batchSize() > 1000) {
@@ -127,6 +141,8 @@ public class SenderConfigurationProvider {
      */
     private enum ConfigurationProperty {
         batchesToLoad,
-		batchSize
+		batchSize,
+		variantParallelism,
+		tokenRangePartitions
 	}
 }
@@ -18,9 +18,9 @@ package org.jboss.aerogear.unifiedpush.message.holder;
 
 import org.jboss.aerogear.unifiedpush.api.FlatPushMessageInformation;
 import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.message.DispatchWindow;
 import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
 
-import java.io.Serializable;
 import java.util.Collection;
 
 /**
@@ -34,13 +34,16 @@ public class MessageHolderWithTokens extends AbstractMessageHolder {
 
     private int serialId;
     private Variant variant;
-    private Collection<String> deviceTokens;
+    private TokenBatch deviceTokens;
+    // slot of the batch in the dispatch window, only held within this node
+    private transient DispatchWindow.Lease dispatchLease;
 
     public MessageHolderWithTokens(FlatPushMessageInformation pushMessageInformation, UnifiedPushMessage unifiedPushMessage, Variant variant, Collection<String> deviceTokens, int serialId) {
+        this(pushMessageInformation, unifiedPushMessage, variant, TokenBatch.copyOf(deviceTokens), serialId);
+    }
+
+    public MessageHolderWithTokens(FlatPushMessageInformation pushMessageInformation, UnifiedPushMessage unifiedPushMessage, Variant variant, TokenBatch deviceTokens, int serialId) {
         super(pushMessageInformation, unifiedPushMessage);
-        if (!(deviceTokens instanceof Serializable)) {
-            throw new IllegalArgumentException("deviceTokens must be a serializable collection");
-        }
         this.variant = variant;
         this.deviceTokens = deviceTokens;
         this.serialId = serialId;
@@ -54,7 +57,19 @@ public class MessageHolderWithTokens extends AbstractMessageHolder {
         return deviceTokens;
     }
 
+    public TokenBatch getTokenBatch() {
+        return deviceTokens;
+    }
+
     public int getSerialId() {
         return serialId;
     }
+
+    public DispatchWindow.Lease getDispatchLease() {
+        return dispatchLease;
+    }
+
+    public void setDispatchLease(DispatchWindow.Lease dispatchLease) {
+        this.dispatchLease = dispatchLease;
+    }
 }
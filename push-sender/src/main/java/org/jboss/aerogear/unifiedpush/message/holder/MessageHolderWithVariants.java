@@ -42,6 +42,7 @@ public class MessageHolderWithVariants extends AbstractMessageHolder {
     private Collection<Variant> variants;
     private int lastSerialId;
     private String lastTokenFromPreviousBatch;
+    private String upperTokenBoundary;
 
     /**
      * Constructs holder that denotes first request for processing.
@@ -68,11 +69,28 @@ public class MessageHolderWithVariants extends AbstractMessageHolder {
      * @param lastTokenFromPreviousBatch last token from previous stream
      */
     public MessageHolderWithVariants(FlatPushMessageInformation pushMessageInformation, UnifiedPushMessage unifiedPushMessage, VariantType variantType, Collection<Variant> variants, int lastSerialId, String lastTokenFromPreviousBatch) {
+        this(pushMessageInformation, unifiedPushMessage, variantType, variants, lastSerialId, lastTokenFromPreviousBatch, null);
+    }
+
+    /**
+     * Constructs holder that denotes request for processing one range of device tokens of given push message,
+     * starting after {@link #lastTokenFromPreviousBatch} and ending with {@link #upperTokenBoundary}.
+     *
+     * @param pushMessageInformation the push message info object
+     * @param unifiedPushMessage the push message
+     * @param variantType variant type info
+     * @param variants list of effected variants
+     * @param lastSerialId last id from previous batch
+     * @param lastTokenFromPreviousBatch last token from previous stream, exclusive lower bound of the range
+     * @param upperTokenBoundary last token of the range (inclusive), null if the range is open
+     */
+    public MessageHolderWithVariants(FlatPushMessageInformation pushMessageInformation, UnifiedPushMessage unifiedPushMessage, VariantType variantType, Collection<Variant> variants, int lastSerialId, String lastTokenFromPreviousBatch, String upperTokenBoundary) {
         super(pushMessageInformation, unifiedPushMessage);
         this.variantType = variantType;
         this.variants = new ArrayList<>(variants);
         this.lastSerialId = lastSerialId;
         this.lastTokenFromPreviousBatch = lastTokenFromPreviousBatch;
+        this.upperTokenBoundary = upperTokenBoundary;
     }
 
     public VariantType getVariantType() {
@@ -91,10 +109,22 @@ public class MessageHolderWithVariants extends AbstractMessageHolder {
         return lastTokenFromPreviousBatch;
     }
 
+    public String getUpperTokenBoundary() {
+        return upperTokenBoundary;
+    }
+
+    /**
+     * @return true if this is the first request for processing the given push message, covering all device tokens
+     */
+    public boolean isInitialRequest() {
+        return lastSerialId == INITIAL_SERIAL_ID && lastTokenFromPreviousBatch == null && upperTokenBoundary == null;
+    }
+
 	@Override
 	public String toString() {
 		return "MessageHolderWithVariants [variantType=" + variantType + ", variants=" + variants + ", lastSerialId="
-				+ lastSerialId + ", lastTokenFromPreviousBatch=" + lastTokenFromPreviousBatch + "]";
+				+ lastSerialId + ", lastTokenFromPreviousBatch=" + lastTokenFromPreviousBatch + ", upperTokenBoundary="
+				+ upperTokenBoundary + "]";
 	}
 
 }
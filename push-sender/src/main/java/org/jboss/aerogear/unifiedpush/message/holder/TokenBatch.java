@@ -0,0 +1,225 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.holder;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact, append-only batch of device tokens.
+ *
+ * Tokens are kept as bytes in one shared arena and addressed by their offsets, so a batch of a few thousands
+ * of (mostly ASCII/hex) tokens costs two arrays instead of a String and a collection node per token.
+ * Tokens are decoded to {@link String} only when they are read.
+ *
+ * The batch is a read-only {@link Collection} view, so it can be passed to code that expects a collection of
+ * tokens; it keeps the order the tokens were appended in. Tokens read from the database are already sorted and
+ * distinct, senders that can't rely on that should use {@link #sortedDistinct()}.
+ */
+public class TokenBatch extends AbstractCollection<String> implements Serializable {
+
+    private static final long serialVersionUID = 2466153893318049120L;
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int DEFAULT_TOKEN_LENGTH = 64;
+
+    private byte[] arena;
+    private int[] offsets;
+    private int size;
+    private int length;
+    private boolean sortedDistinct = true;
+
+    public TokenBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedTokens number of tokens the batch is pre-sized for
+     */
+    public TokenBatch(int expectedTokens) {
+        final int capacity = Math.max(expectedTokens, 1);
+        this.arena = new byte[capacity * DEFAULT_TOKEN_LENGTH];
+        this.offsets = new int[capacity + 1];
+    }
+
+    /**
+     * Creates a batch containing the given tokens, in the iteration order of the collection.
+     *
+     * @param tokens the tokens to copy
+     * @return the given collection if it already is a {@link TokenBatch}, a new compacted batch otherwise
+     */
+    public static TokenBatch copyOf(Collection<String> tokens) {
+        if (tokens instanceof TokenBatch) {
+            return (TokenBatch) tokens;
+        }
+        final TokenBatch batch = new TokenBatch(tokens.size());
+        for (String token : tokens) {
+            batch.append(token);
+        }
+        return batch.trimToSize();
+    }
+
+    /**
+     * Appends the token to the end of the batch.
+     *
+     * @param token the token to append
+     */
+    public void append(String token) {
+        int tokenLength = token.length();
+        ensureCapacity(tokenLength);
+        int ascii = 0;
+        while (ascii < tokenLength && token.charAt(ascii) < 0x80) {
+            arena[length + ascii] = (byte) token.charAt(ascii);
+            ascii++;
+        }
+        if (ascii < tokenLength) {
+            // not a plain ASCII token, fall back to UTF-8
+            final byte[] bytes = token.getBytes(StandardCharsets.UTF_8);
+            tokenLength = bytes.length;
+            ensureCapacity(tokenLength);
+            System.arraycopy(bytes, 0, arena, length, tokenLength);
+        }
+
+        final int end = length + tokenLength;
+        if (size > 0 && sortedDistinct && compare(arena, offsets[size - 1], offsets[size], arena, length, end) >= 0) {
+            sortedDistinct = false;
+        }
+        length = end;
+        offsets[++size] = length;
+    }
+
+    /**
+     * @param index position of the token in the batch
+     * @return the token at the given position
+     */
+    public String get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return new String(arena, offsets[index], offsets[index + 1] - offsets[index], StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of bytes the tokens occupy in the arena
+     */
+    public int byteSize() {
+        return length;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public String next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    /**
+     * Releases the unused capacity of the batch, to be called once the batch is complete and before it is queued.
+     *
+     * @return this batch
+     */
+    public TokenBatch trimToSize() {
+        if (arena.length > length) {
+            arena = Arrays.copyOf(arena, length);
+        }
+        if (offsets.length > size + 1) {
+            offsets = Arrays.copyOf(offsets, size + 1);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the tokens sorted and without duplicates. The batch is copied only if it isn't sorted and distinct yet.
+     *
+     * @return a batch with sorted, distinct tokens
+     */
+    public TokenBatch sortedDistinct() {
+        if (sortedDistinct) {
+            return this;
+        }
+        final Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> compare(a, b));
+
+        final TokenBatch sorted = new TokenBatch(size);
+        sorted.ensureCapacity(length);
+        int previous = -1;
+        for (int index : order) {
+            if (previous >= 0 && compare(previous, index) == 0) {
+                continue;
+            }
+            final int start = offsets[index];
+            final int tokenLength = offsets[index + 1] - start;
+            System.arraycopy(arena, start, sorted.arena, sorted.length, tokenLength);
+            sorted.length += tokenLength;
+            sorted.offsets[++sorted.size] = sorted.length;
+            previous = index;
+        }
+        return sorted.trimToSize();
+    }
+
+    private void ensureCapacity(int additionalBytes) {
+        if (length + additionalBytes > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, length + additionalBytes));
+        }
+        if (size + 1 >= offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+    }
+
+    private int compare(int first, int second) {
+        return compare(arena, offsets[first], offsets[first + 1], arena, offsets[second], offsets[second + 1]);
+    }
+
+    private static int compare(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo) {
+        final int aLength = aTo - aFrom;
+        final int bLength = bTo - bFrom;
+        final int common = Math.min(aLength, bLength);
+        for (int i = 0; i < common; i++) {
+            final int diff = (a[aFrom + i] & 0xff) - (b[bFrom + i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return aLength - bLength;
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+
+import org.jboss.aerogear.unifiedpush.message.DispatchWindow;
+import org.jboss.aerogear.unifiedpush.message.token.TokenLoader;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counters describing how the {@link TokenLoader} keeps up with the dispatch queue.
+ *
+ * The queue depth is read directly from the {@link DispatchWindow}, stall counters are
+ * recorded by the loader every time it had to wait for a dispatched batch to be delivered.
+ */
+@Component
+public class DispatchQueueMetrics {
+
+	@Inject
+	private DispatchWindow dispatchWindow;
+
+	private final AtomicLong batchesDispatched = new AtomicLong();
+	private final AtomicLong tokensDispatched = new AtomicLong();
+	private final AtomicLong tokenBytesDispatched = new AtomicLong();
+	private final AtomicLong stalls = new AtomicLong();
+	private final AtomicLong totalStallNanos = new AtomicLong();
+	private final AtomicLong maxStallNanos = new AtomicLong();
+	private final AtomicInteger stalledLoaders = new AtomicInteger();
+
+	public void batchDispatched(int tokens, int tokenBytes) {
+		batchesDispatched.incrementAndGet();
+		tokensDispatched.addAndGet(tokens);
+		tokenBytesDispatched.addAndGet(tokenBytes);
+	}
+
+	public void stallStarted() {
+		stalledLoaders.incrementAndGet();
+	}
+
+	public void stallEnded(long stallNanos) {
+		stalledLoaders.decrementAndGet();
+		stalls.incrementAndGet();
+		totalStallNanos.addAndGet(stallNanos);
+		maxStallNanos.accumulateAndGet(stallNanos, Math::max);
+	}
+
+	/**
+	 * @return number of token batches that were dispatched and are not delivered yet
+	 */
+	public long getQueueDepth() {
+		return dispatchWindow.getInFlight();
+	}
+
+	/**
+	 * @param variantID the variant
+	 * @return number of token batches of the variant that were dispatched and are not delivered yet
+	 */
+	public long getQueueDepth(String variantID) {
+		return dispatchWindow.getInFlight(variantID);
+	}
+
+	public long getQueueCapacity() {
+		return dispatchWindow.getCapacity();
+	}
+
+	/**
+	 * @return number of dispatch slots taken back from batches whose delivery was never reported
+	 */
+	public long getReclaimedSlots() {
+		return dispatchWindow.getReclaimed();
+	}
+
+	public long getBatchesDispatched() {
+		return batchesDispatched.get();
+	}
+
+	public long getTokensDispatched() {
+		return tokensDispatched.get();
+	}
+
+	public long getTokenBytesDispatched() {
+		return tokenBytesDispatched.get();
+	}
+
+	public long getStalls() {
+		return stalls.get();
+	}
+
+	public long getTotalStallMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(totalStallNanos.get());
+	}
+
+	public long getMaxStallMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(maxStallNanos.get());
+	}
+
+	/**
+	 * @return number of token loaders currently waiting for a dispatched batch to be delivered
+	 */
+	public int getStalledLoaders() {
+		return stalledLoaders.get();
+	}
+
+	public Map<String, Object> snapshot() {
+		final Map<String, Object> snapshot = new LinkedHashMap<>();
+		snapshot.put("queueDepth", getQueueDepth());
+		snapshot.put("queueCapacity", getQueueCapacity());
+		snapshot.put("reclaimedSlots", getReclaimedSlots());
+		snapshot.put("batchesDispatched", getBatchesDispatched());
+		snapshot.put("tokensDispatched", getTokensDispatched());
+		snapshot.put("tokenBytesDispatched", getTokenBytesDispatched());
+		snapshot.put("stalls", getStalls());
+		snapshot.put("totalStallMillis", getTotalStallMillis());
+		snapshot.put("maxStallMillis", getMaxStallMillis());
+		snapshot.put("stalledLoaders", getStalledLoaders());
+		return snapshot;
+	}
+}
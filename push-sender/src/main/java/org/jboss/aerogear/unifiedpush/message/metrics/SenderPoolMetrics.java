@@ -0,0 +1,164 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the thread pools sending the requests of the push network clients (FCM, WNS, ADM, SimplePush).
+ *
+ * Clients are created per credentials outside of the container, their executors register with the pool of their
+ * name. Gauges (threads, queue) are summed over the live executors of a pool, counters survive the executors.
+ */
+public final class SenderPoolMetrics {
+
+	private static final ConcurrentMap<String, Pool> POOLS = new ConcurrentHashMap<>();
+
+	private SenderPoolMetrics() {
+	}
+
+	/**
+	 * @param name name of the pool, i.e. of the threads of the client
+	 * @return the counters of the pool
+	 */
+	public static Pool pool(String name) {
+		return POOLS.computeIfAbsent(name, Pool::new);
+	}
+
+	/**
+	 * @return snapshot of every pool, by name
+	 */
+	public static Map<String, Object> snapshot() {
+		final Map<String, Object> snapshot = new TreeMap<>();
+		POOLS.forEach((name, pool) -> snapshot.put(name, pool.snapshot()));
+		return snapshot;
+	}
+
+	public static final class Pool {
+		private final String name;
+		private final Set<ThreadPoolExecutor> executors = ConcurrentHashMap.newKeySet();
+		private final AtomicLong tasks = new AtomicLong();
+		private final AtomicLong totalWaitNanos = new AtomicLong();
+		private final AtomicLong maxWaitNanos = new AtomicLong();
+		private final AtomicLong callerRuns = new AtomicLong();
+		private final AtomicLong requestTimeouts = new AtomicLong();
+
+		private Pool(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void register(ThreadPoolExecutor executor) {
+			executors.add(executor);
+		}
+
+		public void unregister(ThreadPoolExecutor executor) {
+			executors.remove(executor);
+		}
+
+		/**
+		 * @param waitNanos time the task waited in the queue before a thread picked it up
+		 */
+		public void taskStarted(long waitNanos) {
+			tasks.incrementAndGet();
+			totalWaitNanos.addAndGet(waitNanos);
+			maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+		}
+
+		/**
+		 * The queue was full and the task ran on the thread submitting it.
+		 */
+		public void ranOnCaller() {
+			callerRuns.incrementAndGet();
+		}
+
+		/**
+		 * A request was aborted because it was still running once its deadline elapsed.
+		 */
+		public void requestTimedOut() {
+			requestTimeouts.incrementAndGet();
+		}
+
+		public int getExecutors() {
+			return executors.size();
+		}
+
+		public int getPoolSize() {
+			return executors.stream().mapToInt(ThreadPoolExecutor::getPoolSize).sum();
+		}
+
+		public int getActiveThreads() {
+			return executors.stream().mapToInt(ThreadPoolExecutor::getActiveCount).sum();
+		}
+
+		public int getQueueSize() {
+			return executors.stream().mapToInt(executor -> executor.getQueue().size()).sum();
+		}
+
+		public int getQueueCapacity() {
+			return executors.stream()
+					.mapToInt(executor -> executor.getQueue().size() + executor.getQueue().remainingCapacity()).sum();
+		}
+
+		public long getTasks() {
+			return tasks.get();
+		}
+
+		public long getAverageWaitMillis() {
+			final long count = tasks.get();
+			return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / count);
+		}
+
+		public long getMaxWaitMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+		}
+
+		public long getCallerRuns() {
+			return callerRuns.get();
+		}
+
+		public long getRequestTimeouts() {
+			return requestTimeouts.get();
+		}
+
+		public Map<String, Object> snapshot() {
+			final Map<String, Object> snapshot = new LinkedHashMap<>();
+			snapshot.put("executors", getExecutors());
+			snapshot.put("poolSize", getPoolSize());
+			snapshot.put("activeThreads", getActiveThreads());
+			snapshot.put("queueSize", getQueueSize());
+			snapshot.put("queueCapacity", getQueueCapacity());
+			snapshot.put("tasks", getTasks());
+			snapshot.put("averageWaitMillis", getAverageWaitMillis());
+			snapshot.put("maxWaitMillis", getMaxWaitMillis());
+			snapshot.put("callerRuns", getCallerRuns());
+			snapshot.put("requestTimeouts", getRequestTimeouts());
+			return snapshot;
+		}
+	}
+}
@@ -18,29 +18,88 @@ package org.jboss.aerogear.unifiedpush.message.sender;
 
 
 import org.jboss.aerogear.adm.ADM;
-import org.jboss.aerogear.adm.AdmService;
 import org.jboss.aerogear.adm.PayloadBuilder;
 import org.jboss.aerogear.unifiedpush.api.AdmVariant;
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.api.VariantType;
 import org.jboss.aerogear.unifiedpush.message.InternalUnifiedPushMessage;
 import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.sender.adm.AdmClientCache;
+import org.jboss.aerogear.unifiedpush.message.sender.adm.AdmResult;
+import org.jboss.aerogear.unifiedpush.service.ClientInstallationAsyncService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import javax.inject.Inject;
+
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
 
 @Service
 @Qualifier(VariantType.ADMQ)
 public class AdmPushNotificationSender implements PushNotificationSender {
     private final Logger logger = LoggerFactory.getLogger(AdmPushNotificationSender.class);
 
+    @Inject
+    private ClientInstallationAsyncService clientInstallationAsyncService;
+    @Inject
+    private AdmClientCache admClientCache;
+
     @Override
     public void sendPushMessage(Variant variant, Collection<String> clientIdentifiers, UnifiedPushMessage pushMessage, String pushMessageInformationId, NotificationSenderCallback senderCallback) {
-        final AdmService admService = ADM.newService();
+        // no need to send empty list
+        if (clientIdentifiers.isEmpty()) {
+            return;
+        }
+
+        final AdmVariant admVariant = (AdmVariant) variant;
+        final List<String> registrationIds = new ArrayList<>(clientIdentifiers);
 
+        // the payload is serialized once per batch and shared by all registration IDs
+        final String payload = createPayload(pushMessage, pushMessageInformationId);
+
+        admClientCache.getClient(admVariant).send(payload, registrationIds).whenComplete((results, error) -> {
+            if (error != null) {
+                final Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                logger.warn("Unable to send notifications to ADM for variant {}: {}", admVariant.getVariantID(), cause.getMessage());
+                senderCallback.onError(String.format("Error sending payload to ADM server (%s)", cause.getMessage()));
+                return;
+            }
+
+            logger.info(String.format("Sent push notification to Amazon's ADM Server for %d tokens", registrationIds.size()));
+
+            final BatchDeliveryResult result = new BatchDeliveryResult(registrationIds.size());
+            final Set<String> unregisteredClientIdentifiers = new HashSet<>();
+            for (int i = 0; i < results.size(); i++) {
+                final AdmResult admResult = results.get(i);
+                if (admResult.isAccepted()) {
+                    result.accepted();
+                } else if (admResult.getStatus() == AdmResult.NO_RESPONSE) {
+                    result.failed();
+                } else {
+                    result.rejected(admResult.getReason() != null ? admResult.getReason() : "HTTP " + admResult.getStatus());
+                    if (admResult.isUnregistered()) {
+                        unregisteredClientIdentifiers.add(registrationIds.get(i));
+                    }
+                }
+            }
+
+            if (!unregisteredClientIdentifiers.isEmpty()) {
+                logger.info(String.format("Deleting '%d' unregistered ADM installations", unregisteredClientIdentifiers.size()));
+                clientInstallationAsyncService.removeInstallationsForVariantByDeviceTokens(admVariant.getVariantID(), unregisteredClientIdentifiers);
+            }
+            logger.debug("Message to ADM has been submitted: {}", result);
+            senderCallback.onComplete(result);
+        });
+    }
+
+    static String createPayload(UnifiedPushMessage pushMessage, String pushMessageInformationId) {
         final PayloadBuilder builder = ADM.newPayload();
 
         //flatten the "special keys"
@@ -65,17 +124,6 @@ public class AdmPushNotificationSender implements PushNotificationSender {
         //add the aerogear-push-id
         builder.dataField(InternalUnifiedPushMessage.PUSH_MESSAGE_ID, pushMessageInformationId);
 
-        final AdmVariant admVariant = (AdmVariant) variant;
-
-        clientIdentifiers.forEach(token -> {
-            try {
-                admService.sendMessageToDevice(token, admVariant.getClientId(), admVariant.getClientSecret(),  builder.build());
-                senderCallback.onSuccess();
-            } catch (Exception e) {
-                logger.error("Error sending payload to ADM server", e);
-                senderCallback.onError(e.getMessage());
-            }
-        });
-        logger.info(String.format("Sent push notification to Amazon's ADM Server for %d tokens",clientIdentifiers.size()));
+        return builder.build();
     }
 }
@@ -0,0 +1,91 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Aggregated outcome of delivering one batch of tokens to a push network: how many notifications were accepted,
+ * rejected by the push network (by reason) or not delivered at all because of a failure.
+ *
+ * The result is filled concurrently, as the responses of the push network arrive.
+ */
+public class BatchDeliveryResult {
+
+    private final int total;
+    private final AtomicInteger accepted = new AtomicInteger();
+    private final AtomicInteger rejected = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final ConcurrentHashMap<String, AtomicInteger> rejectionsByReason = new ConcurrentHashMap<>();
+
+    /**
+     * @param total number of tokens in the batch
+     */
+    public BatchDeliveryResult(int total) {
+        this.total = total;
+    }
+
+    public void accepted() {
+        accepted.incrementAndGet();
+    }
+
+    public void rejected(String reason) {
+        rejected.incrementAndGet();
+        rejectionsByReason.computeIfAbsent(String.valueOf(reason), r -> new AtomicInteger()).incrementAndGet();
+    }
+
+    public void failed() {
+        failed.incrementAndGet();
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getAccepted() {
+        return accepted.get();
+    }
+
+    public int getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return number of notifications that did not get any response from the push network
+     */
+    public int getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return number of rejected notifications for each rejection reason reported by the push network
+     */
+    public Map<String, Integer> getRejectionsByReason() {
+        final Map<String, Integer> reasons = new TreeMap<>();
+        rejectionsByReason.forEach((reason, count) -> reasons.put(reason, count.get()));
+        return reasons;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchDeliveryResult [total=" + total + ", accepted=" + getAccepted() + ", rejected=" + getRejected()
+                + ", failed=" + getFailed() + ", rejectionsByReason=" + getRejectionsByReason() + "]";
+    }
+}
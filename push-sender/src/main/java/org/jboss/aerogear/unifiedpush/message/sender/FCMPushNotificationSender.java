@@ -16,26 +16,26 @@
  */
 package org.jboss.aerogear.unifiedpush.message.sender;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import javax.inject.Inject;
 
 import org.jboss.aerogear.unifiedpush.api.AndroidVariant;
-import org.jboss.aerogear.unifiedpush.api.Installation;
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.api.VariantType;
 import org.jboss.aerogear.unifiedpush.message.InternalUnifiedPushMessage;
 import org.jboss.aerogear.unifiedpush.message.Priority;
 import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
-import org.jboss.aerogear.unifiedpush.message.sender.fcm.ConfigurableFCMSender;
-import org.jboss.aerogear.unifiedpush.service.ClientInstallationAsyncService;
-import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
+import org.jboss.aerogear.unifiedpush.message.sender.fcm.FCMClient;
+import org.jboss.aerogear.unifiedpush.message.sender.fcm.FCMClientCache;
+import org.jboss.aerogear.unifiedpush.message.sender.fcm.FCMTokenMaintenance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -61,9 +61,9 @@ public class FCMPushNotificationSender implements PushNotificationSender {
             );
 
     @Inject
-    private ClientInstallationService clientInstallationService;
+    private FCMClientCache fcmClientCache;
     @Inject
-    private ClientInstallationAsyncService clientInstallationAsyncService;
+    private FCMTokenMaintenance fcmTokenMaintenance;
 
     private final Logger logger = LoggerFactory.getLogger(FCMPushNotificationSender.class);
 
@@ -115,61 +115,84 @@ public class FCMPushNotificationSender implements PushNotificationSender {
         //add the aerogear-push-id
         fcmBuilder.addData(InternalUnifiedPushMessage.PUSH_MESSAGE_ID, pushMessageInformationId);
 
-        Message fcmMessage = fcmBuilder.build();
+        final Message fcmMessage = fcmBuilder.build();
 
-        // send it out.....
-        try {
-            logger.debug("Sending transformed FCM payload: {}", fcmMessage);
-
-            final ConfigurableFCMSender sender = new ConfigurableFCMSender(androidVariant.getGoogleKey());
-
-            // send out a message to a batch of devices...
-            processFCM(androidVariant, pushTargets, fcmMessage , sender);
+        logger.debug("Sending transformed FCM payload: {}", fcmMessage);
 
-            logger.debug("Message batch to FCM has been submitted");
-            callback.onSuccess();
+        final FCMClient client = fcmClientCache.getClient(androidVariant);
 
-        } catch (Exception e) {
-            // FCM exceptions:
+        // send out a message to a batch of devices, the callback is notified once FCM answered
+        final CompletableFuture<BatchDeliveryResult> delivery;
+        try {
+            delivery = processFCM(androidVariant, pushTargets, fcmMessage, client);
+        } catch (RuntimeException e) {
             callback.onError(String.format("Error sending payload to FCM server: %s", e.getMessage()));
+            return;
         }
+        logger.debug("Message batch to FCM has been submitted");
+
+        delivery.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                // FCM exceptions:
+                final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+                callback.onError(String.format("Error sending payload to FCM server: %s", cause.getMessage()));
+            } else {
+                callback.onComplete(result);
+            }
+        });
     }
 
     /**
      * Process the HTTP POST to the FCM infrastructure for the given list of registrationIDs.
      */
-    private void processFCM(AndroidVariant androidVariant, List<String> pushTargets, Message fcmMessage, ConfigurableFCMSender sender) throws IOException {
-
+    private CompletableFuture<BatchDeliveryResult> processFCM(AndroidVariant androidVariant, List<String> pushTargets, Message fcmMessage, FCMClient client) {
 
         // push targets can be registration IDs OR topics (starting /topic/), but they can't be mixed.
         if (pushTargets.get(0).startsWith(Constants.TOPIC_PREFIX)) {
 
-            // perform the topic delivery
-
-            for (String topic : pushTargets) {
-                logger.info(String.format("Sent push notification to FCM topic: %s", topic));
-                Result result = sender.sendNoRetry(fcmMessage, topic);
-
-                logger.trace("Response from FCM topic request: {}", result);
-            }
+            // perform the topic delivery, all topics in parallel
+            logger.info(String.format("Sent push notification to %d FCM topics", pushTargets.size()));
+            return client.sendToTopics(fcmMessage, pushTargets).thenApply(results -> {
+                final BatchDeliveryResult deliveryResult = new BatchDeliveryResult(pushTargets.size());
+                for (int i = 0; i < results.size(); i++) {
+                    logger.trace("Response from FCM topic {} request: {}", pushTargets.get(i), results.get(i));
+                    collect(deliveryResult, results.get(i));
+                }
+                return deliveryResult;
+            });
         } else {
             logger.info(String.format("Sent push notification to FCM Server for %d registrationIDs", pushTargets.size()));
-            MulticastResult multicastResult = sender.sendNoRetry(fcmMessage, pushTargets);
+            return client.send(fcmMessage, pushTargets).thenApply(multicastResult -> {
+                logger.trace("Response from FCM request: {}", multicastResult);
+
+                final BatchDeliveryResult deliveryResult = new BatchDeliveryResult(pushTargets.size());
+                multicastResult.getResults().forEach(result -> collect(deliveryResult, result));
 
-            logger.trace("Response from FCM request: {}", multicastResult);
+                // after sending, let's identify the inactive/invalid registrationIDs and trigger their deletion:
+                cleanupInvalidRegistrationIDsForVariant(androidVariant.getVariantID(), multicastResult, pushTargets);
+                return deliveryResult;
+            });
+        }
+    }
 
-            // after sending, let's identify the inactive/invalid registrationIDs and trigger their deletion:
-            cleanupInvalidRegistrationIDsForVariant(androidVariant.getVariantID(), multicastResult, pushTargets);
+    private static void collect(BatchDeliveryResult deliveryResult, Result result) {
+        if (result.getMessageId() != null) {
+            deliveryResult.accepted();
+        } else if (result.getErrorCodeName() != null) {
+            deliveryResult.rejected(result.getErrorCodeName());
+        } else {
+            deliveryResult.failed();
         }
     }
 
     /**
      * <p>Walks over the {@code MulticastResult} from the FCM call and identifies the <code>index</code> of all {@code Result} objects that
-     * indicate an <code>InvalidRegistration</code> error.
+     * indicate an <code>InvalidRegistration</code> error or carry a canonical ID.
      *
      * <p>This <code>index</code> is used to find the matching <code>registration ID</code> in the List of all used <code>registrationIDs</code>.
      *
-     * <p>Afterwards all 'invalid' registration IDs for the given <code>variantID</code> are being deleted from our database.
+     * <p>Afterwards the 'invalid' registration IDs are queued for deletion and the outdated ones for replacement, the
+     * {@link FCMTokenMaintenance} applies them to the database in bulk.
      *
      * @param variantID id of the actual {@code AndroidVariantEntity}.
      * @param multicastResult the results from the HTTP request to the Google Cloud.
@@ -180,9 +203,6 @@ public class FCMPushNotificationSender implements PushNotificationSender {
         // get the FCM send results for all of the client devices:
         final List<Result> results = multicastResult.getResults();
 
-        // storage for all the invalid registration IDs:
-        final Set<String> inactiveTokens = new HashSet<>();
-
         // read the results:
         for (int i = 0; i < results.size(); i++) {
             // use the current index to access the individual results
@@ -190,7 +210,7 @@ public class FCMPushNotificationSender implements PushNotificationSender {
 
             final String errorCodeName = result.getErrorCodeName();
             if (errorCodeName != null) {
-                logger.info(String.format("Processing [%s] error code from FCM response, for registration ID: [%s]", errorCodeName, registrationIDs.get(i)));
+                logger.debug(String.format("Processing [%s] error code from FCM response, for registration ID: [%s]", errorCodeName, registrationIDs.get(i)));
             }
 
             //after sending, lets find tokens that are inactive from now on and need to be replaced with the new given canonical id.
@@ -200,46 +220,18 @@ public class FCMPushNotificationSender implements PushNotificationSender {
             //been changed to this canonical id, so change it on your server side as well.
 
             //check if current index of result has canonical id
-            String canonicalRegId = result.getCanonicalRegistrationId();
+            final String canonicalRegId = result.getCanonicalRegistrationId();
             if (canonicalRegId != null) {
-                // same device has more than one registration id: update it, if needed!
-                // let's see if the canonical id is already in our system:
-                Installation installation = clientInstallationService.findInstallationForVariantByDeviceToken(variantID, canonicalRegId);
-
-                if (installation != null) {
-                    // ok, there is already a device, with newest/latest registration ID (aka canonical id)
-                    // It is time to remove the old reg id, to avoid duplicated messages in the future!
-                    inactiveTokens.add(registrationIDs.get(i));
-
-                } else {
-                    // since there is no registered device with newest/latest registration ID (aka canonical id),
-                    // this means the new token/regId was never stored on the server. Let's update the device and change its token to new canonical id:
-                    installation = clientInstallationService.findInstallationForVariantByDeviceToken(variantID,registrationIDs.get(i));
-                    installation.setDeviceToken(canonicalRegId);
-
-                    //update installation with the new token
-                    logger.info(String.format("Based on returned canonical id from FCM, updating Android installations with registration id [%s] with new token [%s] ", registrationIDs.get(i), canonicalRegId));
-                    clientInstallationService.updateInstallation(installation);
-                }
+                // same device has more than one registration id: either the old one is removed (if the canonical id
+                // is already registered) or it is replaced with the canonical id
+                fcmTokenMaintenance.replaceToken(variantID, registrationIDs.get(i), canonicalRegId);
 
-            } else {
+            } else if (FCM_ERROR_CODES.contains(errorCodeName)) {
                 // is there any 'interesting' error code, which requires a clean up of the registration IDs
-                if (FCM_ERROR_CODES.contains(errorCodeName)) {
-
-                    // Ok the result at INDEX 'i' represents a 'bad' registrationID
 
-                    // Now use the INDEX of the _that_ result object, and look
-                    // for the matching registrationID inside of the List that contains
-                    // _all_ the used registration IDs and store it:
-                   inactiveTokens.add(registrationIDs.get(i));
-                }
+                // Ok the result at INDEX 'i' represents a 'bad' registrationID
+                fcmTokenMaintenance.removeToken(variantID, registrationIDs.get(i));
             }
         }
-
-        if (! inactiveTokens.isEmpty()) {
-            // trigger asynchronous deletion:
-            logger.info(String.format("Based on FCM response data and error codes, deleting %d invalid or duplicated Android installations", inactiveTokens.size()));
-            clientInstallationAsyncService.removeInstallationsForVariantByDeviceTokens(variantID, inactiveTokens);
-        }
     }
 }
@@ -38,4 +38,23 @@ public interface NotificationSenderCallback {
      */
     void onError(String reason);
 
+    /**
+     * Called once the push network has responded for every token of the batch, by senders that are able to aggregate the
+     * responses (see {@link BatchDeliveryResult}).
+     *
+     * By default, the batch is considered delivered if the push network answered at least one notification, or if the
+     * batch was empty. Rejections are answers too: they are about single tokens, which the senders clean up, and are
+     * not reported as errors. Only a batch the push network did not answer at all is reported with
+     * {@link #onError(String)}.
+     *
+     * @param result the aggregated result of the batch
+     */
+    default void onComplete(BatchDeliveryResult result) {
+        if (result.getTotal() > 0 && result.getFailed() == result.getTotal()) {
+            onError(String.format("None of %d notifications was answered by the push network", result.getTotal()));
+        } else {
+            onSuccess();
+        }
+    }
+
 }
@@ -18,6 +18,7 @@ package org.jboss.aerogear.unifiedpush.message.sender;
 
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.holder.TokenBatch;
 
 import java.util.Collection;
 
@@ -38,4 +39,22 @@ public interface PushNotificationSender {
      *                       of the request (<code>success</code> or <code>error</code>
      */
     void sendPushMessage(Variant variant, Collection<String> clientIdentifiers, UnifiedPushMessage pushMessage, String pushMessageInformationId, NotificationSenderCallback senderCallback);
+
+    /**
+     * Sends the {@link UnifiedPushMessage} to the given clients, identified by a compact batch of tokens, the underlying push network.
+     *
+     * By default, the batch is sorted and de-duplicated (a no-op for batches loaded from the database, which are already
+     * sorted and distinct) and its tokens are read through the collection view of the batch. Implementations that can
+     * consume the token bytes directly should override this method.
+     *
+     * @param variant contains details for the underlying push network, e.g. API Keys/Ids
+     * @param clientIdentifiers platform specific batch of client identifiers
+     * @param pushMessage payload to be send to the given clients
+     * @param pushMessageInformationId the id of the FlatPushMessageInformation instance associated with this send.
+     * @param senderCallback invoked after submitting the request to the underlying push network to indicate the status
+     *                       of the request (<code>success</code> or <code>error</code>
+     */
+    default void sendPushMessage(Variant variant, TokenBatch clientIdentifiers, UnifiedPushMessage pushMessage, String pushMessageInformationId, NotificationSenderCallback senderCallback) {
+        sendPushMessage(variant, (Collection<String>) clientIdentifiers.sortedDistinct(), pushMessage, pushMessageInformationId, senderCallback);
+    }
 }
@@ -6,7 +6,7 @@
  * you may not use this file except in compliance with the License.
  * You may obtain a copy of the License at
  *
- *     http://www.apache.org/licenses/LICENSE-2.0
+ * 	http://www.apache.org/licenses/LICENSE-2.0
  *
  * Unless required by applicable law or agreed to in writing, software
  * distributed under the License is distributed on an "AS IS" BASIS,
@@ -16,18 +16,24 @@
  */
 package org.jboss.aerogear.unifiedpush.message.sender;
 
-import java.io.IOException;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import static org.jboss.aerogear.unifiedpush.system.ConfigurationUtils.tryGetIntegerProperty;
+
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
-import javax.ws.rs.core.Response.Status;
+import javax.annotation.PreDestroy;
 
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.api.VariantType;
 import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.sender.http.HttpFanOut;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -37,8 +43,22 @@ import org.springframework.stereotype.Service;
 @Qualifier(value = VariantType.SIMPLEPUSHQ)
 public class SimplePushNotificationSender implements PushNotificationSender {
 
+    private static final String PROPERTY_PREFIX = "aerogear." + VariantType.SIMPLE_PUSH.getTypeName() + ".";
+
+    public static final String CONCURRENT_REQUESTS = PROPERTY_PREFIX + "concurrentRequests";
+    public static final String REQUEST_TIMEOUT = PROPERTY_PREFIX + "requestTimeout";
+
+    private static final int DEFAULT_CONCURRENT_REQUESTS = 32;
+    private static final int DEFAULT_REQUEST_TIMEOUT_IN_MILLIS = 10000;
+
+    private static final ContentType FORM_URLENCODED = ContentType.create("application/x-www-form-urlencoded");
+
     private final Logger logger = LoggerFactory.getLogger(SimplePushNotificationSender.class);
 
+    private final HttpFanOut fanOut = new HttpFanOut("simplepush-sender",
+            Math.max(1, tryGetIntegerProperty(CONCURRENT_REQUESTS, DEFAULT_CONCURRENT_REQUESTS)),
+            tryGetIntegerProperty(REQUEST_TIMEOUT, DEFAULT_REQUEST_TIMEOUT_IN_MILLIS));
+
     /*
      * Sends SimplePush notifications to all connected clients, that are represented by
      * the {@link Collection} of channelIDs, for the given SimplePush network.
@@ -57,73 +77,52 @@ public class SimplePushNotificationSender implements PushNotificationSender {
         if (payload == null) {
             payload = "";
         }
+        logger.trace("Sending out SimplePush payload: {}", payload);
 
-        // iterate over all the given channels, if there are channels:
-        boolean hasWarning = false;
-        for (String clientURL : tokens) {
+        // the body is shared by the PUTs to all endpoints
+        final ByteArrayEntity body = new ByteArrayEntity(payload.getBytes(StandardCharsets.UTF_8), FORM_URLENCODED);
+        final List<String> endpoints = new ArrayList<>(tokens);
 
-            HttpURLConnection conn = null;
-            try {
-                // PUT the version payload to the SimplePushServer
-                logger.trace("Sending out SimplePush payload: {}", payload);
-                conn = put(clientURL, payload);
-                int simplePushStatusCode = conn.getResponseCode();
-                logger.trace("SimplePush Status: {}", simplePushStatusCode);
+        fanOut.send(endpoints, url -> put(url, body)).whenComplete((statuses, error) -> {
+            if (error != null) {
+                logger.error("Error delivering SimplePush payload", error);
+                callback.onError("Error delivering SimplePush payload");
+                return;
+            }
 
-                if (Status.OK.getStatusCode() != simplePushStatusCode) {
-                    hasWarning = true;
-                }
-            } catch (Exception e) {
-                // any error while performing the PUT
-                logger.error("Error delivering SimplePush payload", e);
-                hasWarning = true;
-            } finally {
-                // tear down
-                if (conn != null) {
-                    conn.disconnect();
+            logger.info(String.format("Sent push notification to SimplePush Server for %d  tokens", endpoints.size()));
+
+            final BatchDeliveryResult result = new BatchDeliveryResult(endpoints.size());
+            for (int status : statuses) {
+                if (status == HttpStatus.SC_OK) {
+                    result.accepted();
+                } else if (status == HttpFanOut.NO_RESPONSE) {
+                    result.failed();
+                } else {
+                    logger.trace("SimplePush Status: {}", status);
+                    result.rejected("HTTP " + status);
                 }
             }
-        }
-
-        logger.info(String.format("Sent push notification to SimplePush Server for %d  tokens",tokens.size()));
-
-        if (hasWarning) {
-            callback.onError("Error delivering SimplePush payload");
-        }
-        else {
-            callback.onSuccess();
-        }
+            callback.onComplete(result);
+        });
     }
 
     /*
-     * Returns HttpURLConnection that 'puts' the given body to the given URL.
+     * Returns the request that 'puts' the given body to the given URL.
      */
-    protected HttpURLConnection put(String url, String body) throws IOException {
-
+    private static HttpPut put(String url, ByteArrayEntity body) {
         if (url == null) {
             throw new IllegalArgumentException("SimplePush Update URL cannot be null");
         }
 
-        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
-        HttpURLConnection conn = getConnection(url);
-        conn.setDoOutput(true);
-        conn.setUseCaches(false);
-        conn.setFixedLengthStreamingMode(bytes.length);
-        conn.setRequestProperty("Content-Length", Integer.toString(bytes.length));
-        conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-        conn.setRequestProperty("Accept", "*/*");
-        conn.setRequestMethod("PUT");
-        try (OutputStream out = conn.getOutputStream()) {
-            out.write(bytes);
-            out.flush();
-        }
-        return conn;
+        final HttpPut put = new HttpPut(url);
+        put.setHeader(HttpHeaders.ACCEPT, "*/*");
+        put.setEntity(body);
+        return put;
     }
 
-    /*
-     * Convenience method to open/establish a HttpURLConnection.
-     */
-    protected HttpURLConnection getConnection(String url) throws IOException {
-        return (HttpURLConnection) new URL(url).openConnection();
+    @PreDestroy
+    public void cleanUp() {
+        fanOut.close();
     }
 }
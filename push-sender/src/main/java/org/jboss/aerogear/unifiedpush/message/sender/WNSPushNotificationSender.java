@@ -24,17 +24,21 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletionException;
 
 import javax.inject.Inject;
 import javax.ws.rs.core.UriBuilder;
 
+import org.apache.http.HttpStatus;
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.api.VariantType;
 import org.jboss.aerogear.unifiedpush.api.WindowsWNSVariant;
 import org.jboss.aerogear.unifiedpush.message.InternalUnifiedPushMessage;
 import org.jboss.aerogear.unifiedpush.message.Message;
 import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.sender.wns.WnsClient;
+import org.jboss.aerogear.unifiedpush.message.sender.wns.WnsClientCache;
+import org.jboss.aerogear.unifiedpush.message.sender.wns.WnsNotification;
 import org.jboss.aerogear.unifiedpush.message.windows.Windows;
 import org.jboss.aerogear.unifiedpush.service.ClientInstallationAsyncService;
 import org.slf4j.Logger;
@@ -42,11 +46,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
-import ar.com.fernandospr.wns.WnsService;
-import ar.com.fernandospr.wns.exceptions.WnsException;
 import ar.com.fernandospr.wns.model.WnsBadge;
-import ar.com.fernandospr.wns.model.WnsNotificationRequestOptional;
-import ar.com.fernandospr.wns.model.WnsNotificationResponse;
 import ar.com.fernandospr.wns.model.WnsRaw;
 import ar.com.fernandospr.wns.model.WnsTile;
 import ar.com.fernandospr.wns.model.WnsToast;
@@ -64,77 +64,96 @@ public class WNSPushNotificationSender implements PushNotificationSender {
 
     private static final String CORDOVA = "cordova";
     static final String CORDOVA_PAGE = "/Plugins/aerogear-cordova-push/P.xaml";
-    private String pushMessageInformationId;
 
     @Inject
     private ClientInstallationAsyncService clientInstallationAsyncService;
+    @Inject
+    private WnsClientCache wnsClientCache;
 
     @Override
     public void sendPushMessage(Variant variant, Collection<String> clientIdentifiers, UnifiedPushMessage pushMessage, String pushMessageInformationId, NotificationSenderCallback senderCallback) {
-        setPushMessageInformationId(pushMessageInformationId);
-
         // no need to send empty list
         if (clientIdentifiers.isEmpty()) {
             return;
         }
 
         final WindowsWNSVariant windowsVariant = (WindowsWNSVariant) variant;
-        WnsService wnsService = new WnsService(windowsVariant.getSid(), windowsVariant.getClientSecret(), false);
 
-        Set<String> expiredClientIdentifiers = new HashSet<>(clientIdentifiers.size());
-        ArrayList<String> channelUris = new ArrayList<>(clientIdentifiers);
-        Message message = pushMessage.getMessage();
+        final List<String> channelUris = new ArrayList<>(clientIdentifiers);
+        final WnsNotification notification;
         try {
-            WnsNotificationRequestOptional optional = new WnsNotificationRequestOptional();
-            int ttl = pushMessage.getConfig().getTimeToLive();
-            if (ttl != -1) {
-                optional.ttl = String.valueOf(ttl);
-            }
+            // the payload is built once per batch and shared by all channel URIs
+            notification = createNotification(pushMessage, pushMessageInformationId);
+        } catch (IllegalArgumentException exception) {
+            senderCallback.onError(exception.getMessage());
+            return;
+        }
 
-            final List<WnsNotificationResponse> responses;
-            if (message.getWindows().getType() != null) {
-                switch (message.getWindows().getType()) {
-                    case toast:
-                        responses = wnsService.pushToast(channelUris, optional, createToastMessage(message));
-                        break;
-                    case badge:
-                        responses = wnsService.pushBadge(channelUris, optional, createBadgeMessage(message));
-                        break;
-                    case raw:
-                        responses = wnsService.pushRaw(channelUris, optional, createRawMessage(message));
-                        break;
-                    case tile:
-                        responses = wnsService.pushTile(channelUris, optional, createTileMessage(message));
-                        break;
-                    default:
-                        throw new IllegalArgumentException("unknown type: " + message.getWindows().getType());
-                }
-            } else {
-                responses = wnsService.pushToast(channelUris, optional, createSimpleToastMessage(message));
+        wnsClientCache.getClient(windowsVariant).send(notification, channelUris).whenComplete((statuses, error) -> {
+            if (error != null) {
+                final Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                logger.warn("Unable to send notifications to WNS for variant {}: {}", windowsVariant.getVariantID(), cause.getMessage());
+                senderCallback.onError(String.format("Error sending payload to WNS (%s)", cause.getMessage()));
+                return;
             }
 
             logger.info(String.format("Sent push notification to WNS for %d  tokens", channelUris.size()));
 
-            expiredClientIdentifiers.addAll(responses.stream().filter(response -> response.code == 410).map(response -> response.channelUri).collect(Collectors.toList()));
+            final BatchDeliveryResult result = new BatchDeliveryResult(channelUris.size());
+            final Set<String> expiredClientIdentifiers = new HashSet<>();
+            for (int i = 0; i < statuses.size(); i++) {
+                final int status = statuses.get(i);
+                if (status == HttpStatus.SC_OK) {
+                    result.accepted();
+                } else if (status == WnsClient.NO_RESPONSE) {
+                    result.failed();
+                } else {
+                    result.rejected("HTTP " + status);
+                    if (status == HttpStatus.SC_GONE) {
+                        expiredClientIdentifiers.add(channelUris.get(i));
+                    }
+                }
+            }
+
             if (!expiredClientIdentifiers.isEmpty()) {
                 logger.info(String.format("Deleting '%d' expired WNS installations", expiredClientIdentifiers.size()));
-                clientInstallationAsyncService.removeInstallationsForVariantByDeviceTokens(variant.getVariantID(), expiredClientIdentifiers);
+                clientInstallationAsyncService.removeInstallationsForVariantByDeviceTokens(windowsVariant.getVariantID(), expiredClientIdentifiers);
+            }
+            logger.debug("Message to WNS has been submitted: {}", result);
+            senderCallback.onComplete(result);
+        });
+    }
+
+    private WnsNotification createNotification(UnifiedPushMessage pushMessage, String pushMessageInformationId) {
+        final Message message = pushMessage.getMessage();
+        final int timeToLive = pushMessage.getConfig().getTimeToLive();
+        final Integer ttl = timeToLive != -1 ? timeToLive : null;
+
+        if (message.getWindows().getType() != null) {
+            switch (message.getWindows().getType()) {
+                case toast:
+                    return WnsNotification.toast(createToastMessage(message, pushMessageInformationId), ttl);
+                case badge:
+                    return WnsNotification.badge(createBadgeMessage(message), ttl);
+                case raw:
+                    return WnsNotification.raw(createRawMessage(message), ttl);
+                case tile:
+                    return WnsNotification.tile(createTileMessage(message), ttl);
+                default:
+                    throw new IllegalArgumentException("unknown type: " + message.getWindows().getType());
             }
-            logger.debug("Message to WNS has been submitted");
-            senderCallback.onSuccess();
-        } catch (WnsException | IllegalArgumentException exception) {
-            senderCallback.onError(exception.getMessage());
         }
+        return WnsNotification.toast(createSimpleToastMessage(message, pushMessageInformationId), ttl);
     }
 
-    WnsToast createToastMessage(Message message) {
+    static WnsToast createToastMessage(Message message, String pushMessageInformationId) {
         final WnsToastBuilder builder = new WnsToastBuilder();
         Windows windows = message.getWindows();
         if (windows.getDuration() != null) {
             builder.duration(windows.getDuration().toString());
         }
         builder.audioSrc(message.getSound());
-        builder.launch(createLaunchParam(message.getWindows().getPage(), message.getAlert(), message.getUserData(), getPushMessageInformationId()));
+        builder.launch(createLaunchParam(message.getWindows().getPage(), message.getAlert(), message.getUserData(), pushMessageInformationId));
         createMessage(message, windows.getToastType().toString(), builder);
         return builder.build();
     }
@@ -156,7 +175,7 @@ public class WNSPushNotificationSender implements PushNotificationSender {
         return builder.build();
     }
 
-    WnsTile createTileMessage(Message message) {
+    static WnsTile createTileMessage(Message message) {
         final WnsTileBuilder builder = new WnsTileBuilder();
         createMessage(message, message.getWindows().getTileType().toString(), builder);
         return builder.build();
@@ -192,21 +211,13 @@ public class WNSPushNotificationSender implements PushNotificationSender {
         }
     }
 
-    WnsToast createSimpleToastMessage(Message message) {
+    static WnsToast createSimpleToastMessage(Message message, String pushMessageInformationId) {
         final WnsToastBuilder builder = new WnsToastBuilder().bindingTemplateToastText01(message.getAlert());
         final Map<String, Object> data = message.getUserData();
-        builder.launch(createLaunchParam(message.getWindows().getPage(), message.getAlert(), data, getPushMessageInformationId()));
+        builder.launch(createLaunchParam(message.getWindows().getPage(), message.getAlert(), data, pushMessageInformationId));
         return builder.build();
     }
 
-    public String getPushMessageInformationId() {
-        return pushMessageInformationId;
-    }
-
-    public void setPushMessageInformationId(String pushMessageInformationId) {
-        this.pushMessageInformationId = pushMessageInformationId;
-    }
-
     static String createLaunchParam(String page, String message, Map<String, Object> data, String pushMessageInformationId) {
         final UriBuilder uriBuilder = UriBuilder.fromPath("");
 
@@ -0,0 +1,198 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender.adm;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.jboss.aerogear.unifiedpush.message.sender.http.PooledHttpClient;
+import org.jboss.aerogear.unifiedpush.system.ConfigurationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Asynchronous client of ADM for one client ID and client secret.
+ *
+ * The OAuth access token is requested once and reused by all messages until it expires or ADM answers
+ * {@code 401 Unauthorized}; the token is then refreshed once, however many requests noticed it. Registration IDs are
+ * posted concurrently over pooled keep-alive connections (see {@link PooledHttpClient}).
+ */
+public class AdmClient extends PooledHttpClient {
+
+    public static final String CUSTOM_AEROGEAR_ADM_TOKEN_HOST = "custom.aerogear.adm.token.host";
+    public static final String CUSTOM_AEROGEAR_ADM_PUSH_HOST = "custom.aerogear.adm.push.host";
+
+    public static final String ADM_TOKEN_ENDPOINT = "https://api.amazon.com/auth/O2/token";
+    public static final String ADM_PUSH_ENDPOINT = "https://api.amazon.com/messaging/registrations/";
+
+    // the token is refreshed a bit before it expires, so it does not expire while requests are in flight
+    private static final long EXPIRATION_MARGIN_IN_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Logger logger = LoggerFactory.getLogger(AdmClient.class);
+
+    private final String clientId;
+    private final String clientSecret;
+    private final String tokenEndpoint;
+    private final String pushEndpoint;
+
+    private volatile AccessToken accessToken;
+
+    /**
+     * @param clientId the ADM client ID
+     * @param clientSecret the ADM client secret
+     * @param concurrentRequests how many requests can be sent to ADM at the same time
+     * @param timeoutInMillis connect and read timeout of a request, and deadline of the whole request
+     */
+    public AdmClient(String clientId, String clientSecret, int concurrentRequests, int timeoutInMillis) {
+        super("adm-client", concurrentRequests, timeoutInMillis);
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+        // let's see if there are different URLs we should post to (e.g. load/stress testing)
+        this.tokenEndpoint = ConfigurationUtils.tryGetProperty(CUSTOM_AEROGEAR_ADM_TOKEN_HOST, ADM_TOKEN_ENDPOINT);
+        this.pushEndpoint = ConfigurationUtils.tryGetProperty(CUSTOM_AEROGEAR_ADM_PUSH_HOST, ADM_PUSH_ENDPOINT);
+    }
+
+    /**
+     * Sends the payload to every registration ID.
+     *
+     * @param payload the serialized ADM message, shared by all registration IDs
+     * @param registrationIds the registration IDs
+     * @return future completed with the result of every registration ID (in the order of the registration IDs), or
+     *         completed exceptionally if no access token could be obtained
+     */
+    public CompletableFuture<List<AdmResult>> send(final String payload, final List<String> registrationIds) {
+        // authenticate once for the batch, rather than failing every registration ID on its own
+        try {
+            getAccessToken();
+        } catch (UncheckedIOException e) {
+            final CompletableFuture<List<AdmResult>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e.getCause());
+            return failed;
+        }
+
+        final byte[] body = payload.getBytes(ContentType.APPLICATION_JSON.getCharset());
+        return sendAll(registrationIds, registrationId -> push(body, registrationId));
+    }
+
+    private AdmResult push(final byte[] body, final String registrationId) {
+        try {
+            final AccessToken token = getAccessToken();
+            final AdmResult result = post(body, registrationId, token);
+            if (result.getStatus() != HttpStatus.SC_UNAUTHORIZED) {
+                return result;
+            }
+            // the token expired or was revoked, retry once with a new one
+            return post(body, registrationId, refreshAccessToken(token));
+        } catch (IOException | UncheckedIOException e) {
+            // a failed token refresh must not discard the results of the other registration IDs
+            logger.debug("Failed to send message to ADM registration ID {}: {}", registrationId, e.getMessage());
+            return AdmResult.noResponse();
+        }
+    }
+
+    private AdmResult post(final byte[] body, final String registrationId, final AccessToken token) throws IOException {
+        final HttpPost post = new HttpPost(pushEndpoint + URLEncoder.encode(registrationId, "UTF-8") + "/messages");
+        post.setHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token.value);
+        post.setHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.getMimeType());
+        post.setHeader("X-Amzn-Type-Version", "com.amazon.device.messaging.ADMMessage@1.0");
+        post.setHeader("X-Amzn-Accept-Type", "com.amazon.device.messaging.ADMSendResult@1.0");
+        post.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+
+        return execute(post, response -> {
+            final int status = response.getStatusLine().getStatusCode();
+            final String content = response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity(), "UTF-8");
+
+            // {"registrationID":"..."} when accepted, {"reason":"..."} otherwise
+            final JsonNode json = content.isEmpty() ? MAPPER.createObjectNode() : MAPPER.readTree(content);
+            return new AdmResult(status, json.path("reason").asText(null));
+        });
+    }
+
+    private AccessToken getAccessToken() {
+        final AccessToken token = accessToken;
+        if (token != null && !token.isExpired()) {
+            return token;
+        }
+        return refreshAccessToken(token);
+    }
+
+    /*
+     * Requests a new token unless another thread already replaced the stale one.
+     */
+    private synchronized AccessToken refreshAccessToken(final AccessToken stale) {
+        final AccessToken current = accessToken;
+        if (current != null && current != stale && !current.isExpired()) {
+            return current;
+        }
+
+        final HttpPost post = new HttpPost(tokenEndpoint);
+        post.setEntity(new UrlEncodedFormEntity(Arrays.asList(
+                new BasicNameValuePair("grant_type", "client_credentials"),
+                new BasicNameValuePair("scope", "messaging:push"),
+                new BasicNameValuePair("client_id", clientId),
+                new BasicNameValuePair("client_secret", clientSecret)), StandardCharsets.UTF_8));
+
+        try {
+            final JsonNode json = execute(post, response -> {
+                final String body = EntityUtils.toString(response.getEntity(), "UTF-8");
+                if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+                    throw new IOException("ADM authentication failed (" + response.getStatusLine() + "): " + body);
+                }
+                return MAPPER.readTree(body);
+            });
+            accessToken = new AccessToken(json.path("access_token").asText(),
+                    System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(json.path("expires_in").asLong()));
+            logger.debug("Obtained ADM access token for {}", clientId);
+            return accessToken;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class AccessToken {
+        private final String value;
+        private final long expiresAt;
+
+        private AccessToken(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt - EXPIRATION_MARGIN_IN_MILLIS;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender.adm;
+
+import static org.jboss.aerogear.unifiedpush.system.ConfigurationUtils.tryGetIntegerProperty;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.jboss.aerogear.unifiedpush.api.AdmVariant;
+import org.jboss.aerogear.unifiedpush.api.VariantType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import net.jodah.expiringmap.ExpirationListener;
+import net.jodah.expiringmap.ExpirationPolicy;
+import net.jodah.expiringmap.ExpiringMap;
+
+/**
+ * Keeps one {@link AdmClient} for every ADM client ID, so that all batches of the variants sharing the credentials
+ * also share the access token, the connections and the limit of concurrent requests.
+ *
+ * The clients are keyed by the client ID and the secret, so clients with outdated credentials are never handed out
+ * and are closed once inactive.
+ */
+@Service
+public class AdmClientCache {
+
+    private static final String PROPERTY_PREFIX = "aerogear." + VariantType.ADM.getTypeName() + ".";
+
+    public static final String CONCURRENT_REQUESTS = PROPERTY_PREFIX + "concurrentRequests";
+    public static final String REQUEST_TIMEOUT = PROPERTY_PREFIX + "requestTimeout";
+
+    private static final int DEFAULT_CONCURRENT_REQUESTS = 16;
+    private static final int DEFAULT_REQUEST_TIMEOUT_IN_MILLIS = 15000;
+
+    private final Logger logger = LoggerFactory.getLogger(AdmClientCache.class);
+
+    private final int concurrentRequests = Math.max(1, tryGetIntegerProperty(CONCURRENT_REQUESTS, DEFAULT_CONCURRENT_REQUESTS));
+    private final int requestTimeout = tryGetIntegerProperty(REQUEST_TIMEOUT, DEFAULT_REQUEST_TIMEOUT_IN_MILLIS);
+
+    private final ConcurrentMap<String, AdmClient> clients = ExpiringMap.builder()
+            .expiration(1, TimeUnit.HOURS)
+            .expirationPolicy(ExpirationPolicy.ACCESSED)
+            .asyncExpirationListener((ExpirationListener<String, AdmClient>) (key, client) -> {
+                logger.debug("ADM client was inactive for an hour, closing it");
+                client.close();
+            }).build();
+
+    /**
+     * @param variant the variant
+     * @return the client for the credentials of the variant
+     */
+    public AdmClient getClient(final AdmVariant variant) {
+        final AdmClient client = clients.get(clientKey(variant));
+        return client != null ? client : createClient(variant);
+    }
+
+    /**
+     * Serialized, so concurrent batches of a new variant never create a second client that nobody closes.
+     */
+    private synchronized AdmClient createClient(final AdmVariant variant) {
+        AdmClient client = clients.get(clientKey(variant));
+        if (client == null) {
+            client = new AdmClient(variant.getClientId(), variant.getClientSecret(), concurrentRequests, requestTimeout);
+            clients.put(clientKey(variant), client);
+        }
+        return client;
+    }
+
+    @PreDestroy
+    public void cleanUp() {
+        for (Map.Entry<String, AdmClient> client : clients.entrySet()) {
+            client.getValue().close();
+        }
+        clients.clear();
+    }
+
+    private static String clientKey(final AdmVariant variant) {
+        return variant.getClientId() + ":" + Objects.hash(variant.getClientSecret());
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender.adm;
+
+import org.apache.http.HttpStatus;
+
+/**
+ * Response of ADM for a single registration ID.
+ */
+public final class AdmResult {
+
+    /**
+     * Status of a registration ID that did not get any response from ADM.
+     */
+    public static final int NO_RESPONSE = -1;
+
+    // reasons after which ADM will never accept messages for the registration ID again
+    private static final String UNREGISTERED = "Unregistered";
+    private static final String INVALID_REGISTRATION_ID = "InvalidRegistrationId";
+
+    private final int status;
+    private final String reason;
+
+    AdmResult(int status, String reason) {
+        this.status = status;
+        this.reason = reason;
+    }
+
+    static AdmResult noResponse() {
+        return new AdmResult(NO_RESPONSE, null);
+    }
+
+    /**
+     * @return HTTP status, or {@link #NO_RESPONSE}
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return rejection reason reported by ADM, {@code null} when accepted or not reported
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    public boolean isAccepted() {
+        return status == HttpStatus.SC_OK;
+    }
+
+    public boolean isUnregistered() {
+        return UNREGISTERED.equals(reason) || INVALID_REGISTRATION_ID.equals(reason);
+    }
+
+    @Override
+    public String toString() {
+        return "AdmResult [status=" + status + ", reason=" + reason + "]";
+    }
+}
@@ -21,8 +21,11 @@ import static org.jboss.aerogear.unifiedpush.system.ConfigurationUtils.tryGetPro
 
 import java.io.ByteArrayInputStream;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 
@@ -34,9 +37,13 @@ import org.jboss.aerogear.unifiedpush.message.InternalUnifiedPushMessage;
 import org.jboss.aerogear.unifiedpush.message.Message;
 import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
 import org.jboss.aerogear.unifiedpush.message.apns.APNs;
+import org.jboss.aerogear.unifiedpush.message.cache.ApnsConnection;
+import org.jboss.aerogear.unifiedpush.message.cache.ApnsMessageCache;
 import org.jboss.aerogear.unifiedpush.message.cache.SimpleApnsClientCache;
+import org.jboss.aerogear.unifiedpush.message.sender.BatchDeliveryResult;
 import org.jboss.aerogear.unifiedpush.message.sender.NotificationSenderCallback;
 import org.jboss.aerogear.unifiedpush.message.sender.PushNotificationSender;
+import org.jboss.aerogear.unifiedpush.service.ClientInstallationAsyncService;
 import org.jboss.aerogear.unifiedpush.service.proxy.ProxyConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,12 +72,14 @@ public class PushyApnsSender implements PushNotificationSender {
     private static final String customAerogearApnsPushHost = tryGetProperty(CUSTOM_AEROGEAR_APNS_PUSH_HOST);
     private static final Integer customAerogearApnsPushPort = tryGetIntegerProperty(CUSTOM_AEROGEAR_APNS_PUSH_PORT);
 
-    private final ConcurrentSkipListSet<String> invalidTokens = new ConcurrentSkipListSet<>();
-
     @Inject
     private SimpleApnsClientCache simpleApnsClientCache;
     @Inject
+    private ApnsMessageCache apnsMessageCache;
+    @Inject
     private WorkQueueProcessor<iOSVariantUpdateEvent> variantUpdateEventEvent;
+    @Inject
+    private ClientInstallationAsyncService clientInstallationAsyncService;
 
     @Override
     public void sendPushMessage(final Variant variant, final Collection<String> tokens, final UnifiedPushMessage pushMessage, final String pushMessageInformationId, final NotificationSenderCallback senderCallback) {
@@ -84,7 +93,8 @@ public class PushyApnsSender implements PushNotificationSender {
         final String payload;
         {
             try {
-                payload = createPushPayload(pushMessage.getMessage(), pushMessageInformationId);
+                payload = apnsMessageCache.getPayload(pushMessageInformationId, iOSVariant.getVariantID(),
+                        () -> createPushPayload(pushMessage.getMessage(), pushMessageInformationId));
             } catch (IllegalArgumentException iae) {
                 logger.info(iae.getMessage(), iae);
                 senderCallback.onError("Nothing sent to APNs since the payload is too large");
@@ -92,10 +102,10 @@ public class PushyApnsSender implements PushNotificationSender {
             }
         }
 
-        final ApnsClient apnsClient;
+        final ApnsConnection apnsConnection;
         {
             try {
-                apnsClient = receiveApnsConnection(iOSVariant);
+                apnsConnection = receiveApnsConnection(iOSVariant);
             } catch (IllegalArgumentException iae) {
                 logger.error(iae.getMessage(), iae);
                 senderCallback.onError(String.format("Unable to connect to APNs (%s))", iae.getMessage()));
@@ -103,26 +113,19 @@ public class PushyApnsSender implements PushNotificationSender {
             }
         }
 
+        final ApnsClient apnsClient = apnsConnection.getClient();
         if (apnsClient.isConnected()) {
 
-            // we have managed to connect and will send tokens ;-)
-            senderCallback.onSuccess();
-
-            final String defaultApnsTopic = ApnsUtil.readDefaultTopic(iOSVariant.getCertificate(), iOSVariant.getPassphrase().toCharArray());
+            final String defaultApnsTopic = apnsMessageCache.getDefaultTopic(iOSVariant);
             logger.debug("sending payload for all tokens for {} to APNs ({})", iOSVariant.getVariantID(), defaultApnsTopic);
 
-
-            tokens.forEach(token -> {
+            // the notifications wait for a free stream in the in-flight window of the connection, the dispatcher
+            // moves on to the next batch; the batches in flight are bounded by the DispatchWindow
+            final BatchResponseHandler batch = new BatchResponseHandler(iOSVariant, tokens.size(), senderCallback);
+            for (String token : tokens) {
                 final SimpleApnsPushNotification pushNotification = new SimpleApnsPushNotification(token, defaultApnsTopic, payload);
-                final Future<PushNotificationResponse<SimpleApnsPushNotification>> notificationSendFuture = apnsClient.sendNotification(pushNotification);
-
-                notificationSendFuture.addListener(future -> {
-
-                    if (future.isSuccess()) {
-                        handlePushNotificationResponsePerToken(notificationSendFuture.get());
-                    }
-                });
-            });
+                apnsConnection.submit(() -> send(apnsConnection, pushNotification, batch));
+            }
 
         } else {
             logger.error("Unable to send notifications, client is not connected. Removing from cache pool");
@@ -131,21 +134,81 @@ public class PushyApnsSender implements PushNotificationSender {
         }
     }
 
-    private void handlePushNotificationResponsePerToken(final PushNotificationResponse<SimpleApnsPushNotification> pushNotificationResponse ) {
+    /**
+     * Sends one notification on a free stream of the connection and frees the stream up once APNs responded.
+     */
+    private void send(final ApnsConnection apnsConnection, final SimpleApnsPushNotification pushNotification, final BatchResponseHandler batch) {
+        final Future<PushNotificationResponse<SimpleApnsPushNotification>> notificationSendFuture;
+        try {
+            notificationSendFuture = apnsConnection.getClient().sendNotification(pushNotification);
+        } catch (RuntimeException e) {
+            logger.debug("Failed to send notification to APNs", e);
+            apnsConnection.release();
+            batch.onFailure();
+            return;
+        }
 
-        final String deviceToken = pushNotificationResponse.getPushNotification().getToken();
+        notificationSendFuture.addListener(future -> {
+            apnsConnection.release();
+            if (future.isSuccess()) {
+                batch.onResponse(notificationSendFuture.getNow());
+            } else {
+                logger.debug("Failed to send notification to APNs", future.cause());
+                batch.onFailure();
+            }
+        });
+    }
 
-        if (pushNotificationResponse.isAccepted()) {
-            logger.trace("Push notification for '{}' (payload={})", deviceToken, pushNotificationResponse.getPushNotification().getPayload());
-        } else {
-            final String rejectReason = pushNotificationResponse.getRejectionReason();
-            logger.trace("Push Message has been rejected with reason: {}", rejectReason);
+    /**
+     * Aggregates the APNs responses of one batch. Once all notifications of the batch are answered, the result is handed
+     * to the {@link NotificationSenderCallback} and the invalid tokens are removed in one bulk operation.
+     */
+    private class BatchResponseHandler {
+        private final iOSVariant variant;
+        private final NotificationSenderCallback senderCallback;
+        private final BatchDeliveryResult result;
+        private final AtomicInteger pending;
+        private final Set<String> invalidTokens = ConcurrentHashMap.newKeySet();
+
+        BatchResponseHandler(final iOSVariant variant, final int size, final NotificationSenderCallback senderCallback) {
+            this.variant = variant;
+            this.senderCallback = senderCallback;
+            this.result = new BatchDeliveryResult(size);
+            this.pending = new AtomicInteger(size);
+        }
 
-            // token is either invalid, or did just expire
-            if ((pushNotificationResponse.getTokenInvalidationTimestamp() != null) || ("BadDeviceToken".equals(rejectReason))) {
-                logger.info(rejectReason + ", removing token: " + deviceToken);
+        void onResponse(final PushNotificationResponse<SimpleApnsPushNotification> pushNotificationResponse) {
+            final String deviceToken = pushNotificationResponse.getPushNotification().getToken();
+
+            if (pushNotificationResponse.isAccepted()) {
+                logger.trace("Push notification for '{}' (payload={})", deviceToken, pushNotificationResponse.getPushNotification().getPayload());
+                result.accepted();
+            } else {
+                final String rejectReason = pushNotificationResponse.getRejectionReason();
+                logger.trace("Push Message has been rejected with reason: {}", rejectReason);
+                result.rejected(rejectReason);
+
+                // token is either invalid, or did just expire
+                if ((pushNotificationResponse.getTokenInvalidationTimestamp() != null) || ("BadDeviceToken".equals(rejectReason))) {
+                    logger.trace(rejectReason + ", removing token: " + deviceToken);
+                    invalidTokens.add(deviceToken);
+                }
+            }
+            completed();
+        }
 
-                invalidTokens.add(deviceToken);
+        void onFailure() {
+            result.failed();
+            completed();
+        }
+
+        private void completed() {
+            if (pending.decrementAndGet() == 0) {
+                if (!invalidTokens.isEmpty()) {
+                    logger.info(String.format("Removing %d invalid tokens of iOS variant %s", invalidTokens.size(), variant.getVariantID()));
+                    clientInstallationAsyncService.removeInstallationsForVariantByDeviceTokens(variant.getVariantID(), new HashSet<>(invalidTokens));
+                }
+                senderCallback.onComplete(result);
             }
         }
     }
@@ -179,8 +242,8 @@ public class PushyApnsSender implements PushNotificationSender {
         return payloadBuilder.buildWithDefaultMaximumLength();
     }
 
-    private ApnsClient receiveApnsConnection(final iOSVariant iOSVariant) {
-        return simpleApnsClientCache.getApnsClientForVariant(iOSVariant, () -> {
+    private ApnsConnection receiveApnsConnection(final iOSVariant iOSVariant) {
+        return simpleApnsClientCache.getApnsConnectionForVariant(iOSVariant, () -> {
             final ApnsClient apnsClient = buildApnsClient(iOSVariant);
 
             // connect and wait:
@@ -235,7 +298,7 @@ public class PushyApnsSender implements PushNotificationSender {
 
 
 
-    private synchronized void connectToDestinations(final iOSVariant iOSVariant, final ApnsClient apnsClient) {
+    private void connectToDestinations(final iOSVariant iOSVariant, final ApnsClient apnsClient) {
 
         String apnsHost;
         int apnsPort = ApnsClient.DEFAULT_APNS_PORT;
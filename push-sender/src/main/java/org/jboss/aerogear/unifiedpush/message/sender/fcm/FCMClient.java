@@ -0,0 +1,112 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender.fcm;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.stream.Collectors;
+
+import org.jboss.aerogear.unifiedpush.message.sender.http.PooledHttpClient;
+
+import com.google.android.gcm.server.Message;
+import com.google.android.gcm.server.MulticastResult;
+import com.google.android.gcm.server.Result;
+
+/**
+ * Asynchronous client of FCM for one server key.
+ *
+ * The client reuses one {@link ConfigurableFCMSender}, so the HTTP connections to FCM are kept alive and pooled
+ * between batches, and runs the requests on its own threads: the configured number of requests are sent at the same
+ * time, further requests wait in the bounded queue of the client (see {@link PooledHttpClient#newExecutor}). Once
+ * the queue is full, the calling thread sends the request itself, which slows down the producer of the requests
+ * instead of queuing them without bound.
+ */
+public class FCMClient {
+
+    private final ConfigurableFCMSender sender;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param googleKey the FCM server key
+     * @param concurrentRequests how many requests can be sent to FCM at the same time
+     */
+    public FCMClient(String googleKey, int concurrentRequests) {
+        this.sender = new ConfigurableFCMSender(googleKey);
+        this.executor = PooledHttpClient.newExecutor("fcm-client", concurrentRequests);
+    }
+
+    /**
+     * Sends the message to a batch of registration IDs.
+     *
+     * @param message the message
+     * @param registrationIds the registration IDs, at most 1000
+     * @return future completed with the FCM result for every registration ID, already completed if the request was
+     *         sent on the calling thread
+     */
+    public CompletableFuture<MulticastResult> send(final Message message, final List<String> registrationIds) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return sender.sendNoRetry(message, registrationIds);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Sends the message to a single topic or registration ID.
+     *
+     * @param message the message
+     * @param to the topic (starting with {@code /topics/}) or registration ID
+     * @return future completed with the FCM result
+     */
+    public CompletableFuture<Result> send(final Message message, final String to) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return sender.sendNoRetry(message, to);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Sends the message to all given topics in parallel.
+     *
+     * @param message the message
+     * @param topics the topics
+     * @return future completed with the results in the order of the topics, once all topics were answered
+     */
+    public CompletableFuture<List<Result>> sendToTopics(final Message message, final List<String> topics) {
+        final List<CompletableFuture<Result>> results = topics.stream()
+                .map(topic -> send(message, topic))
+                .collect(Collectors.toList());
+
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[results.size()]))
+                .thenApply(done -> results.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+    }
+
+    /**
+     * Stops the threads of the client once the pending requests are sent.
+     */
+    public void close() {
+        PooledHttpClient.shutdown(executor);
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender.fcm;
+
+import static org.jboss.aerogear.unifiedpush.system.ConfigurationUtils.tryGetIntegerProperty;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.jboss.aerogear.unifiedpush.api.AndroidVariant;
+import org.jboss.aerogear.unifiedpush.api.VariantType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import net.jodah.expiringmap.ExpirationListener;
+import net.jodah.expiringmap.ExpirationPolicy;
+import net.jodah.expiringmap.ExpiringMap;
+
+/**
+ * Keeps one {@link FCMClient} for every FCM server key, so that all batches of all variants using the key share
+ * the same connections and the same limit of concurrent requests.
+ */
+@Service
+public class FCMClientCache {
+
+    public static final String CONCURRENT_BATCHES = "aerogear." + VariantType.ANDROID.getTypeName() + ".concurrentBatches";
+
+    private static final int DEFAULT_CONCURRENT_BATCHES = 4;
+
+    private final Logger logger = LoggerFactory.getLogger(FCMClientCache.class);
+
+    private final int concurrentBatches = Math.max(1, tryGetIntegerProperty(CONCURRENT_BATCHES, DEFAULT_CONCURRENT_BATCHES));
+
+    private final ConcurrentMap<String, FCMClient> clients = ExpiringMap.builder()
+            .expiration(1, TimeUnit.HOURS)
+            .expirationPolicy(ExpirationPolicy.ACCESSED)
+            .asyncExpirationListener((ExpirationListener<String, FCMClient>) (googleKey, client) -> {
+                logger.debug("FCM client was inactive for an hour, closing it");
+                client.close();
+            }).build();
+
+    /**
+     * @param variant the variant
+     * @return the client for the server key of the variant
+     */
+    public FCMClient getClient(final AndroidVariant variant) {
+        final FCMClient client = clients.get(variant.getGoogleKey());
+        return client != null ? client : createClient(variant);
+    }
+
+    /**
+     * ExpiringMap does not compute atomically, so creation is serialized: a client created by a losing thread would
+     * never be closed and would keep its executor running.
+     */
+    private synchronized FCMClient createClient(final AndroidVariant variant) {
+        FCMClient client = clients.get(variant.getGoogleKey());
+        if (client == null) {
+            client = new FCMClient(variant.getGoogleKey(), concurrentBatches);
+            clients.put(variant.getGoogleKey(), client);
+        }
+        return client;
+    }
+
+    @PreDestroy
+    public void cleanUp() {
+        for (Map.Entry<String, FCMClient> client : clients.entrySet()) {
+            client.getValue().close();
+        }
+        clients.clear();
+    }
+}
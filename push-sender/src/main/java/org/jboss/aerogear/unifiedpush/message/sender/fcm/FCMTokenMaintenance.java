@@ -0,0 +1,167 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender.fcm;
+
+import static org.jboss.aerogear.unifiedpush.system.ConfigurationUtils.tryGetIntegerProperty;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.jboss.aerogear.unifiedpush.api.VariantType;
+import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Collects the outdated (canonical IDs) and invalid registration IDs reported by FCM across batches and applies
+ * them to the database in bulk, on its own thread.
+ *
+ * The pending changes are flushed once {@link #BATCH_SIZE} tokens are collected, or at the latest after
+ * {@link #FLUSH_INTERVAL} milliseconds.
+ */
+@Service
+public class FCMTokenMaintenance {
+
+    private static final String PROPERTY_PREFIX = "aerogear." + VariantType.ANDROID.getTypeName() + ".tokenMaintenance.";
+    public static final String BATCH_SIZE = PROPERTY_PREFIX + "batchSize";
+    public static final String FLUSH_INTERVAL = PROPERTY_PREFIX + "flushInterval";
+
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final int DEFAULT_FLUSH_INTERVAL_IN_MILLIS = 5000;
+
+    private final Logger logger = LoggerFactory.getLogger(FCMTokenMaintenance.class);
+
+    private final int batchSize = Math.max(1, tryGetIntegerProperty(BATCH_SIZE, DEFAULT_BATCH_SIZE));
+    private final int flushInterval = Math.max(1, tryGetIntegerProperty(FLUSH_INTERVAL, DEFAULT_FLUSH_INTERVAL_IN_MILLIS));
+
+    private final ConcurrentMap<String, PendingTokens> pendingTokens = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "fcm-token-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Inject
+    private ClientInstallationService clientInstallationService;
+
+    @PostConstruct
+    public void init() {
+        scheduler.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues the replacement of an outdated registration ID with the canonical ID returned by FCM.
+     *
+     * @param variantID id of the variant
+     * @param deviceToken the outdated registration ID
+     * @param canonicalToken the canonical ID
+     */
+    public void replaceToken(String variantID, String deviceToken, String canonicalToken) {
+        queue(variantID, tokens -> tokens.canonicalTokens.put(deviceToken, canonicalToken) == null);
+    }
+
+    /**
+     * Queues the removal of a registration ID rejected by FCM.
+     *
+     * @param variantID id of the variant
+     * @param deviceToken the invalid registration ID
+     */
+    public void removeToken(String variantID, String deviceToken) {
+        queue(variantID, tokens -> tokens.invalidTokens.add(deviceToken));
+    }
+
+    private void queue(String variantID, Predicate<PendingTokens> change) {
+        final AtomicBoolean added = new AtomicBoolean();
+        pendingTokens.compute(variantID, (id, pending) -> {
+            final PendingTokens tokens = pending != null ? pending : new PendingTokens();
+            added.set(change.test(tokens));
+            if (added.get()) {
+                pendingCount.incrementAndGet();
+            }
+            return tokens;
+        });
+
+        if (added.get() && pendingCount.get() >= batchSize && !scheduler.isShutdown() && flushRequested.compareAndSet(false, true)) {
+            scheduler.execute(this::flush);
+        }
+    }
+
+    /**
+     * Applies all pending changes to the database.
+     */
+    synchronized void flush() {
+        flushRequested.set(false);
+
+        for (String variantID : pendingTokens.keySet()) {
+            final PendingTokens tokens = pendingTokens.remove(variantID);
+            if (tokens == null) {
+                continue;
+            }
+            pendingCount.addAndGet(-tokens.size());
+
+            try {
+                if (!tokens.canonicalTokens.isEmpty()) {
+                    logger.info(String.format("Based on returned canonical ids from FCM, updating %d Android installations", tokens.canonicalTokens.size()));
+                    clientInstallationService.replaceDeviceTokensForVariant(variantID, tokens.canonicalTokens);
+                }
+                if (!tokens.invalidTokens.isEmpty()) {
+                    logger.info(String.format("Based on FCM response data and error codes, deleting %d invalid Android installations", tokens.invalidTokens.size()));
+                    clientInstallationService.removeInstallationsForVariantByDeviceTokens(variantID, tokens.invalidTokens);
+                }
+            } catch (RuntimeException e) {
+                // FCM keeps reporting the tokens, so they are picked up again with one of the next batches
+                logger.warn(String.format("Unable to clean up %d Android installations of variant %s", tokens.size(), variantID), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        flush();
+    }
+
+    /**
+     * Token changes of one variant, only modified while holding the map entry.
+     */
+    private static class PendingTokens {
+        private final Map<String, String> canonicalTokens = new HashMap<>();
+        private final Set<String> invalidTokens = new HashSet<>();
+
+        int size() {
+            return canonicalTokens.size() + invalidTokens.size();
+        }
+    }
+}
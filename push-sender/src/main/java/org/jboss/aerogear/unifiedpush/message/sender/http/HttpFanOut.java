@@ -0,0 +1,72 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender.http;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.apache.http.client.methods.HttpUriRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends one HTTP request per URL, for push networks where every token is the URL of its endpoint (e.g. SimplePush).
+ *
+ * The requests of a batch are sent on the threads of the client over pooled keep-alive connections (see
+ * {@link PooledHttpClient}).
+ */
+public class HttpFanOut extends PooledHttpClient {
+
+    /**
+     * Status of a URL that did not get any response (unreachable, timed out, ...).
+     */
+    public static final int NO_RESPONSE = -1;
+
+    private final Logger logger = LoggerFactory.getLogger(HttpFanOut.class);
+
+    /**
+     * @param name name of the threads sending the requests
+     * @param concurrentRequests how many requests can be sent at the same time
+     * @param timeoutInMillis connect and read timeout of a request, and deadline of the whole request
+     */
+    public HttpFanOut(String name, int concurrentRequests, int timeoutInMillis) {
+        super(name, concurrentRequests, timeoutInMillis);
+    }
+
+    /**
+     * Sends a request to every URL.
+     *
+     * @param urls the URLs
+     * @param requests creates the request of a URL, the body should be shared by all URLs of a batch
+     * @return future completed with the HTTP status of every URL (in the order of the URLs), or {@link #NO_RESPONSE}
+     */
+    public CompletableFuture<List<Integer>> send(final List<String> urls, final Function<String, ? extends HttpUriRequest> requests) {
+        return sendAll(urls, url -> execute(url, requests));
+    }
+
+    private int execute(final String url, final Function<String, ? extends HttpUriRequest> requests) {
+        try {
+            // the response is consumed once handled, so the connection goes back to the pool
+            return execute(requests.apply(url), response -> response.getStatusLine().getStatusCode());
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Failed to send request to {}: {}", url, e.getMessage());
+            return NO_RESPONSE;
+        }
+    }
+}
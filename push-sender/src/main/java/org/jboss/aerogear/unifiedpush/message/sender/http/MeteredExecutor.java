@@ -0,0 +1,74 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender.http;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.aerogear.unifiedpush.message.metrics.SenderPoolMetrics;
+
+/**
+ * Executor of a push network client (see {@link PooledHttpClient#newExecutor(String, int)}), which reports its
+ * threads, queue and the time tasks waited in the queue to the {@link SenderPoolMetrics} of its name.
+ */
+class MeteredExecutor extends ThreadPoolExecutor {
+
+    private final SenderPoolMetrics.Pool metrics;
+
+    MeteredExecutor(String name, int threads, int queueCapacity) {
+        super(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), newThreadFactory(name),
+                (task, pool) -> {
+                    // once shut down a task must fail rather than be dropped, its future would never complete
+                    if (pool.isShutdown()) {
+                        throw new RejectedExecutionException(name + " is closed");
+                    }
+                    SenderPoolMetrics.pool(name).ranOnCaller();
+                    task.run();
+                });
+        this.metrics = SenderPoolMetrics.pool(name);
+        allowCoreThreadTimeOut(true);
+        metrics.register(this);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        final long queuedAt = System.nanoTime();
+        super.execute(() -> {
+            metrics.taskStarted(System.nanoTime() - queuedAt);
+            command.run();
+        });
+    }
+
+    @Override
+    protected void terminated() {
+        metrics.unregister(this);
+        super.terminated();
+    }
+
+    private static ThreadFactory newThreadFactory(String name) {
+        final AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
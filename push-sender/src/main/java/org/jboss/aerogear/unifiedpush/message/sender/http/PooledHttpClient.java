@@ -0,0 +1,196 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender.http;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.jboss.aerogear.unifiedpush.message.metrics.SenderPoolMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base of the push network clients that send every token of a batch as a separate HTTP request.
+ *
+ * The requests are blocking HTTP requests over keep-alive connections, pooled per host, sent on a fixed number of
+ * threads of the client, so at most the configured number of requests are in flight at the same time. A batch is
+ * handed to the threads as a few tasks which take the next token of the batch until none is left, rather than as a
+ * task per token: the queue of the client holds a bounded number of tasks per batch and is bounded itself. Once the
+ * queue is full, the calling thread sends the requests of the batch, which slows down the dispatcher instead of
+ * piling up more work.
+ *
+ * Every request is bound by the connect and read timeout, and by a deadline of the same length on the whole request
+ * (a response trickling in is aborted once the deadline is reached).
+ */
+public abstract class PooledHttpClient {
+
+    /**
+     * Tasks that can wait in the queue of a client per thread of the client.
+     */
+    public static final int QUEUED_TASKS_PER_THREAD = 4;
+
+    // aborts the requests that exceed their deadline, shared by all the clients
+    private static final ScheduledThreadPoolExecutor DEADLINES = newDeadlineExecutor();
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    protected final CloseableHttpClient httpClient;
+    private final ThreadPoolExecutor executor;
+    private final SenderPoolMetrics.Pool metrics;
+    private final int concurrentRequests;
+    private final int timeoutInMillis;
+
+    /**
+     * @param name name of the threads sending the requests
+     * @param concurrentRequests how many requests can be sent at the same time
+     * @param timeoutInMillis connect and read timeout of a request, and deadline of the whole request
+     */
+    protected PooledHttpClient(String name, int concurrentRequests, int timeoutInMillis) {
+        final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(concurrentRequests);
+        connectionManager.setDefaultMaxPerRoute(concurrentRequests);
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(timeoutInMillis)
+                        .setConnectionRequestTimeout(timeoutInMillis)
+                        .setSocketTimeout(timeoutInMillis)
+                        .build())
+                .build();
+        this.executor = newExecutor(name, concurrentRequests);
+        this.metrics = SenderPoolMetrics.pool(name);
+        this.concurrentRequests = concurrentRequests;
+        this.timeoutInMillis = timeoutInMillis;
+    }
+
+    /**
+     * Sends one request per token on the threads of the client, or on the calling thread if the queue of the client is
+     * full.
+     *
+     * @param tokens the tokens of the batch
+     * @param request sends the request of a token and returns its result, must not throw
+     * @return future completed with the result of every token, in the order of the tokens
+     */
+    protected <T> CompletableFuture<List<T>> sendAll(final List<String> tokens, final Function<String, T> request) {
+        final AtomicReferenceArray<T> results = new AtomicReferenceArray<>(tokens.size());
+        final AtomicInteger next = new AtomicInteger();
+        final int workers = Math.min(tokens.size(), concurrentRequests);
+
+        final List<CompletableFuture<Void>> done = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            done.add(CompletableFuture.runAsync(() -> {
+                for (int index = next.getAndIncrement(); index < tokens.size(); index = next.getAndIncrement()) {
+                    results.set(index, request.apply(tokens.get(index)));
+                }
+            }, executor));
+        }
+
+        return CompletableFuture.allOf(done.toArray(new CompletableFuture[done.size()]))
+                .thenApply(all -> {
+                    final List<T> list = new ArrayList<>(results.length());
+                    for (int index = 0; index < results.length(); index++) {
+                        list.add(results.get(index));
+                    }
+                    return list;
+                });
+    }
+
+    /**
+     * Executes a request, which is aborted if it is not complete once the timeout of the client elapsed.
+     *
+     * @param request the request
+     * @param handler reads the response, the response is consumed afterwards so the connection goes back to the pool
+     * @return the result of the handler
+     * @throws IOException if the request failed or was aborted
+     */
+    protected <T> T execute(final HttpUriRequest request, final ResponseHandler<? extends T> handler) throws IOException {
+        final ScheduledFuture<?> deadline = DEADLINES.schedule(() -> {
+            metrics.requestTimedOut();
+            request.abort();
+        }, timeoutInMillis, TimeUnit.MILLISECONDS);
+        try {
+            return httpClient.execute(request, handler);
+        } finally {
+            deadline.cancel(false);
+        }
+    }
+
+    /**
+     * Stops the threads of the client and closes its connections once the pending requests are sent.
+     */
+    public void close() {
+        shutdown(executor);
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close connections: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the executor of a push network client: a fixed number of daemon threads, which are stopped when idle,
+     * and a queue of at most {@link #QUEUED_TASKS_PER_THREAD} tasks per thread. Once the queue is full, a task runs on
+     * the thread submitting it. The executor reports to the {@link SenderPoolMetrics} of its name.
+     *
+     * @param name name of the threads
+     * @param threads how many requests can be sent at the same time
+     * @return the executor
+     */
+    public static ThreadPoolExecutor newExecutor(String name, int threads) {
+        return new MeteredExecutor(name, threads, threads * QUEUED_TASKS_PER_THREAD);
+    }
+
+    /**
+     * Stops the threads of an executor created by {@link #newExecutor(String, int)} once the pending requests are sent.
+     *
+     * @param executor the executor
+     */
+    public static void shutdown(ThreadPoolExecutor executor) {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor newDeadlineExecutor() {
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "http-request-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // most requests complete in time, their cancelled deadlines must not pile up in the queue
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender.wns;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.jboss.aerogear.unifiedpush.message.sender.http.PooledHttpClient;
+import org.jboss.aerogear.unifiedpush.system.ConfigurationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Asynchronous client of WNS for one package SID and client secret.
+ *
+ * The OAuth access token is requested once and reused by all notifications until it expires or WNS answers
+ * {@code 401 Unauthorized}; the token is then refreshed once, however many requests noticed it. Channel URIs are
+ * posted concurrently over pooled keep-alive connections (see {@link PooledHttpClient}).
+ */
+public class WnsClient extends PooledHttpClient {
+
+    public static final String CUSTOM_AEROGEAR_WNS_TOKEN_HOST = "custom.aerogear.wns.token.host";
+
+    public static final String WNS_TOKEN_ENDPOINT = "https://login.live.com/accesstoken.srf";
+
+    /**
+     * Status of a channel URI that did not get any response from WNS.
+     */
+    public static final int NO_RESPONSE = -1;
+
+    // the token is refreshed a bit before it expires, so it does not expire while requests are in flight
+    private static final long EXPIRATION_MARGIN_IN_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Logger logger = LoggerFactory.getLogger(WnsClient.class);
+
+    private final String sid;
+    private final String clientSecret;
+    private final String tokenEndpoint;
+
+    private volatile AccessToken accessToken;
+
+    /**
+     * @param sid the package SID
+     * @param clientSecret the client secret
+     * @param concurrentRequests how many requests can be sent to WNS at the same time
+     * @param timeoutInMillis connect and read timeout of a request, and deadline of the whole request
+     */
+    public WnsClient(String sid, String clientSecret, int concurrentRequests, int timeoutInMillis) {
+        // channel URIs of a batch are spread over a few WNS hosts
+        super("wns-client", concurrentRequests, timeoutInMillis);
+        this.sid = sid;
+        this.clientSecret = clientSecret;
+        // let's see if there is a different URL we should authenticate with (e.g. load/stress testing)
+        this.tokenEndpoint = ConfigurationUtils.tryGetProperty(CUSTOM_AEROGEAR_WNS_TOKEN_HOST, WNS_TOKEN_ENDPOINT);
+    }
+
+    /**
+     * Sends the notification to every channel URI.
+     *
+     * @param notification the notification
+     * @param channelUris the channel URIs
+     * @return future completed with the HTTP status of every channel URI (in the order of the channel URIs, or
+     *         {@link #NO_RESPONSE}), or completed exceptionally if no access token could be obtained
+     */
+    public CompletableFuture<List<Integer>> send(final WnsNotification notification, final List<String> channelUris) {
+        // authenticate once for the batch, rather than failing every channel URI on its own
+        try {
+            getAccessToken();
+        } catch (UncheckedIOException e) {
+            final CompletableFuture<List<Integer>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e.getCause());
+            return failed;
+        }
+
+        return sendAll(channelUris, channelUri -> push(notification, channelUri));
+    }
+
+    private int push(final WnsNotification notification, final String channelUri) {
+        try {
+            final AccessToken token = getAccessToken();
+            final int status = post(notification, channelUri, token);
+            if (status != HttpStatus.SC_UNAUTHORIZED) {
+                return status;
+            }
+            // the token expired or was revoked, retry once with a new one
+            return post(notification, channelUri, refreshAccessToken(token));
+        } catch (IOException | UncheckedIOException e) {
+            // a failed token refresh must not discard the statuses of the other channel URIs
+            logger.debug("Failed to send notification to WNS channel {}: {}", channelUri, e.getMessage());
+            return NO_RESPONSE;
+        }
+    }
+
+    private int post(final WnsNotification notification, final String channelUri, final AccessToken token) throws IOException {
+        final HttpPost post = new HttpPost(channelUri);
+        post.setHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token.value);
+        post.setHeader("X-WNS-Type", notification.getType());
+        if (notification.getTtl() != null) {
+            post.setHeader("X-WNS-TTL", String.valueOf(notification.getTtl()));
+        }
+        post.setEntity(new ByteArrayEntity(notification.getBody(), ContentType.create(notification.getContentType())));
+
+        // the connection goes back to the pool once the response is consumed
+        return execute(post, response -> response.getStatusLine().getStatusCode());
+    }
+
+    private AccessToken getAccessToken() {
+        final AccessToken token = accessToken;
+        if (token != null && !token.isExpired()) {
+            return token;
+        }
+        return refreshAccessToken(token);
+    }
+
+    /*
+     * Requests a new token unless another thread already replaced the stale one.
+     */
+    private synchronized AccessToken refreshAccessToken(final AccessToken stale) {
+        final AccessToken current = accessToken;
+        if (current != null && current != stale && !current.isExpired()) {
+            return current;
+        }
+
+        final HttpPost post = new HttpPost(tokenEndpoint);
+        post.setEntity(new UrlEncodedFormEntity(Arrays.asList(
+                new BasicNameValuePair("grant_type", "client_credentials"),
+                new BasicNameValuePair("client_id", sid),
+                new BasicNameValuePair("client_secret", clientSecret),
+                new BasicNameValuePair("scope", "notify.windows.com")), StandardCharsets.UTF_8));
+
+        try {
+            final JsonNode json = execute(post, response -> {
+                final String body = EntityUtils.toString(response.getEntity(), "UTF-8");
+                if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+                    throw new IOException("WNS authentication failed (" + response.getStatusLine() + "): " + body);
+                }
+                return MAPPER.readTree(body);
+            });
+            accessToken = new AccessToken(json.path("access_token").asText(),
+                    System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(json.path("expires_in").asLong()));
+            logger.debug("Obtained WNS access token for {}", sid);
+            return accessToken;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class AccessToken {
+        private final String value;
+        private final long expiresAt;
+
+        private AccessToken(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt - EXPIRATION_MARGIN_IN_MILLIS;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender.wns;
+
+import static org.jboss.aerogear.unifiedpush.system.ConfigurationUtils.tryGetIntegerProperty;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.jboss.aerogear.unifiedpush.api.VariantType;
+import org.jboss.aerogear.unifiedpush.api.WindowsWNSVariant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import net.jodah.expiringmap.ExpirationListener;
+import net.jodah.expiringmap.ExpirationPolicy;
+import net.jodah.expiringmap.ExpiringMap;
+
+/**
+ * Keeps one {@link WnsClient} for every variant, so that all batches of a variant share the access token, the
+ * connections and the limit of concurrent requests.
+ *
+ * The clients are keyed by the variant and its credentials, so clients with outdated credentials are never handed
+ * out and are closed once inactive.
+ */
+@Service
+public class WnsClientCache {
+
+    private static final String PROPERTY_PREFIX = "aerogear." + VariantType.WINDOWS_WNS.getTypeName() + ".";
+
+    public static final String CONCURRENT_REQUESTS = PROPERTY_PREFIX + "concurrentRequests";
+    public static final String REQUEST_TIMEOUT = PROPERTY_PREFIX + "requestTimeout";
+
+    private static final int DEFAULT_CONCURRENT_REQUESTS = 16;
+    private static final int DEFAULT_REQUEST_TIMEOUT_IN_MILLIS = 15000;
+
+    private final Logger logger = LoggerFactory.getLogger(WnsClientCache.class);
+
+    private final int concurrentRequests = Math.max(1, tryGetIntegerProperty(CONCURRENT_REQUESTS, DEFAULT_CONCURRENT_REQUESTS));
+    private final int requestTimeout = tryGetIntegerProperty(REQUEST_TIMEOUT, DEFAULT_REQUEST_TIMEOUT_IN_MILLIS);
+
+    private final ConcurrentMap<String, WnsClient> clients = ExpiringMap.builder()
+            .expiration(1, TimeUnit.HOURS)
+            .expirationPolicy(ExpirationPolicy.ACCESSED)
+            .asyncExpirationListener((ExpirationListener<String, WnsClient>) (key, client) -> {
+                logger.debug("WNS client was inactive for an hour, closing it");
+                client.close();
+            }).build();
+
+    /**
+     * @param variant the variant
+     * @return the client for the credentials of the variant
+     */
+    public WnsClient getClient(final WindowsWNSVariant variant) {
+        final WnsClient client = clients.get(clientKey(variant));
+        return client != null ? client : createClient(variant);
+    }
+
+    /**
+     * Creates the client at most once per key, an unused duplicate would leak its connection pool and executor.
+     */
+    private synchronized WnsClient createClient(final WindowsWNSVariant variant) {
+        WnsClient client = clients.get(clientKey(variant));
+        if (client == null) {
+            client = new WnsClient(variant.getSid(), variant.getClientSecret(), concurrentRequests, requestTimeout);
+            clients.put(clientKey(variant), client);
+        }
+        return client;
+    }
+
+    @PreDestroy
+    public void cleanUp() {
+        for (Map.Entry<String, WnsClient> client : clients.entrySet()) {
+            client.getValue().close();
+        }
+        clients.clear();
+    }
+
+    private static String clientKey(final WindowsWNSVariant variant) {
+        return variant.getVariantID() + ":" + Objects.hash(variant.getSid(), variant.getClientSecret());
+    }
+}
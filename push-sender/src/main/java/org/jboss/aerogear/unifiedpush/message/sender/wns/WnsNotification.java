@@ -0,0 +1,113 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender.wns;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+import ar.com.fernandospr.wns.model.WnsBadge;
+import ar.com.fernandospr.wns.model.WnsRaw;
+import ar.com.fernandospr.wns.model.WnsTile;
+import ar.com.fernandospr.wns.model.WnsToast;
+
+/**
+ * A WNS notification ready to be posted to channel URIs: the notification type, the serialized body and the
+ * optional time to live.
+ *
+ * Notifications are immutable, the body is serialized once and shared by all channel URIs of a batch.
+ */
+public final class WnsNotification {
+
+    private static final String XML = "text/xml";
+    private static final String OCTET_STREAM = "application/octet-stream";
+
+    private static final ConcurrentMap<Class<?>, JAXBContext> CONTEXTS = new ConcurrentHashMap<>();
+
+    private final String type;
+    private final String contentType;
+    private final byte[] body;
+    private final Integer ttl;
+
+    private WnsNotification(String type, String contentType, byte[] body, Integer ttl) {
+        this.type = type;
+        this.contentType = contentType;
+        this.body = body;
+        this.ttl = ttl;
+    }
+
+    public static WnsNotification toast(WnsToast toast, Integer ttl) {
+        return xml("wns/toast", toast, ttl);
+    }
+
+    public static WnsNotification tile(WnsTile tile, Integer ttl) {
+        return xml("wns/tile", tile, ttl);
+    }
+
+    public static WnsNotification badge(WnsBadge badge, Integer ttl) {
+        return xml("wns/badge", badge, ttl);
+    }
+
+    public static WnsNotification raw(WnsRaw raw, Integer ttl) {
+        return new WnsNotification("wns/raw", OCTET_STREAM, raw.stream, ttl);
+    }
+
+    private static WnsNotification xml(String type, Object notification, Integer ttl) {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try {
+            // contexts are expensive to create but thread safe, marshallers are cheap but not thread safe
+            CONTEXTS.computeIfAbsent(notification.getClass(), WnsNotification::createContext)
+                    .createMarshaller().marshal(notification, body);
+        } catch (JAXBException e) {
+            throw new IllegalArgumentException("unable to serialize " + type + " notification", e);
+        }
+        return new WnsNotification(type, XML, body.toByteArray(), ttl);
+    }
+
+    private static JAXBContext createContext(Class<?> type) {
+        try {
+            return JAXBContext.newInstance(type);
+        } catch (JAXBException e) {
+            throw new IllegalArgumentException("unable to create XML context for " + type.getName(), e);
+        }
+    }
+
+    /**
+     * @return value of the {@code X-WNS-Type} header
+     */
+    public String getType() {
+        return type;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * @return value of the {@code X-WNS-TTL} header, {@code null} when not set
+     */
+    public Integer getTtl() {
+        return ttl;
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.token;
+
+import java.util.Set;
+
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.dao.ResultStreamException;
+import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
+import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithTokens;
+import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithVariants;
+import org.jboss.aerogear.unifiedpush.message.holder.TokenBatch;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Walks a device token {@link ResultsStream} of one variant and cuts it into batches on demand.
+ *
+ * The cursor is exposed as a {@link Flux} created by {@link Flux#generate}, so the underlying database cursor
+ * is advanced only when a subscriber requests the next batch. The cursor also keeps the bookkeeping
+ * (serial ID, last token, number of loaded tokens) that is needed to continue in the next transaction.
+ */
+class TokenBatchCursor {
+
+	private final MessageHolderWithVariants msg;
+	private final Variant variant;
+	private final ResultsStream<String> tokenStream;
+	private final Set<String> topics;
+	private final int batchSize;
+	private final int batchesToLoad;
+
+	private int serialId;
+	private int batchNumber;
+	private int tokensLoaded;
+	private String lastTokenInBatch;
+
+	/**
+	 * @param msg the request the tokens are loaded for
+	 * @param variant the variant the token stream belongs to
+	 * @param tokenStream stream of device tokens
+	 * @param topics GCM topics that are submitted as the very first batch, may be empty
+	 * @param serialId serial ID of the last batch loaded by a previous transaction
+	 * @param batchSize number of tokens in one batch
+	 * @param batchesToLoad maximum number of batches loaded by this cursor
+	 */
+	TokenBatchCursor(MessageHolderWithVariants msg, Variant variant, ResultsStream<String> tokenStream,
+			Set<String> topics, int serialId, int batchSize, int batchesToLoad) {
+		this.msg = msg;
+		this.variant = variant;
+		this.tokenStream = tokenStream;
+		this.topics = topics;
+		this.serialId = serialId;
+		this.batchSize = batchSize;
+		this.batchesToLoad = batchesToLoad;
+	}
+
+	/**
+	 * @return cold, demand-driven stream of token batches; it reads from the database on the subscribing thread and
+	 *         terminates with the {@link ResultStreamException} if the database cursor fails
+	 */
+	Flux<MessageHolderWithTokens> batches() {
+		return Flux.generate(sink -> {
+			try {
+				final MessageHolderWithTokens batch = nextBatch();
+				if (batch == null) {
+					sink.complete();
+				} else {
+					sink.next(batch);
+				}
+			} catch (ResultStreamException e) {
+				sink.error(e);
+			}
+		});
+	}
+
+	private MessageHolderWithTokens nextBatch() throws ResultStreamException {
+		if (batchNumber >= batchesToLoad) {
+			return null;
+		}
+
+		// increasing the serial ID,
+		// to make sure it's properly read from all block
+		++serialId;
+
+		final TokenBatch tokens;
+
+		// On Android, the first batch is for GCM3 topics
+		// legacy tokens are submitted in the batch #2 and later
+		if (batchNumber == 0 && !topics.isEmpty()) {
+			tokens = TokenBatch.copyOf(topics);
+		} else {
+			// the tokens are streamed sorted and distinct, so they are just appended
+			tokens = new TokenBatch(batchSize);
+			for (int i = 0; i < batchSize && tokenStream.next(); i++) {
+				lastTokenInBatch = tokenStream.get();
+				tokens.append(lastTokenInBatch);
+				tokensLoaded += 1;
+			}
+			tokens.trimToSize();
+		}
+		batchNumber++;
+
+		if (tokens.isEmpty()) {
+			return null;
+		}
+		return new MessageHolderWithTokens(msg.getPushMessageInformation(), msg.getUnifiedPushMessage(), variant,
+				tokens, serialId);
+	}
+
+	int getSerialId() {
+		return serialId;
+	}
+
+	int getTokensLoaded() {
+		return tokensLoaded;
+	}
+
+	String getLastTokenInBatch() {
+		return lastTokenInBatch;
+	}
+}
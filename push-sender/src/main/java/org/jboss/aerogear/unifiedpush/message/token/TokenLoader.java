@@ -17,18 +17,27 @@
 package org.jboss.aerogear.unifiedpush.message.token;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.api.VariantType;
 import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
 import org.jboss.aerogear.unifiedpush.message.Criteria;
+import org.jboss.aerogear.unifiedpush.message.DispatchWindow;
 import org.jboss.aerogear.unifiedpush.message.InternalUnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.NotificationDispatcher;
 import org.jboss.aerogear.unifiedpush.message.NotificationRouter;
 import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
 import org.jboss.aerogear.unifiedpush.message.configuration.SenderConfiguration;
@@ -36,7 +45,9 @@ import org.jboss.aerogear.unifiedpush.message.event.AllBatchesLoadedEvent;
 import org.jboss.aerogear.unifiedpush.message.event.BatchLoadedEvent;
 import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithTokens;
 import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithVariants;
+import org.jboss.aerogear.unifiedpush.message.metrics.DispatchQueueMetrics;
 import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
+import org.reactivestreams.Subscription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -44,10 +55,17 @@ import org.springframework.beans.factory.annotation.BeanFactoryAnnotationUtils;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 import reactor.core.publisher.TopicProcessor;
 import reactor.core.publisher.WorkQueueProcessor;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * Receives a request for sending a push message to given variants from
@@ -58,11 +76,25 @@ import reactor.core.publisher.WorkQueueProcessor;
  *
  * {@link TokenLoader} uses result stream with configured fetch size so that it
  * can split database results into several batches.
+ *
+ * Batches are pulled from the result stream only when the {@link DispatchWindow}
+ * has a free slot for them, so undelivered batches pause the database cursor
+ * rather than dropping the rest of the variant (see
+ * {@link DispatchQueueMetrics}).
  */
 @Service
 @Transactional
 public class TokenLoader {
 
+	// a waiting loader is woken up by every delivered batch, the timeout only
+	// makes it notice a dispatch queue that is no longer alive and reclaim
+	// expired slots
+	private static final long DISPATCH_SLOT_CHECK_INTERVAL_IN_MILLIS = 500;
+
+	// serial IDs of the token ranges of a split variant start this far apart,
+	// so that batches of different ranges never share a serial ID
+	static final int TOKEN_RANGE_SERIAL_ID_STRIDE = 1_000_000;
+
 	private final Logger logger = LoggerFactory.getLogger(TokenLoader.class);
 
 	@Inject
@@ -74,11 +106,19 @@ public class TokenLoader {
 	@Inject
 	private TopicProcessor<MessageHolderWithVariants> nextBatchEvent;
 
+	@Inject
+	private DispatchWindow dispatchWindow;
+
+	@Inject
+	private DispatchQueueMetrics dispatchQueueMetrics;
+
 	@Inject
 	private ApplicationContext context;
 	@Inject
 	private TokenLoaderWrapper wrapper;
 
+	private final Map<VariantType, Scheduler> loaderSchedulers = new ConcurrentHashMap<>();
+
 	@PostConstruct
 	public void subscribe() {
 		nextBatchEvent.repeat().subscribe(s -> wrapper.loadAndQueueTokenBatch(s));
@@ -100,176 +140,365 @@ public class TokenLoader {
 	 * translated to JMS event). When all batches were loaded for the given
 	 * variant, it fires {@link AllBatchesLoadedEvent}.
 	 *
+	 * Variants are loaded in parallel, at most
+	 * {@link SenderConfiguration#variantParallelism()} of them at a time.
+	 * A large variant may be further split into token ranges that are loaded
+	 * in parallel as well (see
+	 * {@link SenderConfiguration#tokenRangePartitions()}).
+	 *
 	 * @param msg
 	 *            holder object containing the payload and info about the
 	 */
 
-	@Transactional(readOnly = true)
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
 	public void loadAndQueueTokenBatch(MessageHolderWithVariants msg) throws IllegalStateException {
-		final UnifiedPushMessage message = msg.getUnifiedPushMessage();
 		final VariantType variantType = msg.getVariantType();
 		final Collection<Variant> variants = msg.getVariants();
+		final SenderConfiguration configuration = getConfiguration(variantType);
+
+		logger.debug("Received message from queue: {}", msg.getUnifiedPushMessage().getMessage().getAlert());
+
+		logger.info(String.format(
+				"Preparing message delivery and loading tokens for the %s 3rd-party Push Network (for %d variants)",
+				variantType, variants.size()));
+
+		// every variant is loaded in its own transaction, on a worker of the
+		// bounded pool of the given push network
+		Flux.fromIterable(variants)
+				.flatMap(variant -> Mono.fromRunnable(() -> wrapper.loadAndQueueTokenBatch(msg, variant))
+						.subscribeOn(getLoaderScheduler(variantType, configuration)), configuration.variantParallelism())
+				.subscribe(null, e -> logger.error("Failed to load batch of tokens", e));
+	}
+
+	/**
+	 * Loads and queues token batches of a single variant of the given request.
+	 *
+	 * The serial ID and the last loaded token are tracked per variant, so a
+	 * request for the next transaction is queued only for this variant and
+	 * continues exactly where this one ended.
+	 *
+	 * @param msg
+	 *            holder object containing the payload and info about the
+	 * @param variant
+	 *            the variant to load the tokens for
+	 */
+	@Transactional(readOnly = true)
+	public void loadAndQueueTokenBatch(MessageHolderWithVariants msg, Variant variant) {
+		final UnifiedPushMessage message = msg.getUnifiedPushMessage();
+		final VariantType variantType = msg.getVariantType();
 		final String lastTokenFromPreviousBatch = msg.getLastTokenFromPreviousBatch();
+		final String upperTokenBoundary = msg.getUpperTokenBoundary();
 
-		final SenderConfiguration configuration = BeanFactoryAnnotationUtils.qualifiedBeanOfType(
-				context.getAutowireCapableBeanFactory(), SenderConfiguration.class, variantType.name());
+		final SenderConfiguration configuration = getConfiguration(variantType);
 
-		int serialId = msg.getLastSerialId();
+		if (msg.isInitialRequest() && splitIntoTokenRanges(msg, variant, configuration)) {
+			return;
+		}
 
-		logger.debug("Received message from queue: {}", message.getMessage().getAlert());
+		int serialId = msg.getLastSerialId();
 
 		final Criteria criteria = message.getCriteria();
 		final List<String> categories = criteria.getCategories();
 		final List<String> aliases = criteria.getAliases();
 		final List<String> deviceTypes = criteria.getDeviceTypes();
 
-		logger.info(String.format(
-				"Preparing message delivery and loading tokens for the %s 3rd-party Push Network (for %d variants)",
-				variantType, variants.size()));
-
-		for (Variant variant : variants) {
-
-			try {
-
-				ResultsStream<String> tokenStream;
-				final Set<String> topics = new TreeSet<>();
-				final boolean isAndroid = variantType == VariantType.ANDROID;
-
-				// the entire batch size
-				int batchesToLoad = configuration.batchesToLoad();
-
-				// Some checks for GCM, because of GCM-3 topics
-				boolean gcmTopicRequest = (isAndroid && TokenLoaderUtils.isGCMTopicRequest(criteria));
-				if (gcmTopicRequest && message instanceof InternalUnifiedPushMessage) {
-                    // For InternalUnifiedPushMessage don't use topics) {
-					// If we are able to do push for GCM topics...
-
-					// 1)
-					// find all topics, BUT only on the very first round of
-					// batches
-					// otherwise after 10 (or what ever the max. is) another
-					// request would be sent to that topic
-					if (serialId == 0) {
-						topics.addAll(TokenLoaderUtils.extractGCMTopics(criteria, variant.getVariantID()));
-
-						// topics are handled as a first extra batch,
-						// therefore we have to adjust the number by adding this
-						// extra batch
-						batchesToLoad += 1;
-					}
+		try {
 
-					// 2) always load the legacy tokens, for all number of batch
-					// iterations
-					tokenStream = clientInstallationService
-							.findAllOldGoogleCloudMessagingDeviceTokenForVariantIDByCriteria(variant.getVariantID(),
-									categories, aliases, deviceTypes, configuration.tokensToLoad(),
-									lastTokenFromPreviousBatch)
-							.fetchSize(configuration.batchSize()).executeQuery();
-				} else {
-					tokenStream = clientInstallationService
-							.findAllDeviceTokenForVariantIDByCriteria(variant.getVariantID(), categories, aliases,
-									deviceTypes, configuration.tokensToLoad(), lastTokenFromPreviousBatch)
-							.fetchSize(configuration.batchSize()).executeQuery();
+			ResultsStream<String> tokenStream;
+			final Set<String> topics = new TreeSet<>();
+			final boolean isAndroid = variantType == VariantType.ANDROID;
+
+			// the entire batch size
+			int batchesToLoad = configuration.batchesToLoad();
+
+			// Some checks for GCM, because of GCM-3 topics
+			boolean gcmTopicRequest = (isAndroid && TokenLoaderUtils.isGCMTopicRequest(criteria));
+			if (loadsLegacyTokensOnly(variantType, message)) {
+				// For InternalUnifiedPushMessage don't use topics) {
+				// If we are able to do push for GCM topics...
+
+				// 1)
+				// find all topics, BUT only on the very first round of
+				// batches
+				// otherwise after 10 (or what ever the max. is) another
+				// request would be sent to that topic
+				if (serialId == 0) {
+					topics.addAll(TokenLoaderUtils.extractGCMTopics(criteria, variant.getVariantID()));
+
+					// topics are handled as a first extra batch,
+					// therefore we have to adjust the number by adding this
+					// extra batch
+					batchesToLoad += 1;
 				}
 
-				String lastTokenInBatch = null;
-				int tokensLoaded = 0;
-				for (int batchNumber = 0; batchNumber < batchesToLoad; batchNumber++) {
+				// 2) always load the legacy tokens, for all number of batch
+				// iterations
+				tokenStream = clientInstallationService
+						.findAllDeviceTokenForVariantIDByCriteria(variant.getVariantID(), categories, aliases,
+								deviceTypes, configuration.tokensToLoad(), lastTokenFromPreviousBatch,
+								upperTokenBoundary, true)
+						.fetchSize(configuration.batchSize()).executeQuery();
+			} else {
+				tokenStream = clientInstallationService
+						.findAllDeviceTokenForVariantIDByCriteria(variant.getVariantID(), categories, aliases,
+								deviceTypes, configuration.tokensToLoad(), lastTokenFromPreviousBatch,
+								upperTokenBoundary, false)
+						.fetchSize(configuration.batchSize()).executeQuery();
+			}
 
-					// increasing the serial ID,
-					// to make sure it's properly read from all block
-					++serialId;
+			final TokenBatchCursor cursor = new TokenBatchCursor(msg, variant, tokenStream, topics, serialId,
+					configuration.batchSize(), batchesToLoad);
+			final DispatchingSubscriber dispatcher = cursor.batches().subscribeWith(new DispatchingSubscriber(variant.getVariantID()));
 
-					final Set<String> tokens = new TreeSet<>();
+			serialId = cursor.getSerialId();
+			final String lastTokenInBatch = cursor.getLastTokenInBatch();
+			final int tokensLoaded = cursor.getTokensLoaded();
 
-					// On Android, the first batch is for GCM3 topics
-					// legacy tokens are submitted in the batch #2 and later
-					if (isAndroid && batchNumber == 0 && !topics.isEmpty()) {
-						tokens.addAll(topics);
-					} else {
-						for (int i = 0; i < configuration.batchSize() && tokenStream.next(); i++) {
-							lastTokenInBatch = tokenStream.get();
-							tokens.add(lastTokenInBatch);
-							tokensLoaded += 1;
-						}
-					}
+			if (dispatcher.getError() != null) {
+				throw new IllegalStateException("Failed to load batch of tokens", dispatcher.getError());
+			}
 
-					if (tokens.size() > 0) {
-						if (tryToDispatchTokens(new MessageHolderWithTokens(msg.getPushMessageInformation(), message,
-								variant, tokens, serialId))) {
-							logger.info(String.format("Loaded batch #%s, containing %d tokens, for %s variant (%s)",
-									serialId, tokens.size(), variant.getType().getTypeName(), variant.getVariantID()));
-						} else {
-							logger.debug(String.format(
-									"Failing token loading transaction for batch token #%s for %s variant (%s), since previous batch failed",
-									serialId, variant.getType().getTypeName(), variant.getVariantID()));
-							return;
-						}
-					} else {
-						logger.debug("Ending batch processing: No more tokens for batch #{} available", serialId);
-						break;
-					}
-				}
+			if (!dispatcher.isCompleted()) {
+				logger.debug(String.format(
+						"Failing token loading transaction for batch token #%s for %s variant (%s), since previous batch failed",
+						serialId, variant.getType().getTypeName(), variant.getVariantID()));
+				return;
+			}
 
-				// should we trigger next transaction batch ?
-				if (tokensLoaded >= configuration.tokensToLoad()) {
-					logger.debug(String.format("Ending token loading transaction for %s variant (%s)",
-							variant.getType().getTypeName(), variant.getVariantID()));
-					nextBatchEvent.onNext(new MessageHolderWithVariants(msg.getPushMessageInformation(), message,
-							msg.getVariantType(), variants, serialId, lastTokenInBatch));
-				} else {
-					logger.debug("All batches for {} variant were loaded ({})", variant.getType().getTypeName(),
-							variant.getVariantID());
-
-					// using combined key of variant and PMI (AGPUSH-1585):
-					// allBatchesLoaded.fire(new
-					// AllBatchesLoadedEvent(variant.getVariantID()+":"+msg.getPushMessageInformation().getId()));
-
-					if (tokensLoaded == 0 && lastTokenFromPreviousBatch == null) {
-						// no tokens were loaded at all!
-						if (gcmTopicRequest) {
-							logger.debug("No legacy(non-InstanceID) tokens found. Just pure GCM topic requests");
-						} else {
-							logger.warn(
-									"Check your push query: 0 tokens were loaded from the DB. Variant type {} name {}",
-									variant.getType().name(), variant.getName());
-						}
+			// should we trigger next transaction batch ?
+			if (tokensLoaded >= configuration.tokensToLoad()) {
+				logger.debug(String.format("Ending token loading transaction for %s variant (%s)",
+						variant.getType().getTypeName(), variant.getVariantID()));
+				nextBatchEvent.onNext(new MessageHolderWithVariants(msg.getPushMessageInformation(), message,
+						variantType, Collections.singletonList(variant), serialId, lastTokenInBatch,
+						upperTokenBoundary));
+			} else {
+				logger.debug("All batches for {} variant were loaded ({})", variant.getType().getTypeName(),
+						variant.getVariantID());
+
+				// using combined key of variant and PMI (AGPUSH-1585):
+				// allBatchesLoaded.fire(new
+				// AllBatchesLoadedEvent(variant.getVariantID()+":"+msg.getPushMessageInformation().getId()));
+
+				if (tokensLoaded == 0 && lastTokenFromPreviousBatch == null) {
+					// no tokens were loaded at all!
+					if (gcmTopicRequest) {
+						logger.debug("No legacy(non-InstanceID) tokens found. Just pure GCM topic requests");
+					} else {
+						logger.warn(
+								"Check your push query: 0 tokens were loaded from the DB. Variant type {} name {}",
+								variant.getType().name(), variant.getName());
 					}
 				}
-			} catch (Throwable e) {
-				logger.info("Failed to load batch of tokens for message! {}", msg);
-				logger.error("Failed to load batch of tokens", e);
-				// TODO - Implement a recovery mechanism, message request is
-				// lost.
 			}
+		} catch (Throwable e) {
+			logger.info("Failed to load batch of tokens for message! {}", msg);
+			logger.error("Failed to load batch of tokens", e);
+			// TODO - Implement a recovery mechanism, message request is
+			// lost.
+		}
+	}
+
+	/**
+	 * Splits the device tokens of a large variant into ranges (see
+	 * {@link SenderConfiguration#tokenRangePartitions()}) and queues a request
+	 * for every range, so that the ranges are loaded in parallel.
+	 *
+	 * The first range keeps the initial serial ID, so that GCM topics are
+	 * still sent exactly once.
+	 *
+	 * @return true if the variant was split and its ranges were queued
+	 */
+	private boolean splitIntoTokenRanges(MessageHolderWithVariants msg, Variant variant,
+			SenderConfiguration configuration) {
+		final int partitions = configuration.tokenRangePartitions();
+		if (partitions < 2) {
+			return false;
+		}
+
+		// the only count of the variant, the boundaries are looked up without counting or skipping tokens
+		final long devices = clientInstallationService.getNumberOfDevicesForVariantID(variant.getVariantID());
+		if (devices < (long) partitions * configuration.tokensToLoad()) {
+			return false;
+		}
+
+		final List<String> boundaries = clientInstallationService.findDeviceTokenRangeBoundaries(variant.getVariantID(),
+				partitions);
+		if (boundaries.isEmpty()) {
+			return false;
 		}
+
+		logger.info(String.format("Splitting %d devices of %s variant (%s) into %d token ranges", devices,
+				variant.getType().getTypeName(), variant.getVariantID(), boundaries.size() + 1));
+
+		String lowerBoundary = null;
+		for (int i = 0; i <= boundaries.size(); i++) {
+			final String upperBoundary = i < boundaries.size() ? boundaries.get(i) : null;
+			nextBatchEvent.onNext(new MessageHolderWithVariants(msg.getPushMessageInformation(),
+					msg.getUnifiedPushMessage(), msg.getVariantType(), Collections.singletonList(variant),
+					i * TOKEN_RANGE_SERIAL_ID_STRIDE, lowerBoundary, upperBoundary));
+			lowerBoundary = upperBoundary;
+		}
+		return true;
+	}
+
+	/**
+	 * GCM topic requests are sent to the topics, only the legacy
+	 * (non-InstanceID) tokens are loaded from the database for them.
+	 */
+	private static boolean loadsLegacyTokensOnly(VariantType variantType, UnifiedPushMessage message) {
+		return variantType == VariantType.ANDROID && TokenLoaderUtils.isGCMTopicRequest(message.getCriteria())
+				&& message instanceof InternalUnifiedPushMessage;
+	}
+
+	private SenderConfiguration getConfiguration(VariantType variantType) {
+		return BeanFactoryAnnotationUtils.qualifiedBeanOfType(context.getAutowireCapableBeanFactory(),
+				SenderConfiguration.class, variantType.name());
+	}
+
+	/**
+	 * Returns the bounded pool that loads tokens for the given push network,
+	 * sized by {@link SenderConfiguration#variantParallelism()}.
+	 *
+	 * The loaders block on the database cursor and on the
+	 * {@link DispatchWindow}, so they run on a dedicated executor rather than
+	 * on a parallel scheduler meant for non-blocking work.
+	 */
+	private Scheduler getLoaderScheduler(VariantType variantType, SenderConfiguration configuration) {
+		return loaderSchedulers.computeIfAbsent(variantType, type -> {
+			final String name = "token-loader-" + type.getTypeName();
+			final AtomicInteger counter = new AtomicInteger();
+			return Schedulers.fromExecutorService(Executors.newFixedThreadPool(configuration.variantParallelism(),
+					runnable -> {
+						final Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}));
+		});
+	}
+
+	@PreDestroy
+	public void disposeLoaderSchedulers() {
+		loaderSchedulers.values().forEach(Scheduler::dispose);
+		loaderSchedulers.clear();
 	}
 
 	/**
-	 * Tries to dispatch tokens; returns true if tokens were successfully
-	 * queued.
+	 * Waits until a dispatched batch is delivered and its slot in the
+	 * {@link DispatchWindow} is free for the next one.
 	 *
-	 * @return returns true if tokens were successfully queued; returns false if
-	 *         failed.
+	 * While waiting, the token cursor is not advanced, so a slow push network
+	 * slows down reading from the database instead of dropping batches.
+	 *
+	 * @param variantID the variant of the next batch
+	 * @return the lease of the slot; null if the queue is no longer alive or
+	 *         the loader was interrupted
 	 */
-	private boolean tryToDispatchTokens(MessageHolderWithTokens msg) {
+	private DispatchWindow.Lease awaitDispatchSlot(String variantID) {
+		DispatchWindow.Lease lease = dispatchWindow.tryAcquire(variantID);
+		if (lease != null) {
+			return lease;
+		}
+
+		logger.debug("Too many batches in flight, waiting for the push networks to catch up");
+		final long start = System.nanoTime();
+		dispatchQueueMetrics.stallStarted();
 		try {
-			if (!dispatchTokensEvent.alive()){
-				logger.error("Unable to send MessageHolderWithTokens, Flux is not alive");
-				return false;
+			while ((lease = dispatchWindow.tryAcquire(variantID, DISPATCH_SLOT_CHECK_INTERVAL_IN_MILLIS,
+					TimeUnit.MILLISECONDS)) == null) {
+				if (!dispatchTokensEvent.alive()) {
+					logger.error("Unable to send MessageHolderWithTokens, Flux is not alive");
+					return null;
+				}
+			}
+			return lease;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.warn("Interrupted while waiting for a free slot in the dispatch window");
+			return null;
+		} finally {
+			dispatchQueueMetrics.stallEnded(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Pulls token batches from a {@link TokenBatchCursor} and queues them for
+	 * the {@link NotificationDispatcher}. The next batch is requested only once
+	 * a slot of the {@link DispatchWindow} is leased for it; the lease is handed
+	 * over with the batch and given back by the dispatcher on delivery.
+	 */
+	private class DispatchingSubscriber extends BaseSubscriber<MessageHolderWithTokens> {
+
+		private final String variantID;
+		private boolean completed;
+		private Throwable error;
+		private DispatchWindow.Lease lease;
+
+		DispatchingSubscriber(String variantID) {
+			this.variantID = variantID;
+		}
+
+		@Override
+		protected void hookOnSubscribe(Subscription subscription) {
+			requestNextBatch();
+		}
+
+		@Override
+		protected void hookOnNext(MessageHolderWithTokens batch) {
+			// the slot now belongs to the batch
+			final DispatchWindow.Lease batchLease = lease;
+			lease = null;
+			batch.setDispatchLease(batchLease);
+
+			try {
+				dispatchTokensEvent.onNext(batch);
+			} catch (Exception e) {
+				logger.error("Failed to submit MessageHolderWithTokens to Flux", e);
+				batchLease.release();
+				cancel();
+				return;
+			}
+
+			dispatchQueueMetrics.batchDispatched(batch.getTokenBatch().size(), batch.getTokenBatch().byteSize());
+			logger.info(String.format("Loaded batch #%s, containing %d tokens, for %s variant (%s)",
+					batch.getSerialId(), batch.getDeviceTokens().size(), batch.getVariant().getType().getTypeName(),
+					batch.getVariant().getVariantID()));
+			requestNextBatch();
+		}
+
+		private void requestNextBatch() {
+			if (!dispatchTokensEvent.alive() || (lease = awaitDispatchSlot(variantID)) == null) {
+				cancel();
+				return;
 			}
+			request(1);
+		}
+
+		@Override
+		protected void hookOnComplete() {
+			completed = true;
+		}
+
+		@Override
+		protected void hookOnError(Throwable throwable) {
+			error = throwable;
+		}
 
-			if (dispatchTokensEvent.getAvailableCapacity() <= 0){
-				logger.warn("Unable to send MessageHolderWithTokens, No available capacity to Flux");
-				// TODO - Sleep 1 second and retry.
-				return false;
+		@Override
+		protected void hookFinally(SignalType type) {
+			// the cursor ended before the requested batch was loaded
+			if (lease != null) {
+				lease.release();
+				lease = null;
 			}
+		}
 
-			dispatchTokensEvent.onNext(msg);
-			return true;
-		} catch (Exception e) {
-			logger.error("Failed to submit MessageHolderWithTokens to Flux", e);
-			return false;
+		boolean isCompleted() {
+			return completed;
+		}
+
+		Throwable getError() {
+			return error;
 		}
 	}
 
@@ -295,6 +524,10 @@ public class TokenLoader {
 		public void loadAndQueueTokenBatch(MessageHolderWithVariants msg) throws IllegalStateException {
 			tokenLoader.loadAndQueueTokenBatch(msg);
 		}
+
+		public void loadAndQueueTokenBatch(MessageHolderWithVariants msg, Variant variant) {
+			tokenLoader.loadAndQueueTokenBatch(msg, variant);
+		}
 	}
 
 }
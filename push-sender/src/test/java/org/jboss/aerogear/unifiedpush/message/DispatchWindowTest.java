@@ -0,0 +1,112 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class DispatchWindowTest {
+
+    @Test
+    public void limitsBatchesInFlight() {
+        final DispatchWindow window = new DispatchWindow(2);
+
+        final DispatchWindow.Lease first = window.tryAcquire("variant");
+        assertThat(first).isNotNull();
+        assertThat(window.tryAcquire("variant")).isNotNull();
+        assertThat(window.tryAcquire("variant")).isNull();
+        assertThat(window.getInFlight()).isEqualTo(2);
+
+        assertThat(first.release()).isTrue();
+        assertThat(window.getInFlight()).isEqualTo(1);
+        assertThat(window.tryAcquire("variant")).isNotNull();
+    }
+
+    @Test
+    public void releasesLeaseOnlyOnce() {
+        final DispatchWindow window = new DispatchWindow(2);
+        final DispatchWindow.Lease lease = window.tryAcquire("variant");
+        window.tryAcquire("variant");
+
+        assertThat(lease.release()).isTrue();
+        assertThat(lease.release()).isFalse();
+        assertThat(window.getInFlight()).isEqualTo(1);
+    }
+
+    @Test
+    public void deliveryWakesUpWaitingLoader() throws Exception {
+        final DispatchWindow window = new DispatchWindow(1);
+        final DispatchWindow.Lease lease = window.tryAcquire("variant");
+
+        final long start = System.nanoTime();
+        final CompletableFuture<DispatchWindow.Lease> acquired = CompletableFuture.supplyAsync(() -> {
+            try {
+                return window.tryAcquire("variant", 10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return null;
+            }
+        });
+        TimeUnit.MILLISECONDS.sleep(50);
+        assertThat(acquired.isDone()).isFalse();
+
+        lease.release();
+
+        assertThat(acquired.get(5, TimeUnit.SECONDS)).isNotNull();
+        assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start)).isLessThan(5);
+    }
+
+    @Test
+    public void reclaimsExpiredLease() throws Exception {
+        final DispatchWindow window = new DispatchWindow(1, 50, TimeUnit.MILLISECONDS);
+        final DispatchWindow.Lease lost = window.tryAcquire("variant");
+        assertThat(window.tryAcquire("variant")).isNull();
+
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        assertThat(window.tryAcquire("variant")).isNotNull();
+        assertThat(window.getReclaimed()).isEqualTo(1);
+        // the late delivery does not free the slot of the next batch
+        assertThat(lost.release()).isFalse();
+        assertThat(window.getInFlight()).isEqualTo(1);
+    }
+
+    @Test
+    public void countsBatchesInFlightPerVariant() {
+        final DispatchWindow window = new DispatchWindow(4);
+
+        final DispatchWindow.Lease first = window.tryAcquire("first");
+        window.tryAcquire("first");
+        final DispatchWindow.Lease second = window.tryAcquire("second");
+
+        assertThat(first.getVariantID()).isEqualTo("first");
+        assertThat(window.getInFlight("first")).isEqualTo(2);
+        assertThat(window.getInFlight("second")).isEqualTo(1);
+        assertThat(window.getInFlight("other")).isEqualTo(0);
+
+        first.release();
+        second.release();
+        second.release();
+
+        assertThat(window.getInFlight("first")).isEqualTo(1);
+        assertThat(window.getInFlight("second")).isEqualTo(0);
+        assertThat(window.getInFlight()).isEqualTo(1);
+    }
+}
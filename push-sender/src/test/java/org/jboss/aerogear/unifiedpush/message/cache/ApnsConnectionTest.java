@@ -0,0 +1,81 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.turo.pushy.apns.ApnsClient;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ApnsConnectionTest {
+
+    private final ApnsConnection connection = new ApnsConnection(mock(ApnsClient.class), 2);
+    private final AtomicInteger sent = new AtomicInteger();
+
+    @Test
+    public void testWindowIsLimitedToMaxInFlight() {
+        connection.submit(sent::incrementAndGet);
+        connection.submit(sent::incrementAndGet);
+        connection.submit(sent::incrementAndGet);
+
+        assertThat(sent.get()).isEqualTo(2);
+        assertThat(connection.getInFlight()).isEqualTo(3);
+    }
+
+    @Test
+    public void testReleaseSendsWaitingNotification() {
+        connection.submit(sent::incrementAndGet);
+        connection.submit(sent::incrementAndGet);
+        connection.submit(sent::incrementAndGet);
+
+        connection.release();
+
+        assertThat(sent.get()).isEqualTo(3);
+        assertThat(connection.getInFlight()).isEqualTo(2);
+    }
+
+    @Test
+    public void testNotificationsAnsweredWhileSendingDoNotRecurse() {
+        final ApnsConnection single = new ApnsConnection(mock(ApnsClient.class), 1);
+        final Runnable answeredRightAway = () -> {
+            sent.incrementAndGet();
+            single.release();
+        };
+
+        for (int i = 0; i < 100000; i++) {
+            single.submit(answeredRightAway);
+        }
+
+        assertThat(sent.get()).isEqualTo(100000);
+        assertThat(single.getInFlight()).isZero();
+    }
+
+    @Test
+    public void testSubmitMarksConnectionAsUsed() throws Exception {
+        final long before = connection.getLastUsed();
+        TimeUnit.MILLISECONDS.sleep(1);
+
+        connection.submit(sent::incrementAndGet);
+
+        assertThat(connection.getLastUsed() - before).isPositive();
+    }
+}
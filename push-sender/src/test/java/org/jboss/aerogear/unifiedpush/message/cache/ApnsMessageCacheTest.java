@@ -0,0 +1,98 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.cache;
+
+import org.jboss.aerogear.unifiedpush.api.iOSVariant;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ApnsMessageCacheTest {
+
+    private final ApnsMessageCache cache = new ApnsMessageCache();
+    private final AtomicInteger builds = new AtomicInteger();
+    private final iOSVariant variant = new iOSVariant();
+
+    @Before
+    public void setUp() throws Exception {
+        variant.setVariantID("variant");
+        variant.setCertificate(Files.readAllBytes(Paths.get(getClass().getResource("/cert/topic.p12").toURI())));
+        variant.setPassphrase("123456");
+    }
+
+    @Test
+    public void testPayloadIsBuiltOncePerMessageAndVariant() {
+        assertThat(cache.getPayload("message", "variant", () -> build("payload"))).isEqualTo("payload");
+        assertThat(cache.getPayload("message", "variant", () -> build("other"))).isEqualTo("payload");
+        assertThat(builds.get()).isEqualTo(1);
+
+        assertThat(cache.getPayload("message", "other-variant", () -> build("other"))).isEqualTo("other");
+        assertThat(cache.getPayload("other-message", "variant", () -> build("other"))).isEqualTo("other");
+        assertThat(builds.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void testFailedPayloadIsNotCached() {
+        try {
+            cache.getPayload("message", "variant", () -> {
+                throw new IllegalArgumentException("too large");
+            });
+            fail("the exception of the builder must be propagated");
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessage("too large");
+        }
+
+        assertThat(cache.getPayload("message", "variant", () -> build("payload"))).isEqualTo("payload");
+    }
+
+    @Test
+    public void testInvalidateRemovesPayloadsOfVariant() {
+        cache.getPayload("message", "variant", () -> build("payload"));
+        cache.getPayload("message", "other-variant", () -> build("payload"));
+
+        cache.invalidate(variant);
+
+        cache.getPayload("message", "variant", () -> build("rebuilt"));
+        cache.getPayload("message", "other-variant", () -> build("rebuilt"));
+        assertThat(builds.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void testTopicFollowsCertificateOfVariant() throws Exception {
+        final String topic = cache.getDefaultTopic(variant);
+        assertThat(topic).isEqualTo("org.jboss.aerogear.test");
+        assertThat(cache.getDefaultTopic(variant)).isEqualTo(topic);
+
+        // updated on another node, without the cache being invalidated
+        final byte[] certificate = variant.getCertificate();
+        variant.setCertificate(new byte[] { 1, 2, 3 });
+        assertThat(cache.getDefaultTopic(variant)).isNull();
+
+        variant.setCertificate(certificate);
+        assertThat(cache.getDefaultTopic(variant)).isEqualTo(topic);
+    }
+
+    private String build(String payload) {
+        builds.incrementAndGet();
+        return payload;
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.cache;
+
+import org.jboss.aerogear.unifiedpush.api.iOSVariant;
+import org.jboss.aerogear.unifiedpush.message.metrics.DispatchQueueMetrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.turo.pushy.apns.ApnsClient;
+
+import io.netty.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class SimpleApnsClientCacheTest {
+
+    private final AtomicInteger clientCounter = new AtomicInteger();
+    private final ServiceConstructor<ApnsClient> constructor = () -> {
+        clientCounter.incrementAndGet();
+        final ApnsClient client = mock(ApnsClient.class);
+        when(client.isConnected()).thenReturn(true);
+        doReturn(mock(Future.class)).when(client).disconnect();
+        return client;
+    };
+
+    private final DispatchQueueMetrics dispatchQueueMetrics = mock(DispatchQueueMetrics.class);
+    private final iOSVariant variant = new iOSVariant();
+    private SimpleApnsClientCache cache;
+
+    @Before
+    public void setUp() {
+        variant.setVariantID("variant");
+        cache = new SimpleApnsClientCache();
+        ReflectionTestUtils.setField(cache, "dispatchQueueMetrics", dispatchQueueMetrics);
+    }
+
+    @After
+    public void tearDown() {
+        cache.cleanUpConnection();
+    }
+
+    @Test
+    public void testTargetGroupSize() {
+        assertThat(SimpleApnsClientCache.targetGroupSize(0, 4)).isEqualTo(1);
+        assertThat(SimpleApnsClientCache.targetGroupSize(7, 4)).isEqualTo(1);
+        assertThat(SimpleApnsClientCache.targetGroupSize(8, 4)).isEqualTo(2);
+        assertThat(SimpleApnsClientCache.targetGroupSize(1000, 4)).isEqualTo(4);
+        assertThat(SimpleApnsClientCache.targetGroupSize(Long.MAX_VALUE, 4)).isEqualTo(4);
+        assertThat(SimpleApnsClientCache.targetGroupSize(100, 1)).isEqualTo(1);
+    }
+
+    @Test
+    public void testFirstConnectionIsReused() {
+        final ApnsConnection first = cache.getApnsConnectionForVariant(variant, constructor);
+        final ApnsConnection second = cache.getApnsConnectionForVariant(variant, constructor);
+
+        assertThat(second).isSameAs(first);
+        assertThat(clientCounter.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testProductionAndDevelopmentHaveOwnGroups() {
+        final ApnsConnection development = cache.getApnsConnectionForVariant(variant, constructor);
+        variant.setProduction(true);
+        final ApnsConnection production = cache.getApnsConnectionForVariant(variant, constructor);
+
+        assertThat(production).isNotSameAs(development);
+        assertThat(clientCounter.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testGroupDoesNotGrowWithoutBacklog() throws Exception {
+        when(dispatchQueueMetrics.getQueueDepth("variant")).thenReturn(0L);
+        final ApnsConnection first = cache.getApnsConnectionForVariant(variant, constructor);
+        first.submit(() -> { });
+
+        assertThat(cache.getApnsConnectionForVariant(variant, constructor)).isSameAs(first);
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertThat(clientCounter.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testBusyGroupGrowsWithBacklog() throws Exception {
+        when(dispatchQueueMetrics.getQueueDepth("variant")).thenReturn(Long.MAX_VALUE);
+        final ApnsConnection first = cache.getApnsConnectionForVariant(variant, constructor);
+        first.submit(() -> { });
+
+        cache.getApnsConnectionForVariant(variant, constructor);
+        awaitClients(2);
+
+        final ApnsConnection added = cache.getApnsConnectionForVariant(variant, constructor);
+        assertThat(added).isNotSameAs(first);
+        assertThat(added.getInFlight()).isZero();
+    }
+
+    @Test
+    public void testGroupGrowsUpToMaxConnections() throws Exception {
+        when(dispatchQueueMetrics.getQueueDepth("variant")).thenReturn(Long.MAX_VALUE);
+        for (int i = 0; i < 20; i++) {
+            cache.getApnsConnectionForVariant(variant, constructor).submit(() -> { });
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+
+        assertThat(clientCounter.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void testGroupDoesNotGrowWithBacklogOfOtherVariants() throws Exception {
+        when(dispatchQueueMetrics.getQueueDepth()).thenReturn(Long.MAX_VALUE);
+        when(dispatchQueueMetrics.getQueueDepth("variant")).thenReturn(1L);
+        final ApnsConnection first = cache.getApnsConnectionForVariant(variant, constructor);
+        first.submit(() -> { });
+
+        cache.getApnsConnectionForVariant(variant, constructor);
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertThat(clientCounter.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFailedConnectionIsClosed() {
+        final ApnsClient failed = mock(ApnsClient.class);
+        when(failed.isConnected()).thenReturn(false);
+        doReturn(mock(Future.class)).when(failed).disconnect();
+
+        final ApnsConnection connection = cache.getApnsConnectionForVariant(variant, () -> failed);
+
+        assertThat(connection.getClient()).isSameAs(failed);
+        verify(failed).disconnect();
+        // the failed client is not kept, the next batch connects again
+        assertThat(cache.getApnsConnectionForVariant(variant, constructor)).isNotSameAs(connection);
+        assertThat(clientCounter.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDisconnectedConnectionIsRemovedAndClosed() {
+        final ApnsConnection first = cache.getApnsConnectionForVariant(variant, constructor);
+        when(first.getClient().isConnected()).thenReturn(false);
+
+        final ApnsConnection second = cache.getApnsConnectionForVariant(variant, constructor);
+
+        assertThat(second).isNotSameAs(first);
+        verify(first.getClient()).disconnect();
+        assertThat(cache.getApnsConnectionForVariant(variant, constructor)).isSameAs(second);
+        assertThat(clientCounter.get()).isEqualTo(2);
+    }
+
+    private void awaitClients(int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 1000;
+        while (clientCounter.get() < count && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertThat(clientCounter.get()).isEqualTo(count);
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.holder;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class TokenBatchTest {
+
+    @Test
+    public void testAppendAndRead() {
+        final TokenBatch batch = new TokenBatch(2);
+        batch.append("aaa");
+        batch.append("bbbb");
+        batch.append("c");
+
+        assertThat(batch).hasSize(3);
+        assertThat(batch.get(1)).isEqualTo("bbbb");
+        assertThat(batch).containsExactly("aaa", "bbbb", "c");
+        assertThat(batch.byteSize()).isEqualTo(8);
+    }
+
+    @Test
+    public void testNonAsciiToken() {
+        final TokenBatch batch = TokenBatch.copyOf(Arrays.asList("abc", "\u017elu\u0165ou\u010dk\u00fd", "xyz"));
+        assertThat(batch).containsExactly("abc", "\u017elu\u0165ou\u010dk\u00fd", "xyz");
+    }
+
+    @Test
+    public void testSortedDistinctIsNoOpForSortedTokens() {
+        final TokenBatch batch = TokenBatch.copyOf(new TreeSet<>(Arrays.asList("c", "a", "b")));
+        assertThat(batch.sortedDistinct()).isSameAs(batch);
+    }
+
+    @Test
+    public void testSortedDistinct() {
+        final TokenBatch batch = TokenBatch.copyOf(Arrays.asList("c", "a", "b", "a", "ab"));
+        assertThat(batch.sortedDistinct()).containsExactly("a", "ab", "b", "c");
+        assertThat(batch).containsExactly("c", "a", "b", "a", "ab");
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        final TokenBatch batch = TokenBatch.copyOf(Arrays.asList("one", "two", "three"));
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(batch);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertThat((TokenBatch) in.readObject()).containsExactly("one", "two", "three");
+        }
+    }
+}
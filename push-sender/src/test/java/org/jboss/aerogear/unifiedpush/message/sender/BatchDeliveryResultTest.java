@@ -0,0 +1,112 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class BatchDeliveryResultTest {
+
+    @Test
+    public void aggregatesConcurrentResponses() throws Exception {
+        final BatchDeliveryResult result = new BatchDeliveryResult(3000);
+        final CountDownLatch done = new CountDownLatch(3000);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                final String reason = i % 2 == 0 ? "BadDeviceToken" : "Unregistered";
+                executor.execute(() -> { result.accepted(); done.countDown(); });
+                executor.execute(() -> { result.rejected(reason); done.countDown(); });
+                executor.execute(() -> { result.failed(); done.countDown(); });
+            }
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(result.getTotal()).isEqualTo(3000);
+        assertThat(result.getAccepted()).isEqualTo(1000);
+        assertThat(result.getRejected()).isEqualTo(1000);
+        assertThat(result.getFailed()).isEqualTo(1000);
+        assertThat(result.getRejectionsByReason()).containsEntry("BadDeviceToken", 500).containsEntry("Unregistered", 500);
+    }
+
+    @Test
+    public void rejectionWithoutReasonIsCounted() {
+        final BatchDeliveryResult result = new BatchDeliveryResult(1);
+
+        result.rejected(null);
+
+        assertThat(result.getRejectionsByReason()).containsEntry("null", 1);
+    }
+
+    @Test
+    public void partiallyAcceptedBatchIsDelivered() {
+        final BatchDeliveryResult result = new BatchDeliveryResult(2);
+        result.accepted();
+        result.failed();
+
+        assertThat(complete(result)).containsExactly("success");
+    }
+
+    @Test
+    public void rejectedBatchIsDeliveredWithoutError() {
+        final BatchDeliveryResult result = new BatchDeliveryResult(2);
+        result.rejected("BadDeviceToken");
+        result.failed();
+
+        assertThat(complete(result)).containsExactly("success");
+    }
+
+    @Test
+    public void emptyBatchIsDelivered() {
+        assertThat(complete(new BatchDeliveryResult(0))).containsExactly("success");
+    }
+
+    @Test
+    public void unansweredBatchIsAnError() {
+        final BatchDeliveryResult result = new BatchDeliveryResult(2);
+        result.failed();
+        result.failed();
+
+        assertThat(complete(result)).containsExactly("error: None of 2 notifications was answered by the push network");
+    }
+
+    private static List<String> complete(BatchDeliveryResult result) {
+        final List<String> calls = new ArrayList<>();
+        new NotificationSenderCallback() {
+            @Override
+            public void onSuccess() {
+                calls.add("success");
+            }
+
+            @Override
+            public void onError(String reason) {
+                calls.add("error: " + reason);
+            }
+        }.onComplete(result);
+        return calls;
+    }
+}
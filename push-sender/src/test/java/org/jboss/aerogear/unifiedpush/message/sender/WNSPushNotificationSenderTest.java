@@ -7,7 +7,6 @@ import org.jboss.aerogear.unifiedpush.message.windows.TileType;
 import org.jboss.aerogear.unifiedpush.message.windows.ToastType;
 import org.jboss.aerogear.unifiedpush.message.windows.Type;
 import org.jboss.aerogear.unifiedpush.message.windows.Windows;
-import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Arrays;
@@ -23,12 +22,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 public class WNSPushNotificationSenderTest {
 
     private static final String QUERY = "?ke2=value2&key=value";
-    private WNSPushNotificationSender sender = new WNSPushNotificationSender();
-
-    @Before
-    public void setUp() {
-        sender.setPushMessageInformationId("123");
-    }
+    private static final String PUSH_MESSAGE_ID = "123";
 
     @Test
     public void shouldWorkWithEmptyNullUserData() {
@@ -37,7 +31,7 @@ public class WNSPushNotificationSenderTest {
         message.setUserData(new HashMap<>());
 
         //when
-        WnsToast toastMessage = sender.createSimpleToastMessage(message);
+        WnsToast toastMessage = WNSPushNotificationSender.createSimpleToastMessage(message, PUSH_MESSAGE_ID);
 
         //then
         assertThat(toastMessage.launch).isEqualTo("/Root.xaml?aerogear-push-id=123");
@@ -50,7 +44,7 @@ public class WNSPushNotificationSenderTest {
         message.setAlert("My message");
 
         //when
-        WnsToast toastMessage = sender.createSimpleToastMessage(message);
+        WnsToast toastMessage = WNSPushNotificationSender.createSimpleToastMessage(message, PUSH_MESSAGE_ID);
 
         //then
         assertThat(toastMessage.launch).isEqualTo("/Root.xaml" + QUERY + "&message=My+message&aerogear-push-id=123");
@@ -62,7 +56,7 @@ public class WNSPushNotificationSenderTest {
         Message pushMessage = getUnifiedPushMessage();
 
         //when
-        final WnsToast toast = sender.createSimpleToastMessage(pushMessage);
+        final WnsToast toast = WNSPushNotificationSender.createSimpleToastMessage(pushMessage, PUSH_MESSAGE_ID);
 
         //then
         assertThat(toast.launch).isEqualTo("/Root.xaml" + QUERY + "&aerogear-push-id=123");
@@ -75,7 +69,7 @@ public class WNSPushNotificationSenderTest {
         pushMessage.getWindows().setPage("cordova");
 
         //when
-        final WnsToast toast = sender.createSimpleToastMessage(pushMessage);
+        final WnsToast toast = WNSPushNotificationSender.createSimpleToastMessage(pushMessage, PUSH_MESSAGE_ID);
 
         //then
         assertThat(toast.launch).isEqualTo(WNSPushNotificationSender.CORDOVA_PAGE + QUERY + "&aerogear-push-id=123");
@@ -93,7 +87,7 @@ public class WNSPushNotificationSenderTest {
         windows.setImages(Collections.singletonList("image1.jpg"));
 
         //when
-        WnsToast toastMessage = sender.createToastMessage(message);
+        WnsToast toastMessage = WNSPushNotificationSender.createToastMessage(message, PUSH_MESSAGE_ID);
 
         //then
         assertThat(toastMessage).isNotNull();
@@ -112,7 +106,7 @@ public class WNSPushNotificationSenderTest {
         message.setAlert("title");
 
         //when
-        WnsTile tileMessage = sender.createTileMessage(message);
+        WnsTile tileMessage = WNSPushNotificationSender.createTileMessage(message);
 
         //then
         assertThat(tileMessage).isNotNull();
@@ -0,0 +1,155 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender.adm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.jboss.aerogear.unifiedpush.message.sender.http.MockHttpServer;
+import org.jboss.aerogear.unifiedpush.message.sender.http.MockHttpServer.Request;
+import org.jboss.aerogear.unifiedpush.message.sender.http.MockHttpServer.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class AdmClientTest {
+
+    private static final String PAYLOAD = "{\"data\":{\"alert\":\"Hello\"}}";
+
+    private final Logger logger = LoggerFactory.getLogger(AdmClientTest.class);
+
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+    private final AtomicInteger messages = new AtomicInteger();
+    private volatile String token = "token-0";
+
+    private MockHttpServer server;
+    private AdmClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockHttpServer()
+                .handle("/auth/O2/token", this::authenticate)
+                .handle("/messaging/registrations/", this::send);
+        System.setProperty(AdmClient.CUSTOM_AEROGEAR_ADM_TOKEN_HOST, server.getUrl("/auth/O2/token"));
+        System.setProperty(AdmClient.CUSTOM_AEROGEAR_ADM_PUSH_HOST, server.getUrl("/messaging/registrations/"));
+        client = new AdmClient("clientId", "secret", 4, 5000);
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        server.close();
+        System.clearProperty(AdmClient.CUSTOM_AEROGEAR_ADM_TOKEN_HOST);
+        System.clearProperty(AdmClient.CUSTOM_AEROGEAR_ADM_PUSH_HOST);
+    }
+
+    @Test
+    public void sendsRegistrationIdsConcurrentlyWithOneToken() throws Exception {
+        final List<String> registrationIds = registrationIds(40);
+
+        final long start = System.currentTimeMillis();
+        final List<AdmResult> results = client.send(PAYLOAD, registrationIds).get(10, TimeUnit.SECONDS);
+        logger.info("Sent {} ADM messages in {} ms (server delay {} ms)", registrationIds.size(),
+                System.currentTimeMillis() - start, 50);
+
+        assertThat(statuses(results)).hasSize(40).containsOnly(200);
+        assertThat(server.getMaxConcurrentRequests()).isBetween(2, 4);
+
+        // the token is reused by further batches
+        assertThat(statuses(client.send(PAYLOAD, registrationIds(10)).get(10, TimeUnit.SECONDS))).containsOnly(200);
+        assertThat(tokenRequests.get()).isEqualTo(1);
+        assertThat(messages.get()).isEqualTo(50);
+    }
+
+    @Test
+    public void refreshesTokenOnceWhenUnauthorized() throws Exception {
+        assertThat(statuses(client.send(PAYLOAD, registrationIds(4)).get(10, TimeUnit.SECONDS))).containsOnly(200);
+
+        // further messages are answered with 401 until a new token is requested
+        token = "revoked";
+
+        final List<AdmResult> results = client.send(PAYLOAD, registrationIds(20)).get(10, TimeUnit.SECONDS);
+        assertThat(statuses(results)).hasSize(20).containsOnly(200);
+        assertThat(tokenRequests.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void reportsResultOfEveryRegistrationId() throws Exception {
+        final List<AdmResult> results = client.send(PAYLOAD, Arrays.asList("a", "unregistered", "invalid"))
+                .get(10, TimeUnit.SECONDS);
+
+        assertThat(results.get(0).isAccepted()).isTrue();
+        assertThat(results.get(1).getStatus()).isEqualTo(400);
+        assertThat(results.get(1).getReason()).isEqualTo("Unregistered");
+        assertThat(results.get(1).isUnregistered()).isTrue();
+        assertThat(results.get(2).getReason()).isEqualTo("InvalidRegistrationId");
+        assertThat(results.get(2).isUnregistered()).isTrue();
+    }
+
+    private Response authenticate(Request request) {
+        if (!request.getBody().contains("grant_type=client_credentials") || !request.getBody().contains("scope=messaging%3Apush")) {
+            return Response.json(400, "{\"error\":\"invalid_request\"}");
+        }
+        token = "token-" + tokenRequests.incrementAndGet();
+        return Response.json(200, "{\"token_type\":\"bearer\",\"access_token\":\"" + token + "\",\"expires_in\":3600,\"scope\":\"messaging:push\"}");
+    }
+
+    /**
+     * Accepts the message after 50 ms, except for the registration IDs {@code unregistered} and {@code invalid}.
+     */
+    private Response send(Request request) throws InterruptedException {
+        if (!("Bearer " + token).equals(request.getHeader("Authorization"))) {
+            return Response.json(401, "{\"reason\":\"AccessTokenExpired\"}");
+        }
+        if (request.getHeader("X-Amzn-Type-Version") == null) {
+            return Response.json(400, "{\"reason\":\"InvalidType\"}");
+        }
+        TimeUnit.MILLISECONDS.sleep(50);
+
+        // /messaging/registrations/{registrationId}/messages
+        final String registrationId = request.getPathSegment(3);
+        messages.incrementAndGet();
+        switch (registrationId) {
+            case "unregistered":
+                return Response.json(400, "{\"reason\":\"Unregistered\"}");
+            case "invalid":
+                return Response.json(400, "{\"reason\":\"InvalidRegistrationId\"}");
+            default:
+                return Response.json(200, "{\"registrationID\":\"" + registrationId + "\"}");
+        }
+    }
+
+    private static List<Integer> statuses(List<AdmResult> results) {
+        return results.stream().map(AdmResult::getStatus).collect(Collectors.toList());
+    }
+
+    private static List<String> registrationIds(int count) {
+        final List<String> registrationIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            registrationIds.add("registration-" + i);
+        }
+        return registrationIds;
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender.fcm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.aerogear.unifiedpush.message.sender.http.MockHttpServer;
+import org.jboss.aerogear.unifiedpush.message.sender.http.MockHttpServer.Request;
+import org.jboss.aerogear.unifiedpush.message.sender.http.MockHttpServer.Response;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.android.gcm.server.Message;
+import com.google.android.gcm.server.MulticastResult;
+import com.google.android.gcm.server.Result;
+
+public class FCMClientTest {
+
+    private final AtomicInteger messageIds = new AtomicInteger();
+
+    private MockHttpServer server;
+    private FCMClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockHttpServer().handle("/fcm/send", this::send);
+        System.setProperty(ConfigurableFCMSender.CUSTOM_AEROGEAR_FCM_PUSH_HOST, server.getUrl("/fcm/send"));
+        client = new FCMClient("key", 4);
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        server.close();
+        System.clearProperty(ConfigurableFCMSender.CUSTOM_AEROGEAR_FCM_PUSH_HOST);
+    }
+
+    @Test
+    public void sendsBatchesConcurrently() throws Exception {
+        final Message message = new Message.Builder().addData("alert", "Hello").build();
+
+        final List<CompletableFuture<MulticastResult>> batches = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            batches.add(client.send(message, Arrays.asList("token-" + i + "-a", "token-" + i + "-b")));
+        }
+
+        for (CompletableFuture<MulticastResult> batch : batches) {
+            final MulticastResult result = batch.get(10, TimeUnit.SECONDS);
+            assertThat(result.getSuccess()).isEqualTo(2);
+            assertThat(result.getResults()).hasSize(2);
+        }
+        assertThat(server.getRequests()).isEqualTo(8);
+        assertThat(server.getMaxConcurrentRequests()).isBetween(2, 4);
+    }
+
+    @Test
+    public void sendsTopicsInParallel() throws Exception {
+        final Message message = new Message.Builder().addData("alert", "Hello").build();
+        final List<String> topics = Arrays.asList("/topics/a", "/topics/b", "/topics/c");
+
+        final List<Result> results = client.sendToTopics(message, topics).get(10, TimeUnit.SECONDS);
+
+        assertThat(results).hasSize(3);
+        results.forEach(result -> assertThat(result.getMessageId()).isNotNull());
+        assertThat(server.getMaxConcurrentRequests()).isGreaterThan(1);
+    }
+
+    /**
+     * Accepts every registration ID and every topic after 100 ms.
+     */
+    private Response send(Request request) throws InterruptedException {
+        final JSONObject message;
+        try {
+            message = (JSONObject) new JSONParser().parse(request.getBody());
+        } catch (ParseException e) {
+            return Response.status(400);
+        }
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        final List<?> registrationIds = (List<?>) message.get("registration_ids");
+        if (registrationIds == null) {
+            return Response.json(200, "{\"message_id\":" + messageIds.incrementAndGet() + "}");
+        }
+        final StringBuilder response = new StringBuilder("{\"multicast_id\":1,\"success\":")
+                .append(registrationIds.size())
+                .append(",\"failure\":0,\"canonical_ids\":0,\"results\":[");
+        for (int i = 0; i < registrationIds.size(); i++) {
+            response.append(i == 0 ? "" : ",").append("{\"message_id\":\"0:").append(i).append("\"}");
+        }
+        return Response.json(200, response.append("]}").toString());
+    }
+}
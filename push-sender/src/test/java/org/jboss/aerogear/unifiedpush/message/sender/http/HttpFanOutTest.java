@@ -0,0 +1,149 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.jboss.aerogear.unifiedpush.message.metrics.SenderPoolMetrics;
+import org.jboss.aerogear.unifiedpush.message.sender.http.MockHttpServer.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class HttpFanOutTest {
+
+    private final Logger logger = LoggerFactory.getLogger(HttpFanOutTest.class);
+
+    private final ByteArrayEntity body = new ByteArrayEntity("version=1".getBytes(StandardCharsets.UTF_8),
+            ContentType.create("application/x-www-form-urlencoded"));
+
+    private MockHttpServer server;
+    private HttpFanOut fanOut;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockHttpServer()
+                .handle("/endpoint/", request -> {
+                    TimeUnit.MILLISECONDS.sleep(20);
+                    return Response.status(200);
+                })
+                .handle("/status/", request -> Response.status(Integer.parseInt(request.getPathSegment(2))))
+                .handle("/slow/", request -> {
+                    TimeUnit.SECONDS.sleep(5);
+                    return Response.status(200);
+                })
+                // every byte arrives within the read timeout, only the deadline of the request ends it
+                .handle("/trickle/", request -> Response.trickle(200, "{\"status\":\"trickling\"}", 100));
+        fanOut = new HttpFanOut("test-fan-out", 4, 500);
+    }
+
+    @After
+    public void tearDown() {
+        fanOut.close();
+        server.close();
+    }
+
+    @Test
+    public void sendsConcurrentlyOverPooledConnections() throws Exception {
+        final List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            urls.add(server.getUrl("/endpoint/" + i));
+        }
+
+        final long start = System.currentTimeMillis();
+        final List<Integer> statuses = fanOut.send(urls, this::put).get(10, TimeUnit.SECONDS);
+        logger.info("Sent {} requests in {} ms over {} connections (server delay {} ms)", urls.size(),
+                System.currentTimeMillis() - start, server.getConnections(), 20);
+
+        assertThat(statuses).hasSize(100).containsOnly(200);
+        assertThat(server.getRequests()).isEqualTo(100);
+        assertThat(server.getMaxConcurrentRequests()).isBetween(2, 4);
+        // keep-alive, the connections are reused rather than opened per request
+        assertThat(server.getConnections()).isLessThanOrEqualTo(4);
+        assertThat(server.getBodies()).containsOnly("version=1");
+    }
+
+    @Test
+    public void reportsStatusOfEveryUrl() throws Exception {
+        final List<String> urls = Arrays.asList(server.getUrl("/endpoint/a"), server.getUrl("/status/404"),
+                server.getUrl("/slow/b"), "http://localhost:1/unreachable", server.getUrl("/status/500"));
+
+        final List<Integer> statuses = fanOut.send(urls, this::put).get(10, TimeUnit.SECONDS);
+
+        assertThat(statuses).containsExactly(200, 404, HttpFanOut.NO_RESPONSE, HttpFanOut.NO_RESPONSE, 500);
+    }
+
+    @Test
+    public void abortsRequestsExceedingTheDeadline() throws Exception {
+        final List<String> urls = Arrays.asList(server.getUrl("/trickle/a"), server.getUrl("/endpoint/b"));
+
+        final long start = System.currentTimeMillis();
+        final List<Integer> statuses = fanOut.send(urls, this::put).get(10, TimeUnit.SECONDS);
+
+        assertThat(statuses).containsExactly(HttpFanOut.NO_RESPONSE, 200);
+        assertThat(System.currentTimeMillis() - start).isLessThan(1500L);
+        assertThat(SenderPoolMetrics.pool("test-fan-out").getRequestTimeouts()).isGreaterThanOrEqualTo(1L);
+    }
+
+    @Test
+    public void sendsBatchesLargerThanTheQueue() throws Exception {
+        final List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            urls.add(server.getUrl("/status/" + (i % 2 == 0 ? 200 : 404)));
+        }
+
+        final List<List<Integer>> batches = new ArrayList<>();
+        final List<CompletableFuture<List<Integer>>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(fanOut.send(urls, this::put));
+        }
+        for (CompletableFuture<List<Integer>> future : futures) {
+            batches.add(future.get(10, TimeUnit.SECONDS));
+        }
+
+        assertThat(server.getRequests()).isEqualTo(2000);
+        final SenderPoolMetrics.Pool pool = SenderPoolMetrics.pool("test-fan-out");
+        assertThat(pool.getExecutors()).isGreaterThanOrEqualTo(1);
+        assertThat(pool.getQueueCapacity()).isGreaterThanOrEqualTo(4 * PooledHttpClient.QUEUED_TASKS_PER_THREAD);
+        // 10 batches of 4 tasks, some of them ran on the calling thread once the queue was full
+        assertThat(pool.getTasks()).isGreaterThanOrEqualTo(40L);
+        for (List<Integer> statuses : batches) {
+            assertThat(statuses).hasSize(200);
+            for (int i = 0; i < statuses.size(); i++) {
+                assertThat(statuses.get(i)).isEqualTo(i % 2 == 0 ? 200 : 404);
+            }
+        }
+    }
+
+    private HttpPut put(String url) {
+        final HttpPut put = new HttpPut(url);
+        put.setEntity(body);
+        return put;
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in of a push network: answers the requests of the registered paths with their {@link Handler} and keeps
+ * track of the requests, of the request bodies and of the client connections. The state of the push network itself
+ * (tokens, delivered messages) is kept by the test registering the handlers.
+ */
+public class MockHttpServer implements AutoCloseable {
+
+    /**
+     * Answers the requests of a path; may sleep to simulate the latency of the push network.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        Response handle(Request request) throws InterruptedException;
+    }
+
+    public static final class Request {
+
+        private final HttpExchange exchange;
+        private final String body;
+
+        private Request(HttpExchange exchange, String body) {
+            this.exchange = exchange;
+            this.body = body;
+        }
+
+        public String getPath() {
+            return exchange.getRequestURI().getPath();
+        }
+
+        /**
+         * @param index index of the segment, {@code 1} is the first one after the leading slash
+         * @return the segment of the path
+         */
+        public String getPathSegment(int index) {
+            return getPath().split("/")[index];
+        }
+
+        public String getHeader(String name) {
+            return exchange.getRequestHeaders().getFirst(name);
+        }
+
+        public String getBody() {
+            return body;
+        }
+    }
+
+    public static final class Response {
+
+        private final int status;
+        private final String body;
+        private final long intervalInMillis;
+
+        private Response(int status, String body, long intervalInMillis) {
+            this.status = status;
+            this.body = body;
+            this.intervalInMillis = intervalInMillis;
+        }
+
+        public static Response status(int status) {
+            return new Response(status, "", 0);
+        }
+
+        public static Response json(int status, String body) {
+            return new Response(status, body, 0);
+        }
+
+        /**
+         * @return response whose body is written one byte at a time, each byte after the interval
+         */
+        public static Response trickle(int status, String body, long intervalInMillis) {
+            return new Response(status, body, intervalInMillis);
+        }
+    }
+
+    private final HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger concurrentRequests = new AtomicInteger();
+    private final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+    private final Set<String> bodies = ConcurrentHashMap.newKeySet();
+
+    public MockHttpServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        this.server.start();
+    }
+
+    /**
+     * @param path prefix of the paths answered by the handler
+     * @param handler answers the requests
+     * @return this server
+     */
+    public MockHttpServer handle(String path, Handler handler) {
+        server.createContext(path, exchange -> handle(exchange, handler));
+        return this;
+    }
+
+    public String getUrl(String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+
+    public int getRequests() {
+        return requests.get();
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests.get();
+    }
+
+    /**
+     * @return number of distinct client connections the requests were received on
+     */
+    public int getConnections() {
+        return connections.size();
+    }
+
+    public Set<String> getBodies() {
+        return bodies;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        final int concurrent = concurrentRequests.incrementAndGet();
+        maxConcurrentRequests.accumulateAndGet(concurrent, Math::max);
+        requests.incrementAndGet();
+        connections.add(exchange.getRemoteAddress());
+
+        Response response;
+        try {
+            final String body = read(exchange.getRequestBody());
+            bodies.add(body);
+            response = handler.handle(new Request(exchange, body));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response = Response.status(500);
+        } catch (RuntimeException e) {
+            response = Response.status(500);
+        } finally {
+            // before responding, the client may reuse the connection as soon as it gets the response
+            concurrentRequests.decrementAndGet();
+        }
+        respond(exchange, response);
+    }
+
+    private static String read(InputStream in) throws IOException {
+        final StringBuilder body = new StringBuilder();
+        final byte[] buffer = new byte[1024];
+        try (InputStream input = in) {
+            for (int read = input.read(buffer); read != -1; read = input.read(buffer)) {
+                body.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
+            }
+        }
+        return body.toString();
+    }
+
+    private static void respond(HttpExchange exchange, Response response) throws IOException {
+        final byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length == 0) {
+            // no body: the exchange is complete once the headers are sent, writing to it would reset the connection
+            exchange.sendResponseHeaders(response.status, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (response.intervalInMillis == 0) {
+                out.write(bytes);
+                return;
+            }
+            for (byte b : bytes) {
+                TimeUnit.MILLISECONDS.sleep(response.intervalInMillis);
+                out.write(b);
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender.wns;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.aerogear.unifiedpush.message.sender.http.MockHttpServer;
+import org.jboss.aerogear.unifiedpush.message.sender.http.MockHttpServer.Request;
+import org.jboss.aerogear.unifiedpush.message.sender.http.MockHttpServer.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ar.com.fernandospr.wns.model.builders.WnsToastBuilder;
+
+public class WnsClientTest {
+
+    private final Logger logger = LoggerFactory.getLogger(WnsClientTest.class);
+
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+    private final AtomicInteger notifications = new AtomicInteger();
+    private volatile String token = "token-0";
+    private volatile boolean authenticationFailing;
+
+    private MockHttpServer server;
+    private WnsClient client;
+    private WnsNotification notification;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockHttpServer()
+                .handle("/accesstoken.srf", this::authenticate)
+                .handle("/channel/", this::deliver);
+        System.setProperty(WnsClient.CUSTOM_AEROGEAR_WNS_TOKEN_HOST, server.getUrl("/accesstoken.srf"));
+        client = new WnsClient("sid", "secret", 4, 5000);
+        notification = WnsNotification.toast(new WnsToastBuilder().bindingTemplateToastText01("Hello").build(), null);
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        server.close();
+        System.clearProperty(WnsClient.CUSTOM_AEROGEAR_WNS_TOKEN_HOST);
+    }
+
+    @Test
+    public void sendsChannelsConcurrentlyWithOneToken() throws Exception {
+        final List<String> channelUris = channelUris(40);
+
+        final long start = System.currentTimeMillis();
+        final List<Integer> statuses = client.send(notification, channelUris).get(10, TimeUnit.SECONDS);
+        logger.info("Sent {} WNS notifications in {} ms (server delay {} ms)", channelUris.size(),
+                System.currentTimeMillis() - start, 50);
+
+        assertThat(statuses).hasSize(40).containsOnly(200);
+        assertThat(server.getMaxConcurrentRequests()).isBetween(2, 4);
+
+        // the token is reused by further batches
+        assertThat(client.send(notification, channelUris(10)).get(10, TimeUnit.SECONDS)).containsOnly(200);
+        assertThat(tokenRequests.get()).isEqualTo(1);
+        assertThat(notifications.get()).isEqualTo(50);
+    }
+
+    @Test
+    public void refreshesTokenOnceWhenUnauthorized() throws Exception {
+        assertThat(client.send(notification, channelUris(4)).get(10, TimeUnit.SECONDS)).containsOnly(200);
+
+        // further notifications are answered with 401 until a new token is requested
+        token = "revoked";
+
+        assertThat(client.send(notification, channelUris(20)).get(10, TimeUnit.SECONDS)).hasSize(20).containsOnly(200);
+        assertThat(tokenRequests.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void failedTokenRefreshDoesNotFailTheBatch() throws Exception {
+        assertThat(client.send(notification, channelUris(4)).get(10, TimeUnit.SECONDS)).containsOnly(200);
+
+        token = "revoked";
+        authenticationFailing = true;
+
+        assertThat(client.send(notification, channelUris(10)).get(10, TimeUnit.SECONDS))
+                .hasSize(10).containsOnly(WnsClient.NO_RESPONSE);
+    }
+
+    @Test
+    public void reportsStatusOfEveryChannel() throws Exception {
+        final List<String> channelUris = Arrays.asList(channelUri("a"), channelUri("gone"),
+                "http://localhost:1/unreachable");
+
+        final List<Integer> statuses = client.send(notification, channelUris).get(10, TimeUnit.SECONDS);
+
+        assertThat(statuses).containsExactly(200, 410, WnsClient.NO_RESPONSE);
+    }
+
+    private List<String> channelUris(int count) {
+        final List<String> channelUris = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            channelUris.add(channelUri("channel-" + i));
+        }
+        return channelUris;
+    }
+
+    private String channelUri(String id) {
+        return server.getUrl("/channel/" + id);
+    }
+
+    private Response authenticate(Request request) {
+        if (authenticationFailing || !request.getBody().contains("grant_type=client_credentials")) {
+            return Response.status(400);
+        }
+        token = "token-" + tokenRequests.incrementAndGet();
+        return Response.json(200, "{\"token_type\":\"bearer\",\"access_token\":\"" + token + "\",\"expires_in\":86400}");
+    }
+
+    /**
+     * Accepts the notification after 50 ms, unless the path of the channel URI ends with {@code /gone}.
+     */
+    private Response deliver(Request request) throws InterruptedException {
+        if (!("Bearer " + token).equals(request.getHeader("Authorization"))) {
+            return Response.status(401);
+        }
+        if (request.getHeader("X-WNS-Type") == null) {
+            return Response.status(400);
+        }
+        TimeUnit.MILLISECONDS.sleep(50);
+
+        notifications.incrementAndGet();
+        return Response.status(request.getPath().endsWith("/gone") ? 410 : 200);
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.token;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.jboss.aerogear.unifiedpush.api.AndroidVariant;
+import org.jboss.aerogear.unifiedpush.api.FlatPushMessageInformation;
+import org.jboss.aerogear.unifiedpush.api.VariantType;
+import org.jboss.aerogear.unifiedpush.dao.ResultStreamException;
+import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
+import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithTokens;
+import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithVariants;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+
+import reactor.core.publisher.BaseSubscriber;
+
+public class TokenBatchCursorTest {
+
+    private final AndroidVariant variant = new AndroidVariant();
+    private final MessageHolderWithVariants msg = new MessageHolderWithVariants(new FlatPushMessageInformation(),
+            new UnifiedPushMessage(), VariantType.ANDROID, Collections.singletonList(variant));
+
+    @Test
+    public void cutsTokensIntoBatches() {
+        final TokenBatchCursor cursor = new TokenBatchCursor(msg, variant, new TokenStream(tokens(5)),
+                Collections.emptySet(), 0, 2, 10);
+
+        final List<MessageHolderWithTokens> batches = cursor.batches().collectList().block();
+
+        assertThat(tokensOf(batches)).containsExactly(
+                Arrays.asList("token-1", "token-2"), Arrays.asList("token-3", "token-4"), Arrays.asList("token-5"));
+        assertThat(serialIdsOf(batches)).containsExactly(1, 2, 3);
+        assertThat(cursor.getTokensLoaded()).isEqualTo(5);
+        assertThat(cursor.getLastTokenInBatch()).isEqualTo("token-5");
+    }
+
+    @Test
+    public void stopsAfterBatchesToLoad() {
+        final TokenBatchCursor cursor = new TokenBatchCursor(msg, variant, new TokenStream(tokens(10)),
+                Collections.emptySet(), 7, 2, 2);
+
+        final List<MessageHolderWithTokens> batches = cursor.batches().collectList().block();
+
+        // the serial IDs continue where the previous transaction ended
+        assertThat(serialIdsOf(batches)).containsExactly(8, 9);
+        assertThat(cursor.getSerialId()).isEqualTo(9);
+        assertThat(cursor.getTokensLoaded()).isEqualTo(4);
+        assertThat(cursor.getLastTokenInBatch()).isEqualTo("token-4");
+    }
+
+    @Test
+    public void sendsTopicsAsFirstBatch() {
+        final Set<String> topics = new TreeSet<>(Arrays.asList("/topics/a", "/topics/b"));
+        final TokenBatchCursor cursor = new TokenBatchCursor(msg, variant, new TokenStream(tokens(3)), topics, 0, 2, 3);
+
+        final List<MessageHolderWithTokens> batches = cursor.batches().collectList().block();
+
+        assertThat(tokensOf(batches)).containsExactly(Arrays.asList("/topics/a", "/topics/b"),
+                Arrays.asList("token-1", "token-2"), Arrays.asList("token-3"));
+        // topics are not device tokens
+        assertThat(cursor.getTokensLoaded()).isEqualTo(3);
+    }
+
+    @Test
+    public void readsTokensOnlyWhenBatchIsRequested() {
+        final TokenStream tokenStream = new TokenStream(tokens(10));
+        final TokenBatchCursor cursor = new TokenBatchCursor(msg, variant, tokenStream, Collections.emptySet(), 0, 2, 10);
+        final List<MessageHolderWithTokens> batches = new ArrayList<>();
+
+        cursor.batches().subscribe(new BaseSubscriber<MessageHolderWithTokens>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnNext(MessageHolderWithTokens batch) {
+                batches.add(batch);
+            }
+        });
+
+        assertThat(batches).hasSize(1);
+        assertThat(tokenStream.read).isEqualTo(2);
+    }
+
+    @Test
+    public void failsWithTheDatabaseError() {
+        final TokenStream tokenStream = new TokenStream(tokens(3));
+        tokenStream.failAfter = 2;
+        final TokenBatchCursor cursor = new TokenBatchCursor(msg, variant, tokenStream, Collections.emptySet(), 0, 2, 10);
+        final List<MessageHolderWithTokens> batches = new ArrayList<>();
+        final List<Throwable> errors = new ArrayList<>();
+
+        cursor.batches().subscribe(batches::add, errors::add);
+
+        assertThat(batches).hasSize(1);
+        assertThat(errors).hasSize(1);
+        assertThat(errors.get(0)).isInstanceOf(ResultStreamException.class);
+    }
+
+    private static List<String> tokens(int count) {
+        final List<String> tokens = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            tokens.add("token-" + i);
+        }
+        return tokens;
+    }
+
+    private static List<List<String>> tokensOf(List<MessageHolderWithTokens> batches) {
+        return batches.stream().map(batch -> new ArrayList<>(batch.getDeviceTokens())).collect(Collectors.toList());
+    }
+
+    private static List<Integer> serialIdsOf(List<MessageHolderWithTokens> batches) {
+        return batches.stream().map(MessageHolderWithTokens::getSerialId).collect(Collectors.toList());
+    }
+
+    /**
+     * Token stream over a list, counting the rows read from it.
+     */
+    static class TokenStream implements ResultsStream<String> {
+        private final Iterator<String> tokens;
+        private String current;
+        int read;
+        int failAfter = Integer.MAX_VALUE;
+
+        TokenStream(List<String> tokens) {
+            this.tokens = tokens.iterator();
+        }
+
+        @Override
+        public boolean next() throws ResultStreamException {
+            if (read == failAfter) {
+                throw new ResultStreamException("connection lost");
+            }
+            if (!tokens.hasNext()) {
+                return false;
+            }
+            current = tokens.next();
+            read++;
+            return true;
+        }
+
+        @Override
+        public String get() {
+            return current;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.token;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import org.jboss.aerogear.unifiedpush.api.AndroidVariant;
+import org.jboss.aerogear.unifiedpush.api.FlatPushMessageInformation;
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.api.VariantType;
+import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
+import org.jboss.aerogear.unifiedpush.message.DispatchWindow;
+import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.configuration.SenderConfiguration;
+import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithTokens;
+import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithVariants;
+import org.jboss.aerogear.unifiedpush.message.metrics.DispatchQueueMetrics;
+import org.jboss.aerogear.unifiedpush.message.token.TokenBatchCursorTest.TokenStream;
+import org.jboss.aerogear.unifiedpush.message.token.TokenLoader.TokenLoaderWrapper;
+import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import reactor.core.publisher.TopicProcessor;
+import reactor.core.publisher.WorkQueueProcessor;
+
+public class TokenLoaderTest {
+
+    private final ClientInstallationService clientInstallationService = mock(ClientInstallationService.class);
+    private final WorkQueueProcessor<MessageHolderWithTokens> dispatchTokensEvent = WorkQueueProcessor.<MessageHolderWithTokens>builder().share(true).build();
+    private final TopicProcessor<MessageHolderWithVariants> nextBatchEvent = TopicProcessor.<MessageHolderWithVariants>builder().share(true).build();
+    private final List<MessageHolderWithTokens> dispatched = new CopyOnWriteArrayList<>();
+    private final List<MessageHolderWithVariants> nextBatches = new CopyOnWriteArrayList<>();
+    private final DispatchQueueMetrics dispatchQueueMetrics = new DispatchQueueMetrics();
+
+    private DispatchWindow dispatchWindow;
+    private TokenLoader tokenLoader;
+
+    private final AndroidVariant variant = variant("variant-1");
+
+    @After
+    public void tearDown() {
+        tokenLoader.disposeLoaderSchedulers();
+        dispatchTokensEvent.shutdown();
+        nextBatchEvent.shutdown();
+    }
+
+    @Test
+    public void dispatchesAllBatchesThroughSmallWindow() {
+        // one batch in flight at a time, the dispatcher delivers it right away
+        createTokenLoader(new SenderConfiguration(10, 2), 1, true);
+        givenTokens(variant, null, tokens(7), 20);
+
+        tokenLoader.loadAndQueueTokenBatch(initialRequest(variant), variant);
+
+        awaitUntil(() -> dispatched.size() == 4);
+        assertThat(serialIds(dispatched)).containsExactly(1, 2, 3, 4);
+        assertThat(dispatchQueueMetrics.getBatchesDispatched()).isEqualTo(4);
+        assertThat(dispatchQueueMetrics.getTokensDispatched()).isEqualTo(7);
+        awaitUntil(() -> dispatchWindow.getInFlight() == 0);
+        assertThat(nextBatches).isEmpty();
+    }
+
+    @Test
+    public void waitsForDeliveryBeforeLoadingNextBatch() throws Exception {
+        // the dispatcher keeps the batches until they are delivered below
+        createTokenLoader(new SenderConfiguration(10, 2), 1, false);
+        final TokenStream tokenStream = givenTokens(variant, null, tokens(6), 20);
+
+        final CompletableFuture<Void> loading = CompletableFuture
+                .runAsync(() -> tokenLoader.loadAndQueueTokenBatch(initialRequest(variant), variant));
+
+        awaitUntil(() -> dispatched.size() == 1);
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertThat(dispatched).hasSize(1);
+        // the database cursor is not advanced while the window is full
+        assertThat(tokenStream.read).isEqualTo(2);
+        assertThat(dispatchQueueMetrics.getStalledLoaders()).isEqualTo(1);
+
+        for (int delivered = 1; delivered <= 3; delivered++) {
+            final int expected = delivered;
+            awaitUntil(() -> dispatched.size() == expected);
+            dispatched.get(expected - 1).getDispatchLease().release();
+        }
+        loading.get(5, TimeUnit.SECONDS);
+
+        assertThat(serialIds(dispatched)).containsExactly(1, 2, 3);
+        assertThat(tokenStream.read).isEqualTo(6);
+        assertThat(dispatchQueueMetrics.getStalls()).isGreaterThanOrEqualTo(2);
+        assertThat(dispatchQueueMetrics.getStalledLoaders()).isEqualTo(0);
+    }
+
+    @Test
+    public void continuesInNextTransactionWhereThisOneEnded() {
+        createTokenLoader(new SenderConfiguration(2, 2), 4, true);
+        givenTokens(variant, null, tokens(5).subList(0, 4), 4);
+        givenTokens(variant, "token-4", Collections.singletonList("token-5"), 4);
+
+        tokenLoader.loadAndQueueTokenBatch(initialRequest(variant), variant);
+
+        awaitUntil(() -> nextBatches.size() == 1);
+        final MessageHolderWithVariants next = nextBatches.get(0);
+        assertThat(next.getLastSerialId()).isEqualTo(2);
+        assertThat(next.getLastTokenFromPreviousBatch()).isEqualTo("token-4");
+        assertThat(next.getVariants()).containsExactly(variant);
+
+        tokenLoader.loadAndQueueTokenBatch(next, variant);
+
+        awaitUntil(() -> dispatched.size() == 3);
+        assertThat(serialIds(dispatched)).containsExactly(1, 2, 3);
+        assertThat(dispatched.get(2).getDeviceTokens()).containsExactly("token-5");
+        assertThat(nextBatches).hasSize(1);
+    }
+
+    @Test
+    public void splitsLargeVariantIntoTokenRanges() {
+        createTokenLoader(new SenderConfiguration(2, 2, 2, 2), 4, true);
+        when(clientInstallationService.getNumberOfDevicesForVariantID("variant-1")).thenReturn(10L);
+        when(clientInstallationService.findDeviceTokenRangeBoundaries("variant-1", 2))
+                .thenReturn(Collections.singletonList("token-5"));
+
+        tokenLoader.loadAndQueueTokenBatch(initialRequest(variant), variant);
+
+        awaitUntil(() -> nextBatches.size() == 2);
+        assertThat(dispatched).isEmpty();
+
+        final MessageHolderWithVariants first = nextBatches.get(0);
+        assertThat(first.getLastSerialId()).isEqualTo(0);
+        assertThat(first.getLastTokenFromPreviousBatch()).isNull();
+        assertThat(first.getUpperTokenBoundary()).isEqualTo("token-5");
+
+        final MessageHolderWithVariants second = nextBatches.get(1);
+        assertThat(second.getLastSerialId()).isEqualTo(TokenLoader.TOKEN_RANGE_SERIAL_ID_STRIDE);
+        assertThat(second.getLastTokenFromPreviousBatch()).isEqualTo("token-5");
+        assertThat(second.getUpperTokenBoundary()).isNull();
+    }
+
+    @Test
+    public void doesNotSplitSmallVariant() {
+        createTokenLoader(new SenderConfiguration(2, 2, 2, 2), 4, true);
+        when(clientInstallationService.getNumberOfDevicesForVariantID("variant-1")).thenReturn(7L);
+        givenTokens(variant, null, tokens(3), 4);
+
+        tokenLoader.loadAndQueueTokenBatch(initialRequest(variant), variant);
+
+        awaitUntil(() -> dispatched.size() == 2);
+        verify(clientInstallationService, never()).findDeviceTokenRangeBoundaries("variant-1", 2);
+        assertThat(nextBatches).isEmpty();
+    }
+
+    @Test
+    public void loadsEveryVariantOfRequestWithItsOwnSerialIds() {
+        createTokenLoader(new SenderConfiguration(10, 2, 2), 4, true);
+        final AndroidVariant other = variant("variant-2");
+        givenTokens(variant, null, tokens(3), 20);
+        givenTokens(other, null, tokens(4), 20);
+
+        tokenLoader.loadAndQueueTokenBatch(new MessageHolderWithVariants(new FlatPushMessageInformation(),
+                new UnifiedPushMessage(), VariantType.ANDROID, Arrays.asList(variant, other)));
+
+        awaitUntil(() -> dispatched.size() == 4);
+        assertThat(serialIds(batchesOf(variant))).containsExactly(1, 2);
+        assertThat(serialIds(batchesOf(other))).containsExactly(1, 2);
+        assertThat(batchesOf(other).get(1).getDeviceTokens()).containsExactly("token-3", "token-4");
+    }
+
+    private void createTokenLoader(SenderConfiguration configuration, int maxInFlightBatches, boolean deliverImmediately) {
+        final GenericApplicationContext context = new GenericApplicationContext();
+        context.getBeanFactory().registerSingleton(VariantType.ANDROID.name(), configuration);
+        context.refresh();
+
+        dispatchWindow = new DispatchWindow(maxInFlightBatches);
+        ReflectionTestUtils.setField(dispatchQueueMetrics, "dispatchWindow", dispatchWindow);
+
+        tokenLoader = new TokenLoader();
+        final TokenLoaderWrapper wrapper = new TokenLoaderWrapper();
+        wrapper.setTokenLoader(tokenLoader);
+        ReflectionTestUtils.setField(tokenLoader, "clientInstallationService", clientInstallationService);
+        ReflectionTestUtils.setField(tokenLoader, "dispatchTokensEvent", dispatchTokensEvent);
+        ReflectionTestUtils.setField(tokenLoader, "nextBatchEvent", nextBatchEvent);
+        ReflectionTestUtils.setField(tokenLoader, "dispatchWindow", dispatchWindow);
+        ReflectionTestUtils.setField(tokenLoader, "dispatchQueueMetrics", dispatchQueueMetrics);
+        ReflectionTestUtils.setField(tokenLoader, "context", context);
+        ReflectionTestUtils.setField(tokenLoader, "wrapper", wrapper);
+
+        dispatchTokensEvent.subscribe(batch -> {
+            dispatched.add(batch);
+            if (deliverImmediately) {
+                batch.getDispatchLease().release();
+            }
+        });
+        nextBatchEvent.subscribe(nextBatches::add);
+    }
+
+    private TokenStream givenTokens(Variant variant, String lastToken, List<String> tokens, int tokensToLoad) {
+        final TokenStream tokenStream = new TokenStream(tokens);
+        when(clientInstallationService.findAllDeviceTokenForVariantIDByCriteria(variant.getVariantID(), null, null,
+                null, tokensToLoad, lastToken, null, false)).thenReturn(new ResultsStream.QueryBuilder<String>() {
+                    @Override
+                    public ResultsStream.QueryBuilder<String> fetchSize(int fetchSize) {
+                        return this;
+                    }
+
+                    @Override
+                    public ResultsStream<String> executeQuery() {
+                        return tokenStream;
+                    }
+                });
+        return tokenStream;
+    }
+
+    private List<MessageHolderWithTokens> batchesOf(Variant variant) {
+        return dispatched.stream().filter(batch -> batch.getVariant() == variant)
+                .sorted((a, b) -> Integer.compare(a.getSerialId(), b.getSerialId())).collect(Collectors.toList());
+    }
+
+    private static MessageHolderWithVariants initialRequest(Variant variant) {
+        return new MessageHolderWithVariants(new FlatPushMessageInformation(), new UnifiedPushMessage(),
+                VariantType.ANDROID, Collections.singletonList(variant));
+    }
+
+    private static AndroidVariant variant(String variantId) {
+        final AndroidVariant variant = new AndroidVariant();
+        variant.setVariantID(variantId);
+        return variant;
+    }
+
+    private static List<String> tokens(int count) {
+        final List<String> tokens = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            tokens.add("token-" + i);
+        }
+        return tokens;
+    }
+
+    private static List<Integer> serialIds(List<MessageHolderWithTokens> batches) {
+        return batches.stream().map(MessageHolderWithTokens::getSerialId).collect(Collectors.toList());
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) {
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Condition not met within 5 seconds");
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
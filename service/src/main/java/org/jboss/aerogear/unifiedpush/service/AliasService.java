@@ -34,7 +34,9 @@ public interface AliasService {
 	 * {@code {@link org.jboss.aerogear.unifiedpush.api.Alias#getEmail()}})
 	 * aliases, mirroring the data received in {@code aliases}, and associates
 	 * them to the given application. Note that this application's existing
-	 * aliases will be overwritten by the newly created aliases.
+	 * aliases will be overwritten by the newly created aliases. An alias whose
+	 * email or other value (case insensitive) is already listed before it is
+	 * ignored.
 
 	 * @param pushApplication
 	 *            push application to associate the aliases to.
@@ -96,8 +98,6 @@ public interface AliasService {
 
 	List<UserKey> remove(UUID pushApplicationId, UUID userId);
 
-	void removeAll(PushApplication pushApplication, boolean destructive, PostDelete action);
-
 	void create(Alias alias);
 
 	void createAsynchronous(Alias alias);
@@ -0,0 +1,49 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.jboss.aerogear.unifiedpush.api.PushApplication;
+import org.jboss.aerogear.unifiedpush.cassandra.dao.model.TeardownJob;
+
+/**
+ * Resumable removal of all push application aliases and, when destructive,
+ * related documents and keycloak entities.
+ */
+public interface ApplicationTeardownService {
+
+	/**
+	 * Start (or join an already running) teardown job for the given
+	 * application. Progress is checkpointed, jobs interrupted by a shutdown or
+	 * a crash are resumed by a node once their lease expired.
+	 *
+	 * @param pushApplication
+	 *            push application to teardown.
+	 * @param destructive
+	 *            when true also remove KC entities and related documents,
+	 *            otherwise only aliases are removed.
+	 * @return future completed once the job is done (current process only),
+	 *         or right away if another node runs the job.
+	 */
+	CompletableFuture<Void> teardown(PushApplication pushApplication, boolean destructive);
+
+	/**
+	 * Teardown progress of the given application, or null if no job exists.
+	 */
+	TeardownJob getProgress(String pushApplicationId);
+}
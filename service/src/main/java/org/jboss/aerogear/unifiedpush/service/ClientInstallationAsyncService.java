@@ -16,6 +16,7 @@
  */
 package org.jboss.aerogear.unifiedpush.service;
 
+import java.io.File;
 import java.util.List;
 import java.util.Set;
 
@@ -34,6 +35,15 @@ public interface ClientInstallationAsyncService {
 
 	public void addInstallations(Variant variant, List<Installation> installations);
 
+	/**
+	 * Imports the installations of a JSON file, containing an array of installations, in chunks.
+	 * The file is read with a streaming parser and deleted once the import is finished.
+	 *
+	 * @param variant the variant to store on
+	 * @param jsonFile file containing the installations
+	 */
+	public void importInstallations(Variant variant, File jsonFile);
+
 	public void removeInstallationsForVariantByDeviceTokens(String variantID, Set<String> deviceTokens);
 
 	public void removeInstallationForVariantByDeviceToken(String variantID, String deviceToken);
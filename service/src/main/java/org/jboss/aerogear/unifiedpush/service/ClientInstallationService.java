@@ -17,6 +17,7 @@
 package org.jboss.aerogear.unifiedpush.service;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.jboss.aerogear.unifiedpush.api.Installation;
@@ -41,11 +42,14 @@ public interface ClientInstallationService {
 
     /**
      * Add new Installations objects, for importing devices on the database.
+     * Installations with an already registered device token are ignored.
      *
      * @param variant the variant to store on
      * @param installations list of installations
+     *
+     * @return number of stored installations
      */
-    void addInstallations(Variant variant, List<Installation> installations);
+    int addInstallations(Variant variant, List<Installation> installations);
 
     /**
      * Performs an update/merge on the given entity.
@@ -109,6 +113,18 @@ public interface ClientInstallationService {
      */
     void removeInstallationForVariantByDeviceToken(String variantID, String deviceToken);
 
+    /**
+     * Used for "canonical IDs" returned by the push network: replaces outdated device tokens of a variant with
+     * their new (canonical) value, using one lookup for all the old and one for all the new tokens.
+     *
+     * If an installation with the new token is already registered, the installation with the outdated token
+     * is a duplicate and gets removed instead.
+     *
+     * @param variantID id of the variant
+     * @param canonicalTokens the new token for every outdated token
+     */
+    void replaceDeviceTokensForVariant(String variantID, Map<String, String> canonicalTokens);
+
     /**
      * Used for "Device Registration":
      *
@@ -158,6 +174,33 @@ public interface ClientInstallationService {
      */
     ResultsStream.QueryBuilder<String> findAllOldGoogleCloudMessagingDeviceTokenForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes, int maxResults, String lastTokenFromPreviousBatch);
 
+    /**
+     * Same as {@link #findAllDeviceTokenForVariantIDByCriteria(String, List, List, List, int, String)}, restricted
+     * to the range of tokens that ends with the given boundary.
+     *
+     * @param variantID the variantID for the filter
+     * @param categories applied categories for the filter
+     * @param aliases applied aliases for the filter
+     * @param deviceTypes applied deviceTypes for the filter
+     * @param maxResults number of maxResults for the filter
+     * @param lastTokenFromPreviousBatch identifier of the last fetched token
+     * @param upperTokenBoundary last token (inclusive) of the range, or null for an open range
+     * @param oldGCM if true only old GCM tokens (not containing a :) are loaded
+     *
+     * @return list of device tokens that matches this filter
+     */
+    ResultsStream.QueryBuilder<String> findAllDeviceTokenForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes, int maxResults, String lastTokenFromPreviousBatch, String upperTokenBoundary, boolean oldGCM);
+
+    /**
+     * Splits the device tokens of the given variant into ranges that can be loaded independently.
+     *
+     * @param variantID the variantID for the filter
+     * @param partitions number of requested ranges
+     *
+     * @return ascending list of tokens where the ranges end (inclusive); the last range is open and has no boundary
+     */
+    List<String> findDeviceTokenRangeBoundaries(String variantID, int partitions);
+
     Variant associateInstallation(Installation installation, Variant currentVariant);
 
     long getNumberOfDevicesForVariantID(String variantId);
@@ -24,5 +24,22 @@ public interface DocumentService {
 
 	Stream<DocumentContent> find(DocumentMetadata metadata, QueryOptions options);
 
+	/**
+	 * Snapshots (timeuuid) of the documents matching the query, newest first,
+	 * without loading document content.
+	 */
+	List<UUID> findSnapshots(DocumentMetadata metadata, QueryOptions options);
+
+	/**
+	 * Documents of snapshots resolved by {@link #findSnapshots}, newest first,
+	 * so content matches the snapshots even under concurrent writes.
+	 */
+	Stream<DocumentContent> find(DocumentMetadata metadata, QueryOptions options, List<UUID> snapshots);
+
+	/**
+	 * Number of documents matching the query, without loading snapshots.
+	 */
+	long count(DocumentMetadata metadata, QueryOptions options);
+
 	List<DocumentContent> findLatest(PushApplication pushApp, String database, String id, List<Alias> aliases);
 }
@@ -1,5 +0,0 @@
-package org.jboss.aerogear.unifiedpush.service;
-
-public interface PostDelete {
-	public void after();
-}
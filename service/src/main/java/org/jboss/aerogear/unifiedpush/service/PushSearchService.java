@@ -17,10 +17,12 @@
 package org.jboss.aerogear.unifiedpush.service;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.jboss.aerogear.unifiedpush.api.Installation;
 import org.jboss.aerogear.unifiedpush.api.PushApplication;
 import org.jboss.aerogear.unifiedpush.dao.PageResult;
+import org.jboss.aerogear.unifiedpush.dao.ResultStreamException;
 import org.jboss.aerogear.unifiedpush.dto.Count;
 import org.jboss.aerogear.unifiedpush.service.annotations.LoggedInUser;
 import org.jboss.aerogear.unifiedpush.service.dashboard.Application;
@@ -92,10 +94,24 @@ public interface PushSearchService {
      * @param page the page number
      * @param pageSize the size of the pages
      * @param search Search criteria
+     * @param after id of the last installation of the previous page, or <code>null</code> to use the page number
      *
-     * @return page result containing the list plus a total number of rows
+     * @return page result containing the list plus a total number of rows (approximate when searching)
      */
-    PageResult<Installation, Count> findAllInstallationsByVariantForDeveloper(String variantID, Integer page, Integer pageSize, String search);
+    PageResult<Installation, Count> findAllInstallationsByVariantForDeveloper(String variantID, Integer page, Integer pageSize, String search, String after);
+
+    /**
+     * Streams all installations for the variant specified to the given consumer, one after the other.
+     *
+     * The installations are read with a forward-only cursor and detached in chunks, so the memory
+     * used does not depend on the number of installations. The consumer must not keep them.
+     *
+     * @param variantID the id of the variant to export the installations of
+     * @param consumer receives the installations
+     *
+     * @throws ResultStreamException if reading the installations fails
+     */
+    void exportInstallationsByVariantForDeveloper(String variantID, Consumer<Installation> consumer) throws ResultStreamException;
 
     void setLoginName(LoggedInUser loginName);
 }
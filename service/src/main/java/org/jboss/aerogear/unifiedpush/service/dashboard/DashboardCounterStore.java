@@ -0,0 +1,96 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.dashboard;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import org.jboss.aerogear.unifiedpush.api.DashboardCounter;
+import org.jboss.aerogear.unifiedpush.dao.DashboardCounterDao;
+import org.jboss.aerogear.unifiedpush.dao.FlatPushMessageInformationDao;
+import org.jboss.aerogear.unifiedpush.dao.InstallationDao;
+import org.jboss.aerogear.unifiedpush.dao.PushApplicationDao;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Transactional access to the stored {@link DashboardCounter}s, used by {@link DashboardCounters}.
+ */
+@Service
+@Transactional
+public class DashboardCounterStore {
+
+    @Inject
+    private DashboardCounterDao dashboardCounterDao;
+
+    @Inject
+    private PushApplicationDao pushApplicationDao;
+
+    @Inject
+    private InstallationDao installationDao;
+
+    @Inject
+    private FlatPushMessageInformationDao flatPushMessageInformationDao;
+
+    /**
+     * Adds the deltas to the counters and to the totals of their kinds, in one transaction.
+     *
+     * @param deltas the deltas, a counter without reference ID is the total of its kind
+     */
+    public void increment(Collection<DashboardCounter> deltas) {
+        for (DashboardCounter delta : deltas) {
+            dashboardCounterDao.increment(delta.getKind(), delta.getRefId(), delta.getValue());
+            if (delta.getRefId() != null) {
+                dashboardCounterDao.increment(delta.getKind(), null, delta.getValue());
+            }
+        }
+    }
+
+    /**
+     * Removes the counter of an entity which has been deleted, and subtracts it from the total of its kind.
+     */
+    public void remove(String kind, String refId) {
+        dashboardCounterDao.remove(kind, refId);
+    }
+
+    @Transactional(readOnly = true)
+    public Map<String, Long> findTotals(Collection<String> kinds) {
+        return dashboardCounterDao.findTotals(kinds);
+    }
+
+    /**
+     * Replaces the counters of the kind by the actual number of rows.
+     */
+    public void reconcile(String kind) {
+        switch (kind) {
+            case DashboardCounter.APPLICATIONS:
+                dashboardCounterDao.reset(kind, Collections.singletonMap(null, pushApplicationDao.getNumberOfPushApplicationsForDeveloper()));
+                break;
+            case DashboardCounter.DEVICES:
+                dashboardCounterDao.reset(kind, installationDao.countDevicesByVariantID());
+                break;
+            case DashboardCounter.MESSAGES:
+                dashboardCounterDao.reset(kind, flatPushMessageInformationDao.countPushMessagesByApplication());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown dashboard counter: " + kind);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.dashboard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.jboss.aerogear.unifiedpush.api.DashboardCounter;
+import org.jboss.aerogear.unifiedpush.api.PushApplication;
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.system.ConfigurationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Incrementally maintained numbers of push applications, devices (per variant) and push messages (per push
+ * application), which serve the dashboard without counting the rows of the (large) tables.
+ *
+ * Registrations, deletions and submitted push messages only increment in-memory counters, which are periodically
+ * added to the stored {@link DashboardCounter}s in one transaction, so the hot total rows are not updated by every
+ * request. The stored counters are replaced by the actual number of rows on a (much longer) interval, and right
+ * after startup when they were never computed; this corrects the drift caused by rolled back transactions, lost
+ * flushes or bulk deletes such as the removal of outdated push messages.
+ */
+@Service
+public class DashboardCounters {
+
+    // system property name used as the configurable interval (in milliseconds) between two flushes of the counters
+    public static final String AEROGEAR_DASHBOARD_COUNTERS_FLUSH_INTERVAL = "aerogear.dashboard.counters.flushInterval";
+    // system property name used as the configurable interval (in milliseconds) between two reconciliations
+    public static final String AEROGEAR_DASHBOARD_COUNTERS_RECONCILE_INTERVAL = "aerogear.dashboard.counters.reconcileInterval";
+
+    private static final int DEFAULT_FLUSH_INTERVAL_IN_MILLIS = 5000;
+    private static final int DEFAULT_RECONCILE_INTERVAL_IN_MILLIS = (int) TimeUnit.HOURS.toMillis(6);
+
+    private static final List<String> KINDS = Arrays.asList(DashboardCounter.APPLICATIONS, DashboardCounter.DEVICES, DashboardCounter.MESSAGES);
+
+    private final Logger logger = LoggerFactory.getLogger(DashboardCounters.class);
+
+    private final ConcurrentMap<String, PendingDelta> deltas = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "dashboard-counters");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Inject
+    private DashboardCounterStore store;
+
+    @PostConstruct
+    public void init() {
+        final long flushInterval = Math.max(1, ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_DASHBOARD_COUNTERS_FLUSH_INTERVAL, DEFAULT_FLUSH_INTERVAL_IN_MILLIS));
+        final long reconcileInterval = Math.max(1, ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_DASHBOARD_COUNTERS_RECONCILE_INTERVAL, DEFAULT_RECONCILE_INTERVAL_IN_MILLIS));
+
+        scheduler.execute(this::reconcileMissing);
+        scheduler.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::reconcile, reconcileInterval, reconcileInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public void applicationAdded() {
+        add(DashboardCounter.APPLICATIONS, null, 1);
+    }
+
+    /**
+     * Counts the removal of the push application and of the devices of its variants. The push messages of the
+     * application are kept, like their rows.
+     */
+    public void applicationRemoved(PushApplication pushApplication) {
+        add(DashboardCounter.APPLICATIONS, null, -1);
+        pushApplication.getVariants().stream().map(Variant::getVariantID).forEach(this::variantRemoved);
+    }
+
+    /**
+     * Drops the device counter of the variant, its devices are removed with it.
+     */
+    public void variantRemoved(String variantID) {
+        // not flushed yet, so not part of the total either
+        deltas.remove(DashboardCounter.idOf(DashboardCounter.DEVICES, variantID));
+        store.remove(DashboardCounter.DEVICES, variantID);
+    }
+
+    public void devicesAdded(String variantID, long count) {
+        add(DashboardCounter.DEVICES, variantID, count);
+    }
+
+    public void devicesRemoved(String variantID, long count) {
+        add(DashboardCounter.DEVICES, variantID, -count);
+    }
+
+    public void messageSubmitted(String pushApplicationID) {
+        add(DashboardCounter.MESSAGES, pushApplicationID, 1);
+    }
+
+    /**
+     * @return the stored totals, including the changes counted by this node since the last flush
+     */
+    public DashboardData getDashboardData() {
+        final Map<String, Long> totals = new HashMap<>(store.findTotals(KINDS));
+        deltas.values().forEach(delta -> totals.merge(delta.kind, delta.value.sum(), Long::sum));
+
+        final DashboardData data = new DashboardData();
+        data.setApplications(Math.max(0, totals.getOrDefault(DashboardCounter.APPLICATIONS, 0L)));
+        data.setDevices(Math.max(0, totals.getOrDefault(DashboardCounter.DEVICES, 0L)));
+        data.setMessages(Math.max(0, totals.getOrDefault(DashboardCounter.MESSAGES, 0L)));
+        return data;
+    }
+
+    /**
+     * Adds the changes counted since the last flush to the stored counters.
+     */
+    public synchronized void flush() {
+        final List<DashboardCounter> pending = new ArrayList<>();
+        for (Map.Entry<String, PendingDelta> entry : deltas.entrySet()) {
+            final PendingDelta delta = entry.getValue();
+
+            long value = delta.value.sumThenReset();
+            if (value == 0) {
+                // nothing changed since the last flush, forget the counter. Changes counted while removing it are
+                // written right away
+                deltas.remove(entry.getKey(), delta);
+                value = delta.value.sumThenReset();
+                if (value == 0) {
+                    continue;
+                }
+            }
+            pending.add(new DashboardCounter(delta.kind, delta.refId, value));
+        }
+
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            store.increment(pending);
+        } catch (RuntimeException e) {
+            // the next reconciliation corrects the counters
+            logger.warn(String.format("Unable to store %d dashboard counters", pending.size()), e);
+        }
+    }
+
+    /**
+     * Replaces the stored counters by the actual number of rows. Changes counted while the rows are counted might
+     * be counted twice, until the next reconciliation.
+     */
+    public synchronized void reconcile() {
+        flush();
+        KINDS.forEach(this::reconcileKind);
+    }
+
+    private synchronized void reconcileMissing() {
+        try {
+            final Map<String, Long> totals = store.findTotals(KINDS);
+            KINDS.stream().filter(kind -> !totals.containsKey(kind)).forEach(this::reconcileKind);
+        } catch (RuntimeException e) {
+            logger.warn("Unable to read the dashboard counters", e);
+        }
+    }
+
+    private void reconcileKind(String kind) {
+        final long start = System.currentTimeMillis();
+        try {
+            store.reconcile(kind);
+            logger.info("Reconciled dashboard counters of {} in {} ms", kind, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            logger.warn("Unable to reconcile dashboard counters of " + kind, e);
+        }
+    }
+
+    private void add(String kind, String refId, long value) {
+        deltas.computeIfAbsent(DashboardCounter.idOf(kind, refId), id -> new PendingDelta(kind, refId)).value.add(value);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        flush();
+    }
+
+    /**
+     * Change of a counter since the last flush.
+     */
+    private static class PendingDelta {
+        private final String kind;
+        private final String refId;
+        private final LongAdder value = new LongAdder();
+
+        PendingDelta(String kind, String refId) {
+            this.kind = kind;
+            this.refId = refId;
+        }
+    }
+}
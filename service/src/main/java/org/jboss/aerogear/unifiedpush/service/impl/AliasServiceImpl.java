@@ -23,7 +23,6 @@ import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -43,7 +42,6 @@ import org.jboss.aerogear.unifiedpush.cassandra.dao.model.User;
 import org.jboss.aerogear.unifiedpush.cassandra.dao.model.UserKey;
 import org.jboss.aerogear.unifiedpush.service.AliasService;
 import org.jboss.aerogear.unifiedpush.service.DocumentService;
-import org.jboss.aerogear.unifiedpush.service.PostDelete;
 import org.jboss.aerogear.unifiedpush.service.PushApplicationService;
 import org.jboss.aerogear.unifiedpush.service.impl.spring.IKeycloakService;
 import org.jboss.aerogear.unifiedpush.service.impl.spring.KeycloakServiceImpl;
@@ -71,21 +69,101 @@ public class AliasServiceImpl implements AliasService {
 	@Inject
 	protected ServiceCacheConfig cacheService;
 
+	/*
+	 * Bulk equivalent of create(alias): existing aliases are resolved in
+	 * batches, previous references are removed and new rows are written
+	 * asynchronously. Keycloak tenant relations are updated once, after all
+	 * aliases were stored.
+	 */
 	@Override
 	public List<Alias> addAll(PushApplication pushApplication, List<Alias> aliases, boolean oauth2) {
 		logger.debug("OAuth2 flag is: " + oauth2);
-		List<Alias> aliasList = new ArrayList<>();
 
 		// Create keycloak client if missing.
 		if (oauth2)
 			keycloakService.createClientIfAbsent(pushApplication);
 
-		aliases.forEach(alias -> {
-			create(alias);
-			aliasList.add(alias);
+		// Every alias value must be listed once, otherwise each duplicate
+		// would get (and overwrite the previous one with) its own user id.
+		aliases = distinctAliases(aliases);
+
+		// Search if aliases are already registered for application.
+		// If so, use the same userId in-order to keep previous history.
+		Map<UUID, List<Alias>> missingIds = aliases.stream().filter(alias -> alias.getId() == null)
+				.collect(Collectors.groupingBy(Alias::getPushApplicationId));
+
+		missingIds.forEach((pushApplicationId, newAliases) -> {
+			Map<String, UUID> existing = aliasDao.findUserIds(pushApplicationId, newAliases.stream()
+					.flatMap(alias -> Stream.of(alias.getEmail(), alias.getOther())).collect(Collectors.toList()));
+			Set<UUID> replaced = new HashSet<>();
+
+			newAliases.forEach(alias -> {
+				UUID userId = existing.getOrDefault(alias.getEmail(), existing.get(alias.getOther()));
+				if (userId != null) {
+					replaced.add(userId);
+				}
+
+				alias.setId(userId == null ? UUIDs.timeBased() : userId);
+			});
+
+			// Remove all references to previous aliases
+			aliasDao.remove(pushApplicationId, replaced).forEach(key -> cacheService.getClusterEventsCache()
+					.put(UUID.randomUUID(), ClusterEvent.forAlias(pushApplicationId, key.getAlias())));
 		});
 
-		return aliasList;
+		aliasDao.create(aliases);
+
+		updateTenantRelations(aliases);
+
+		return aliases;
+	}
+
+	/*
+	 * Keeps the first alias of every email/other value, aliases are case
+	 * insensitive.
+	 */
+	private List<Alias> distinctAliases(List<Alias> aliases) {
+		Set<String> listed = new HashSet<>();
+		List<Alias> distinct = new ArrayList<>(aliases.size());
+
+		for (Alias alias : aliases) {
+			List<String> values = Stream.of(alias.getEmail(), alias.getOther()).filter(StringUtils::isNotEmpty)
+					.map(String::toLowerCase).collect(Collectors.toList());
+
+			if (values.stream().noneMatch(listed::contains)) {
+				listed.addAll(values);
+				distinct.add(alias);
+			} else {
+				logger.debug("Ignoring duplicate alias {}", alias);
+			}
+		}
+
+		return distinct.size() == aliases.size() ? aliases : distinct;
+	}
+
+	/*
+	 * Single keycloak bulk update for all (registered) representative aliases.
+	 */
+	private void updateTenantRelations(List<Alias> aliases) {
+		if (!keycloakService.isInitialized())
+			return;
+
+		// Representative alias, see aliasDao.create(alias)
+		Set<String> representatives = aliases.stream()
+				.map(alias -> StringUtils.isNotEmpty(alias.getEmail()) ? alias.getEmail() : alias.getOther())
+				.filter(StringUtils::isNotEmpty).map(String::toLowerCase).collect(Collectors.toSet());
+
+		if (representatives.isEmpty())
+			return;
+
+		// alias is case insensitive
+		Map<String, Set<UserTenantInfo>> tenantRelations = aliasDao.findUserTenantRelations(representatives)
+				.collect(Collectors.groupingBy(key -> key.getAlias().toLowerCase())).entrySet().stream()
+				.collect(Collectors.toMap(Map.Entry::getKey,
+						entry -> reduceUserKeysByUserUUIDTimeStamp(entry.getValue().stream()).stream()
+								.map(userKeyToTenantInfo()).collect(Collectors.toSet())));
+
+		keycloakService.updateTenantsExistingUsers(tenantRelations);
 	}
 
 	@Override
@@ -215,37 +293,6 @@ public class AliasServiceImpl implements AliasService {
 		return KeycloakServiceImpl.getClientId(pushApp);
 	}
 
-	/*
-	 * Remove all aliases by application id and invalidates alias cache. destructive
-	 * - when true also remove KC entities and related documents
-	 */
-	@Override
-	@Async
-	public void removeAll(PushApplication pushApplication, boolean destructive, PostDelete action) {
-		UUID pushApplicationId = UUID.fromString(pushApplication.getPushApplicationID());
-
-		aliasDao.findUserIds(pushApplicationId).map(row -> aliasDao.findOne(pushApplicationId, row.getUUID(0)))
-				.filter(alias -> Objects.nonNull(alias)).forEach(alias -> {
-
-					// If not destructive, only aliases are deleted.
-					if (destructive) {
-						// KC users are registered by email
-						if (StringUtils.isNotEmpty(alias.getEmail()))
-							keycloakService.delete(alias.getEmail());
-
-						documentService.delete(pushApplicationId, alias);
-					}
-
-					aliasDao.remove(pushApplicationId, alias.getId());
-				});
-
-		if (destructive) {
-			keycloakService.removeClient(pushApplication);
-		}
-
-		action.after();
-	}
-
 	/**
 	 * Create alias while preserving user uuid.
 	 */
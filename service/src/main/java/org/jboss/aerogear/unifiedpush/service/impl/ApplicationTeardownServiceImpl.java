@@ -0,0 +1,387 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.impl;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jboss.aerogear.unifiedpush.api.Alias;
+import org.jboss.aerogear.unifiedpush.api.PushApplication;
+import org.jboss.aerogear.unifiedpush.cassandra.dao.AliasDao;
+import org.jboss.aerogear.unifiedpush.cassandra.dao.DocumentDao;
+import org.jboss.aerogear.unifiedpush.cassandra.dao.TeardownJobDao;
+import org.jboss.aerogear.unifiedpush.cassandra.dao.impl.DocumentKey;
+import org.jboss.aerogear.unifiedpush.cassandra.dao.model.DocumentContent;
+import org.jboss.aerogear.unifiedpush.cassandra.dao.model.TeardownJob;
+import org.jboss.aerogear.unifiedpush.service.ApplicationTeardownService;
+import org.jboss.aerogear.unifiedpush.service.impl.spring.IKeycloakService;
+import org.jboss.aerogear.unifiedpush.system.ConfigurationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import com.datastax.driver.core.Row;
+
+/**
+ * Application teardown job.
+ *
+ * Aliases are removed partition by partition (users_by_application months),
+ * partitions are processed concurrently by a bounded worker pool shared by all
+ * jobs. Each partition checkpoints the last removed user id, a resumed job
+ * continues after the checkpoint instead of scanning tombstones of already
+ * removed users. Cassandra and Keycloak operations are rate limited.
+ *
+ * A job runs on the node owning its lease, the lease is renewed while the job
+ * runs. Nodes periodically resume running jobs whose lease expired (owner shut
+ * down or crashed), a lightweight transaction makes a single node take over.
+ */
+@Service
+public class ApplicationTeardownServiceImpl implements ApplicationTeardownService {
+	private final Logger logger = LoggerFactory.getLogger(ApplicationTeardownServiceImpl.class);
+
+	// Number of partitions processed concurrently (all jobs).
+	public static final String AEROGEAR_TEARDOWN_PARALLELISM = "aerogear.teardown.parallelism";
+	// Max Cassandra operations per second (all jobs), 0 to disable.
+	public static final String AEROGEAR_TEARDOWN_CASSANDRA_RATE = "aerogear.teardown.cassandra.rate";
+	// Max Keycloak operations per second (all jobs), 0 to disable.
+	public static final String AEROGEAR_TEARDOWN_KEYCLOAK_RATE = "aerogear.teardown.keycloak.rate";
+	// Number of removed users between two checkpoints of a partition.
+	public static final String AEROGEAR_TEARDOWN_CHECKPOINT_INTERVAL = "aerogear.teardown.checkpointInterval";
+	// Seconds a node owns a job without renewing its lease.
+	public static final String AEROGEAR_TEARDOWN_LEASE = "aerogear.teardown.lease";
+
+	private static final int DEFAULT_PARALLELISM = 4;
+	private static final int DEFAULT_CASSANDRA_RATE = 500;
+	private static final int DEFAULT_KEYCLOAK_RATE = 20;
+	private static final int DEFAULT_CHECKPOINT_INTERVAL = 100;
+	private static final int DEFAULT_LEASE = 60;
+
+	// Identifies this node as the owner of its jobs.
+	private final String owner = UUID.randomUUID().toString();
+	private final ConcurrentMap<UUID, CompletableFuture<Void>> running = new ConcurrentHashMap<>();
+	// Expiry of the lease of each running job, as last stored.
+	private final ConcurrentMap<UUID, Date> leases = new ConcurrentHashMap<>();
+	// Running jobs taken over by another node, they stop after the current user.
+	private final Set<UUID> lost = ConcurrentHashMap.newKeySet();
+
+	private ExecutorService jobs;
+	private ExecutorService workers;
+	private ScheduledExecutorService heartbeat;
+	private long leaseMillis;
+	private Throttle cassandraThrottle;
+	private Throttle keycloakThrottle;
+	private int checkpointInterval;
+	private volatile boolean shutdown;
+
+	@Inject
+	private AliasDao aliasDao;
+	@Inject
+	private DocumentDao<DocumentContent, DocumentKey> documentDao;
+	@Inject
+	private TeardownJobDao jobDao;
+	@Inject
+	private IKeycloakService keycloakService;
+
+	@PostConstruct
+	public void init() {
+		final int parallelism = Math.max(1,
+				ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_TEARDOWN_PARALLELISM, DEFAULT_PARALLELISM));
+		cassandraThrottle = new Throttle(
+				ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_TEARDOWN_CASSANDRA_RATE, DEFAULT_CASSANDRA_RATE));
+		keycloakThrottle = new Throttle(
+				ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_TEARDOWN_KEYCLOAK_RATE, DEFAULT_KEYCLOAK_RATE));
+		checkpointInterval = Math.max(1, ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_TEARDOWN_CHECKPOINT_INTERVAL,
+				DEFAULT_CHECKPOINT_INTERVAL));
+
+		leaseMillis = TimeUnit.SECONDS
+				.toMillis(Math.max(1, ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_TEARDOWN_LEASE, DEFAULT_LEASE)));
+
+		jobs = Executors.newCachedThreadPool(daemonThreads("teardown-job"));
+		workers = Executors.newFixedThreadPool(parallelism, daemonThreads("teardown-worker"));
+		heartbeat = Executors.newSingleThreadScheduledExecutor(daemonThreads("teardown-lease"));
+
+		// Renew the leases of running jobs well before they expire.
+		heartbeat.scheduleWithFixedDelay(this::renew, leaseMillis / 3, leaseMillis / 3, TimeUnit.MILLISECONDS);
+		// Resume jobs interrupted by a shutdown or a crash, of any node.
+		heartbeat.scheduleWithFixedDelay(() -> jobs.execute(this::resume), 0, leaseMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		// Running partitions stop after the current user, the released jobs are
+		// resumed by the next node looking for them.
+		shutdown = true;
+		heartbeat.shutdownNow();
+		workers.shutdownNow();
+		jobs.shutdownNow();
+
+		running.keySet().forEach(pushApplicationId -> {
+			try {
+				jobDao.release(pushApplicationId, owner);
+			} catch (RuntimeException e) {
+				logger.warn("Unable to release teardown of application {}, it is resumed once its lease expired",
+						pushApplicationId);
+			}
+		});
+	}
+
+	@Override
+	public CompletableFuture<Void> teardown(PushApplication pushApplication, boolean destructive) {
+		final UUID pushApplicationId = UUID.fromString(pushApplication.getPushApplicationID());
+
+		CompletableFuture<Void> job = running.get(pushApplicationId);
+		if (job != null) {
+			return job;
+		}
+
+		final Date now = new Date();
+		TeardownJob teardownJob = new TeardownJob(pushApplicationId, pushApplication.getName(), destructive);
+		teardownJob.setOwner(owner);
+		teardownJob.setLeaseExpires(leaseExpires(now));
+		if (!jobDao.create(teardownJob)) {
+			// Already running (e.g requested twice, or interrupted), continue
+			// from its checkpoints unless another node still owns it.
+			if (!jobDao.acquire(pushApplicationId, owner, teardownJob.getLeaseExpires(), now)) {
+				logger.info("Teardown of application {} is already running on another node", pushApplicationId);
+				return CompletableFuture.completedFuture(null);
+			}
+
+			final Date leaseExpires = teardownJob.getLeaseExpires();
+			teardownJob = jobDao.findOne(pushApplicationId).orElse(teardownJob);
+			teardownJob.setOwner(owner);
+			teardownJob.setLeaseExpires(leaseExpires);
+			logger.info("Teardown of application {} is already running, {} users already removed",
+					pushApplicationId, teardownJob.getProcessed());
+		}
+
+		return start(teardownJob);
+	}
+
+	@Override
+	public TeardownJob getProgress(String pushApplicationId) {
+		return jobDao.findOne(UUID.fromString(pushApplicationId)).orElse(null);
+	}
+
+	/*
+	 * Take over running jobs whose owner stopped renewing the lease.
+	 */
+	private void resume() {
+		final Date now = new Date();
+
+		try (Stream<TeardownJob> interrupted = jobDao.findRunning()) {
+			interrupted.filter(job -> !running.containsKey(job.getPushApplicationId()) && job.isLeaseExpired(now))
+					.forEach(job -> {
+						final Date leaseExpires = leaseExpires(now);
+						if (!jobDao.acquire(job.getPushApplicationId(), owner, leaseExpires, now)) {
+							// Taken over by another node meanwhile.
+							return;
+						}
+
+						job.setOwner(owner);
+						job.setLeaseExpires(leaseExpires);
+						logger.info("Resuming teardown of application {}, {} users already removed",
+								job.getPushApplicationId(), job.getProcessed());
+						start(job);
+					});
+		} catch (RuntimeException e) {
+			logger.warn("Unable to resume interrupted teardown jobs", e);
+		}
+	}
+
+	/*
+	 * Extend the leases of running jobs. A job whose lease was taken over, or
+	 * could not be renewed before it expired, is stopped.
+	 */
+	private void renew() {
+		final Date now = new Date();
+		final Date leaseExpires = leaseExpires(now);
+
+		for (UUID pushApplicationId : running.keySet()) {
+			try {
+				if (jobDao.renew(pushApplicationId, owner, leaseExpires)) {
+					leases.put(pushApplicationId, leaseExpires);
+				} else {
+					logger.warn("Teardown of application {} was taken over by another node, stopping it",
+							pushApplicationId);
+					lost.add(pushApplicationId);
+				}
+			} catch (RuntimeException e) {
+				final Date expires = leases.get(pushApplicationId);
+				if (expires != null && !expires.after(now)) {
+					logger.warn("Unable to renew the lease of teardown of application {}, stopping it",
+							pushApplicationId, e);
+					lost.add(pushApplicationId);
+				}
+			}
+		}
+	}
+
+	private Date leaseExpires(Date now) {
+		return new Date(now.getTime() + leaseMillis);
+	}
+
+	private boolean stopped(UUID pushApplicationId) {
+		return shutdown || lost.contains(pushApplicationId);
+	}
+
+	private CompletableFuture<Void> start(TeardownJob job) {
+		final UUID pushApplicationId = job.getPushApplicationId();
+
+		return running.computeIfAbsent(pushApplicationId, id -> {
+			leases.put(id, job.getLeaseExpires());
+
+			return CompletableFuture.runAsync(() -> execute(job), jobs).whenComplete((result, e) -> {
+				running.remove(id);
+				leases.remove(id);
+				lost.remove(id);
+
+				if (e != null) {
+					logger.error(String.format(
+							"Teardown of application %s failed, job will be resumed once its lease expired", id), e);
+				}
+			});
+		});
+	}
+
+	private void execute(TeardownJob job) {
+		final UUID pushApplicationId = job.getPushApplicationId();
+		final long start = System.currentTimeMillis();
+
+		// Database names are resolved once, instead of once per alias.
+		final List<String> databases = job.isDestructive() ? documentDao.findDatabases(pushApplicationId)
+				: Collections.emptyList();
+
+		List<CompletableFuture<Void>> partitions = aliasDao.findUserIdPartitions().stream()
+				.filter(partition -> !job.getCompleted().contains(partition))
+				.map(partition -> CompletableFuture.runAsync(() -> teardown(job, partition, databases), workers))
+				.collect(Collectors.toList());
+
+		CompletableFuture.allOf(partitions.toArray(new CompletableFuture[partitions.size()])).join();
+
+		if (stopped(pushApplicationId)) {
+			return;
+		}
+
+		if (job.isDestructive()) {
+			keycloakThrottle.acquire();
+			keycloakService.removeClient(getPushApplication(job));
+
+			// Application scope documents, alias documents were already
+			// removed.
+			documentDao.delete(pushApplicationId);
+		}
+
+		jobDao.complete(pushApplicationId);
+		logger.info("Teardown of application {} completed in {} ms", pushApplicationId,
+				System.currentTimeMillis() - start);
+	}
+
+	private void teardown(TeardownJob job, byte partition, List<String> databases) {
+		final UUID pushApplicationId = job.getPushApplicationId();
+
+		UUID last = job.getCheckpoints().get(partition);
+		long processed = job.getProcessedByPartition().getOrDefault(partition, 0L);
+		int sinceCheckpoint = 0;
+
+		try (Stream<Row> rows = aliasDao.findUserIds(pushApplicationId, partition, last)) {
+			for (Iterator<Row> it = rows.iterator(); it.hasNext() && !stopped(pushApplicationId);) {
+				UUID userId = it.next().getUUID(0);
+				remove(job, userId, databases);
+
+				last = userId;
+				processed++;
+
+				if (++sinceCheckpoint >= checkpointInterval) {
+					jobDao.checkpoint(pushApplicationId, partition, last, processed);
+					sinceCheckpoint = 0;
+				}
+			}
+		}
+
+		if (sinceCheckpoint > 0) {
+			jobDao.checkpoint(pushApplicationId, partition, last, processed);
+		}
+
+		if (!stopped(pushApplicationId)) {
+			jobDao.complete(pushApplicationId, partition);
+		}
+	}
+
+	private void remove(TeardownJob job, UUID userId, List<String> databases) {
+		final UUID pushApplicationId = job.getPushApplicationId();
+
+		cassandraThrottle.acquire();
+		Alias alias = aliasDao.findOne(pushApplicationId, userId);
+
+		if (alias == null) {
+			return;
+		}
+
+		// If not destructive, only aliases are deleted.
+		if (job.isDestructive()) {
+			// KC users are registered by email
+			if (StringUtils.isNotEmpty(alias.getEmail())) {
+				keycloakThrottle.acquire();
+				keycloakService.delete(alias.getEmail());
+			}
+
+			// One partition delete per database
+			cassandraThrottle.acquire(databases.size());
+			documentDao.delete(pushApplicationId, userId, databases);
+		}
+
+		// Aliases lookup and partition delete
+		cassandraThrottle.acquire(2);
+		aliasDao.remove(pushApplicationId, userId);
+	}
+
+	private static PushApplication getPushApplication(TeardownJob job) {
+		PushApplication pushApplication = new PushApplication();
+		pushApplication.setPushApplicationID(job.getPushApplicationId().toString());
+		pushApplication.setName(job.getApplicationName());
+		return pushApplication;
+	}
+
+	private static ThreadFactory daemonThreads(String prefix) {
+		final AtomicInteger counter = new AtomicInteger();
+		return runnable -> {
+			final Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
@@ -1,5 +1,8 @@
 package org.jboss.aerogear.unifiedpush.service.impl;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -9,17 +12,31 @@ import org.jboss.aerogear.unifiedpush.api.Installation;
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.service.ClientInstallationAsyncService;
 import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
+import org.jboss.aerogear.unifiedpush.system.ConfigurationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 /**
  * Async implementation wrapper.
  */
 @Service
 @Transactional(propagation = Propagation.REQUIRES_NEW)
 public class ClientInstallationAsyncServiceImpl implements ClientInstallationAsyncService {
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private final Logger logger = LoggerFactory.getLogger(ClientInstallationAsyncServiceImpl.class);
+
+	private final int importChunkSize = Math.max(1, ConfigurationUtils.tryGetIntegerProperty(
+			ClientInstallationServiceImpl.AEROGEAR_IMPORT_CHUNK_SIZE, ClientInstallationServiceImpl.DEFAULT_IMPORT_CHUNK_SIZE));
+
 	@Inject
 	private ClientInstallationService clientInstallationService;
 
@@ -38,6 +55,49 @@ public class ClientInstallationAsyncServiceImpl implements ClientInstallationAsy
 		clientInstallationService.addInstallations(variant, installations);
 	}
 
+	@Async
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void importInstallations(Variant variant, File jsonFile) {
+		// every chunk is stored in its own transaction
+		final long start = System.currentTimeMillis();
+		long parsed = 0;
+		long imported = 0;
+
+		try (JsonParser parser = mapper.getFactory().createParser(jsonFile)) {
+			if (parser.nextToken() != JsonToken.START_ARRAY) {
+				logger.error("Importer json file of variant {} does not contain an array of installations", variant.getVariantID());
+				return;
+			}
+
+			final List<Installation> chunk = new ArrayList<>(importChunkSize);
+			while (parser.nextToken() == JsonToken.START_OBJECT) {
+				chunk.add(parser.readValueAs(Installation.class));
+				parsed++;
+
+				if (chunk.size() == importChunkSize) {
+					imported += clientInstallationService.addInstallations(variant, chunk);
+					chunk.clear();
+
+					if (parsed % (importChunkSize * 100L) == 0) {
+						logger.info("Import of variant {}: {} devices read, {} imported ({} ms)", variant.getVariantID(), parsed, imported,
+								System.currentTimeMillis() - start);
+					}
+				}
+			}
+			imported += clientInstallationService.addInstallations(variant, chunk);
+
+			logger.info("Import of variant {} finished: {} devices read, {} imported, {} ignored ({} ms)", variant.getVariantID(), parsed,
+					imported, parsed - imported, System.currentTimeMillis() - start);
+		} catch (IOException e) {
+			logger.error(String.format("Error when parsing importer json file, import of variant %s stopped after %d devices",
+					variant.getVariantID(), imported), e);
+		} finally {
+			if (!jsonFile.delete()) {
+				logger.warn("Unable to delete importer json file {}", jsonFile);
+			}
+		}
+	}
+
 	@Async
 	public void removeInstallationsForVariantByDeviceTokens(String variantID, Set<String> deviceTokens) {
 		clientInstallationService.removeInstallationsForVariantByDeviceTokens(variantID, deviceTokens);
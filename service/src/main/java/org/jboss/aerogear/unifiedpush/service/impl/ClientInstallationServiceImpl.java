@@ -16,7 +16,13 @@
  */
 package org.jboss.aerogear.unifiedpush.service.impl;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -37,7 +43,9 @@ import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
 import org.jboss.aerogear.unifiedpush.service.AliasService;
 import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
 import org.jboss.aerogear.unifiedpush.service.VerificationService;
+import org.jboss.aerogear.unifiedpush.service.dashboard.DashboardCounters;
 import org.jboss.aerogear.unifiedpush.service.util.FCMTopicManager;
+import org.jboss.aerogear.unifiedpush.system.ConfigurationUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -52,6 +60,14 @@ import org.springframework.transaction.annotation.Transactional;
 public class ClientInstallationServiceImpl implements ClientInstallationService {
 	private final Logger logger = LoggerFactory.getLogger(ClientInstallationServiceImpl.class);
 
+	// system property name used as the configurable number of installations imported at once
+	public static final String AEROGEAR_IMPORT_CHUNK_SIZE = "aerogear.import.chunkSize";
+
+	static final int DEFAULT_IMPORT_CHUNK_SIZE = 1000;
+
+	private final int importChunkSize = Math.max(1,
+			ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_IMPORT_CHUNK_SIZE, DEFAULT_IMPORT_CHUNK_SIZE));
+
 	@Inject
 	private InstallationDao installationDao;
 
@@ -66,6 +82,9 @@ public class ClientInstallationServiceImpl implements ClientInstallationService
 
 	@Inject
 	private VerificationService verificationService;
+
+	@Inject
+	private DashboardCounters dashboardCounters;
 	
 	@Override
 	public Variant associateInstallation(Installation installation, Variant currentVariant) {
@@ -132,6 +151,7 @@ public class ClientInstallationServiceImpl implements ClientInstallationService
 
 			// store the installation:
 			storeInstallationAndSetReferences(variant, entity);
+			dashboardCounters.devicesAdded(variant.getVariantID(), 1);
 		} else {
 			// We only update the metadata, if the device is enabled:
 			if (installation.isEnabled()) {
@@ -151,48 +171,79 @@ public class ClientInstallationServiceImpl implements ClientInstallationService
 	}
 
 	@Override
-	public void addInstallations(Variant variant, List<Installation> installations) {
+	public int addInstallations(Variant variant, List<Installation> installations) {
 
 		// don't bother
 		if (installations == null || installations.isEmpty()) {
-			return;
+			return 0;
 		}
 
-		// TODO - On a large scale database, we can't load entire device list.
-		Set<String> existingTokens = installationDao.findAllDeviceTokenForVariantID(variant.getVariantID());
-
 		// clear out:
 		installationDao.flushAndClear();
 
-		for (int i = 0; i < installations.size(); i++) {
-
-			Installation current = installations.get(i);
-
-			// let's avoid duplicated tokens/devices per variant
-			// For devices without a token, let's also not bother the DAO layer
-			// to throw BeanValidation exception
-			if (!existingTokens.contains(current.getDeviceToken()) && hasTokenValue(current)) {
+		int imported = 0;
+		for (int from = 0; from < installations.size(); from += importChunkSize) {
+			imported += addInstallationsChunk(variant,
+					installations.subList(from, Math.min(installations.size(), from + importChunkSize)));
+		}
+		if (imported > 0) {
+			dashboardCounters.devicesAdded(variant.getVariantID(), imported);
+		}
+		return imported;
+	}
 
-				logger.trace("Importing device with token: {}", current.getDeviceToken());
+	/**
+	 * Stores the new installations of the chunk, using one lookup for the already registered tokens, one
+	 * for the categories and JDBC batch inserts.
+	 */
+	private int addInstallationsChunk(Variant variant, List<Installation> chunk) {
+
+		// let's avoid duplicated tokens/devices per variant, within the chunk
+		// For devices without a token, let's also not bother the DAO layer
+		// to throw BeanValidation exception
+		final Map<String, Installation> newInstallations = new LinkedHashMap<>();
+		for (Installation current : chunk) {
+			if (hasTokenValue(current)) {
+				// ensure lower case for iOS
+				if (variant.getType() == VariantType.IOS) {
+					current.setDeviceToken(current.getDeviceToken().toLowerCase());
+				}
+				newInstallations.putIfAbsent(current.getDeviceToken(), current);
+			}
+		}
 
-				storeInstallationAndSetReferences(variant, current);
+		// ... and against the database; for now, we ignore them.... no update applied!
+		final Set<String> existingTokens = installationDao
+				.findExistingDeviceTokensForVariantID(variant.getVariantID(), newInstallations.keySet());
+		logger.trace("Ignoring {} already existing devices", existingTokens.size());
+		newInstallations.keySet().removeAll(existingTokens);
 
-				// and add a reference to the existing tokens set, to ensure the
-				// JSON file contains no duplicates:
-				existingTokens.add(current.getDeviceToken());
+		if (newInstallations.isEmpty()) {
+			return 0;
+		}
 
-				// some tunings, ever 10k devices releasing resources
-				if (i % 10000 == 0) {
-					logger.trace("releasing some resources during import");
-					installationDao.flushAndClear();
-				}
-			} else {
-				// for now, we ignore them.... no update applied!
-				logger.trace("Device with token '{}' already exists. Ignoring it ", current.getDeviceToken());
+		// attach the persistent categories, new ones are shared by all installations of the chunk
+		final Map<String, Category> categories = new HashMap<>();
+		categoryDao.findByNames(newInstallations.values().stream()
+				.filter(installation -> installation.getCategories() != null)
+				.flatMap(installation -> convertToNames(installation.getCategories()).stream())
+				.filter(Objects::nonNull)
+				.distinct()
+				.collect(Collectors.toList()))
+				.forEach(category -> categories.put(category.getName(), category));
+
+		for (Installation installation : newInstallations.values()) {
+			installation.setVariant(variant);
+			if (installation.getCategories() != null) {
+				installation.setCategories(installation.getCategories().stream()
+						.filter(category -> category.getName() != null)
+						.map(category -> categories.computeIfAbsent(category.getName(), Category::new))
+						.collect(Collectors.toSet()));
 			}
 		}
-		// clear out:
-		installationDao.flushAndClear();
+
+		installationDao.createInstallations(new ArrayList<>(newInstallations.values()), importChunkSize);
+		return newInstallations.size();
 	}
 
 	@Override
@@ -237,6 +288,9 @@ public class ClientInstallationServiceImpl implements ClientInstallationService
 	@Override
 	public void removeInstallation(Installation installation) {
 		installationDao.delete(installation);
+		if (installation != null && installation.getVariant() != null) {
+			dashboardCounters.devicesRemoved(installation.getVariant().getVariantID(), 1);
+		}
 	}
 
 	@Override
@@ -253,6 +307,40 @@ public class ClientInstallationServiceImpl implements ClientInstallationService
 		removeInstallation(findInstallationForVariantByDeviceToken(variantID, deviceToken));
 	}
 
+	@Override
+	public void replaceDeviceTokensForVariant(String variantID, Map<String, String> canonicalTokens) {
+		if (canonicalTokens.isEmpty()) {
+			return;
+		}
+
+		// the canonical tokens, which are already stored on the server:
+		final Set<String> registeredTokens = installationDao
+				.findInstallationsForVariantByDeviceTokens(variantID, new HashSet<>(canonicalTokens.values())).stream()
+				.map(Installation::getDeviceToken)
+				.collect(Collectors.toSet());
+
+		final Map<String, String> tokensToReplace = new HashMap<>();
+		final Set<String> duplicatedTokens = new HashSet<>();
+		canonicalTokens.forEach((deviceToken, canonicalToken) -> {
+			// the first outdated token takes over the canonical one, all others are duplicates of the same device
+			if (registeredTokens.add(canonicalToken)) {
+				tokensToReplace.put(deviceToken, canonicalToken);
+			} else {
+				duplicatedTokens.add(deviceToken);
+			}
+		});
+
+		// one flush of batched updates, rather than a merge and flush per installation
+		final List<Installation> installations = installationDao.findInstallationsForVariantByDeviceTokens(variantID,
+				tokensToReplace.keySet());
+		installations.forEach(installation -> installation
+				.setDeviceToken(tokensToReplace.get(installation.getDeviceToken())));
+		installationDao.updateInstallations(installations, importChunkSize);
+		removeInstallationsForVariantByDeviceTokens(variantID, duplicatedTokens);
+
+		installationDao.flushAndClear();
+	}
+
 	@Override
 	public Installation findInstallationForVariantByDeviceToken(String variantID, String deviceToken) {
 		return installationDao.findInstallationForVariantByDeviceToken(variantID, deviceToken);
@@ -296,6 +384,19 @@ public class ClientInstallationServiceImpl implements ClientInstallationService
 				maxResults, lastTokenFromPreviousBatch, true);
 	}
 
+	@Override
+	public ResultsStream.QueryBuilder<String> findAllDeviceTokenForVariantIDByCriteria(String variantID,
+			List<String> categories, List<String> aliases, List<String> deviceTypes, int maxResults,
+			String lastTokenFromPreviousBatch, String upperTokenBoundary, boolean oldGCM) {
+		return installationDao.findAllDeviceTokenForVariantIDByCriteria(variantID, categories, aliases, deviceTypes,
+				maxResults, lastTokenFromPreviousBatch, upperTokenBoundary, oldGCM);
+	}
+
+	@Override
+	public List<String> findDeviceTokenRangeBoundaries(String variantID, int partitions) {
+		return installationDao.findDeviceTokenBoundariesForVariantID(variantID, partitions);
+	}
+
 	/**
 	 * A simple validation util that checks if a token is present
 	 */
@@ -353,7 +454,7 @@ public class ClientInstallationServiceImpl implements ClientInstallationService
 	public void removeInstallations(String alias) {
 		List<Installation> insts = installationDao.findInstallationsByAlias(alias);
 		if (insts != null) {
-			insts.forEach(item -> installationDao.delete(item));
+			removeInstallations(insts);
 		}
 	}
 
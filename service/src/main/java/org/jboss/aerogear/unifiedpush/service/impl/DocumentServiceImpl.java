@@ -42,13 +42,32 @@ public class DocumentServiceImpl implements DocumentService {
 
 	@Override
 	public Stream<DocumentContent> find(DocumentMetadata metadata, QueryOptions options) {
+		return (Stream<DocumentContent>) documentDao.find(new DocumentKey(metadata), withDefaultPeriod(options));
+	}
+
+	@Override
+	public List<UUID> findSnapshots(DocumentMetadata metadata, QueryOptions options) {
+		return documentDao.findSnapshots(new DocumentKey(metadata), withDefaultPeriod(options));
+	}
+
+	@Override
+	public Stream<DocumentContent> find(DocumentMetadata metadata, QueryOptions options, List<UUID> snapshots) {
+		return documentDao.find(new DocumentKey(metadata), options, snapshots);
+	}
+
+	@Override
+	public long count(DocumentMetadata metadata, QueryOptions options) {
+		return documentDao.count(new DocumentKey(metadata), withDefaultPeriod(options));
+	}
+
+	private QueryOptions withDefaultPeriod(QueryOptions options) {
 		// Always query X days period in case from date or limit are missing
 		if (options != null && options.getFromDate() == null && options.getLimit() == null) {
 			options.setFromDate(LocalDateTime.now().minusDays(configuration.getQueryDefaultPeriodInDays())
 					.toInstant(ZoneOffset.UTC).toEpochMilli());
 		}
 
-		return (Stream<DocumentContent>) documentDao.find(new DocumentKey(metadata), options);
+		return options;
 	}
 
 	@Override
@@ -22,6 +22,7 @@ import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.dao.VariantDao;
 import org.jboss.aerogear.unifiedpush.service.GenericVariantService;
 import org.jboss.aerogear.unifiedpush.service.annotations.LoggedInUser;
+import org.jboss.aerogear.unifiedpush.service.dashboard.DashboardCounters;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -30,6 +31,9 @@ import org.springframework.transaction.annotation.Transactional;
 public class GenericVariantServiceImpl implements GenericVariantService {
 	@Inject
 	private VariantDao variantDao;
+
+	@Inject
+	private DashboardCounters dashboardCounters;
 	
 	@Override
 	public void addVariant(Variant variant, LoggedInUser user) {
@@ -50,5 +54,6 @@ public class GenericVariantServiceImpl implements GenericVariantService {
 	@Override
 	public void removeVariant(Variant variant) {
 		variantDao.delete(variant);
+		dashboardCounters.variantRemoved(variant.getVariantID());
 	}
 }
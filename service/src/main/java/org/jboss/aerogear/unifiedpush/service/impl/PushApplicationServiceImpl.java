@@ -25,11 +25,10 @@ import org.jboss.aerogear.unifiedpush.api.PushApplication;
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.api.VariantType;
 import org.jboss.aerogear.unifiedpush.dao.PushApplicationDao;
-import org.jboss.aerogear.unifiedpush.service.AliasService;
-import org.jboss.aerogear.unifiedpush.service.DocumentService;
-import org.jboss.aerogear.unifiedpush.service.PostDelete;
+import org.jboss.aerogear.unifiedpush.service.ApplicationTeardownService;
 import org.jboss.aerogear.unifiedpush.service.PushApplicationService;
 import org.jboss.aerogear.unifiedpush.service.annotations.LoggedInUser;
+import org.jboss.aerogear.unifiedpush.service.dashboard.DashboardCounters;
 import org.jboss.aerogear.unifiedpush.service.impl.spring.IKeycloakService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.Cache;
@@ -44,9 +43,10 @@ public class PushApplicationServiceImpl implements PushApplicationService {
 	private PushApplicationDao pushApplicationDao;
 
 	@Inject
-	private DocumentService documentService;
+	private ApplicationTeardownService teardownService;
+
 	@Inject
-	private AliasService aliasService;
+	private DashboardCounters dashboardCounters;
 	@Autowired
 	private CacheManager cacheManager;
 	@Inject
@@ -65,6 +65,7 @@ public class PushApplicationServiceImpl implements PushApplicationService {
 
 		pushApp.setDeveloper(user.get());
 		pushApplicationDao.create(pushApp);
+		dashboardCounters.applicationAdded();
 
 		// Create keycloak client.
 		keycloakService.createClientIfAbsent(pushApp);
@@ -101,20 +102,13 @@ public class PushApplicationServiceImpl implements PushApplicationService {
 		evictById(pushApp.getPushApplicationID());
 		evictByName(pushApp.getName());
 
-		// @Async delete aliases
-		aliasService.removeAll(pushApp, true, new PostDelete() {
-
-			@Override
-			public void after() {
-				// @Async delete any application documents.
-				// Alias documents already removed by aliasService
-				// This must be called after alias documents were removed.
-				documentService.delete(pushApp.getPushApplicationID());
-			}
-		});
+		// Resumable background job, removes aliases, documents and KC
+		// entities.
+		teardownService.teardown(pushApp, true);
 
 		// Delete push application
 		pushApplicationDao.delete(pushApp);
+		dashboardCounters.applicationRemoved(pushApp);
 	}
 
 	@Override
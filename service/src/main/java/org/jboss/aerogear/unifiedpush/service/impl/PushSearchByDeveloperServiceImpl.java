@@ -19,6 +19,7 @@ package org.jboss.aerogear.unifiedpush.service.impl;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 import javax.inject.Inject;
 
@@ -29,6 +30,7 @@ import org.jboss.aerogear.unifiedpush.dao.FlatPushMessageInformationDao;
 import org.jboss.aerogear.unifiedpush.dao.InstallationDao;
 import org.jboss.aerogear.unifiedpush.dao.PageResult;
 import org.jboss.aerogear.unifiedpush.dao.PushApplicationDao;
+import org.jboss.aerogear.unifiedpush.dao.ResultStreamException;
 import org.jboss.aerogear.unifiedpush.dao.VariantDao;
 import org.jboss.aerogear.unifiedpush.dto.Count;
 import org.jboss.aerogear.unifiedpush.service.PushSearchService;
@@ -128,9 +130,17 @@ public class PushSearchByDeveloperServiceImpl implements PushSearchService {
 
 	@Override
 	public PageResult<Installation, Count> findAllInstallationsByVariantForDeveloper(String variantID, Integer page,
-			Integer pageSize, String search) {
+			Integer pageSize, String search, String after) {
 		return installationDao.findInstallationsByVariantForDeveloper(variantID, loginName.get(), page, pageSize,
-				search);
+				search, after);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public void exportInstallationsByVariantForDeveloper(String variantID, Consumer<Installation> consumer)
+			throws ResultStreamException {
+		PushSearchServiceImpl.exportInstallations(installationDao,
+				installationDao.findAllInstallationsByVariantForDeveloper(variantID, loginName.get()), consumer);
 	}
 
 	private long totalMessages() {
@@ -159,15 +169,6 @@ public class PushSearchByDeveloperServiceImpl implements PushSearchService {
 	}
 
 	private List<Application> wrapApplication(List<FlatPushMessageInformation> pushMessageInformations) {
-		final List<Application> applications = new ArrayList<>(pushMessageInformations.size());
-
-		pushMessageInformations.forEach(pushMessageInformation -> {
-			final String applicationName = pushApplicationDao
-					.findByPushApplicationID(pushMessageInformation.getPushApplicationId()).getName();
-			final Application application = new Application(applicationName,
-					pushMessageInformation.getPushApplicationId(), pushMessageInformation.getSubmitDate());
-			applications.add(application);
-		});
-		return applications;
+		return PushSearchServiceImpl.wrapApplication(pushApplicationDao, pushMessageInformations);
 	}
 }
@@ -19,6 +19,9 @@ package org.jboss.aerogear.unifiedpush.service.impl;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 
@@ -29,12 +32,15 @@ import org.jboss.aerogear.unifiedpush.dao.FlatPushMessageInformationDao;
 import org.jboss.aerogear.unifiedpush.dao.InstallationDao;
 import org.jboss.aerogear.unifiedpush.dao.PageResult;
 import org.jboss.aerogear.unifiedpush.dao.PushApplicationDao;
+import org.jboss.aerogear.unifiedpush.dao.ResultStreamException;
+import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
 import org.jboss.aerogear.unifiedpush.dao.VariantDao;
 import org.jboss.aerogear.unifiedpush.dto.Count;
 import org.jboss.aerogear.unifiedpush.service.PushSearchService;
 import org.jboss.aerogear.unifiedpush.service.annotations.LoggedInUser;
 import org.jboss.aerogear.unifiedpush.service.dashboard.Application;
 import org.jboss.aerogear.unifiedpush.service.dashboard.ApplicationVariant;
+import org.jboss.aerogear.unifiedpush.service.dashboard.DashboardCounters;
 import org.jboss.aerogear.unifiedpush.service.dashboard.DashboardData;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
@@ -50,6 +56,9 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional
 public class PushSearchServiceImpl implements PushSearchService {
 
+	// number of installations fetched per round trip while exporting
+	static final int EXPORT_CHUNK_SIZE = 1000;
+
 	@Inject
 	private PushApplicationDao pushApplicationDao;
 
@@ -62,6 +71,9 @@ public class PushSearchServiceImpl implements PushSearchService {
 	@Inject
 	private FlatPushMessageInformationDao flatPushMessageInformationDao;
 
+	@Inject
+	private DashboardCounters dashboardCounters;
+
 	@Override
 	public PageResult<PushApplication, Count> findAllPushApplicationsForDeveloper(Integer page, Integer pageSize) {
 		return pushApplicationDao.findAll(page, pageSize);
@@ -79,8 +91,32 @@ public class PushSearchServiceImpl implements PushSearchService {
 
 	@Override
 	public PageResult<Installation, Count> findAllInstallationsByVariantForDeveloper(String variantID, Integer page,
-			Integer pageSize, String search) {
-		return installationDao.findInstallationsByVariant(variantID, page, pageSize, search);
+			Integer pageSize, String search, String after) {
+		return installationDao.findInstallationsByVariant(variantID, page, pageSize, search, after);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public void exportInstallationsByVariantForDeveloper(String variantID, Consumer<Installation> consumer)
+			throws ResultStreamException {
+		exportInstallations(installationDao, installationDao.findAllInstallationsByVariantForDeveloper(variantID, null),
+				consumer);
+	}
+
+	/**
+	 * Hands the streamed installations over to the consumer and detaches each one once it has been exported, so the
+	 * persistence context does not grow with the variant. Clearing the whole context instead would also drop the
+	 * installation (and categories) Hibernate is still assembling from the scrolled join fetch.
+	 */
+	static void exportInstallations(InstallationDao installationDao, ResultsStream.QueryBuilder<Installation> query,
+			Consumer<Installation> consumer) throws ResultStreamException {
+		final ResultsStream<Installation> installations = query.fetchSize(EXPORT_CHUNK_SIZE).executeQuery();
+
+		while (installations.next()) {
+			final Installation installation = installations.get();
+			consumer.accept(installation);
+			installationDao.detach(installation);
+		}
 	}
 
 	/**
@@ -88,17 +124,8 @@ public class PushSearchServiceImpl implements PushSearchService {
 	 */
 	@Override
 	public DashboardData loadDashboardData() {
-
-		long totalApps = totalApplicationNumber();
-		long totalDevices = totalDeviceNumber();
-		long totalMessages = totalMessages();
-
-		final DashboardData data = new DashboardData();
-		data.setApplications(totalApps);
-		data.setDevices(totalDevices);
-		data.setMessages(totalMessages);
-
-		return data;
+		// materialized counters, rather than counting all rows on every request
+		return dashboardCounters.getDashboardData();
 	}
 
 	/**
@@ -123,18 +150,6 @@ public class PushSearchServiceImpl implements PushSearchService {
 		return wrapApplication(flatPushMessageInformationDao.findLatestActivity(maxResults));
 	}
 
-	private long totalMessages() {
-		return flatPushMessageInformationDao.getNumberOfPushMessagesForApplications();
-	}
-
-	private long totalDeviceNumber() {
-		return installationDao.getTotalNumberOfDevices();
-	}
-
-	private long totalApplicationNumber() {
-		return pushApplicationDao.getNumberOfPushApplicationsForDeveloper();
-	}
-
 	private List<ApplicationVariant> wrapApplicationVariant(List<PushApplication> applications) {
 		final List<ApplicationVariant> applicationVariants = new ArrayList<>(applications.size());
 
@@ -148,15 +163,28 @@ public class PushSearchServiceImpl implements PushSearchService {
 	}
 
 	private List<Application> wrapApplication(List<FlatPushMessageInformation> pushMessageInformations) {
+		return wrapApplication(pushApplicationDao, pushMessageInformations);
+	}
+
+	/**
+	 * Resolves the application names of all push messages with one query.
+	 */
+	static List<Application> wrapApplication(PushApplicationDao pushApplicationDao,
+			List<FlatPushMessageInformation> pushMessageInformations) {
 		final List<Application> applications = new ArrayList<>(pushMessageInformations.size());
+		if (pushMessageInformations.isEmpty()) {
+			return applications;
+		}
+
+		final Map<String, String> applicationNames = pushApplicationDao.findNamesByPushApplicationIDs(
+				pushMessageInformations.stream().map(FlatPushMessageInformation::getPushApplicationId)
+						.collect(Collectors.toSet()));
 
 		pushMessageInformations.forEach(pushMessageInformation -> {
-			final PushApplication pushApplication = pushApplicationDao
-					.findByPushApplicationID(pushMessageInformation.getPushApplicationId());
+			final String applicationName = applicationNames.get(pushMessageInformation.getPushApplicationId());
 
 			// make sure this is really there, and has not been deleted
-			if (pushApplication != null) {
-				final String applicationName = pushApplication.getName();
+			if (applicationName != null) {
 				final Application application = new Application(applicationName,
 						pushMessageInformation.getPushApplicationId(), pushMessageInformation.getSubmitDate());
 				applications.add(application);
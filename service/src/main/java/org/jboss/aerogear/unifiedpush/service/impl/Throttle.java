@@ -0,0 +1,58 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Minimal blocking rate limiter, permits are spread evenly over time. A non
+ * positive rate disables throttling.
+ */
+class Throttle {
+	private final long intervalNanos;
+	private long next = System.nanoTime();
+
+	Throttle(int permitsPerSecond) {
+		this.intervalNanos = permitsPerSecond <= 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+	}
+
+	void acquire() {
+		acquire(1);
+	}
+
+	void acquire(int permits) {
+		if (intervalNanos == 0 || permits <= 0) {
+			return;
+		}
+
+		final long wait;
+		synchronized (this) {
+			final long now = System.nanoTime();
+			if (next - now < 0) {
+				next = now;
+			}
+
+			wait = next - now;
+			next += intervalNanos * permits;
+		}
+
+		if (wait > 0) {
+			LockSupport.parkNanos(wait);
+		}
+	}
+}
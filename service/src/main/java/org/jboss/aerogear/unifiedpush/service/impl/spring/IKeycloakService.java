@@ -39,4 +39,12 @@ public interface IKeycloakService {
 	int updateUserAttribute(Map<String, ? extends Collection<UserTenantInfo>> aliasToIdentifiers);
 
 	void updateTenantsExistingUser(String representativeAlias, Collection<UserTenantInfo> tenantRelations);
+
+	/**
+	 * Bulk {@link #updateTenantsExistingUser(String, Collection)}, aliases not
+	 * registered to keycloak are ignored.
+	 *
+	 * @return number of updated users
+	 */
+	int updateTenantsExistingUsers(Map<String, ? extends Collection<UserTenantInfo>> aliasToIdentifiers);
 }
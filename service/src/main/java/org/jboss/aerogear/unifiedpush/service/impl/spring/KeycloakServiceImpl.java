@@ -494,6 +494,38 @@ public class KeycloakServiceImpl implements IKeycloakService {
 		return updated;
 	}
 
+	@Override
+	public int updateTenantsExistingUsers(Map<String, ? extends Collection<UserTenantInfo>> aliasToIdentifiers) {
+		if (!isInitialized() || aliasToIdentifiers.isEmpty()) {
+			return 0;
+		}
+
+		int updated = 0;
+		UsersResource users = this.realm.users();
+		int pages = (users.count() + BULK_SIZE - 1) / BULK_SIZE;
+
+		// Few aliases, a search per alias is cheaper than listing the realm.
+		if (aliasToIdentifiers.size() <= pages) {
+			for (Map.Entry<String, ? extends Collection<UserTenantInfo>> entry : aliasToIdentifiers.entrySet()) {
+				UserRepresentation user = getUser(entry.getKey());
+				if (user != null && updateUser(users, user, entry.getValue())) {
+					updated++;
+				}
+			}
+			return updated;
+		}
+
+		for (int i = 0; i < pages; i++) {
+			for (UserRepresentation user : users.list(i * BULK_SIZE, BULK_SIZE)) {
+				Collection<UserTenantInfo> userTenantInfos = aliasToIdentifiers.get(user.getUsername());
+				if (userTenantInfos != null && updateUser(users, user, userTenantInfos)) {
+					updated++;
+				}
+			}
+		}
+		return updated;
+	}
+
 	private int updateUsers(Map<String, ? extends Collection<UserTenantInfo>> aliasToIdentifiers, UsersResource users,
 							List<UserRepresentation> bulkUsers) {
 		int total = 0;
@@ -504,26 +536,34 @@ public class KeycloakServiceImpl implements IKeycloakService {
 				logger.warn("updateUsers() Found KC user={} without record in cassandra", username);
 				continue;
 			}
-			UserResource userResource = users.get(userRepresentation.getId());
-			try {
-				setTenantRelationsAsAttribute(userTenantInfos, userRepresentation);
-			} catch (JsonProcessingException e) {
-				logger.warn("updateUsers() failed ({}) to write user identifiers for user={}: {}",
-						e.getClass().getSimpleName(), username, e.getMessage());
-				continue;
-			}
-			try {
-				userResource.update(userRepresentation);
-			} catch (Exception e) {
-				logger.warn("updateUsers() failed ({}) to write user identifiers for user={}, userRepresentation={}: {}",
-						e.getClass().getSimpleName(), username, userRepresentation, e.getMessage());
-				continue;
+			if (updateUser(users, userRepresentation, userTenantInfos)) {
+				total++;
 			}
-			total++;
 		}
 		return total;
 	}
 
+	private boolean updateUser(UsersResource users, UserRepresentation userRepresentation,
+							   Collection<UserTenantInfo> userTenantInfos) {
+		String username = userRepresentation.getUsername();
+		UserResource userResource = users.get(userRepresentation.getId());
+		try {
+			setTenantRelationsAsAttribute(userTenantInfos, userRepresentation);
+		} catch (JsonProcessingException e) {
+			logger.warn("updateUsers() failed ({}) to write user identifiers for user={}: {}",
+					e.getClass().getSimpleName(), username, e.getMessage());
+			return false;
+		}
+		try {
+			userResource.update(userRepresentation);
+		} catch (Exception e) {
+			logger.warn("updateUsers() failed ({}) to write user identifiers for user={}, userRepresentation={}: {}",
+					e.getClass().getSimpleName(), username, userRepresentation, e.getMessage());
+			return false;
+		}
+		return true;
+	}
+
 	private static List<String> toTenantInfosString(Collection<UserTenantInfo> userTenantInfos) throws JsonProcessingException {
 		List<String> jsons = new ArrayList<>();
 		for (UserTenantInfo info : userTenantInfos) {
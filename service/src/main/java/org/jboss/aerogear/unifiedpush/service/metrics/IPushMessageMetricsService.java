@@ -1,5 +1,7 @@
 package org.jboss.aerogear.unifiedpush.service.metrics;
 
+import java.util.Date;
+
 import org.jboss.aerogear.unifiedpush.api.FlatPushMessageInformation;
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.dao.PageResult;
@@ -34,6 +36,16 @@ public interface IPushMessageMetricsService {
 
 	void updateAnalytics(String aerogearPushId);
 
+	/**
+	 * Adds the aggregated app opens to the push message, with a single update statement.
+	 *
+	 * @param aerogearPushId ID of the push message
+	 * @param openCount number of app opens
+	 * @param firstOpenDate first of the app opens
+	 * @param lastOpenDate last of the app opens
+	 */
+	void updateAnalytics(String aerogearPushId, long openCount, Date firstOpenDate, Date lastOpenDate);
+
 	FlatPushMessageInformation getPushMessageInformation(String id);
 
 }
\ No newline at end of file
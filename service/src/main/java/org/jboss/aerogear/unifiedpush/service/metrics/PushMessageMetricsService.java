@@ -131,4 +131,12 @@ public class PushMessageMetricsService implements IPushMessageMetricsService {
         }
 
     }
+
+    /* (non-Javadoc)
+	 * @see org.jboss.aerogear.unifiedpush.service.metrics.IPushMessageMetricsService#updateAnalytics(java.lang.String, long, java.util.Date, java.util.Date)
+	 */
+    @Override
+	public void updateAnalytics(String aerogearPushId, long openCount, Date firstOpenDate, Date lastOpenDate) {
+        flatPushMessageInformationDao.incrementAppOpenCounter(aerogearPushId, openCount, firstOpenDate, lastOpenDate);
+    }
 }
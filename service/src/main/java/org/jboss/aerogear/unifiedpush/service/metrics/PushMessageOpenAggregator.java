@@ -0,0 +1,173 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.metrics;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.jboss.aerogear.unifiedpush.system.ConfigurationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Write-behind aggregation of the app opens caused by push messages.
+ *
+ * Every app open only increments an in-memory counter of the push message; the counters are periodically written
+ * to the database with one update statement per push message, instead of loading and updating the (hot) push
+ * message row for every single app open. Pending counters are written on shutdown as well.
+ */
+@Service
+public class PushMessageOpenAggregator {
+
+    // system property name used as the configurable interval (in milliseconds) between two flushes of the counters
+    public static final String AEROGEAR_METRICS_OPEN_COUNTER_FLUSH_INTERVAL = "aerogear.metrics.openCounter.flushInterval";
+
+    private static final int DEFAULT_FLUSH_INTERVAL_IN_MILLIS = 10000;
+
+    private final Logger logger = LoggerFactory.getLogger(PushMessageOpenAggregator.class);
+
+    private final ConcurrentMap<String, OpenCounter> counters = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "push-message-open-aggregator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Inject
+    private IPushMessageMetricsService metricsService;
+
+    @PostConstruct
+    public void init() {
+        final long flushInterval = Math.max(1, ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_METRICS_OPEN_COUNTER_FLUSH_INTERVAL, DEFAULT_FLUSH_INTERVAL_IN_MILLIS));
+        scheduler.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Counts an app open caused by the given push message.
+     *
+     * @param aerogearPushId ID of the push message
+     */
+    public void appOpened(String aerogearPushId) {
+        final long now = System.currentTimeMillis();
+        OpenCounter counter = counters.computeIfAbsent(aerogearPushId, id -> new OpenCounter());
+        // a counter closed by a flush is about to be removed, count the open on a new one
+        while (!counter.increment(now)) {
+            counters.remove(aerogearPushId, counter);
+            counter = counters.computeIfAbsent(aerogearPushId, id -> new OpenCounter());
+        }
+    }
+
+    /**
+     * Writes the app opens counted since the last flush to the database.
+     */
+    public synchronized void flush() {
+        for (Map.Entry<String, OpenCounter> entry : counters.entrySet()) {
+            final String aerogearPushId = entry.getKey();
+            final OpenCounter counter = entry.getValue();
+
+            long opens = counter.opens.sumThenReset();
+            if (opens == 0) {
+                // no app opens since the last flush, forget the push message. Once closed, the counter rejects
+                // further opens, they are counted on a new counter instead
+                if (counter.close()) {
+                    counters.remove(aerogearPushId, counter);
+                    continue;
+                }
+                // opens counted meanwhile are written right away
+                opens = counter.opens.sumThenReset();
+            }
+
+            // an app open racing with the reset might have left the timestamps to the next flush
+            final long now = System.currentTimeMillis();
+            final long firstOpen = counter.firstOpen.getAndSet(Long.MAX_VALUE);
+            final long lastOpen = counter.lastOpen.getAndSet(Long.MIN_VALUE);
+            final Date firstOpenDate = new Date(firstOpen == Long.MAX_VALUE ? now : firstOpen);
+            final Date lastOpenDate = new Date(lastOpen == Long.MIN_VALUE ? now : lastOpen);
+            try {
+                metricsService.updateAnalytics(aerogearPushId, opens, firstOpenDate, lastOpenDate);
+            } catch (RuntimeException e) {
+                logger.warn(String.format("Unable to store %d app opens of push message %s", opens, aerogearPushId), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        flush();
+    }
+
+    /**
+     * App opens of a push message since the last flush.
+     *
+     * Increments share the read lock, closing takes the write lock, so that no open is counted on a closed counter.
+     */
+    private static class OpenCounter {
+        private final LongAdder opens = new LongAdder();
+        private final AtomicLong firstOpen = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong lastOpen = new AtomicLong(Long.MIN_VALUE);
+        private final StampedLock lock = new StampedLock();
+        private boolean closed;
+
+        /**
+         * @return false if the counter was closed and the open was not counted
+         */
+        boolean increment(long timestamp) {
+            final long stamp = lock.readLock();
+            try {
+                if (closed) {
+                    return false;
+                }
+                firstOpen.accumulateAndGet(timestamp, Math::min);
+                lastOpen.accumulateAndGet(timestamp, Math::max);
+                opens.increment();
+                return true;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Closes the counter unless opens were counted since the last reset.
+         *
+         * @return true if the counter is closed
+         */
+        boolean close() {
+            final long stamp = lock.writeLock();
+            try {
+                closed = opens.sum() == 0;
+                return closed;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.jboss.aerogear.unifiedpush.spring;
 
 import org.jboss.aerogear.unifiedpush.jpa.JPAConfig;
+import org.jboss.aerogear.unifiedpush.service.dashboard.DashboardCounters;
 import org.jboss.aerogear.unifiedpush.service.impl.OtpCodeService;
 import org.jboss.aerogear.unifiedpush.service.impl.spring.IConfigurationService;
 import org.jboss.aerogear.unifiedpush.service.metrics.IPushMessageMetricsService;
@@ -11,7 +12,8 @@ import org.springframework.context.annotation.Import;
 
 @Configuration
 @Import({ ConfigurationEnvironment.class, ServiceCacheConfig.class, JPAConfig.class })
-@ComponentScan(basePackageClasses = { OtpCodeService.class, IConfigurationService.class, IPushMessageMetricsService.class })
+@ComponentScan(basePackageClasses = { OtpCodeService.class, IConfigurationService.class, IPushMessageMetricsService.class,
+		DashboardCounters.class })
 public class ServiceConfig {
 
 
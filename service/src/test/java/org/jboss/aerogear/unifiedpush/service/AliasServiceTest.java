@@ -108,6 +108,27 @@ public class AliasServiceTest extends AbstractCassandraServiceTest {
 		});
 	}
 
+	@Test
+	@Transactional
+	public void testAddAllIgnoresDuplicates() {
+		PushApplication pushApplication = new PushApplication();
+		UUID pushAppId = UUID.fromString(pushApplication.getPushApplicationID());
+
+		List<Alias> aliasList = Arrays.asList(new Alias(pushAppId, null, "Duplicate@AeroGear.org"),
+				new Alias(pushAppId, null, "duplicate@aerogear.org"),
+				new Alias(pushAppId, null, "Unique@AeroGear.org", "Other"),
+				new Alias(pushAppId, null, "Another@AeroGear.org", "OTHER"));
+
+		List<Alias> aliases = aliasService.addAll(pushApplication, aliasList, false);
+
+		assertThat(aliases).extracting("email").containsExactly("Duplicate@AeroGear.org", "Unique@AeroGear.org");
+		assertThat(aliases.get(0).getId()).isNotEqualTo(aliases.get(1).getId());
+		assertThat(aliasService.find(pushAppId.toString(), "duplicate@aerogear.org").getId())
+				.isEqualTo(aliases.get(0).getId());
+		assertThat(aliasService.find(pushAppId.toString(), "other").getId()).isEqualTo(aliases.get(1).getId());
+		assertThat(aliasService.find(pushAppId.toString(), "another@aerogear.org")).isNull();
+	}
+
 	@Test
 	@Transactional
 	public void testRemoveAlias() throws IOException {
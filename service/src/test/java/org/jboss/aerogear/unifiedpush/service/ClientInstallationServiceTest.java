@@ -25,8 +25,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -42,6 +44,7 @@ import org.jboss.aerogear.unifiedpush.api.iOSVariant;
 import org.jboss.aerogear.unifiedpush.dao.ResultStreamException;
 import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
 import org.jboss.aerogear.unifiedpush.service.annotations.LoggedInUser;
+import org.jboss.aerogear.unifiedpush.service.dashboard.DashboardCounters;
 import org.junit.Test;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -59,6 +62,8 @@ public class ClientInstallationServiceTest extends AbstractCassandraServiceTest
 	private PushApplicationService applicationService;
 	@Inject
 	private AliasService aliasService;
+	@Inject
+	private DashboardCounters dashboardCounters;
 
 	private AndroidVariant androidVariant;
 
@@ -293,6 +298,36 @@ public class ClientInstallationServiceTest extends AbstractCassandraServiceTest
 				.hasSize(NUMBER_OF_INSTALLATIONS + 1);
 	}
 
+	@Test
+	@Transactional
+	public void exportDevicesWithCategories() throws ResultStreamException {
+		// more than one fetch of the export, all sharing the same categories
+		final int NUMBER_OF_INSTALLATIONS = 2500;
+		final List<Installation> devices = new ArrayList<Installation>();
+		for (int i = 0; i < NUMBER_OF_INSTALLATIONS; i++) {
+			Installation device = new Installation();
+			device.setDeviceToken(TestUtils.generateFakedDeviceTokenString());
+			device.setCategories(new HashSet<Category>(
+					Arrays.asList(new Category("football"), new Category(i % 2 == 0 ? "even" : "odd"))));
+			devices.add(device);
+		}
+		clientInstallationService.addInstallations(androidVariant, devices);
+
+		final Map<String, Set<String>> exported = new HashMap<>();
+		searchApplicationService.exportInstallationsByVariantForDeveloper(androidVariant.getVariantID(),
+				installation -> {
+					final Set<String> categories = new HashSet<>();
+					installation.getCategories().forEach(category -> categories.add(category.getName()));
+					assertThat(exported.put(installation.getDeviceToken(), categories)).isNull();
+				});
+
+		assertThat(exported).hasSize(NUMBER_OF_INSTALLATIONS);
+		for (int i = 0; i < NUMBER_OF_INSTALLATIONS; i++) {
+			assertThat(exported.get(devices.get(i).getDeviceToken()))
+					.containsOnly("football", i % 2 == 0 ? "even" : "odd");
+		}
+	}
+
 	@Test
 	@Transactional
 	public void createAndDeleteDeviceByToken() {
@@ -309,6 +344,28 @@ public class ClientInstallationServiceTest extends AbstractCassandraServiceTest
 		assertThat(findAllDeviceTokenForVariantIDByCriteria(androidVariant.getVariantID(), null, null, null)).isEmpty();
 	}
 
+	@Test
+	@Transactional
+	public void replaceDeviceTokensWithCanonicalTokens() {
+		final String outdatedToken = TestUtils.generateFakedDeviceTokenString();
+		final String duplicatedToken = TestUtils.generateFakedDeviceTokenString();
+		final String registeredToken = TestUtils.generateFakedDeviceTokenString();
+		final String canonicalToken = TestUtils.generateFakedDeviceTokenString();
+		for (String token : Arrays.asList(outdatedToken, duplicatedToken, registeredToken)) {
+			Installation device = new Installation();
+			device.setDeviceToken(token);
+			clientInstallationService.addInstallation(androidVariant, device, false);
+		}
+
+		final Map<String, String> canonicalTokens = new HashMap<>();
+		canonicalTokens.put(outdatedToken, canonicalToken);
+		canonicalTokens.put(duplicatedToken, registeredToken);
+		clientInstallationService.replaceDeviceTokensForVariant(androidVariant.getVariantID(), canonicalTokens);
+
+		assertThat(findAllDeviceTokenForVariantIDByCriteria(androidVariant.getVariantID(), null, null, null))
+				.containsOnly(canonicalToken, registeredToken);
+	}
+
 	@Test
 	@Transactional
 	public void importDevicesWithoutDuplicates() {
@@ -336,6 +393,26 @@ public class ClientInstallationServiceTest extends AbstractCassandraServiceTest
 				.hasSize(NUMBER_OF_INSTALLATIONS + 1);
 	}
 
+	@Test
+	@Transactional
+	public void importDevicesWithSharedCategoriesAndDuplicatesInFile() {
+		final String token = TestUtils.generateFakedDeviceTokenString();
+		final List<Installation> devices = new ArrayList<Installation>();
+		for (String deviceToken : Arrays.asList(token, TestUtils.generateFakedDeviceTokenString(), token)) {
+			Installation device = new Installation();
+			device.setDeviceToken(deviceToken);
+			device.setCategories(new HashSet<Category>(Arrays.asList(new Category("imported"))));
+			devices.add(device);
+		}
+
+		assertThat(clientInstallationService.addInstallations(androidVariant, devices)).isEqualTo(2);
+		assertThat(findAllDeviceTokenForVariantIDByCriteria(androidVariant.getVariantID(),
+				Arrays.asList("imported"), null, null)).hasSize(2);
+
+		// nothing new on a second run
+		assertThat(clientInstallationService.addInstallations(androidVariant, devices)).isZero();
+	}
+
 	@Test
 	@Transactional
 	public void importDevices() {
@@ -732,10 +809,12 @@ public class ClientInstallationServiceTest extends AbstractCassandraServiceTest
 
 		List<Installation> installations = clientInstallationService.findByAlias(alias);
 		assertTrue(installations.size() == 2);
+		final long devices = dashboardCounters.getDashboardData().getDevices();
 
 		clientInstallationService.removeInstallations(alias);
 		installations = clientInstallationService.findByAlias(alias);
 		assertTrue(installations.size() == 0);
+		assertThat(dashboardCounters.getDashboardData().getDevices()).isEqualTo(devices - 2);
 	}
 
 	private List<String> findAllDeviceTokenForVariantIDByCriteria(String variantID, List<String> categories,
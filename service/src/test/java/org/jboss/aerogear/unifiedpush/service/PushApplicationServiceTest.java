@@ -40,6 +40,8 @@ public class PushApplicationServiceTest extends AbstractCassandraServiceTest {
 
 	@Inject
 	private DocumentService documentService;
+	@Inject
+	private ApplicationTeardownService teardownService;
 
 	@Inject
 	private AliasService aliasService;
@@ -199,9 +201,14 @@ public class PushApplicationServiceTest extends AbstractCassandraServiceTest {
 		assertTrue(aliasService.find(pa.getPushApplicationID(), alias.getEmail()) != null);
 
 		pushApplicationService.removePushApplication(pa);
-		documents = documentService.findLatest(pa, "TASKS", "1", Arrays.asList(alias));
 
-		sleepSilently(100);
+		// Teardown runs in background, wait for completion.
+		for (int i = 0; i < 100 && teardownService.getProgress(pa.getPushApplicationID()).isRunning(); i++) {
+			sleepSilently(100);
+		}
+		assertTrue(!teardownService.getProgress(pa.getPushApplicationID()).isRunning());
+
+		documents = documentService.findLatest(pa, "TASKS", "1", Arrays.asList(alias));
 
 		assertTrue(documents.size() == 0);
 		assertTrue(aliasService.find(pa.getPushApplicationID(), alias.getEmail()) == null);
@@ -28,6 +28,7 @@ import org.jboss.aerogear.unifiedpush.api.FlatPushMessageInformation;
 import org.jboss.aerogear.unifiedpush.api.VariantType;
 import org.jboss.aerogear.unifiedpush.dao.VariantDao;
 import org.jboss.aerogear.unifiedpush.service.metrics.IPushMessageMetricsService;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageOpenAggregator;
 import org.junit.Test;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -36,6 +37,9 @@ public class PushMessageMetricServiceTest extends AbstractCassandraServiceTest {
     @Inject
     private IPushMessageMetricsService pushMessageMetricsService;
 
+    @Inject
+    private PushMessageOpenAggregator openAggregator;
+
     @Inject
     private VariantDao variantDao;
 
@@ -74,6 +78,20 @@ public class PushMessageMetricServiceTest extends AbstractCassandraServiceTest {
         assertThat(updatedPushInformation1.getAppOpenCounter()).isEqualTo(2);
     }
 
+    @Test
+    @Transactional
+    public void aggregatedAppOpens() {
+        openAggregator.appOpened(pushMessageInformation.getId());
+        openAggregator.appOpened(pushMessageInformation.getId());
+        openAggregator.appOpened(pushMessageInformation.getId());
+        openAggregator.flush();
+
+        FlatPushMessageInformation updatedPushInformation = pushMessageMetricsService.getPushMessageInformation(pushMessageInformation.getId());
+        assertThat(updatedPushInformation.getAppOpenCounter()).isEqualTo(3);
+        assertThat(updatedPushInformation.getFirstOpenDate()).isNotNull();
+        assertThat(updatedPushInformation.getLastOpenDate()).isAfterOrEqualsTo(updatedPushInformation.getFirstOpenDate());
+    }
+
     @Test
     @Transactional
     public void errorCounter() {
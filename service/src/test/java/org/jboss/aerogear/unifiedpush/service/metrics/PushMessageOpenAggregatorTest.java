@@ -0,0 +1,104 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class PushMessageOpenAggregatorTest {
+	private static final int THREADS = 4;
+	private static final int OPENS_PER_THREAD = 20000;
+
+	@Mock
+	private IPushMessageMetricsService metricsService;
+
+	@InjectMocks
+	private PushMessageOpenAggregator aggregator;
+
+	private final AtomicLong stored = new AtomicLong();
+
+	@Before
+	public void setUp() {
+		MockitoAnnotations.initMocks(this);
+		doAnswer(invocation -> stored.addAndGet((Long) invocation.getArguments()[1])).when(metricsService)
+				.updateAnalytics(anyString(), anyLong(), any(Date.class), any(Date.class));
+	}
+
+	@Test
+	public void storesEveryOpen() {
+		aggregator.appOpened("1");
+		aggregator.appOpened("1");
+		aggregator.flush();
+		aggregator.appOpened("1");
+		aggregator.flush();
+		// an idle flush forgets the push message
+		aggregator.flush();
+		aggregator.appOpened("1");
+		aggregator.flush();
+
+		assertEquals(4, stored.get());
+	}
+
+	@Test
+	public void storesOpensRacingWithFlush() throws InterruptedException {
+		final CountDownLatch done = new CountDownLatch(THREADS);
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final List<Thread> threads = new ArrayList<>();
+
+		for (int i = 0; i < THREADS; i++) {
+			threads.add(new Thread(() -> {
+				for (int j = 0; j < OPENS_PER_THREAD; j++) {
+					aggregator.appOpened("1");
+					// let the counter go idle now and then, so that flush closes it
+					if (j % 100 == 0)
+						Thread.yield();
+				}
+				done.countDown();
+			}));
+		}
+
+		final Thread flusher = new Thread(() -> {
+			while (running.get())
+				aggregator.flush();
+		});
+
+		flusher.start();
+		threads.forEach(Thread::start);
+		done.await();
+		running.set(false);
+		flusher.join();
+		aggregator.flush();
+
+		assertEquals(THREADS * OPENS_PER_THREAD, stored.get());
+	}
+}